@@ -0,0 +1,22 @@
+@echo off
+rem
+rem Run plink2toProxlXML.jar with settings for fast startup, for converting small searches.
+rem
+rem If plink2toProxlXML.jsa (built with: gradle appCds) is next to the jar, it is used as a
+rem class data sharing archive. See the plink2toProxlXML shell script for details.
+rem
+rem Large searches run faster with a plain: java -jar plink2toProxlXML.jar
+rem Extra JVM options may be given in JAVA_OPTS.
+rem
+
+setlocal
+
+set DIR=%~dp0
+
+set JAVA=java
+if defined JAVA_HOME set JAVA=%JAVA_HOME%\bin\java
+
+set ARCHIVE_OPTION=
+if exist "%DIR%plink2toProxlXML.jsa" set ARCHIVE_OPTION="-XX:SharedArchiveFile=%DIR%plink2toProxlXML.jsa"
+
+"%JAVA%" -XX:TieredStopAtLevel=1 -XX:+UseSerialGC %ARCHIVE_OPTION% %JAVA_OPTS% -jar "%DIR%plink2toProxlXML.jar" %*
@@ -0,0 +1,84 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.batch;
+
+import java.io.File;
+
+/**
+ * One conversion in a batch: the pLink search to convert and where to write the proxl XML
+ *
+ * @author Michael Riffle
+ *
+ */
+public class BatchJob {
+
+	/**
+	 * @param id A name for the job, used in status reports
+	 * @param paramsFile The pLink parameters file (.plink)
+	 * @param dataDirectory The pLink reports directory, may be null to use the one in the parameters file
+	 * @param fastaFile The FASTA file used in the search
+	 * @param outputFile The proxl XML file to write
+	 * @param binDirectory The pLink bin directory, may be null to use the batch's default
+	 */
+	public BatchJob( String id, File paramsFile, File dataDirectory, File fastaFile, File outputFile, File binDirectory ) {
+		this.id = id;
+		this.paramsFile = paramsFile;
+		this.dataDirectory = dataDirectory;
+		this.fastaFile = fastaFile;
+		this.outputFile = outputFile;
+		this.binDirectory = binDirectory;
+	}
+
+	@Override
+	public String toString() {
+		return id;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public File getParamsFile() {
+		return paramsFile;
+	}
+
+	public File getDataDirectory() {
+		return dataDirectory;
+	}
+
+	public File getFastaFile() {
+		return fastaFile;
+	}
+
+	public File getOutputFile() {
+		return outputFile;
+	}
+
+	public File getBinDirectory() {
+		return binDirectory;
+	}
+
+
+	private final String id;
+	private final File paramsFile;
+	private final File dataDirectory;
+	private final File fastaFile;
+	private final File outputFile;
+	private final File binDirectory;
+}
@@ -0,0 +1,135 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.yeastrc.proxl.xml.plink2.converter.ConversionStage;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+
+/**
+ * The status of a job in a batch. Updated by the thread running the job, safe to read from others.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class BatchJobStatus {
+
+	public enum State {
+		QUEUED,
+		RUNNING,
+		SUCCEEDED,
+		FAILED
+	}
+
+	BatchJobStatus( BatchJob job ) {
+		this.job = job;
+	}
+
+	public BatchJob getJob() {
+		return job;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return The stage the job is running, or null if it isn't running
+	 */
+	public synchronized ConversionStage getStage() {
+		return stage;
+	}
+
+	/**
+	 * @return The result of the conversion, or null if it hasn't succeeded
+	 */
+	public synchronized PLinkConversionResult getResult() {
+		return result;
+	}
+
+	/**
+	 * @return Why the conversion failed, or null if it hasn't failed
+	 */
+	public synchronized Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return How long the job waited for CPU and memory before it started, in milliseconds
+	 */
+	public synchronized long getWaitMillis() {
+		return waitMillis;
+	}
+
+	/**
+	 * @return How long the job ran, in milliseconds
+	 */
+	public synchronized long getRunMillis() {
+		return runMillis;
+	}
+
+	/**
+	 * @return The messages reported by the conversion, e.g., result types that were skipped
+	 */
+	public synchronized List<String> getMessages() {
+		return Collections.unmodifiableList( new ArrayList<>( messages ) );
+	}
+
+
+	synchronized void started( long waitMillis ) {
+		this.state = State.RUNNING;
+		this.waitMillis = waitMillis;
+	}
+
+	synchronized void setStage( ConversionStage stage ) {
+		this.stage = stage;
+	}
+
+	synchronized void addMessage( String message ) {
+		messages.add( message );
+	}
+
+	synchronized void succeeded( PLinkConversionResult result, long runMillis ) {
+		this.state = State.SUCCEEDED;
+		this.stage = null;
+		this.result = result;
+		this.runMillis = runMillis;
+	}
+
+	synchronized void failed( Throwable error, long runMillis ) {
+		this.state = State.FAILED;
+		this.stage = null;
+		this.error = error;
+		this.runMillis = runMillis;
+	}
+
+
+	private final BatchJob job;
+
+	private State state = State.QUEUED;
+	private ConversionStage stage;
+	private PLinkConversionResult result;
+	private Throwable error;
+	private long waitMillis;
+	private long runMillis;
+	private final List<String> messages = new ArrayList<>();
+}
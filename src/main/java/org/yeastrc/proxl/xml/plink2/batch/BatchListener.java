@@ -0,0 +1,44 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.batch;
+
+/**
+ * Receives the progress of the jobs in a batch run by a BatchRunner. Called on the threads running
+ * the jobs, so may be called for several jobs at the same time; all methods do nothing by default.
+ *
+ * @author Michael Riffle
+ *
+ */
+public interface BatchListener {
+
+	/**
+	 * A job has been given its CPU and memory and started
+	 *
+	 * @param status
+	 */
+	default void jobStarted( BatchJobStatus status ) { }
+
+	/**
+	 * A job has succeeded or failed
+	 *
+	 * @param status
+	 */
+	default void jobFinished( BatchJobStatus status ) { }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.batch;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.yeastrc.proxl.xml.plink2.utils.JSONUtils;
+
+import com.opencsv.CSVReader;
+
+/**
+ * Reads the list of jobs in a batch from a manifest file, in CSV or JSON.
+ *
+ * A CSV manifest has a header line naming its columns, then one job per line. A JSON manifest is an
+ * array of job objects, or an object with the array in "jobs". Either way a job has:
+ *
+ *   params   - [Required] the pLink parameters file (.plink)
+ *   fasta    - [Required] the FASTA file
+ *   output   - [Required] the proxl XML file to write
+ *   reports  - [Optional] the pLink reports directory
+ *   bin      - [Optional] the pLink bin directory
+ *   id       - [Optional] a name for the job, defaults to the output file's name
+ *
+ * Relative paths are relative to the directory of the manifest file. Two jobs may not write the same
+ * output file.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class BatchManifest {
+
+	public static final String PARAMS = "params";
+	public static final String FASTA = "fasta";
+	public static final String OUTPUT = "output";
+	public static final String REPORTS = "reports";
+	public static final String BIN = "bin";
+	public static final String ID = "id";
+
+	/**
+	 * Read the jobs from the supplied manifest file. A file is read as JSON if its name ends in .json or its
+	 * content starts with [ or {, otherwise as CSV.
+	 *
+	 * @param manifestFile
+	 * @return
+	 * @throws Exception If the manifest can't be read or a job is missing a required value
+	 */
+	public static List<BatchJob> read( File manifestFile ) throws Exception {
+
+		String content = new String( Files.readAllBytes( manifestFile.toPath() ), StandardCharsets.UTF_8 );
+		String trimmed = content.trim();
+
+		File baseDirectory = manifestFile.getAbsoluteFile().getParentFile();
+
+		List<Map<String, String>> rows;
+
+		if( manifestFile.getName().toLowerCase( Locale.ROOT ).endsWith( ".json" ) || trimmed.startsWith( "[" ) || trimmed.startsWith( "{" ) )
+			rows = readJSON( trimmed );
+		else {
+			try( Reader reader = new StringReader( content ) ) {
+				rows = readCSV( reader );
+			}
+		}
+
+		List<BatchJob> jobs = new ArrayList<>( rows.size() );
+		Set<File> outputFiles = new HashSet<>();
+
+		for( int i = 0; i < rows.size(); i++ ) {
+			BatchJob job = getJob( rows.get( i ), i + 1, baseDirectory );
+
+			if( !outputFiles.add( job.getOutputFile().getAbsoluteFile() ) )
+				throw new Exception( "Job " + ( i + 1 ) + " in " + manifestFile + " writes the same output file as an earlier job: " + job.getOutputFile() );
+
+			jobs.add( job );
+		}
+
+		return jobs;
+	}
+
+	/**
+	 * Get the rows of a CSV manifest, keyed by the (lower case) column names in the header
+	 */
+	private static List<Map<String, String>> readCSV( Reader reader ) throws Exception {
+
+		List<Map<String, String>> rows = new ArrayList<>();
+
+		try( CSVReader csvReader = new CSVReader( reader ) ) {
+
+			String[] header = csvReader.readNext();
+			if( header == null )
+				return rows;
+
+			for( int i = 0; i < header.length; i++ )
+				header[ i ] = header[ i ].trim().toLowerCase( Locale.ROOT );
+
+			String[] fields;
+			while( ( fields = csvReader.readNext() ) != null ) {
+
+				// skip blank lines
+				if( fields.length == 1 && fields[ 0 ].trim().isEmpty() )
+					continue;
+
+				Map<String, String> row = new HashMap<>();
+				for( int i = 0; i < fields.length && i < header.length; i++ )
+					row.put( header[ i ], fields[ i ] );
+
+				rows.add( row );
+			}
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Get the job objects of a JSON manifest
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static List<Map<String, String>> readJSON( String json ) throws Exception {
+
+		Object document = JSONUtils.parse( json );
+
+		if( document instanceof Map )
+			document = ( (Map<String, Object>)document ).get( "jobs" );
+
+		if( !( document instanceof List ) )
+			throw new Exception( "A JSON batch manifest must be an array of jobs, or an object with an array of jobs in \"jobs\"." );
+
+		List<Map<String, String>> rows = new ArrayList<>();
+
+		for( Object element : (List<Object>)document ) {
+			if( !( element instanceof Map ) )
+				throw new Exception( "Each job in a JSON batch manifest must be an object." );
+
+			Map<String, String> row = new HashMap<>();
+			for( Map.Entry<String, Object> entry : ( (Map<String, Object>)element ).entrySet() ) {
+				if( entry.getValue() != null )
+					row.put( entry.getKey().toLowerCase( Locale.ROOT ), entry.getValue().toString() );
+			}
+
+			rows.add( row );
+		}
+
+		return rows;
+	}
+
+	private static BatchJob getJob( Map<String, String> row, int number, File baseDirectory ) throws Exception {
+
+		File paramsFile = getFile( row, PARAMS, number, baseDirectory, true );
+		File fastaFile = getFile( row, FASTA, number, baseDirectory, true );
+		File outputFile = getFile( row, OUTPUT, number, baseDirectory, true );
+		File dataDirectory = getFile( row, REPORTS, number, baseDirectory, false );
+		File binDirectory = getFile( row, BIN, number, baseDirectory, false );
+
+		String id = row.get( ID );
+		if( id == null || id.trim().isEmpty() )
+			id = outputFile.getName();
+
+		return new BatchJob( id.trim(), paramsFile, dataDirectory, fastaFile, outputFile, binDirectory );
+	}
+
+	private static File getFile( Map<String, String> row, String column, int number, File baseDirectory, boolean required ) throws Exception {
+
+		String path = row.get( column );
+
+		if( path == null || path.trim().isEmpty() ) {
+			if( required )
+				throw new Exception( "Job " + number + " in the batch manifest has no " + column + "." );
+
+			return null;
+		}
+
+		File file = new File( path.trim() );
+		if( !file.isAbsolute() )
+			file = new File( baseDirectory, path.trim() );
+
+		return file;
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.batch;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.utils.JSONUtils;
+
+/**
+ * Writes the status of every job in a batch to a JSON file
+ *
+ * @author Michael Riffle
+ *
+ */
+public class BatchReport {
+
+	/**
+	 * @param reportFile
+	 * @param statuses
+	 * @param totalMillis How long the whole batch took
+	 * @throws Exception
+	 */
+	public static void write( File reportFile, List<BatchJobStatus> statuses, long totalMillis ) throws Exception {
+
+		int succeeded = 0;
+		for( BatchJobStatus status : statuses ) {
+			if( status.getState() == BatchJobStatus.State.SUCCEEDED )
+				succeeded++;
+		}
+
+		try( Writer writer = Files.newBufferedWriter( reportFile.toPath(), StandardCharsets.UTF_8 ) ) {
+
+			writer.write( "{\n" );
+			writer.write( "  \"jobs\": " + statuses.size() + ",\n" );
+			writer.write( "  \"succeeded\": " + succeeded + ",\n" );
+			writer.write( "  \"failed\": " + ( statuses.size() - succeeded ) + ",\n" );
+			writer.write( "  \"totalMillis\": " + totalMillis + ",\n" );
+			writer.write( "  \"results\": [" );
+
+			for( int i = 0; i < statuses.size(); i++ ) {
+				BatchJobStatus status = statuses.get( i );
+
+				writer.write( i == 0 ? "\n" : ",\n" );
+				writer.write( "    { \"id\": " + JSONUtils.quote( status.getJob().getId() ) +
+						", \"output\": " + JSONUtils.quote( status.getJob().getOutputFile().getAbsolutePath() ) +
+						", \"state\": " + JSONUtils.quote( status.getState().name() ) +
+						", \"waitMillis\": " + status.getWaitMillis() +
+						", \"runMillis\": " + status.getRunMillis() );
+
+				PLinkConversionResult result = status.getResult();
+				if( result != null ) {
+					writer.write( ", \"reportedPeptides\": " + result.getReportedPeptideCount() +
+							", \"psms\": " + result.getPsmCount() +
+							", \"bytes\": " + result.getBytesWritten() );
+				}
+
+				if( status.getError() != null )
+					writer.write( ", \"error\": " + JSONUtils.quote( String.valueOf( status.getError().getMessage() ) ) );
+
+				writer.write( " }" );
+			}
+
+			writer.write( statuses.isEmpty() ? "]\n" : "\n  ]\n" );
+			writer.write( "}\n" );
+		}
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.batch;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import org.yeastrc.proxl.xml.plink2.converter.ConversionListener;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionStage;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverter;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverterOptions;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkConstants;
+
+/**
+ * Runs the jobs of a batch concurrently in this JVM, within a budget of CPUs and of memory.
+ *
+ * Every job gets its own thread: a virtual thread if the JVM has them (Java 21+), otherwise a thread
+ * in a pool of one thread per CPU in the budget. A job waits until it can take one CPU and its
+ * estimated memory from the budget, and gives them back when it finishes. Memory is estimated from
+ * the size of the job's pLink results files; a job larger than the whole memory budget runs on its own.
+ *
+ * Jobs should be converted with PLinkConverterOptions.isCachePreparedFasta() turned on, so that jobs
+ * searched against the same FASTA file share one prepared copy of it (see PreparedFASTACache).
+ *
+ * @author Michael Riffle
+ *
+ */
+public class BatchRunner {
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	/**
+	 * Memory estimate for a job: a fixed base plus a multiple of the size of its pLink results files,
+	 * which covers the parsed results and the proxl XML built from them
+	 */
+	private static final long JOB_BASE_MEMORY = 32 * MEGABYTE;
+	private static final int JOB_MEMORY_PER_RESULTS_BYTE = 40;
+
+	/**
+	 * @param cpuBudget The number of jobs that may run at the same time
+	 * @param memoryBudget The number of bytes of memory the running jobs may use
+	 */
+	public BatchRunner( int cpuBudget, long memoryBudget ) {
+
+		if( cpuBudget < 1 )
+			throw new IllegalArgumentException( "The CPU budget must be at least 1." );
+
+		this.cpuBudget = cpuBudget;
+		this.memoryBudgetMegabytes = (int)Math.max( 1, Math.min( Integer.MAX_VALUE, memoryBudget / MEGABYTE ) );
+	}
+
+	/**
+	 * Run the supplied jobs and wait for all of them to finish. A failed job doesn't stop the others.
+	 *
+	 * @param jobs
+	 * @param optionsForJob Gets the conversion options for a job
+	 * @param listener May be null
+	 * @return The status of each job, in the order of the jobs
+	 * @throws InterruptedException If interrupted while waiting for the jobs
+	 */
+	public List<BatchJobStatus> run( List<BatchJob> jobs, Function<BatchJob, PLinkConverterOptions> optionsForJob, BatchListener listener ) throws Exception {
+
+		BatchListener batchListener = listener != null ? listener : new BatchListener() { };
+
+		Semaphore cpus = new Semaphore( cpuBudget, true );
+		Semaphore memory = new Semaphore( memoryBudgetMegabytes, true );
+
+		List<BatchJobStatus> statuses = new ArrayList<>( jobs.size() );
+		List<Future<?>> futures = new ArrayList<>( jobs.size() );
+
+		ExecutorService executor = newJobExecutor( cpuBudget );
+
+		try {
+
+			for( BatchJob job : jobs ) {
+				BatchJobStatus status = new BatchJobStatus( job );
+				statuses.add( status );
+
+				long queuedTime = System.nanoTime();
+
+				futures.add( executor.submit( () -> runJob( status, queuedTime, optionsForJob, cpus, memory, batchListener ) ) );
+			}
+
+			for( Future<?> future : futures )
+				future.get();
+
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return statuses;
+	}
+
+	/**
+	 * Run one job once its CPU and memory are available
+	 */
+	private void runJob( BatchJobStatus status, long queuedTime, Function<BatchJob, PLinkConverterOptions> optionsForJob, Semaphore cpus, Semaphore memory, BatchListener listener ) {
+
+		int memoryMegabytes = (int)Math.min( memoryBudgetMegabytes, estimateMemory( status.getJob() ) / MEGABYTE );
+
+		try {
+			memory.acquire( memoryMegabytes );
+		} catch( InterruptedException e ) {
+			status.failed( e, 0 );
+			listener.jobFinished( status );
+			return;
+		}
+
+		try {
+			try {
+				cpus.acquire();
+			} catch( InterruptedException e ) {
+				status.failed( e, 0 );
+				listener.jobFinished( status );
+				return;
+			}
+
+			long startTime = System.nanoTime();
+
+			try {
+				status.started( ( startTime - queuedTime ) / 1000000 );
+				listener.jobStarted( status );
+
+				PLinkConversionResult result = new PLinkConverter().convert( optionsForJob.apply( status.getJob() ), new ConversionListener() {
+
+					@Override
+					public void stageStarted( ConversionStage stage ) {
+						status.setStage( stage );
+					}
+
+					@Override
+					public void message( String message ) {
+						status.addMessage( message.trim() );
+					}
+				} );
+
+				status.succeeded( result, ( System.nanoTime() - startTime ) / 1000000 );
+
+			} catch( Throwable t ) {
+				status.failed( t, ( System.nanoTime() - startTime ) / 1000000 );
+			} finally {
+				cpus.release();
+			}
+
+		} finally {
+			memory.release( memoryMegabytes );
+		}
+
+		listener.jobFinished( status );
+	}
+
+	/**
+	 * Estimate the memory needed to convert the supplied job, from the size of its pLink results files
+	 *
+	 * @param job
+	 * @return The estimate, in bytes
+	 */
+	public static long estimateMemory( BatchJob job ) {
+
+		long resultsBytes = 0;
+
+		if( job.getDataDirectory() != null ) {
+			File[] files = new File( job.getDataDirectory(), PLinkConstants.DATA_SUBDIRECTORY ).listFiles( ( dir, name ) -> name.endsWith( "_spectra.csv" ) );
+
+			if( files != null ) {
+				for( File file : files )
+					resultsBytes += file.length();
+			}
+		}
+
+		return JOB_BASE_MEMORY + resultsBytes * JOB_MEMORY_PER_RESULTS_BYTE;
+	}
+
+	/**
+	 * Get an executor that runs every task on a new virtual thread, if this JVM has them (Java 21+),
+	 * otherwise on a pool of the supplied number of threads
+	 *
+	 * @param threads
+	 * @return
+	 */
+	public static ExecutorService newJobExecutor( int threads ) {
+
+		try {
+			Method method = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+			return (ExecutorService)method.invoke( null );
+		} catch( ReflectiveOperationException e ) {
+			return Executors.newFixedThreadPool( threads );
+		}
+	}
+
+	/**
+	 * @return true if jobs are run on virtual threads
+	 */
+	public static boolean isUsingVirtualThreads() {
+		try {
+			Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+			return true;
+		} catch( NoSuchMethodException e ) {
+			return false;
+		}
+	}
+
+	public int getCpuBudget() {
+		return cpuBudget;
+	}
+
+	/**
+	 * @return The memory budget, in bytes
+	 */
+	public long getMemoryBudget() {
+		return memoryBudgetMegabytes * MEGABYTE;
+	}
+
+
+	private final int cpuBudget;
+	private final int memoryBudgetMegabytes;
+}
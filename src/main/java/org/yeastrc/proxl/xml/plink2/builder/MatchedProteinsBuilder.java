@@ -21,10 +21,21 @@ package org.yeastrc.proxl.xml.plink2.builder;
 import java.io.File;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import org.yeastrc.fasta.FASTAEntry;
-import org.yeastrc.fasta.FASTAHeader;
 import org.yeastrc.fasta.FASTAReader;
+import org.yeastrc.proxl.xml.plink2.fasta.DecoyLabelMatcher;
+import org.yeastrc.proxl.xml.plink2.fasta.FastaNameIndex;
+import org.yeastrc.proxl.xml.plink2.fasta.FastaPeptideIndex;
+import org.yeastrc.proxl.xml.plink2.fasta.FastaProteinAnnotation;
+import org.yeastrc.proxl.xml.plink2.fasta.MappedFASTAScanner;
+import org.yeastrc.proxl.xml.plink2.fasta.MatchedProteinCollector;
+import org.yeastrc.proxl.xml.plink2.fasta.ParallelFASTAScanner;
+import org.yeastrc.proxl.xml.plink2.fasta.PeptideMatcher;
+import org.yeastrc.proxl.xml.plink2.fasta.PreparedFASTACache;
+import org.yeastrc.proxl.xml.plink2.fasta.PreparedFASTADatabase;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
 import org.yeastrc.proxl_import.api.xml_dto.MatchedProteins;
 import org.yeastrc.proxl_import.api.xml_dto.Peptide;
 import org.yeastrc.proxl_import.api.xml_dto.Peptides;
@@ -33,7 +44,6 @@ import org.yeastrc.proxl_import.api.xml_dto.ProteinAnnotation;
 import org.yeastrc.proxl_import.api.xml_dto.ProxlInput;
 import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
 import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptides;
-import org.yeastrc.taxonomy.main.GetTaxonomyId;
 
 /**
  * Build the MatchedProteins section of the ProXL XML docs. This is done by finding all proteins in the FASTA
@@ -58,29 +68,56 @@ public class MatchedProteinsBuilder {
 	 * @throws Exception
 	 */
 	public void buildMatchedProteins( ProxlInput proxlInputRoot, File fastaFile, Collection<String> decoyIdentifiers ) throws Exception {
+		buildMatchedProteins( proxlInputRoot, fastaFile, new DecoyLabelMatcher( decoyIdentifiers ) );
+	}
+
+	/**
+	 * Add all target proteins from the FASTA file that contain any of the peptides found in the experiment
+	 * to the proxl xml document in the matched proteins section.
+	 * 
+	 * @param proxlInputRoot
+	 * @param fastaFile
+	 * @param decoyLabelMatcher Identifies the decoy entries in the FASTA file
+	 * @throws Exception
+	 */
+	public void buildMatchedProteins( ProxlInput proxlInputRoot, File fastaFile, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
 		
 		// get all distinct peptides found in this search
 		Collection<String> allPetpideSequences = getDistinctPeptides( proxlInputRoot );
 		
-		// the proteins we've found
-		Map<String, Collection<FastaProteinAnnotation>> proteins = getProteins( allPetpideSequences, fastaFile, decoyIdentifiers );
-		
 		// create the XML and add to root element
-		buildAndAddMatchedProteinsToXML( proxlInputRoot, proteins );
+		proxlInputRoot.setMatchedProteins( buildMatchedProteins( allPetpideSequences, fastaFile, decoyLabelMatcher ) );
 		
 	}
+
+	/**
+	 * Build the matched proteins section for the supplied peptides: all target proteins from the FASTA file
+	 * that contain any of them. Used to replace the matched proteins section of an existing proxl XML file.
+	 * 
+	 * @param peptideSequences The distinct peptide sequences found in the experiment
+	 * @param fastaFile
+	 * @param decoyLabelMatcher Identifies the decoy entries in the FASTA file
+	 * @return
+	 * @throws Exception
+	 */
+	public MatchedProteins buildMatchedProteins( Collection<String> peptideSequences, File fastaFile, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+
+		// the proteins we've found
+		Map<String, Collection<FastaProteinAnnotation>> proteins = getProteins( peptideSequences, fastaFile, decoyLabelMatcher );
+
+		return buildMatchedProteinsXML( proteins );
+	}
 	
 	/**
-	 * Do the work of building the matched peptides element and adding to proxl xml root
+	 * Do the work of building the matched proteins element
 	 * 
-	 * @param proxlInputRoot
 	 * @param proteins
+	 * @return
 	 * @throws Exception
 	 */
-	private void buildAndAddMatchedProteinsToXML( ProxlInput proxlInputRoot, Map<String, Collection<FastaProteinAnnotation>> proteins ) throws Exception {
+	private MatchedProteins buildMatchedProteinsXML( Map<String, Collection<FastaProteinAnnotation>> proteins ) throws Exception {
 		
 		MatchedProteins xmlMatchedProteins = new MatchedProteins();
-		proxlInputRoot.setMatchedProteins( xmlMatchedProteins );
 		
 		for( String sequence : proteins.keySet() ) {
 			
@@ -104,6 +141,8 @@ public class MatchedProteinsBuilder {
         			xmlProteinAnnotation.setNcbiTaxonomyId( new BigInteger( anno.getTaxonomId().toString() ) );
         	}
 		}
+
+		return xmlMatchedProteins;
 	}
 	
 
@@ -113,13 +152,37 @@ public class MatchedProteinsBuilder {
 	 * 
 	 * @param allPetpideSequences
 	 * @param fastaFile
-	 * @param decoyIdentifiers
+	 * @param decoyLabelMatcher
 	 * @return
 	 * @throws Exception
 	 */
-	private Map<String, Collection<FastaProteinAnnotation>> getProteins( Collection<String> allPetpideSequences, File fastaFile, Collection<String> decoyIdentifiers ) throws Exception {
-		
-		Map<String, Collection<FastaProteinAnnotation>> proteinAnnotations = new HashMap<>();
+	private Map<String, Collection<FastaProteinAnnotation>> getProteins( Collection<String> allPetpideSequences, File fastaFile, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+
+		// every protein sequence is checked for all peptides in a single pass
+		PeptideMatcher peptideMatcher = new PeptideMatcher( allPetpideSequences );
+
+		if( preparedFasta != null )
+			return PreparedFASTADatabase.getPrepared( preparedFasta ).getMatchedProteins( peptideMatcher, decoyLabelMatcher ).getProteins();
+
+		if( cachePreparedFasta )
+			return PreparedFASTACache.getInstance().get( fastaFile, decoyLabelMatcher ).getMatchedProteins( peptideMatcher, decoyLabelMatcher ).getProteins();
+
+		if( targetProteinNames != null ) {
+			Map<String, Collection<FastaProteinAnnotation>> proteins = getProteinsByName( fastaFile, decoyLabelMatcher, peptideMatcher );
+			if( proteins != null )
+				return proteins;
+		}
+
+		if( fastaIndexDirectory != null )
+			return getProteinsFromIndex( allPetpideSequences, fastaFile, decoyLabelMatcher, peptideMatcher );
+
+		if( mappedFastaScan )
+			return MappedFASTAScanner.getInstance().scan( fastaFile, peptideMatcher, decoyLabelMatcher ).getProteins();
+
+		if( fastaScanThreads > 1 )
+			return ParallelFASTAScanner.getInstance().scan( fastaFile, peptideMatcher, decoyLabelMatcher, fastaScanThreads ).getProteins();
+
+		MatchedProteinCollector collector = new MatchedProteinCollector( peptideMatcher, decoyLabelMatcher );
 		
 		FASTAReader fastaReader = null;
 		
@@ -128,25 +191,8 @@ public class MatchedProteinsBuilder {
 			fastaReader = FASTAReader.getInstance( fastaFile );
 			
 			for( FASTAEntry entry = fastaReader.readNext(); entry != null; entry = fastaReader.readNext() ) {
-
-				if( isDecoyFastaEntry( entry, decoyIdentifiers ) )
-					continue;
-				
-				for( FASTAHeader header : entry.getHeaders() ) {
-					
-					if( !proteinAnnotations.containsKey( entry.getSequence() ) )
-						proteinAnnotations.put( entry.getSequence(), new HashSet<FastaProteinAnnotation>() );
-					
-					FastaProteinAnnotation anno = new FastaProteinAnnotation();
-					anno.setName( header.getName() );
-					anno.setDescription( header.getDescription() );
-					
-            		Integer taxId = GetTaxonomyId.getInstance().getTaxonomyId( header.getName(), header.getDescription() );
-            		if( taxId != null )
-            			anno.setTaxonomId( taxId );
-            		
-					proteinAnnotations.get( entry.getSequence() ).add( anno );
-				}
+				CancellationUtils.checkCancelled();
+				collector.addEntry( entry );
 			}
 			
 			
@@ -159,35 +205,75 @@ public class MatchedProteinsBuilder {
 		
 		
 		
-		return proteinAnnotations;
+		return collector.getProteins();
 	}
 	
+	
 	/**
-	 * Return true if the supplied FASTA entry is a decoy entry. False otherwise.
-	 * An entry is considered a decoy if any of the supplied decoy identifiers are present
-	 * in any of the FASTA names
-	 * 
-	 * @param entry
-	 * @param decoyIdentifiers
+	 * Get the matched proteins by looking up each peptide in the persistent index of the FASTA file,
+	 * building the index first if needed
+	 *
+	 * @param allPetpideSequences
+	 * @param fastaFile
+	 * @param decoyLabelMatcher
+	 * @param peptideMatcher
 	 * @return
+	 * @throws Exception
 	 */
-	private boolean isDecoyFastaEntry( FASTAEntry entry, Collection<String> decoyIdentifiers ) {
+	private Map<String, Collection<FastaProteinAnnotation>> getProteinsFromIndex( Collection<String> allPetpideSequences, File fastaFile,
+			DecoyLabelMatcher decoyLabelMatcher, PeptideMatcher peptideMatcher ) throws Exception {
 
-		for( String decoyId : decoyIdentifiers ) {			
-			for( FASTAHeader header : entry.getHeaders() ) {
+		MatchedProteinCollector collector = new MatchedProteinCollector( peptideMatcher, decoyLabelMatcher );
 
-				if( header.getName().contains( decoyId ) )
-					return true;
-				
+		try( FastaPeptideIndex index = FastaPeptideIndex.getIndex( fastaFile, fastaIndexDirectory ) ) {
+
+			Set<Integer> matchedEntries = new TreeSet<>();
+			for( String peptideSequence : allPetpideSequences ) {
+				CancellationUtils.checkCancelled();
+				matchedEntries.addAll( index.getEntriesContaining( peptideSequence ) );
 			}
-			
+
+			for( int entry : matchedEntries )
+				collector.addAnnotatedEntry( index.getSequence( entry ), index.getAnnotations( entry ) );
 		}
-		
-		return false;
-		
+
+		return collector.getProteins();
 	}
 	
-	
+	/**
+	 * Get the matched proteins by reading only the FASTA entries named in the target protein names,
+	 * found with a FastaNameIndex. The entries are still checked for the peptides and for decoys.
+	 *
+	 * @param fastaFile
+	 * @param decoyLabelMatcher
+	 * @param peptideMatcher
+	 * @return The matched proteins, or null if any of the names isn't in the FASTA file, in which case
+	 * the whole FASTA file must be searched
+	 * @throws Exception
+	 */
+	private Map<String, Collection<FastaProteinAnnotation>> getProteinsByName( File fastaFile, DecoyLabelMatcher decoyLabelMatcher,
+			PeptideMatcher peptideMatcher ) throws Exception {
+
+		// the records to read, in file order, each once
+		Map<Long, long[]> records = new TreeMap<>();
+
+		try( FastaNameIndex index = fastaIndexDirectory != null ?
+				FastaNameIndex.getIndex( fastaFile, fastaIndexDirectory ) : FastaNameIndex.scan( fastaFile, targetProteinNames ) ) {
+
+			for( String name : targetProteinNames ) {
+
+				List<long[]> nameRecords = index.getRecords( name );
+				if( nameRecords.isEmpty() )
+					return null;
+
+				for( long[] record : nameRecords )
+					records.put( record[ 0 ], record );
+			}
+		}
+
+		return MappedFASTAScanner.getInstance().scanRecords( fastaFile, records.values(), peptideMatcher, decoyLabelMatcher ).getProteins();
+	}
+
 	/**
 	 * Get all distinct peptides from a proxlxml doc's reported peptide section
 	 * 
@@ -231,53 +317,106 @@ public class MatchedProteinsBuilder {
 	}
 	
 	/**
-	 * An annotation for a protein in a Fasta file
-	 * 
-	 * @author mriffle
-	 *
+	 * @return The number of threads used to scan the FASTA file
 	 */
-	private class FastaProteinAnnotation {
-
-		@Override
-		public boolean equals(Object o) {
-			if (this == o) return true;
-			if (o == null || getClass() != o.getClass()) return false;
-			FastaProteinAnnotation that = (FastaProteinAnnotation) o;
-			return name.equals(that.name) &&
-					Objects.equals(description, that.description) &&
-					Objects.equals(taxonomId, that.taxonomId);
-		}
+	public int getFastaScanThreads() {
+		return fastaScanThreads;
+	}
 
-		@Override
-		public int hashCode() {
-			return Objects.hash(name, description, taxonomId);
-		}
+	/**
+	 * @param fastaScanThreads The number of threads used to scan the FASTA file. If more than one, the file
+	 * is split into chunks that are scanned in parallel.
+	 */
+	public void setFastaScanThreads(int fastaScanThreads) {
+		this.fastaScanThreads = fastaScanThreads;
+	}
 
-		public String getName() {
-			return name;
-		}
-		public void setName(String name) {
-			this.name = name;
-		}
-		public String getDescription() {
-			return description;
-		}
-		public void setDescription(String description) {
-			this.description = description;
-		}
-		public Integer getTaxonomId() {
-			return taxonomId;
-		}
-		public void setTaxonomId(Integer taxonomId) {
-			this.taxonomId = taxonomId;
-		}
+	/**
+	 * @return true if the FASTA file is memory mapped and scanned in two passes
+	 */
+	public boolean isMappedFastaScan() {
+		return mappedFastaScan;
+	}
 
-		
-		
-		private String name;
-		private String description;
-		private Integer taxonomId;
-		
+	/**
+	 * @param mappedFastaScan If true, memory map the FASTA file and scan it in two passes, keeping only
+	 * the matched proteins on the heap. Takes precedence over the number of FASTA scan threads.
+	 */
+	public void setMappedFastaScan(boolean mappedFastaScan) {
+		this.mappedFastaScan = mappedFastaScan;
+	}
+
+
+	/**
+	 * @return The directory holding persistent FASTA indexes, or null if they aren't used
+	 */
+	public File getFastaIndexDirectory() {
+		return fastaIndexDirectory;
+	}
+
+	/**
+	 * @param fastaIndexDirectory If not null, find matched proteins using a persistent index of the FASTA
+	 * file kept in this directory (built on first use) instead of scanning the FASTA file. Takes precedence
+	 * over the other FASTA scan settings.
+	 */
+	public void setFastaIndexDirectory(File fastaIndexDirectory) {
+		this.fastaIndexDirectory = fastaIndexDirectory;
+	}
+
+	/**
+	 * @return The names of the target proteins the search engine matched the peptides to, or null if not used
+	 */
+	public Collection<String> getTargetProteinNames() {
+		return targetProteinNames;
+	}
+
+	/**
+	 * @param targetProteinNames If not null, read only the FASTA entries with these names (found with a
+	 * FastaNameIndex, kept in the FASTA index directory if it is set) instead of searching the whole FASTA
+	 * file. If any name isn't found, the whole FASTA file is searched as usual.
+	 */
+	public void setTargetProteinNames(Collection<String> targetProteinNames) {
+		this.targetProteinNames = targetProteinNames;
+	}
+
+	/**
+	 * @return The FASTA file being prepared in the background, or null if not used
+	 */
+	public CompletableFuture<PreparedFASTADatabase> getPreparedFasta() {
+		return preparedFasta;
+	}
+
+	/**
+	 * @param preparedFasta If not null, the target entries of the FASTA file, being prepared in the background
+	 * (see PreparedFASTADatabase.prepareAsync()). The matched proteins are found in these when they are ready,
+	 * instead of reading the FASTA file. Takes precedence over the other FASTA settings.
+	 */
+	public void setPreparedFasta(CompletableFuture<PreparedFASTADatabase> preparedFasta) {
+		this.preparedFasta = preparedFasta;
+	}
+
+	/**
+	 * @return true if the prepared FASTA file is kept in the PreparedFASTACache for later conversions
+	 */
+	public boolean isCachePreparedFasta() {
+		return cachePreparedFasta;
+	}
+
+	/**
+	 * @param cachePreparedFasta If true, find the matched proteins in the prepared target entries of the FASTA
+	 * file from the process-wide PreparedFASTACache, so later conversions against the same FASTA file don't read
+	 * it again. Takes precedence over the other FASTA settings, other than a prepared FASTA file.
+	 */
+	public void setCachePreparedFasta(boolean cachePreparedFasta) {
+		this.cachePreparedFasta = cachePreparedFasta;
 	}
+
+
+	private int fastaScanThreads = 1;
+	private boolean mappedFastaScan = false;
+	private File fastaIndexDirectory = null;
+	private Collection<String> targetProteinNames = null;
+	private CompletableFuture<PreparedFASTADatabase> preparedFasta = null;
+	private boolean cachePreparedFasta = false;
 	
 }
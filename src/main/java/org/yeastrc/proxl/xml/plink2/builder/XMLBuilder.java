@@ -27,22 +27,28 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.yeastrc.proxl.xml.plink2.annotations.PSMAnnotationTypes;
 import org.yeastrc.proxl.xml.plink2.annotations.PSMDefaultVisibleAnnotationTypes;
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.fasta.DecoyLabelMatcher;
+import org.yeastrc.proxl.xml.plink2.fasta.PreparedFASTADatabase;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkLinkerEnd;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkModification;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkReportedPeptide;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkResult;
 import org.yeastrc.proxl.xml.plink2.reader.PLinkConstants;
 import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParameters;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
 import org.yeastrc.proxl.xml.plink2.utils.ModificationLookupUtils;
 import org.yeastrc.proxl.xml.plink2.utils.NumberUtils;
 import org.yeastrc.proxl.xml.plink2.utils.PLinkUtils;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLWriter;
 import org.yeastrc.proxl_import.api.xml_dto.*;
 import org.yeastrc.proxl_import.api.xml_dto.SearchProgram.PsmAnnotationTypes;
-import org.yeastrc.proxl_import.create_import_file_from_java_objects.main.CreateImportFileFromJavaObjectsMain;
 
 /**
  * Take the populated pLink objects, convert to XML and write the XML file
@@ -62,6 +68,111 @@ public class XMLBuilder {
 	 * @throws Exception
 	 */
 	public void buildAndSaveXML( PLinkSearchParameters params, Collection<PLinkResult> results, File outfile, String fastaFilePath ) throws Exception {
+		buildAndSaveXML( params, results, outfile, fastaFilePath, new ProxlXMLWriter() );
+	}
+
+	/**
+	 * Take the populated pLink objects, convert to XML and write the XML file using the supplied writer
+	 * 
+	 * @param params The PLinkSearchParameters associated with this search
+	 * @param results The results parsed from the plink output
+	 * @param outfile The file to which the XML will be written
+	 * @param fastaFilePath The full path to the FASTA file used in the search
+	 * @param writer The writer to use to write the XML (e.g., with validation turned on)
+	 * @throws Exception
+	 */
+	public void buildAndSaveXML( PLinkSearchParameters params, Collection<PLinkResult> results, File outfile, String fastaFilePath, ProxlXMLWriter writer ) throws Exception {
+
+		ProxlInput proxlInputRoot = buildProxlInput( params, results, fastaFilePath );
+
+		//make the xml file
+		writer.writeProxlXML( proxlInputRoot, outfile );
+	}
+
+	/**
+	 * Take the populated pLink objects and convert them to a proxl XML document
+	 * 
+	 * @param params The PLinkSearchParameters associated with this search
+	 * @param results The results parsed from the plink output
+	 * @param fastaFilePath The full path to the FASTA file used in the search
+	 * @return The root element of the proxl XML document
+	 * @throws Exception
+	 */
+	public ProxlInput buildProxlInput( PLinkSearchParameters params, Collection<PLinkResult> results, String fastaFilePath ) throws Exception {
+
+		ProxlInput proxlInputRoot = buildProxlInputHeader( params, fastaFilePath );
+		
+		
+		//
+		// Define the peptide and PSM data
+		//
+		ReportedPeptides reportedPeptides = new ReportedPeptides();
+		proxlInputRoot.setReportedPeptides( reportedPeptides );
+		reportedPeptides.getReportedPeptide().addAll( buildReportedPeptides( params, results ) );
+		
+		
+		// add in the matched proteins section
+		MatchedProteinsBuilder matchedProteinsBuilder = getMatchedProteinsBuilder();
+		matchedProteinsBuilder.setTargetProteinNames( fastaByName ? getTargetProteinNames( results ) : null );
+		matchedProteinsBuilder.buildMatchedProteins( proxlInputRoot, new File( fastaFilePath ), decoyLabelMatcher );
+
+		// the matched proteins section is optional, leave it out in compact mode if it's empty
+		if( compact && proxlInputRoot.getMatchedProteins().getProtein().isEmpty() )
+			proxlInputRoot.setMatchedProteins( null );
+		
+		
+		// add in the config file(s)
+		ConfigurationFiles xmlConfigurationFiles = new ConfigurationFiles();
+		proxlInputRoot.setConfigurationFiles( xmlConfigurationFiles );
+		xmlConfigurationFiles.getConfigurationFile().add( buildConfigurationFile( params ) );
+		
+		return proxlInputRoot;
+	}
+
+	/**
+	 * Build the proxl XML document for several pLink runs merged into one search, without its reported
+	 * peptides: its reported_peptides element is left empty, for the merged reported peptides to be streamed
+	 * into it by ProxlXMLWriter. The search program, linker and static modifications are taken from the
+	 * first run, which must be compatible with the others (see PLinkRunMerger).
+	 * 
+	 * @param runParams The PLinkSearchParameters associated with each run
+	 * @param peptideSequences The distinct sequences of the peptides in the merged reported peptides
+	 * @param fastaFilePath The full path to the FASTA file used in the searches
+	 * @return The root element of the proxl XML document
+	 * @throws Exception
+	 */
+	public ProxlInput buildMergedProxlInput( List<PLinkSearchParameters> runParams, Collection<String> peptideSequences, String fastaFilePath ) throws Exception {
+
+		ProxlInput proxlInputRoot = buildProxlInputHeader( runParams.get( 0 ), fastaFilePath );
+
+		proxlInputRoot.setReportedPeptides( new ReportedPeptides() );
+
+		proxlInputRoot.setMatchedProteins( getMatchedProteinsBuilder().buildMatchedProteins( peptideSequences, new File( fastaFilePath ), decoyLabelMatcher ) );
+
+		// the matched proteins section is optional, leave it out in compact mode if it's empty
+		if( compact && proxlInputRoot.getMatchedProteins().getProtein().isEmpty() )
+			proxlInputRoot.setMatchedProteins( null );
+
+		// add in the config file of each run
+		ConfigurationFiles xmlConfigurationFiles = new ConfigurationFiles();
+		proxlInputRoot.setConfigurationFiles( xmlConfigurationFiles );
+
+		for( PLinkSearchParameters params : runParams )
+			xmlConfigurationFiles.getConfigurationFile().add( buildConfigurationFile( params ) );
+
+		return proxlInputRoot;
+	}
+
+	/**
+	 * Build a proxl XML document with everything that comes from the search parameters: the search program
+	 * and its annotation types, the linker, the static modifications and the decoy labels
+	 * 
+	 * @param params The PLinkSearchParameters associated with this search
+	 * @param fastaFilePath The full path to the FASTA file used in the search
+	 * @return The root element of the proxl XML document
+	 * @throws Exception
+	 */
+	private ProxlInput buildProxlInputHeader( PLinkSearchParameters params, String fastaFilePath ) throws Exception {
 
 		ProxlInput proxlInputRoot = new ProxlInput();
 
@@ -159,7 +270,7 @@ public class XMLBuilder {
 		}
 
 		// set the mass for this crosslinker to the calculated mass for the crosslinker, as defined in the properties file
-		xlinkMass.setMass( NumberUtils.getRoundedBigDecimal( params.getLinker().getMonoCrosslinkMass() ) );
+		xlinkMass.setMass( getDecimal( NumberUtils.getRoundedBigDecimal( params.getLinker().getMonoCrosslinkMass() ) ) );
 
 		//
 		// Add in the linkable/reactable linker ends as defined in the stavrox config file
@@ -230,7 +341,7 @@ public class XMLBuilder {
 
 					StaticModification xmlSmod = new StaticModification();
 					xmlSmod.setAminoAcid(residue);
-					xmlSmod.setMassChange(NumberUtils.getRoundedBigDecimal(smod.getMonoisotopicMass()));
+					xmlSmod.setMassChange(getDecimal(NumberUtils.getRoundedBigDecimal(smod.getMonoisotopicMass())));
 
 					smods.getStaticModification().add(xmlSmod);
 				}
@@ -241,28 +352,35 @@ public class XMLBuilder {
 		// Add decoy labels (optional)
 		//
 		
-		Collection<String> decoyLabels = new HashSet<>();
-		decoyLabels.add( "random" );
-		decoyLabels.add( "decoy" );
-		decoyLabels.add( "reverse" );
-		decoyLabels.add( "shuffle" );
+		Collection<String> decoyLabels = new HashSet<>( decoyLabelMatcher.getDecoyLabels() );
 		
-		DecoyLabels xmlDecoyLabels = new DecoyLabels();
-		proxlInputRoot.setDecoyLabels( xmlDecoyLabels );
-		
-		for( String decoyLabel : decoyLabels ) {
-			DecoyLabel xmlDecoyLabel = new DecoyLabel();
-			xmlDecoyLabels.getDecoyLabel().add( xmlDecoyLabel );
-			
-			xmlDecoyLabel.setPrefix( decoyLabel );
+		if( decoyLabels.size() > 0 ) {
+			DecoyLabels xmlDecoyLabels = new DecoyLabels();
+			proxlInputRoot.setDecoyLabels( xmlDecoyLabels );
+
+			for( String decoyLabel : decoyLabels ) {
+				DecoyLabel xmlDecoyLabel = new DecoyLabel();
+				xmlDecoyLabels.getDecoyLabel().add( xmlDecoyLabel );
+
+				xmlDecoyLabel.setPrefix( decoyLabel );
+			}
 		}
 		
-		
-		//
-		// Define the peptide and PSM data
-		//
-		ReportedPeptides reportedPeptides = new ReportedPeptides();
-		proxlInputRoot.setReportedPeptides( reportedPeptides );
+		return proxlInputRoot;
+	}
+
+	/**
+	 * Convert the pLink results to reported peptides, one for each distinct reported peptide with
+	 * all of its PSMs
+	 * 
+	 * @param params The PLinkSearchParameters associated with this search
+	 * @param results The results parsed from the plink output
+	 * @return The reported peptides
+	 * @throws Exception
+	 */
+	public List<ReportedPeptide> buildReportedPeptides( PLinkSearchParameters params, Collection<PLinkResult> results ) throws Exception {
+
+		List<ReportedPeptide> reportedPeptides = new ArrayList<ReportedPeptide>();
 		
 		// need to organize all results by distinct reported peptide strings
 		Map<PLinkReportedPeptide, Collection<PLinkResult>> resultsByReportedPeptide = new HashMap<PLinkReportedPeptide, Collection<PLinkResult>>();
@@ -277,8 +395,10 @@ public class XMLBuilder {
 		// iterate over each distinct reported peptide
 		for( PLinkReportedPeptide rp : resultsByReportedPeptide.keySet() ) {
 			
+			CancellationUtils.checkCancelled();
+
 			ReportedPeptide xmlReportedPeptide = new ReportedPeptide();
-			reportedPeptides.getReportedPeptide().add( xmlReportedPeptide );
+			reportedPeptides.add( xmlReportedPeptide );
 			
 			xmlReportedPeptide.setReportedPeptideString( rp.toString() );
 			
@@ -311,7 +431,7 @@ public class XMLBuilder {
 							Modification xmlModification = new Modification();
 							xmlModifications.getModification().add( xmlModification );
 							
-							xmlModification.setMass( NumberUtils.getRoundedBigDecimal( mod.getMonoisotopicMass() ) );
+							xmlModification.setMass( getDecimal( NumberUtils.getRoundedBigDecimal( mod.getMonoisotopicMass() ) ) );
 
 							if( position == 0 ) {    // handle n-terminal
 								xmlModification.setIsNTerminal(true);
@@ -321,7 +441,9 @@ public class XMLBuilder {
 								xmlModification.setPosition(new BigInteger(String.valueOf(position)));
 							}
 
-							xmlModification.setIsMonolink( mod.isMonolink() );
+							// in compact mode, leave out isMonolink="false", absent means false
+							if( mod.isMonolink() || !compact )
+								xmlModification.setIsMonolink( mod.isMonolink() );
 							
 						}
 					}
@@ -369,7 +491,7 @@ public class XMLBuilder {
 							Modification xmlModification = new Modification();
 							xmlModifications.getModification().add( xmlModification );
 							
-							xmlModification.setMass( NumberUtils.getRoundedBigDecimal( mod.getMonoisotopicMass() ) );
+							xmlModification.setMass( getDecimal( NumberUtils.getRoundedBigDecimal( mod.getMonoisotopicMass() ) ) );
 
 							if( position == 0 ) {    // handle n-terminal
 								xmlModification.setIsNTerminal(true);
@@ -379,7 +501,9 @@ public class XMLBuilder {
 								xmlModification.setPosition(new BigInteger(String.valueOf(position)));
 							}
 
-							xmlModification.setIsMonolink( mod.isMonolink() );
+							// in compact mode, leave out isMonolink="false", absent means false
+							if( mod.isMonolink() || !compact )
+								xmlModification.setIsMonolink( mod.isMonolink() );
 							
 						}
 					}
@@ -412,7 +536,7 @@ public class XMLBuilder {
 				xmlPsm.setPrecursorCharge( new BigInteger( String.valueOf( result.getCharge() ) ) );
 				
 				if( rp.getType() == PLinkConstants.LINK_TYPE_CROSSLINK || rp.getType() == PLinkConstants.LINK_TYPE_LOOPLINK )
-					xmlPsm.setLinkerMass( NumberUtils.getRoundedBigDecimal( params.getLinker().getMonoCrosslinkMass() ) );
+					xmlPsm.setLinkerMass( getDecimal( NumberUtils.getRoundedBigDecimal( params.getLinker().getMonoCrosslinkMass() ) ) );
 				
 				// add in the filterable PSM annotations (e.g., score)
 				FilterablePsmAnnotations xmlFilterablePsmAnnotations = new FilterablePsmAnnotations();
@@ -425,7 +549,7 @@ public class XMLBuilder {
 					
 					xmlFilterablePsmAnnotation.setAnnotationName( PSMAnnotationTypes.ANNOTATION_TYPE_SCORE );
 					xmlFilterablePsmAnnotation.setSearchProgram( PLinkConstants.SEARCH_PROGRAM_NAME );
-					xmlFilterablePsmAnnotation.setValue( NumberUtils.getScientificNotationBigDecimal( result.getScore() ) );
+					xmlFilterablePsmAnnotation.setValue( getDecimal( NumberUtils.getScientificNotationBigDecimal( result.getScore() ) ) );
 				}
 				
 				
@@ -436,7 +560,7 @@ public class XMLBuilder {
 					
 					xmlFilterablePsmAnnotation.setAnnotationName( PSMAnnotationTypes.ANNOTATION_TYPE_EVALUE );
 					xmlFilterablePsmAnnotation.setSearchProgram( PLinkConstants.SEARCH_PROGRAM_NAME );
-					xmlFilterablePsmAnnotation.setValue( NumberUtils.getScientificNotationBigDecimal( result.getEvalue() ) );
+					xmlFilterablePsmAnnotation.setValue( getDecimal( NumberUtils.getScientificNotationBigDecimal( result.getEvalue() ) ) );
 				}
 				
 				// add in the non-filterable descriptive annotations (e.g., calculated mass)
@@ -453,7 +577,7 @@ public class XMLBuilder {
 					
 					// try to limit this value to the chosen number of decimal places
 					try {
-						xmlDescriptivePsmAnnotation.setValue( NumberUtils.getRoundedBigDecimal( Double.valueOf( result.getCalculatedMass() ) ).toString() );
+						xmlDescriptivePsmAnnotation.setValue( getDecimal( NumberUtils.getRoundedBigDecimal( Double.valueOf( result.getCalculatedMass() ) ) ).toString() );
 					} catch( Exception e ) {
 						xmlDescriptivePsmAnnotation.setValue( String.valueOf( result.getCalculatedMass() ) );
 					}
@@ -469,7 +593,7 @@ public class XMLBuilder {
 					
 					// try to limit this value to the chosen number of decimal places
 					try {
-						xmlDescriptivePsmAnnotation.setValue( NumberUtils.getRoundedBigDecimal( Double.valueOf( result.getDeltaMass() ) ).toString() );
+						xmlDescriptivePsmAnnotation.setValue( getDecimal( NumberUtils.getRoundedBigDecimal( Double.valueOf( result.getDeltaMass() ) ) ).toString() );
 					} catch( Exception e ) {
 						xmlDescriptivePsmAnnotation.setValue( String.valueOf( result.getDeltaMass() ) );
 					}
@@ -485,7 +609,7 @@ public class XMLBuilder {
 					
 					// try to limit this value to the chosen number of decimal places
 					try {
-						xmlDescriptivePsmAnnotation.setValue( NumberUtils.getRoundedBigDecimal( Double.valueOf( result.getDeltaMassPPM() ) ).toString() );
+						xmlDescriptivePsmAnnotation.setValue( getDecimal( NumberUtils.getRoundedBigDecimal( Double.valueOf( result.getDeltaMassPPM() ) ) ).toString() );
 					} catch( Exception e ) {
 						xmlDescriptivePsmAnnotation.setValue( String.valueOf( result.getDeltaMassPPM() ) );
 					}
@@ -497,27 +621,205 @@ public class XMLBuilder {
 			
 		}// end iterating over distinct reported peptides
 
-		
-		
-		// add in the matched proteins section
-		MatchedProteinsBuilder.getInstance().buildMatchedProteins( proxlInputRoot, new File( fastaFilePath ), decoyLabels );
-		
-		
-		// add in the config file(s)
-		ConfigurationFiles xmlConfigurationFiles = new ConfigurationFiles();
-		proxlInputRoot.setConfigurationFiles( xmlConfigurationFiles );
-		
+		return reportedPeptides;
+	}
+
+	/**
+	 * Get the pLink parameters file of a search as a proxl XML configuration file
+	 * 
+	 * @param params
+	 * @return
+	 * @throws Exception
+	 */
+	private ConfigurationFile buildConfigurationFile( PLinkSearchParameters params ) throws Exception {
+
 		ConfigurationFile xmlConfigurationFile = new ConfigurationFile();
-		xmlConfigurationFiles.getConfigurationFile().add( xmlConfigurationFile );
 		
 		xmlConfigurationFile.setSearchProgram( PLinkConstants.SEARCH_PROGRAM_NAME );
 		xmlConfigurationFile.setFileName( ( new File( params.getPlinkINI().getFilename() ) ).getName() );
 		xmlConfigurationFile.setFileContent( Files.readAllBytes( FileSystems.getDefault().getPath( params.getPlinkINI().getFilename() ) ) );
 		
-		
-		//make the xml file
-		CreateImportFileFromJavaObjectsMain.getInstance().createImportFileFromJavaObjectsMain(outfile, proxlInputRoot);
-		
+		return xmlConfigurationFile;
 	}
-	
+
+	/**
+	 * Get a MatchedProteinsBuilder with this builder's FASTA settings
+	 */
+	private MatchedProteinsBuilder getMatchedProteinsBuilder() {
+
+		MatchedProteinsBuilder matchedProteinsBuilder = MatchedProteinsBuilder.getInstance();
+		matchedProteinsBuilder.setFastaScanThreads( fastaScanThreads );
+		matchedProteinsBuilder.setMappedFastaScan( mappedFastaScan );
+		matchedProteinsBuilder.setFastaIndexDirectory( fastaIndexDirectory );
+		matchedProteinsBuilder.setPreparedFasta( preparedFasta );
+		matchedProteinsBuilder.setCachePreparedFasta( cachePreparedFasta );
+
+		return matchedProteinsBuilder;
+	}
+
+
+	/**
+	 * Get the distinct names of the target proteins pLink matched the results to
+	 *
+	 * @param results
+	 * @return The names, or null if they weren't read for all of the results
+	 */
+	private Collection<String> getTargetProteinNames( Collection<PLinkResult> results ) {
+
+		Collection<String> targetProteinNames = new HashSet<>();
+
+		for( PLinkResult result : results ) {
+			if( result.getTargetProteinNames() == null )
+				return null;
+
+			targetProteinNames.addAll( result.getTargetProteinNames() );
+		}
+
+		return targetProteinNames;
+	}
+
+	/**
+	 * Get the value to use in the XML for the supplied decimal. In compact mode, this is the
+	 * shortest exact representation of the value, otherwise the value is used as-is.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private BigDecimal getDecimal( BigDecimal value ) {
+
+		if( compact )
+			return NumberUtils.getShortestBigDecimal( value );
+
+		return value;
+	}
+
+	/**
+	 * @return true if the proxl XML is built to be as small as possible
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * @param compact If true, decimals are written in their shortest exact form and optional
+	 * attributes and containers that carry no information are left out
+	 */
+	public void setCompact(boolean compact) {
+		this.compact = compact;
+	}
+
+
+	/**
+	 * @return The number of threads used to scan the FASTA file for matched proteins
+	 */
+	public int getFastaScanThreads() {
+		return fastaScanThreads;
+	}
+
+	/**
+	 * @param fastaScanThreads The number of threads used to scan the FASTA file for matched proteins
+	 */
+	public void setFastaScanThreads(int fastaScanThreads) {
+		this.fastaScanThreads = fastaScanThreads;
+	}
+
+	/**
+	 * @return true if the FASTA file is memory mapped and scanned in two passes
+	 */
+	public boolean isMappedFastaScan() {
+		return mappedFastaScan;
+	}
+
+	/**
+	 * @param mappedFastaScan If true, memory map the FASTA file and scan it in two passes, keeping only
+	 * the matched proteins on the heap
+	 */
+	public void setMappedFastaScan(boolean mappedFastaScan) {
+		this.mappedFastaScan = mappedFastaScan;
+	}
+
+	/**
+	 * @return The directory holding persistent FASTA indexes, or null if they aren't used
+	 */
+	public File getFastaIndexDirectory() {
+		return fastaIndexDirectory;
+	}
+
+	/**
+	 * @param fastaIndexDirectory If not null, find matched proteins using a persistent index of the FASTA
+	 * file kept in this directory, built on first use
+	 */
+	public void setFastaIndexDirectory(File fastaIndexDirectory) {
+		this.fastaIndexDirectory = fastaIndexDirectory;
+	}
+
+	/**
+	 * @return The matcher used to identify decoy proteins
+	 */
+	public DecoyLabelMatcher getDecoyLabelMatcher() {
+		return decoyLabelMatcher;
+	}
+
+	/**
+	 * @param decoyLabelMatcher The matcher used to identify decoy proteins. Its labels are also written
+	 * to the decoy labels section of the proxl XML.
+	 */
+	public void setDecoyLabelMatcher(DecoyLabelMatcher decoyLabelMatcher) {
+		this.decoyLabelMatcher = decoyLabelMatcher;
+	}
+
+	/**
+	 * @return true if only the FASTA entries named in pLink's results are read for the matched proteins
+	 */
+	public boolean isFastaByName() {
+		return fastaByName;
+	}
+
+	/**
+	 * @param fastaByName If true, read only the FASTA entries for the target proteins named in pLink's
+	 * results, found by name, for the matched proteins. The whole FASTA file is searched if any name
+	 * isn't found.
+	 */
+	public void setFastaByName(boolean fastaByName) {
+		this.fastaByName = fastaByName;
+	}
+
+	/**
+	 * @return The FASTA file being prepared in the background, or null if not used
+	 */
+	public CompletableFuture<PreparedFASTADatabase> getPreparedFasta() {
+		return preparedFasta;
+	}
+
+	/**
+	 * @param preparedFasta If not null, the target entries of the FASTA file, being prepared in the background,
+	 * in which to find the matched proteins instead of reading the FASTA file
+	 */
+	public void setPreparedFasta(CompletableFuture<PreparedFASTADatabase> preparedFasta) {
+		this.preparedFasta = preparedFasta;
+	}
+
+	/**
+	 * @return true if the prepared FASTA file is kept in the PreparedFASTACache for later conversions
+	 */
+	public boolean isCachePreparedFasta() {
+		return cachePreparedFasta;
+	}
+
+	/**
+	 * @param cachePreparedFasta If true, get the prepared FASTA file from the process-wide PreparedFASTACache,
+	 * so later conversions in this process against the same FASTA file don't read it again
+	 */
+	public void setCachePreparedFasta(boolean cachePreparedFasta) {
+		this.cachePreparedFasta = cachePreparedFasta;
+	}
+
+	private boolean compact = false;
+	private int fastaScanThreads = 1;
+	private boolean mappedFastaScan = false;
+	private File fastaIndexDirectory = null;
+	private boolean fastaByName = false;
+	private CompletableFuture<PreparedFASTADatabase> preparedFasta = null;
+	private boolean cachePreparedFasta = false;
+	private DecoyLabelMatcher decoyLabelMatcher = new DecoyLabelMatcher( PLinkConverterConstants.DEFAULT_DECOY_LABELS );
 }
@@ -1,9 +1,18 @@
 package org.yeastrc.proxl.xml.plink2.constants;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class PLinkConverterConstants {
 
 	public static final String CONVERSION_PROGRAM_NAME = "plink2toProxlXML.jar";
 	public static final String CONVERSION_PROGRAM_URI = "https://github.com/yeastrc/proxl-import-plink2";
 	public static final String CONVERSION_PROGRAM_VERSION = "1.4.4";
+
+	/**
+	 * A protein is a decoy if its name contains any of these, unless other labels are given on the command line
+	 */
+	public static final List<String> DEFAULT_DECOY_LABELS = Collections.unmodifiableList( Arrays.asList( "random", "decoy", "reverse", "shuffle" ) );
 		
 }
@@ -0,0 +1,173 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.converter;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.writer.ConversionManifest;
+
+/**
+ * Fingerprints of everything that determines the proxl XML written by a conversion, used to find out
+ * whether an earlier conversion's output can be kept as it is. There are two:
+ *
+ *   results - the converter and its version, the options that change the output, the name of the
+ *             FASTA file, and the contents of the pLink parameters file, the modification and
+ *             cross-linker definitions and the pLink results files
+ *   fasta   - the contents of the FASTA file, the decoy labels and whether the FASTA file is searched
+ *             by protein name, which only determine the matched proteins section
+ *
+ * Each is a SHA-256 over the SHA-256 of the contents of the input files (and the settings). A file's
+ * SHA-256 is taken from the previous manifest if the file's path, size and modification time haven't
+ * changed since, so only changed files are read.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ConversionFingerprint {
+
+	public static final String FASTA_ROLE = "fasta";
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Compute the fingerprints of a conversion's inputs
+	 *
+	 * @param inputFiles The conversion's input files, as they will be listed in its manifest
+	 * @param options
+	 * @param previousManifest The manifest of the previous conversion, may be null
+	 * @return
+	 * @throws Exception If an input file can't be read
+	 */
+	public static ConversionFingerprint compute( List<ConversionManifest.InputFile> inputFiles, PLinkConverterOptions options, ConversionManifest previousManifest ) throws Exception {
+
+		ConversionFingerprint fingerprint = new ConversionFingerprint();
+
+		StringBuilder results = new StringBuilder();
+		StringBuilder fasta = new StringBuilder();
+
+		String decoyLabels = String.join( "\t", options.getDecoyLabels() );
+
+		results.append( "converter\t" ).append( PLinkConverterConstants.CONVERSION_PROGRAM_NAME ).append( '\t' ).append( PLinkConverterConstants.CONVERSION_PROGRAM_VERSION ).append( '\n' );
+		results.append( "compact\t" ).append( options.isCompact() ).append( '\n' );
+		results.append( "skipDecoyResults\t" ).append( options.isSkipDecoyResults() ).append( '\n' );
+		results.append( "decoyLabels\t" ).append( decoyLabels ).append( '\n' );
+		results.append( "fastaFilename\t" ).append( options.getFastaFile().getName() ).append( '\n' );
+
+		fasta.append( "decoyLabels\t" ).append( decoyLabels ).append( '\n' );
+		fasta.append( "fastaByName\t" ).append( options.isFastaByName() ).append( '\n' );
+
+		for( ConversionManifest.InputFile inputFile : inputFiles ) {
+
+			String sha256 = getPreviousSHA256( inputFile, previousManifest );
+			if( sha256 == null )
+				sha256 = getSHA256( inputFile.getFile() );
+
+			fingerprint.inputFiles.add( new ConversionManifest.InputFile( inputFile.getRole(), inputFile.getFile(), inputFile.getBytes(), inputFile.getLastModified(), sha256 ) );
+
+			StringBuilder sb = inputFile.getRole().equals( FASTA_ROLE ) ? fasta : results;
+			sb.append( inputFile.getRole() ).append( '\t' ).append( sha256 ).append( '\n' );
+		}
+
+		fingerprint.resultsFingerprint = toHex( MessageDigest.getInstance( "SHA-256" ).digest( results.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+		fingerprint.fastaFingerprint = toHex( MessageDigest.getInstance( "SHA-256" ).digest( fasta.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+
+		return fingerprint;
+	}
+
+	/**
+	 * Get the SHA-256 of the supplied file from the previous manifest, if the file hasn't changed since
+	 *
+	 * @return The SHA-256, or null if the file has changed or isn't in the manifest
+	 */
+	private static String getPreviousSHA256( ConversionManifest.InputFile inputFile, ConversionManifest previousManifest ) {
+
+		if( previousManifest == null )
+			return null;
+
+		for( ConversionManifest.InputFile previousFile : previousManifest.getInputFiles() ) {
+
+			if( previousFile.getSHA256() != null &&
+					previousFile.getFile().getAbsolutePath().equals( inputFile.getFile().getAbsolutePath() ) &&
+					previousFile.getBytes() == inputFile.getBytes() &&
+					previousFile.getLastModified() == inputFile.getLastModified() )
+				return previousFile.getSHA256();
+		}
+
+		return null;
+	}
+
+	private static String getSHA256( File file ) throws Exception {
+
+		MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+		byte[] buffer = new byte[ BUFFER_SIZE ];
+
+		try( InputStream is = Files.newInputStream( file.toPath() ) ) {
+			int read;
+			while( ( read = is.read( buffer ) ) != -1 )
+				digest.update( buffer, 0, read );
+		}
+
+		return toHex( digest.digest() );
+	}
+
+	private static String toHex( byte[] bytes ) {
+
+		StringBuilder sb = new StringBuilder( bytes.length * 2 );
+		for( byte b : bytes )
+			sb.append( String.format( "%02x", b ) );
+
+		return sb.toString();
+	}
+
+	private ConversionFingerprint() { }
+
+	/**
+	 * @return The input files, with their SHA-256
+	 */
+	public List<ConversionManifest.InputFile> getInputFiles() {
+		return Collections.unmodifiableList( inputFiles );
+	}
+
+	/**
+	 * @return The fingerprint of the inputs that determine everything but the matched proteins
+	 */
+	public String getResultsFingerprint() {
+		return resultsFingerprint;
+	}
+
+	/**
+	 * @return The fingerprint of the inputs that determine the matched proteins
+	 */
+	public String getFastaFingerprint() {
+		return fastaFingerprint;
+	}
+
+
+	private final List<ConversionManifest.InputFile> inputFiles = new ArrayList<>();
+	private String resultsFingerprint;
+	private String fastaFingerprint;
+}
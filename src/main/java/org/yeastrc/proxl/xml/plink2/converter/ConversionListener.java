@@ -0,0 +1,53 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.converter;
+
+/**
+ * Receives the progress of a conversion run by a PLinkConverter. Called on the thread running the
+ * conversion; all methods do nothing by default.
+ *
+ * @author Michael Riffle
+ *
+ */
+public interface ConversionListener {
+
+	/**
+	 * A stage of the conversion has started
+	 *
+	 * @param stage
+	 */
+	default void stageStarted( ConversionStage stage ) { }
+
+	/**
+	 * A stage of the conversion has finished successfully
+	 *
+	 * @param stage
+	 * @param elapsedMillis How long the stage took
+	 */
+	default void stageFinished( ConversionStage stage, long elapsedMillis ) { }
+
+	/**
+	 * A message about the conversion that isn't an error, e.g., that a type of result was not found
+	 * and skipped. Multi-line messages end with a line break, short notes don't.
+	 *
+	 * @param message
+	 */
+	default void message( String message ) { }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.converter;
+
+/**
+ * The stages of a conversion, in the order they are run. VALIDATING and WRITING_MANIFEST are only
+ * run if they are turned on in the PLinkConverterOptions. FINGERPRINTING is only run for incremental
+ * conversions, which then run either no more stages (the output is up to date), UPDATING_MATCHED_PROTEINS
+ * instead of LOADING_RESULTS and WRITING (only the FASTA file has changed), or the usual stages.
+ *
+ * A merge of several pLink runs (see PLinkRunMerger) runs LOADING_PARAMETERS, LOADING_RESULTS and
+ * SPILLING_REPORTED_PEPTIDES for each run, then the stages from WRITING on once.
+ *
+ * @author Michael Riffle
+ *
+ */
+public enum ConversionStage {
+
+	/**
+	 * Loading the pLink search parameters and the modification and cross-linker definitions
+	 */
+	LOADING_PARAMETERS,
+
+	/**
+	 * Fingerprinting the inputs and comparing them to those of the previous conversion (see ConversionFingerprint)
+	 */
+	FINGERPRINTING,
+
+	/**
+	 * Reading the pLink results
+	 */
+	LOADING_RESULTS,
+
+	/**
+	 * Sorting the reported peptides of one run of a merge and writing them to a temporary file
+	 */
+	SPILLING_REPORTED_PEPTIDES,
+
+	/**
+	 * Finding the matched proteins and writing the proxl XML (and validating it, if validating while writing)
+	 */
+	WRITING,
+
+	/**
+	 * Finding the matched proteins and replacing them in the existing proxl XML
+	 */
+	UPDATING_MATCHED_PROTEINS,
+
+	/**
+	 * Reading back and validating the proxl XML
+	 */
+	VALIDATING,
+
+	/**
+	 * Writing the JSON manifest of the conversion
+	 */
+	WRITING_MANIFEST
+
+}
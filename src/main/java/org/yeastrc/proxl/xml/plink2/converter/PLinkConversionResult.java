@@ -0,0 +1,216 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.converter;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The outcome of a successful conversion run by a PLinkConverter: what was written, how much of it,
+ * and how long each stage took.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PLinkConversionResult {
+
+	/**
+	 * What an incremental conversion did. Conversions that aren't incremental are always CONVERTED.
+	 */
+	public enum Outcome {
+
+		/**
+		 * The proxl XML was written
+		 */
+		CONVERTED,
+
+		/**
+		 * The inputs hadn't changed, the existing proxl XML was kept
+		 */
+		UP_TO_DATE,
+
+		/**
+		 * Only the FASTA file had changed, the matched proteins in the existing proxl XML were replaced
+		 */
+		MATCHED_PROTEINS_UPDATED
+	}
+
+	/**
+	 * @return What the conversion did
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * @return The proxl XML file that was written
+	 */
+	public File getOutputFile() {
+		return outputFile;
+	}
+
+	/**
+	 * @return The manifest file that was written, or null if none was written
+	 */
+	public File getManifestFile() {
+		return manifestFile;
+	}
+
+	/**
+	 * @return The number of pLink results (PSMs) read from the reports, 0 if they weren't read (see getOutcome())
+	 */
+	public int getResultCount() {
+		return resultCount;
+	}
+
+	/**
+	 * @return The number of reported peptides written to the proxl XML
+	 */
+	public long getReportedPeptideCount() {
+		return reportedPeptideCount;
+	}
+
+	/**
+	 * @return The number of PSMs written to the proxl XML
+	 */
+	public long getPsmCount() {
+		return psmCount;
+	}
+
+	/**
+	 * @return The size of the proxl XML file, in bytes
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return The SHA-256 (as hex) of the proxl XML file, or null if it wasn't computed
+	 */
+	public String getSHA256() {
+		return sha256;
+	}
+
+	/**
+	 * @return The CRC32C (as hex) of the proxl XML file, or null if it wasn't computed
+	 */
+	public String getCRC32C() {
+		return crc32c;
+	}
+
+	/**
+	 * @return How long each stage that was run took, in milliseconds, in the order they were run
+	 */
+	public Map<ConversionStage, Long> getStageMillis() {
+		return Collections.unmodifiableMap( stageMillis );
+	}
+
+	/**
+	 * @return How long the whole conversion took, in milliseconds
+	 */
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "PLinkConversionResult{" +
+				"outcome=" + outcome +
+				", outputFile=" + outputFile +
+				", resultCount=" + resultCount +
+				", reportedPeptideCount=" + reportedPeptideCount +
+				", psmCount=" + psmCount +
+				", bytesWritten=" + bytesWritten +
+				", stageMillis=" + stageMillis +
+				", totalMillis=" + totalMillis +
+				'}';
+	}
+
+
+	/**
+	 * @return The fingerprint of the inputs of an incremental conversion, null if it isn't incremental
+	 */
+	public ConversionFingerprint getFingerprint() {
+		return fingerprint;
+	}
+
+	void setFingerprint(ConversionFingerprint fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	void setOutcome(Outcome outcome) {
+		this.outcome = outcome;
+	}
+
+	void setOutputFile(File outputFile) {
+		this.outputFile = outputFile;
+	}
+
+	void setManifestFile(File manifestFile) {
+		this.manifestFile = manifestFile;
+	}
+
+	void setResultCount(int resultCount) {
+		this.resultCount = resultCount;
+	}
+
+	void setReportedPeptideCount(long reportedPeptideCount) {
+		this.reportedPeptideCount = reportedPeptideCount;
+	}
+
+	void setPsmCount(long psmCount) {
+		this.psmCount = psmCount;
+	}
+
+	void setBytesWritten(long bytesWritten) {
+		this.bytesWritten = bytesWritten;
+	}
+
+	void setSHA256(String sha256) {
+		this.sha256 = sha256;
+	}
+
+	void setCRC32C(String crc32c) {
+		this.crc32c = crc32c;
+	}
+
+	void setStageMillis(ConversionStage stage, long millis) {
+		stageMillis.put( stage, millis );
+	}
+
+	void setTotalMillis(long totalMillis) {
+		this.totalMillis = totalMillis;
+	}
+
+
+	private Outcome outcome = Outcome.CONVERTED;
+	private ConversionFingerprint fingerprint;
+	private File outputFile;
+	private File manifestFile;
+	private int resultCount;
+	private long reportedPeptideCount;
+	private long psmCount;
+	private long bytesWritten;
+	private String sha256;
+	private String crc32c;
+	private final Map<ConversionStage, Long> stageMillis = new EnumMap<>( ConversionStage.class );
+	private long totalMillis;
+}
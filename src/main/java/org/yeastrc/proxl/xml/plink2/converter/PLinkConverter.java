@@ -0,0 +1,391 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.converter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.yeastrc.proxl.xml.plink2.builder.MatchedProteinsBuilder;
+import org.yeastrc.proxl.xml.plink2.builder.XMLBuilder;
+import org.yeastrc.proxl.xml.plink2.fasta.DecoyLabelMatcher;
+import org.yeastrc.proxl.xml.plink2.fasta.PreparedFASTADatabase;
+import org.yeastrc.proxl.xml.plink2.main.ProxlXMLValidator;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkResult;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkConstants;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkResultsLoader;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParameters;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParametersLoader;
+import org.yeastrc.proxl.xml.plink2.writer.ConversionManifest;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLMatchedProteinsUpdater;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLWriter;
+import org.yeastrc.proxl_import.api.xml_dto.MatchedProteins;
+
+/**
+ * Converts a pLink 2.x search to a proxl XML file, for use as a library. Everything a conversion
+ * reads is kept in the conversion, so any number of conversions may be run at the same time from
+ * different threads in one JVM. Only read-only, thread-safe data are shared between them: the JAXB
+ * context and schema (ProxlXMLContext), the taxonomy id cache (TaxonomyIdResolver) and, if turned on,
+ * prepared FASTA files (PreparedFASTACache).
+ *
+ * Progress is reported to an optional ConversionListener; nothing is printed and errors are thrown.
+ *
+ * A conversion is cancelled by interrupting the thread running it: it stops with an InterruptedException
+ * at the start of its next stage, or sooner from within the loops that read the results, scan the FASTA
+ * file, build the reported peptides and write them (see CancellationUtils).
+ *
+ * An incremental conversion first compares the fingerprints of its inputs to those in the manifest of
+ * the previous conversion to the same output file (see ConversionFingerprint). If nothing has changed the
+ * output is kept as it is; if only the FASTA file has changed only the matched proteins in the output are
+ * replaced (see ProxlXMLMatchedProteinsUpdater); otherwise the search is converted as usual.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PLinkConverter {
+
+	/**
+	 * Run a conversion
+	 *
+	 * @param options
+	 * @return
+	 * @throws Exception If the conversion fails. The output file is not left behind if it is invalid.
+	 */
+	public PLinkConversionResult convert( PLinkConverterOptions options ) throws Exception {
+		return convert( options, null );
+	}
+
+	/**
+	 * Run a conversion, reporting its progress to the supplied listener
+	 *
+	 * @param options
+	 * @param listener May be null
+	 * @return
+	 * @throws Exception If the conversion fails. The output file is not left behind if it is invalid.
+	 */
+	public PLinkConversionResult convert( PLinkConverterOptions options, ConversionListener listener ) throws Exception {
+
+		long startTime = System.nanoTime();
+
+		ConversionListener progress = listener != null ? listener : new ConversionListener() { };
+		PLinkConversionResult result = new PLinkConversionResult();
+
+		DecoyLabelMatcher decoyLabelMatcher = new DecoyLabelMatcher( options.getDecoyLabels() );
+
+		PLinkSearchParameters params = runStage( ConversionStage.LOADING_PARAMETERS, progress, result, () ->
+				PLinkSearchParametersLoader.getInstance().getPLinkSearch( options.getParamsFile().getPath(), getPath( options.getBinDirectory() ),
+						options.getDefinitionCacheDirectory() ) );
+
+		List<ConversionManifest.InputFile> inputFiles = getInputFiles( params, options );
+
+		if( options.isIncremental() ) {
+			ConversionManifest previousManifest = readPreviousManifest( options.getOutputFile() );
+
+			ConversionFingerprint fingerprint = runStage( ConversionStage.FINGERPRINTING, progress, result, () ->
+					ConversionFingerprint.compute( inputFiles, options, previousManifest ) );
+
+			result.setFingerprint( fingerprint );
+
+			if( previousManifest != null && fingerprint.getResultsFingerprint().equals( previousManifest.getResultsFingerprint() ) ) {
+
+				if( fingerprint.getFastaFingerprint().equals( previousManifest.getFastaFingerprint() ) ) {
+					progress.message( "The inputs haven't changed since " + options.getOutputFile().getName() + " was written, keeping it.\n" );
+					return getUpToDateResult( options, previousManifest, result, startTime );
+				}
+
+				if( !options.isFastaByName() && ProxlXMLMatchedProteinsUpdater.canUpdate( options.getOutputFile() ) ) {
+					progress.message( "Only the FASTA file has changed since " + options.getOutputFile().getName() + " was written, replacing its matched proteins.\n" );
+
+					if( updateMatchedProteins( options, decoyLabelMatcher, previousManifest, progress, result ) )
+						return getFinishedResult( result, startTime );
+
+					progress.message( "No proteins were matched, converting the search again.\n" );
+				}
+			}
+		}
+
+		// the fingerprint's input files include their SHA-256, for the next incremental conversion
+		List<ConversionManifest.InputFile> manifestInputFiles = result.getFingerprint() != null ? result.getFingerprint().getInputFiles() : inputFiles;
+
+		// the FASTA file doesn't depend on the results, prepare it while they are read
+		CompletableFuture<PreparedFASTADatabase> preparedFasta = null;
+		if( options.isFastaAsync() )
+			preparedFasta = PreparedFASTADatabase.prepareAsync( options.getFastaFile(), decoyLabelMatcher, options.isCachePreparedFasta() );
+
+		Collection<PLinkResult> results = runStage( ConversionStage.LOADING_RESULTS, progress, result, () ->
+				PLinkResultsLoader.getInstance().getAllResults( params, getPath( options.getDataDirectory() ), decoyLabelMatcher, options.isSkipDecoyResults(), progress ) );
+
+		result.setResultCount( results.size() );
+
+		ProxlXMLWriter writer = new ProxlXMLWriter();
+		writer.setValidateWhileWriting( options.isValidateWhileWriting() );
+		writer.setCompact( options.isCompact() );
+		writer.setComputeSHA256( options.isWriteManifest() );
+		writer.setComputeCRC32C( options.isWriteManifest() && options.isComputeCRC32C() );
+		writer.setWriteIndex( options.isWriteIndex() );
+
+		XMLBuilder builder = new XMLBuilder();
+		builder.setCompact( options.isCompact() );
+		builder.setFastaScanThreads( options.getFastaScanThreads() );
+		builder.setMappedFastaScan( options.isMappedFastaScan() );
+		builder.setFastaIndexDirectory( options.getFastaIndexDirectory() );
+		builder.setFastaByName( options.isFastaByName() );
+		builder.setPreparedFasta( preparedFasta );
+		builder.setCachePreparedFasta( options.isCachePreparedFasta() );
+		builder.setDecoyLabelMatcher( decoyLabelMatcher );
+
+		runStage( ConversionStage.WRITING, progress, result, () -> {
+			builder.buildAndSaveXML( params, results, options.getOutputFile(), options.getFastaFile().getPath(), writer );
+			return null;
+		} );
+
+		if( !options.isValidateWhileWriting() ) {
+			runStage( ConversionStage.VALIDATING, progress, result, () -> {
+				ProxlXMLValidator.validateProxlXML( options.getOutputFile() );
+				return null;
+			} );
+		}
+
+		if( options.isWriteManifest() ) {
+			File manifestFile = runStage( ConversionStage.WRITING_MANIFEST, progress, result, () ->
+					writeManifest( manifestInputFiles, options, writer, result.getFingerprint() ) );
+
+			result.setManifestFile( manifestFile );
+		}
+
+		result.setOutputFile( options.getOutputFile() );
+		result.setReportedPeptideCount( writer.getReportedPeptideCount() );
+		result.setPsmCount( writer.getPsmCount() );
+		result.setBytesWritten( writer.getBytesWritten() );
+		result.setSHA256( writer.getSHA256() );
+		result.setCRC32C( writer.getCRC32C() );
+
+		return getFinishedResult( result, startTime );
+	}
+
+	/**
+	 * Read the manifest of the previous conversion to the supplied output file, if it can be used for an
+	 * incremental conversion: it has fingerprints and the output file hasn't changed since it was written.
+	 *
+	 * @param outputFile
+	 * @return The manifest, or null if there isn't a usable one
+	 */
+	private ConversionManifest readPreviousManifest( File outputFile ) {
+
+		File manifestFile = ConversionManifest.getManifestFile( outputFile );
+		if( !manifestFile.exists() || !outputFile.exists() )
+			return null;
+
+		ConversionManifest manifest;
+		try {
+			manifest = ConversionManifest.read( manifestFile );
+		} catch( Exception e ) {
+			return null;
+		}
+
+		if( manifest.getResultsFingerprint() == null || manifest.getFastaFingerprint() == null || manifest.getOutputLastModified() == null )
+			return null;
+
+		if( manifest.getOutputBytes() != outputFile.length() || manifest.getOutputLastModified() != outputFile.lastModified() )
+			return null;
+
+		return manifest;
+	}
+
+	/**
+	 * Fill in the result of an incremental conversion whose output was kept as it is
+	 */
+	private PLinkConversionResult getUpToDateResult( PLinkConverterOptions options, ConversionManifest previousManifest, PLinkConversionResult result, long startTime ) {
+
+		result.setOutcome( PLinkConversionResult.Outcome.UP_TO_DATE );
+		result.setOutputFile( options.getOutputFile() );
+		result.setManifestFile( ConversionManifest.getManifestFile( options.getOutputFile() ) );
+		result.setReportedPeptideCount( previousManifest.getReportedPeptideCount() );
+		result.setPsmCount( previousManifest.getPsmCount() );
+		result.setBytesWritten( 0 );
+		result.setSHA256( previousManifest.getSHA256() );
+		result.setCRC32C( previousManifest.getCRC32C() );
+
+		return getFinishedResult( result, startTime );
+	}
+
+	private PLinkConversionResult getFinishedResult( PLinkConversionResult result, long startTime ) {
+		result.setTotalMillis( ( System.nanoTime() - startTime ) / 1000000 );
+		return result;
+	}
+
+	/**
+	 * Replace the matched proteins in the output of the previous conversion, whose other inputs haven't changed,
+	 * using the peptide sequences in it, then validate it and write its manifest.
+	 *
+	 * @return true if the matched proteins were replaced, false if the search has to be converted again instead
+	 *         (no proteins were matched in compact mode, where the matched proteins section is left out)
+	 * @throws Exception
+	 */
+	private boolean updateMatchedProteins( PLinkConverterOptions options, DecoyLabelMatcher decoyLabelMatcher, ConversionManifest previousManifest,
+			ConversionListener progress, PLinkConversionResult result ) throws Exception {
+
+		File outputFile = options.getOutputFile();
+
+		ProxlXMLMatchedProteinsUpdater updater = new ProxlXMLMatchedProteinsUpdater();
+		updater.setCompact( options.isCompact() );
+		updater.setComputeSHA256( true );
+		updater.setComputeCRC32C( options.isComputeCRC32C() );
+
+		boolean updated = runStage( ConversionStage.UPDATING_MATCHED_PROTEINS, progress, result, () -> {
+
+			MatchedProteinsBuilder matchedProteinsBuilder = MatchedProteinsBuilder.getInstance();
+			matchedProteinsBuilder.setFastaScanThreads( options.getFastaScanThreads() );
+			matchedProteinsBuilder.setMappedFastaScan( options.isMappedFastaScan() );
+			matchedProteinsBuilder.setFastaIndexDirectory( options.getFastaIndexDirectory() );
+			matchedProteinsBuilder.setCachePreparedFasta( options.isCachePreparedFasta() );
+
+			MatchedProteins matchedProteins = matchedProteinsBuilder.buildMatchedProteins( ProxlXMLMatchedProteinsUpdater.readPeptideSequences( outputFile ),
+					options.getFastaFile(), decoyLabelMatcher );
+
+			if( options.isCompact() && matchedProteins.getProtein().isEmpty() )
+				return false;
+
+			updater.replaceMatchedProteins( outputFile, matchedProteins );
+			return true;
+		} );
+
+		if( !updated )
+			return false;
+
+		// the new matched proteins weren't validated as they were written
+		runStage( ConversionStage.VALIDATING, progress, result, () -> {
+			ProxlXMLValidator.validateProxlXML( outputFile );
+			return null;
+		} );
+
+		File manifestFile = runStage( ConversionStage.WRITING_MANIFEST, progress, result, () -> {
+			ConversionManifest manifest = new ConversionManifest();
+			result.getFingerprint().getInputFiles().forEach( manifest::addInputFile );
+
+			manifest.setOutput( outputFile, updater.getBytesWritten(), updater.getSHA256(), updater.getCRC32C(),
+					previousManifest.getReportedPeptideCount(), previousManifest.getPsmCount() );
+			manifest.setFingerprints( result.getFingerprint().getResultsFingerprint(), result.getFingerprint().getFastaFingerprint(), outputFile.lastModified() );
+
+			File file = ConversionManifest.getManifestFile( outputFile );
+			manifest.write( file );
+			return file;
+		} );
+
+		result.setOutcome( PLinkConversionResult.Outcome.MATCHED_PROTEINS_UPDATED );
+		result.setOutputFile( outputFile );
+		result.setManifestFile( manifestFile );
+		result.setReportedPeptideCount( previousManifest.getReportedPeptideCount() );
+		result.setPsmCount( previousManifest.getPsmCount() );
+		result.setBytesWritten( updater.getBytesWritten() );
+		result.setSHA256( updater.getSHA256() );
+		result.setCRC32C( updater.getCRC32C() );
+
+		return true;
+	}
+
+	/**
+	 * A stage of a conversion
+	 */
+	private interface Stage<T> {
+		T run() throws Exception;
+	}
+
+	/**
+	 * Run a stage of a conversion, reporting it to the listener and recording how long it took
+	 */
+	private <T> T runStage( ConversionStage stage, ConversionListener listener, PLinkConversionResult result, Stage<T> task ) throws Exception {
+
+		if( Thread.interrupted() )
+			throw new InterruptedException( "The conversion was cancelled." );
+
+		listener.stageStarted( stage );
+
+		long startTime = System.nanoTime();
+		T value = task.run();
+		long elapsedMillis = ( System.nanoTime() - startTime ) / 1000000;
+
+		result.setStageMillis( stage, elapsedMillis );
+		listener.stageFinished( stage, elapsedMillis );
+
+		return value;
+	}
+
+	/**
+	 * Get the input files of a conversion, as they are listed in its manifest
+	 *
+	 * @param params
+	 * @param options
+	 * @return
+	 * @throws Exception
+	 */
+	private List<ConversionManifest.InputFile> getInputFiles( PLinkSearchParameters params, PLinkConverterOptions options ) throws Exception {
+
+		List<ConversionManifest.InputFile> inputFiles = new ArrayList<>();
+
+		inputFiles.add( new ConversionManifest.InputFile( "parameters", options.getParamsFile() ) );
+		inputFiles.add( new ConversionManifest.InputFile( PLinkConstants.MODIFY_INI_FILENAME, params.getModifyINIFile() ) );
+		inputFiles.add( new ConversionManifest.InputFile( PLinkConstants.XLINK_INI_FILENAME, params.getXlinkINIFile() ) );
+
+		for( int type : PLinkConstants.PLINK_NAME_FOR_TYPE.keySet() ) {
+			File resultsFile = PLinkResultsLoader.getInstance().getResultsFile( params, getPath( options.getDataDirectory() ), type );
+
+			if( resultsFile.exists() )
+				inputFiles.add( new ConversionManifest.InputFile( "results", resultsFile ) );
+		}
+
+		inputFiles.add( new ConversionManifest.InputFile( ConversionFingerprint.FASTA_ROLE, options.getFastaFile() ) );
+
+		return inputFiles;
+	}
+
+	/**
+	 * Write the JSON manifest for a conversion, next to the proxl XML file
+	 *
+	 * @param inputFiles
+	 * @param options
+	 * @param writer The writer used to write the proxl XML file
+	 * @param fingerprint The fingerprint of the inputs of an incremental conversion, null otherwise
+	 * @return The manifest file
+	 * @throws Exception
+	 */
+	private File writeManifest( List<ConversionManifest.InputFile> inputFiles, PLinkConverterOptions options, ProxlXMLWriter writer, ConversionFingerprint fingerprint ) throws Exception {
+
+		ConversionManifest manifest = new ConversionManifest();
+
+		inputFiles.forEach( manifest::addInputFile );
+
+		manifest.setOutput( options.getOutputFile(), writer );
+
+		if( fingerprint != null )
+			manifest.setFingerprints( fingerprint.getResultsFingerprint(), fingerprint.getFastaFingerprint(), options.getOutputFile().lastModified() );
+
+		File manifestFile = ConversionManifest.getManifestFile( options.getOutputFile() );
+		manifest.write( manifestFile );
+
+		return manifestFile;
+	}
+
+	private static String getPath( File file ) {
+		return file == null ? null : file.getPath();
+	}
+
+}
@@ -0,0 +1,378 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.converter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+
+/**
+ * The inputs, output and settings of a single conversion run by a PLinkConverter. Immutable, build
+ * with PLinkConverterOptions.builder(). The settings match the command line options of MainProgram,
+ * see there for details.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PLinkConverterOptions {
+
+	/**
+	 * @return A builder with the default settings, as for the command line
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	private PLinkConverterOptions( Builder builder ) {
+		paramsFile = builder.paramsFile;
+		binDirectory = builder.binDirectory;
+		dataDirectory = builder.dataDirectory;
+		fastaFile = builder.fastaFile;
+		outputFile = builder.outputFile;
+		validateWhileWriting = builder.validateWhileWriting;
+		compact = builder.compact;
+		writeManifest = builder.writeManifest || builder.incremental;
+		computeCRC32C = builder.computeCRC32C;
+		writeIndex = builder.writeIndex || builder.incremental;
+		fastaScanThreads = builder.fastaScanThreads;
+		mappedFastaScan = builder.mappedFastaScan;
+		fastaIndexDirectory = builder.fastaIndexDirectory;
+		fastaByName = builder.fastaByName;
+		fastaAsync = builder.fastaAsync;
+		cachePreparedFasta = builder.cachePreparedFasta;
+		decoyLabels = Collections.unmodifiableList( new ArrayList<>( builder.decoyLabels ) );
+		skipDecoyResults = builder.skipDecoyResults;
+		definitionCacheDirectory = builder.definitionCacheDirectory;
+		incremental = builder.incremental;
+	}
+
+	/**
+	 * @return A builder with the settings of these options, to make a modified copy
+	 */
+	public Builder toBuilder() {
+		return new Builder()
+				.paramsFile( paramsFile )
+				.binDirectory( binDirectory )
+				.dataDirectory( dataDirectory )
+				.fastaFile( fastaFile )
+				.outputFile( outputFile )
+				.validateWhileWriting( validateWhileWriting )
+				.compact( compact )
+				.writeManifest( writeManifest )
+				.computeCRC32C( computeCRC32C )
+				.writeIndex( writeIndex )
+				.fastaScanThreads( fastaScanThreads )
+				.mappedFastaScan( mappedFastaScan )
+				.fastaIndexDirectory( fastaIndexDirectory )
+				.fastaByName( fastaByName )
+				.fastaAsync( fastaAsync )
+				.cachePreparedFasta( cachePreparedFasta )
+				.decoyLabels( decoyLabels )
+				.skipDecoyResults( skipDecoyResults )
+				.definitionCacheDirectory( definitionCacheDirectory )
+				.incremental( incremental );
+	}
+
+
+	/**
+	 * @return The pLink parameters file (.plink) used in the search
+	 */
+	public File getParamsFile() {
+		return paramsFile;
+	}
+
+	/**
+	 * @return The pLink bin directory, or null to use the default for the version in the parameters file
+	 */
+	public File getBinDirectory() {
+		return binDirectory;
+	}
+
+	/**
+	 * @return The pLink reports directory, or null to use the one in the parameters file
+	 */
+	public File getDataDirectory() {
+		return dataDirectory;
+	}
+
+	/**
+	 * @return The FASTA file used in the search
+	 */
+	public File getFastaFile() {
+		return fastaFile;
+	}
+
+	/**
+	 * @return The proxl XML file to write
+	 */
+	public File getOutputFile() {
+		return outputFile;
+	}
+
+	public boolean isValidateWhileWriting() {
+		return validateWhileWriting;
+	}
+
+	public boolean isCompact() {
+		return compact;
+	}
+
+	public boolean isWriteManifest() {
+		return writeManifest;
+	}
+
+	public boolean isComputeCRC32C() {
+		return computeCRC32C;
+	}
+
+	public boolean isWriteIndex() {
+		return writeIndex;
+	}
+
+	public int getFastaScanThreads() {
+		return fastaScanThreads;
+	}
+
+	public boolean isMappedFastaScan() {
+		return mappedFastaScan;
+	}
+
+	/**
+	 * @return The directory for persistent FASTA indexes, or null if they aren't used
+	 */
+	public File getFastaIndexDirectory() {
+		return fastaIndexDirectory;
+	}
+
+	public boolean isFastaByName() {
+		return fastaByName;
+	}
+
+	public boolean isFastaAsync() {
+		return fastaAsync;
+	}
+
+	/**
+	 * @return true if the prepared FASTA database is kept in the PreparedFASTACache for later conversions in this process
+	 */
+	public boolean isCachePreparedFasta() {
+		return cachePreparedFasta;
+	}
+
+	/**
+	 * @return The labels that identify decoy proteins
+	 */
+	public List<String> getDecoyLabels() {
+		return decoyLabels;
+	}
+
+	public boolean isSkipDecoyResults() {
+		return skipDecoyResults;
+	}
+
+	/**
+	 * @return The directory for compiled modification and cross-linker definitions, or null if they aren't used
+	 */
+	public File getDefinitionCacheDirectory() {
+		return definitionCacheDirectory;
+	}
+
+	/**
+	 * @return true if the output is kept, or only its matched proteins replaced, when its manifest shows
+	 *         that its inputs haven't changed (see ConversionFingerprint). Implies writing a manifest and an index.
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+
+	/**
+	 * Builds PLinkConverterOptions. The parameters file, FASTA file and output file are required.
+	 */
+	public static class Builder {
+
+		private Builder() { }
+
+		/**
+		 * @return The options
+		 * @throws IllegalStateException If a required file is missing
+		 */
+		public PLinkConverterOptions build() {
+
+			if( paramsFile == null )
+				throw new IllegalStateException( "No pLink parameters file given." );
+
+			if( fastaFile == null )
+				throw new IllegalStateException( "No FASTA file given." );
+
+			if( outputFile == null )
+				throw new IllegalStateException( "No output file given." );
+
+			return new PLinkConverterOptions( this );
+		}
+
+		public Builder paramsFile( File paramsFile ) {
+			this.paramsFile = paramsFile;
+			return this;
+		}
+
+		public Builder binDirectory( File binDirectory ) {
+			this.binDirectory = binDirectory;
+			return this;
+		}
+
+		public Builder dataDirectory( File dataDirectory ) {
+			this.dataDirectory = dataDirectory;
+			return this;
+		}
+
+		public Builder fastaFile( File fastaFile ) {
+			this.fastaFile = fastaFile;
+			return this;
+		}
+
+		public Builder outputFile( File outputFile ) {
+			this.outputFile = outputFile;
+			return this;
+		}
+
+		public Builder validateWhileWriting( boolean validateWhileWriting ) {
+			this.validateWhileWriting = validateWhileWriting;
+			return this;
+		}
+
+		public Builder compact( boolean compact ) {
+			this.compact = compact;
+			return this;
+		}
+
+		public Builder writeManifest( boolean writeManifest ) {
+			this.writeManifest = writeManifest;
+			return this;
+		}
+
+		public Builder computeCRC32C( boolean computeCRC32C ) {
+			this.computeCRC32C = computeCRC32C;
+			return this;
+		}
+
+		public Builder writeIndex( boolean writeIndex ) {
+			this.writeIndex = writeIndex;
+			return this;
+		}
+
+		public Builder fastaScanThreads( int fastaScanThreads ) {
+			this.fastaScanThreads = fastaScanThreads;
+			return this;
+		}
+
+		public Builder mappedFastaScan( boolean mappedFastaScan ) {
+			this.mappedFastaScan = mappedFastaScan;
+			return this;
+		}
+
+		public Builder fastaIndexDirectory( File fastaIndexDirectory ) {
+			this.fastaIndexDirectory = fastaIndexDirectory;
+			return this;
+		}
+
+		public Builder fastaByName( boolean fastaByName ) {
+			this.fastaByName = fastaByName;
+			return this;
+		}
+
+		public Builder fastaAsync( boolean fastaAsync ) {
+			this.fastaAsync = fastaAsync;
+			return this;
+		}
+
+		public Builder cachePreparedFasta( boolean cachePreparedFasta ) {
+			this.cachePreparedFasta = cachePreparedFasta;
+			return this;
+		}
+
+		public Builder decoyLabels( Collection<String> decoyLabels ) {
+			this.decoyLabels = new ArrayList<>( decoyLabels );
+			return this;
+		}
+
+		public Builder skipDecoyResults( boolean skipDecoyResults ) {
+			this.skipDecoyResults = skipDecoyResults;
+			return this;
+		}
+
+		public Builder definitionCacheDirectory( File definitionCacheDirectory ) {
+			this.definitionCacheDirectory = definitionCacheDirectory;
+			return this;
+		}
+
+		public Builder incremental( boolean incremental ) {
+			this.incremental = incremental;
+			return this;
+		}
+
+
+		private File paramsFile;
+		private File binDirectory;
+		private File dataDirectory;
+		private File fastaFile;
+		private File outputFile;
+		private boolean validateWhileWriting = false;
+		private boolean compact = false;
+		private boolean writeManifest = false;
+		private boolean computeCRC32C = false;
+		private boolean writeIndex = false;
+		private int fastaScanThreads = 1;
+		private boolean mappedFastaScan = false;
+		private File fastaIndexDirectory;
+		private boolean fastaByName = false;
+		private boolean fastaAsync = false;
+		private boolean cachePreparedFasta = false;
+		private List<String> decoyLabels = PLinkConverterConstants.DEFAULT_DECOY_LABELS;
+		private boolean skipDecoyResults = false;
+		private File definitionCacheDirectory;
+		private boolean incremental = false;
+	}
+
+
+	private final File paramsFile;
+	private final File binDirectory;
+	private final File dataDirectory;
+	private final File fastaFile;
+	private final File outputFile;
+	private final boolean validateWhileWriting;
+	private final boolean compact;
+	private final boolean writeManifest;
+	private final boolean computeCRC32C;
+	private final boolean writeIndex;
+	private final int fastaScanThreads;
+	private final boolean mappedFastaScan;
+	private final File fastaIndexDirectory;
+	private final boolean fastaByName;
+	private final boolean fastaAsync;
+	private final boolean cachePreparedFasta;
+	private final List<String> decoyLabels;
+	private final boolean skipDecoyResults;
+	private final File definitionCacheDirectory;
+	private final boolean incremental;
+}
@@ -0,0 +1,170 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An Aho-Corasick automaton for a set of patterns, compiled into a dense transition table with the
+ * failure links folded in, so matching is a single table lookup per character. Shared by
+ * PeptideMatcher and DecoyLabelMatcher, which differ only in how characters map to symbols.
+ *
+ * Characters are mapped to symbols 1..alphabetSize by an Alphabet; symbol 0 is any character in
+ * no pattern and always sends the automaton back to the start. The table uses (number of states)
+ * x (alphabet size + 1) ints, where the number of states is at most the total length of the
+ * patterns plus one.
+ *
+ * Instances are immutable after construction and may be used from multiple threads.
+ *
+ * @author Michael Riffle
+ *
+ */
+class AhoCorasickAutomaton {
+
+	static final int ROOT = 0;
+
+	/**
+	 * Maps the characters of the patterns to symbols
+	 */
+	interface Alphabet {
+
+		/**
+		 * @param c
+		 * @return The symbol for the character, from 1 to the alphabet size, or 0 if it's in no pattern
+		 */
+		int getSymbol( char c );
+	}
+
+	/**
+	 * @param patterns The patterns to find. An empty pattern matches in every state, including the start.
+	 * @param alphabetSize The number of symbols, not counting 0
+	 * @param alphabet Maps the characters of the patterns to symbols
+	 */
+	AhoCorasickAutomaton( Collection<String> patterns, int alphabetSize, Alphabet alphabet ) {
+
+		stride = alphabetSize + 1;
+
+		// build the trie
+		List<int[]> children = new ArrayList<>();
+		List<Boolean> terminal = new ArrayList<>();
+		children.add( newChildren() );
+		terminal.add( false );
+
+		for( String pattern : patterns ) {
+
+			int state = ROOT;
+			for( int i = 0; i < pattern.length(); i++ ) {
+				int symbol = alphabet.getSymbol( pattern.charAt( i ) );
+
+				if( children.get( state )[ symbol ] == -1 ) {
+					children.get( state )[ symbol ] = children.size();
+					children.add( newChildren() );
+					terminal.add( false );
+				}
+
+				state = children.get( state )[ symbol ];
+			}
+
+			terminal.set( state, true );
+		}
+
+		stateCount = children.size();
+
+		// breadth first, fill in the transitions for missing children from the failure links
+		transitions = new int[ stateCount * stride ];
+		matches = new boolean[ stateCount ];
+
+		int[] failure = new int[ stateCount ];
+		int[] queue = new int[ stateCount ];
+		int head = 0;
+		int tail = 0;
+
+		matches[ ROOT ] = terminal.get( ROOT );
+
+		for( int symbol = 1; symbol < stride; symbol++ ) {
+			int child = children.get( ROOT )[ symbol ];
+
+			if( child != -1 ) {
+				transitions[ symbol ] = child;
+				failure[ child ] = ROOT;
+				queue[ tail++ ] = child;
+			}
+		}
+
+		while( head < tail ) {
+			int state = queue[ head++ ];
+
+			matches[ state ] = terminal.get( state ) || matches[ failure[ state ] ];
+
+			for( int symbol = 1; symbol < stride; symbol++ ) {
+				int child = children.get( state )[ symbol ];
+
+				if( child == -1 ) {
+					transitions[ state * stride + symbol ] = transitions[ failure[ state ] * stride + symbol ];
+				} else {
+					transitions[ state * stride + symbol ] = child;
+					failure[ child ] = transitions[ failure[ state ] * stride + symbol ];
+					queue[ tail++ ] = child;
+				}
+			}
+		}
+
+		// symbol 0 (a character in no pattern) always goes back to the start: transitions[ state * stride ] is already ROOT
+	}
+
+	/**
+	 * @param state The current state
+	 * @param symbol The symbol of the next character
+	 * @return The new state
+	 */
+	int getNextState( int state, int symbol ) {
+		return transitions[ state * stride + symbol ];
+	}
+
+	/**
+	 * @param state
+	 * @return true if reaching the supplied state means one of the patterns has been found
+	 */
+	boolean isMatch( int state ) {
+		return matches[ state ];
+	}
+
+	/**
+	 * @return The number of states in the automaton
+	 */
+	int getStateCount() {
+		return stateCount;
+	}
+
+
+	private int[] newChildren() {
+		int[] c = new int[ stride ];
+		Arrays.fill( c, -1 );
+		return c;
+	}
+
+
+	private final int stride;
+	private final int stateCount;
+	private final int[] transitions;
+	private final boolean[] matches;
+}
@@ -0,0 +1,132 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.yeastrc.fasta.FASTAEntry;
+import org.yeastrc.fasta.FASTAHeader;
+
+/**
+ * Decides whether a protein name is a decoy: a name is a decoy if it contains any of the decoy
+ * labels (case-sensitive), e.g. "random" in "Spc97-yeast-random".
+ *
+ * The labels are compiled into a single Aho-Corasick automaton (see AhoCorasickAutomaton), so a
+ * name is checked for all labels in one pass over its characters, however many labels there are.
+ * Used both for FASTA entries and for the protein references in the pLink reports.
+ *
+ * Instances are immutable after construction and may be used from multiple threads.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class DecoyLabelMatcher {
+
+	/**
+	 * @param decoyLabels The decoy labels
+	 */
+	public DecoyLabelMatcher( Collection<String> decoyLabels ) {
+
+		this.decoyLabels = Collections.unmodifiableCollection( new LinkedHashSet<>( decoyLabels ) );
+
+		// number each distinct character in the labels from 1, 0 is any other character
+		int alphabetSize = 0;
+
+		for( String label : this.decoyLabels ) {
+			for( int i = 0; i < label.length(); i++ ) {
+				char c = label.charAt( i );
+
+				if( getSymbol( c ) == 0 ) {
+					int symbol = ++alphabetSize;
+
+					if( c < 128 )
+						asciiSymbols[ c ] = symbol;
+					else
+						otherSymbols.put( c, symbol );
+				}
+			}
+		}
+
+		automaton = new AhoCorasickAutomaton( this.decoyLabels, alphabetSize, this::getSymbol );
+	}
+
+	/**
+	 * @param name A protein name
+	 * @return true if the name contains any of the decoy labels
+	 */
+	public boolean isDecoy( String name ) {
+
+		// an empty label is in every name, and makes the start a match
+		int state = AhoCorasickAutomaton.ROOT;
+
+		if( automaton.isMatch( state ) )
+			return true;
+
+		for( int i = 0; i < name.length(); i++ ) {
+			state = automaton.getNextState( state, getSymbol( name.charAt( i ) ) );
+
+			if( automaton.isMatch( state ) )
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param entry
+	 * @return true if any of the names of the FASTA entry contains any of the decoy labels
+	 */
+	public boolean isDecoy( FASTAEntry entry ) {
+
+		for( FASTAHeader header : entry.getHeaders() ) {
+			if( isDecoy( header.getName() ) )
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The decoy labels
+	 */
+	public Collection<String> getDecoyLabels() {
+		return decoyLabels;
+	}
+
+
+	private int getSymbol( char c ) {
+
+		if( c < 128 )
+			return asciiSymbols[ c ];
+
+		Integer symbol = otherSymbols.get( c );
+		return symbol == null ? 0 : symbol;
+	}
+
+
+	private final Collection<String> decoyLabels;
+
+	private final int[] asciiSymbols = new int[ 128 ];
+	private final Map<Character, Integer> otherSymbols = new HashMap<>();
+	private final AhoCorasickAutomaton automaton;
+}
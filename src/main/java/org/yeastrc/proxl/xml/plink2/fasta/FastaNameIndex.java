@@ -0,0 +1,460 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
+import org.yeastrc.proxl.xml.plink2.utils.LargeMappedFile;
+
+/**
+ * An index of the protein names in a FASTA file, giving the byte offsets of the record(s) with a
+ * given name, so that the entries for a known set of proteins can be read without scanning the
+ * whole FASTA file.
+ *
+ * A name is the part of a header up to the first whitespace, as in FASTAHeader. A record with
+ * several headers (separated by ^A) is indexed under each of their names.
+ *
+ * The index is either persistent (see getIndex()), built once and memory mapped on later
+ * conversions, or held in memory for just the requested names (see scan()), which still reads
+ * the FASTA file but only looks at its header lines.
+ *
+ * A persistent index is tied to a FASTA file in the same way as a FastaPeptideIndex, by the file's
+ * size, modification time and a SHA-256 of sampled blocks of the file. File layout (big-endian):
+ * a fixed header, then for each record name its length, UTF-8 bytes and the start and end of the
+ * record, then the positions of those in name order, for binary search.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class FastaNameIndex implements AutoCloseable {
+
+	public static final String INDEX_FILE_SUFFIX = ".nidx";
+
+	private static final byte[] MAGIC = "PXFNIX01".getBytes( StandardCharsets.US_ASCII );
+
+	private static final int HEADER_SIZE = 72;
+
+	/**
+	 * Get the persistent name index for the supplied FASTA file from the supplied directory, building
+	 * it first if it doesn't exist or is out of date
+	 *
+	 * @param fastaFile
+	 * @param indexDirectory
+	 * @return
+	 * @throws Exception
+	 */
+	public static FastaNameIndex getIndex( File fastaFile, File indexDirectory ) throws Exception {
+
+		if( !indexDirectory.exists() && !indexDirectory.mkdirs() )
+			throw new Exception( "Could not create FASTA index directory: " + indexDirectory.getAbsolutePath() );
+
+		File indexFile = getIndexFile( fastaFile, indexDirectory );
+		byte[] sampledHash = FastaPeptideIndex.getSampledHash( fastaFile );
+
+		if( indexFile.exists() ) {
+			FastaNameIndex index = null;
+
+			try {
+				index = new FastaNameIndex( indexFile );
+			} catch( Exception e ) {
+				// not an index this version can read, or damaged; it's rebuilt
+			}
+
+			if( index != null ) {
+				if( index.isIndexOf( fastaFile, sampledHash ) )
+					return index;
+
+				index.close();
+			}
+		}
+
+		build( fastaFile, sampledHash, indexFile );
+
+		FastaNameIndex index = new FastaNameIndex( indexFile );
+
+		if( !index.isIndexOf( fastaFile, sampledHash ) ) {
+			index.close();
+			throw new Exception( "FASTA file changed while it was being indexed: " + fastaFile.getAbsolutePath() );
+		}
+
+		return index;
+	}
+
+	/**
+	 * Get an in memory name index of the supplied FASTA file holding only the supplied names, by
+	 * reading the header lines of the FASTA file
+	 *
+	 * @param fastaFile
+	 * @param names
+	 * @return
+	 * @throws Exception
+	 */
+	public static FastaNameIndex scan( File fastaFile, Collection<String> names ) throws Exception {
+
+		Set<String> wantedNames = new HashSet<>( names );
+		Map<String, List<long[]>> records = new HashMap<>();
+
+		try( LargeMappedFile mappedFile = new LargeMappedFile( fastaFile ) ) {
+
+			readRecords( mappedFile, ( recordNames, start, end ) -> {
+				for( String name : recordNames ) {
+					if( wantedNames.contains( name ) )
+						records.computeIfAbsent( name, k -> new ArrayList<>( 1 ) ).add( new long[] { start, end } );
+				}
+			} );
+		}
+
+		return new FastaNameIndex( records );
+	}
+
+	/**
+	 * Get the index file for the supplied FASTA file, named as for a FastaPeptideIndex
+	 *
+	 * @param fastaFile
+	 * @param indexDirectory
+	 * @return
+	 * @throws Exception
+	 */
+	public static File getIndexFile( File fastaFile, File indexDirectory ) throws Exception {
+		String pathHash = String.format( "%08x", fastaFile.getCanonicalPath().hashCode() );
+		return new File( indexDirectory, fastaFile.getName() + "-" + pathHash + INDEX_FILE_SUFFIX );
+	}
+
+	/**
+	 * Open an existing persistent index file
+	 *
+	 * @param indexFile
+	 * @throws Exception
+	 */
+	public FastaNameIndex( File indexFile ) throws Exception {
+
+		mappedFile = new LargeMappedFile( indexFile );
+		records = null;
+
+		if( mappedFile.size() < HEADER_SIZE || !Arrays.equals( mappedFile.getBytes( 0, MAGIC.length ), MAGIC ) ) {
+			mappedFile.close();
+			throw new Exception( "Not a FASTA name index: " + indexFile.getAbsolutePath() );
+		}
+
+		fastaSize = mappedFile.getLong( 8 );
+		fastaLastModified = mappedFile.getLong( 16 );
+		fastaSampledHash = mappedFile.getBytes( 24, 56 );
+
+		nameCount = mappedFile.getInt( 56 );
+		namePositionsPosition = mappedFile.getLong( 64 );
+
+		// the name positions are the last section, so a truncated or damaged index doesn't match the file size
+		if( nameCount < 0 || namePositionsPosition < HEADER_SIZE || namePositionsPosition + (long)nameCount * 8 != mappedFile.size() ) {
+			mappedFile.close();
+			throw new Exception( "Damaged FASTA name index: " + indexFile.getAbsolutePath() );
+		}
+	}
+
+	private FastaNameIndex( Map<String, List<long[]>> records ) {
+
+		this.records = records;
+		mappedFile = null;
+
+		fastaSize = 0;
+		fastaLastModified = 0;
+		fastaSampledHash = null;
+		nameCount = 0;
+		namePositionsPosition = 0;
+	}
+
+	/**
+	 * @param fastaFile
+	 * @param sampledHash
+	 * @return true if this is the index of the supplied FASTA file, as it is now
+	 */
+	private boolean isIndexOf( File fastaFile, byte[] sampledHash ) {
+		return fastaSize == fastaFile.length() &&
+				fastaLastModified == fastaFile.lastModified() &&
+				Arrays.equals( fastaSampledHash, sampledHash );
+	}
+
+	/**
+	 * Get the start (inclusive) and end (exclusive) byte offsets in the FASTA file of all records with
+	 * the supplied name
+	 *
+	 * @param name
+	 * @return The records, empty if there are none
+	 */
+	public List<long[]> getRecords( String name ) {
+
+		if( records != null ) {
+			List<long[]> found = records.get( name );
+			return found == null ? Collections.emptyList() : found;
+		}
+
+		// binary search for the first name that isn't less than the supplied name
+		int low = 0;
+		int high = nameCount;
+
+		while( low < high ) {
+			int middle = ( low + high ) >>> 1;
+
+			if( getName( middle ).compareTo( name ) < 0 )
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		List<long[]> found = new ArrayList<>( 1 );
+
+		for( int i = low; i < nameCount && getName( i ).equals( name ); i++ ) {
+			long position = getNamePosition( i );
+			position += 4 + mappedFile.getInt( position );
+
+			found.add( new long[] { mappedFile.getLong( position ), mappedFile.getLong( position + 8 ) } );
+		}
+
+		return found;
+	}
+
+	@Override
+	public void close() {
+		if( mappedFile != null )
+			mappedFile.close();
+	}
+
+
+	private long getNamePosition( int i ) {
+		return mappedFile.getLong( namePositionsPosition + (long)i * 8 );
+	}
+
+	private String getName( int i ) {
+
+		long position = getNamePosition( i );
+		int length = mappedFile.getInt( position );
+
+		return new String( mappedFile.getBytes( position + 4, position + 4 + length ), StandardCharsets.UTF_8 );
+	}
+
+
+	/**
+	 * Receives each record found in a FASTA file
+	 */
+	private interface RecordListener {
+
+		/**
+		 * @param names The names of the headers of the record
+		 * @param start The offset of the record's '>'
+		 * @param end The offset just past the end of the record
+		 */
+		void record( List<String> names, long start, long end ) throws Exception;
+	}
+
+	/**
+	 * Find every record in the FASTA file and the names in its header line, skipping over the sequences
+	 *
+	 * @param mappedFile
+	 * @param listener
+	 * @throws Exception
+	 */
+	private static void readRecords( LargeMappedFile mappedFile, RecordListener listener ) throws Exception {
+
+		long size = mappedFile.size();
+
+		long recordStart = -1;
+		List<String> names = new ArrayList<>();
+
+		boolean lineStart = true;
+
+		for( long position = 0; position < size; position++ ) {
+
+			byte b = mappedFile.get( position );
+
+			if( lineStart && b == '>' ) {
+
+				CancellationUtils.checkCancelled();
+
+				// the start of a new record ends the previous one
+				if( recordStart != -1 )
+					listener.record( names, recordStart, position );
+
+				recordStart = position;
+				names = new ArrayList<>( 1 );
+
+				position = readNames( mappedFile, position + 1, names );
+				lineStart = true;
+				continue;
+			}
+
+			lineStart = ( b == '\n' || b == '\r' );
+		}
+
+		if( recordStart != -1 )
+			listener.record( names, recordStart, size );
+	}
+
+	/**
+	 * Read the names from the header line starting at the supplied position. Headers are separated
+	 * by ^A, and a name is the part of a header up to the first whitespace.
+	 *
+	 * @return The position of the end of the header line
+	 */
+	private static long readNames( LargeMappedFile mappedFile, long position, List<String> names ) {
+
+		long size = mappedFile.size();
+
+		long nameStart = position;
+		boolean inName = true;
+
+		for( ; position < size; position++ ) {
+
+			byte b = mappedFile.get( position );
+
+			if( b == '\n' || b == '\r' )
+				break;
+
+			if( b == 0x01 ) {
+				if( inName )
+					addName( mappedFile, nameStart, position, names );
+
+				nameStart = position + 1;
+				inName = true;
+
+			} else if( inName && ( b == ' ' || b == '\t' || b == 0x0b || b == '\f' ) ) {
+				addName( mappedFile, nameStart, position, names );
+				inName = false;
+			}
+		}
+
+		if( inName )
+			addName( mappedFile, nameStart, position, names );
+
+		return position;
+	}
+
+	private static void addName( LargeMappedFile mappedFile, long start, long end, List<String> names ) {
+		if( end > start )
+			names.add( new String( mappedFile.getBytes( start, end ), StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Build the persistent index of the supplied FASTA file
+	 *
+	 * @param fastaFile
+	 * @param sampledHash
+	 * @param indexFile
+	 * @throws Exception
+	 */
+	private static void build( File fastaFile, byte[] sampledHash, File indexFile ) throws Exception {
+
+		long fastaSize = fastaFile.length();
+		long fastaLastModified = fastaFile.lastModified();
+
+		// a unique temp file, conversions running at the same time may both build the index
+		File tempFile = File.createTempFile( indexFile.getName() + ".", ".tmp", indexFile.getParentFile() );
+
+		List<String> names = new ArrayList<>();
+		List<Long> namePositions = new ArrayList<>();
+
+		try {
+
+			try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ), 1024 * 1024 ) ) ) {
+
+				// the header is filled in once the position of the name positions is known
+				out.write( new byte[ HEADER_SIZE ] );
+				long[] position = { HEADER_SIZE };
+
+				try( LargeMappedFile mappedFile = new LargeMappedFile( fastaFile ) ) {
+
+					readRecords( mappedFile, ( recordNames, start, end ) -> {
+						for( String name : recordNames ) {
+							byte[] bytes = name.getBytes( StandardCharsets.UTF_8 );
+
+							names.add( name );
+							namePositions.add( position[ 0 ] );
+
+							out.writeInt( bytes.length );
+							out.write( bytes );
+							out.writeLong( start );
+							out.writeLong( end );
+
+							position[ 0 ] += 4 + bytes.length + 16;
+						}
+					} );
+				}
+
+				Integer[] order = new Integer[ names.size() ];
+				for( int i = 0; i < order.length; i++ )
+					order[ i ] = i;
+
+				Arrays.sort( order, ( a, b ) -> names.get( a ).compareTo( names.get( b ) ) );
+
+				long namePositionsPosition = position[ 0 ];
+				for( int i : order )
+					out.writeLong( namePositions.get( i ) );
+
+				out.flush();
+
+				writeHeader( tempFile, fastaSize, fastaLastModified, sampledHash, names.size(), namePositionsPosition );
+			}
+
+			Files.move( tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	private static void writeHeader( File file, long fastaSize, long fastaLastModified, byte[] sampledHash, int nameCount, long namePositionsPosition ) throws Exception {
+
+		try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) ) {
+			raf.seek( 0 );
+			raf.write( MAGIC );
+			raf.writeLong( fastaSize );
+			raf.writeLong( fastaLastModified );
+			raf.write( sampledHash );
+			raf.writeInt( nameCount );
+			raf.writeInt( 0 );
+			raf.writeLong( namePositionsPosition );
+		}
+	}
+
+
+	private final LargeMappedFile mappedFile;
+	private final Map<String, List<long[]>> records;
+
+	private final long fastaSize;
+	private final long fastaLastModified;
+	private final byte[] fastaSampledHash;
+
+	private final int nameCount;
+	private final long namePositionsPosition;
+}
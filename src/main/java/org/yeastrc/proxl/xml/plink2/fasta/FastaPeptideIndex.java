@@ -0,0 +1,757 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.yeastrc.fasta.FASTAEntry;
+import org.yeastrc.fasta.FASTAHeader;
+import org.yeastrc.fasta.FASTAReader;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
+import org.yeastrc.proxl.xml.plink2.utils.LargeMappedFile;
+
+/**
+ * A persistent index of a FASTA file, built once and memory mapped on later conversions, that
+ * answers "which entries contain this peptide" without scanning the FASTA file.
+ *
+ * The index stores every entry of the FASTA file (sequence, and the name, description and taxonomy
+ * id of each header, already parsed) and, for every k-mer of K residues, the list of entries whose
+ * sequence contains it. To find the entries containing a peptide, the posting list of the peptide's
+ * rarest k-mer gives the candidates, and each candidate's sequence is checked for the whole peptide
+ * with a ResidueScanner, directly on the sequence's bytes. Peptides shorter than K (or with no
+ * indexable k-mer) fall back to checking every entry. Residues are matched without regard to case.
+ *
+ * K is chosen from the size of the FASTA file, from 2 to 4 residues: the largest K for which the
+ * fixed per k-mer tables are no larger than the FASTA file. Small databases get a small index, and
+ * large ones get the more selective 4-mers.
+ *
+ * The index is tied to a FASTA file by the file's size, modification time and a SHA-256 of sampled
+ * blocks of the file; if any of these differ, the index is rebuilt.
+ *
+ * File layout (big-endian): a fixed header, then the entry data, the offset of each entry's data,
+ * the number of entries for each k-mer, the start of each k-mer's posting list, and the posting
+ * lists. Each posting list holds ascending entry numbers, stored as variable-length deltas, which
+ * keeps the index to about half the size of fixed-width entry numbers.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class FastaPeptideIndex implements AutoCloseable {
+
+	public static final String INDEX_FILE_SUFFIX = ".pidx";
+
+	private static final byte[] MAGIC = "PXFIDX03".getBytes( StandardCharsets.US_ASCII );
+
+	/**
+	 * The range of the number of residues in an indexed k-mer. Each residue is one of the 26 letters
+	 * A-Z, so there are 26^K k-mers.
+	 */
+	private static final int MIN_K = 2;
+	private static final int MAX_K = 4;
+	private static final int RESIDUE_COUNT = 26;
+
+	/**
+	 * The size of the fixed tables for each k-mer: the number of entries and the start of the posting list
+	 */
+	private static final int BUCKET_TABLE_SIZE = 4 + 8;
+
+	private static final int HEADER_SIZE = 104;
+
+	private static final int HASH_SAMPLE_COUNT = 16;
+	private static final int HASH_SAMPLE_SIZE = 64 * 1024;
+
+	/**
+	 * Get the index for the supplied FASTA file from the supplied directory, building it first if
+	 * it doesn't exist or is out of date
+	 *
+	 * @param fastaFile
+	 * @param indexDirectory
+	 * @return
+	 * @throws Exception
+	 */
+	public static FastaPeptideIndex getIndex( File fastaFile, File indexDirectory ) throws Exception {
+
+		if( !indexDirectory.exists() && !indexDirectory.mkdirs() )
+			throw new Exception( "Could not create FASTA index directory: " + indexDirectory.getAbsolutePath() );
+
+		File indexFile = getIndexFile( fastaFile, indexDirectory );
+		byte[] sampledHash = getSampledHash( fastaFile );
+
+		if( indexFile.exists() ) {
+			FastaPeptideIndex index = null;
+
+			try {
+				index = new FastaPeptideIndex( indexFile );
+			} catch( Exception e ) {
+				// not an index this version can read, or damaged; it's rebuilt
+			}
+
+			if( index != null ) {
+				if( index.isIndexOf( fastaFile, sampledHash ) )
+					return index;
+
+				index.close();
+			}
+		}
+
+		build( fastaFile, sampledHash, indexFile );
+
+		FastaPeptideIndex index = new FastaPeptideIndex( indexFile );
+
+		if( !index.isIndexOf( fastaFile, sampledHash ) ) {
+			index.close();
+			throw new Exception( "FASTA file changed while it was being indexed: " + fastaFile.getAbsolutePath() );
+		}
+
+		return index;
+	}
+
+	/**
+	 * Get the index file for the supplied FASTA file. The name includes a hash of the FASTA file's
+	 * full path, so FASTA files with the same name in different directories don't share an index.
+	 *
+	 * @param fastaFile
+	 * @param indexDirectory
+	 * @return
+	 * @throws Exception
+	 */
+	public static File getIndexFile( File fastaFile, File indexDirectory ) throws Exception {
+		String pathHash = String.format( "%08x", fastaFile.getCanonicalPath().hashCode() );
+		return new File( indexDirectory, fastaFile.getName() + "-" + pathHash + INDEX_FILE_SUFFIX );
+	}
+
+	/**
+	 * Get a SHA-256 of the size of the file and evenly spaced blocks of it, which detects changes to
+	 * the file without reading all of it
+	 *
+	 * @param file
+	 * @return
+	 * @throws Exception
+	 */
+	public static byte[] getSampledHash( File file ) throws Exception {
+
+		MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+
+		try( RandomAccessFile raf = new RandomAccessFile( file, "r" ) ) {
+
+			long size = raf.length();
+			digest.update( Long.toString( size ).getBytes( StandardCharsets.US_ASCII ) );
+
+			byte[] sample = new byte[ HASH_SAMPLE_SIZE ];
+
+			if( size <= (long)HASH_SAMPLE_COUNT * HASH_SAMPLE_SIZE ) {
+
+				int read;
+				while( ( read = raf.read( sample ) ) > 0 )
+					digest.update( sample, 0, read );
+
+			} else {
+
+				long step = ( size - HASH_SAMPLE_SIZE ) / ( HASH_SAMPLE_COUNT - 1 );
+
+				for( int i = 0; i < HASH_SAMPLE_COUNT; i++ ) {
+					raf.seek( i * step );
+					raf.readFully( sample );
+					digest.update( sample );
+				}
+			}
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * Open an existing index file
+	 *
+	 * @param indexFile
+	 * @throws Exception
+	 */
+	public FastaPeptideIndex( File indexFile ) throws Exception {
+
+		mappedFile = new LargeMappedFile( indexFile );
+
+		if( mappedFile.size() < HEADER_SIZE || !Arrays.equals( mappedFile.getBytes( 0, MAGIC.length ), MAGIC ) ) {
+			mappedFile.close();
+			throw new Exception( "Not a FASTA peptide index: " + indexFile.getAbsolutePath() );
+		}
+
+		fastaSize = mappedFile.getLong( 8 );
+		fastaLastModified = mappedFile.getLong( 16 );
+		fastaSampledHash = mappedFile.getBytes( 24, 56 );
+
+		k = mappedFile.getInt( 56 );
+
+		if( k < MIN_K || k > MAX_K ) {
+			mappedFile.close();
+			throw new Exception( "Unsupported FASTA peptide index: " + indexFile.getAbsolutePath() );
+		}
+
+		bucketCount = getKmerCount( k );
+
+		entryCount = mappedFile.getInt( 60 );
+		long postingsCount = mappedFile.getLong( 64 );
+		entryOffsetsPosition = mappedFile.getLong( 72 );
+		bucketOffsetsPosition = mappedFile.getLong( 80 );
+		postingsPosition = mappedFile.getLong( 88 );
+		bucketCountsPosition = mappedFile.getLong( 96 );
+
+		if( !isLayoutValid( postingsCount ) ) {
+			mappedFile.close();
+			throw new Exception( "Damaged FASTA peptide index: " + indexFile.getAbsolutePath() );
+		}
+	}
+
+	/**
+	 * Check the sections given by the header against each other and the size of the file, so a
+	 * truncated or damaged index is never read past its end
+	 *
+	 * @param postingsCount The number of entries in all posting lists
+	 * @return true if the sections follow each other as build() writes them and fit in the file
+	 */
+	private boolean isLayoutValid( long postingsCount ) {
+
+		if( entryCount < 0 || postingsCount < 0 || entryOffsetsPosition < HEADER_SIZE )
+			return false;
+
+		// the sections follow each other with no gaps; each encoded posting takes at least one byte
+		return bucketCountsPosition == entryOffsetsPosition + (long)entryCount * 8 &&
+				bucketOffsetsPosition == bucketCountsPosition + (long)bucketCount * 4 &&
+				postingsPosition == bucketOffsetsPosition + (long)bucketCount * 8 &&
+				postingsPosition + postingsCount <= mappedFile.size();
+	}
+
+	/**
+	 * @param fastaFile
+	 * @param sampledHash
+	 * @return true if this is the index of the supplied FASTA file, as it is now
+	 */
+	private boolean isIndexOf( File fastaFile, byte[] sampledHash ) {
+		return fastaSize == fastaFile.length() &&
+				fastaLastModified == fastaFile.lastModified() &&
+				Arrays.equals( fastaSampledHash, sampledHash );
+	}
+
+	/**
+	 * Get the numbers of all entries whose sequence contains the supplied peptide
+	 *
+	 * @param peptideSequence
+	 * @return
+	 */
+	public List<Integer> getEntriesContaining( String peptideSequence ) {
+
+		// FASTAReader upper cases the sequences
+		peptideSequence = peptideSequence.toUpperCase( Locale.ROOT );
+
+		List<Integer> entries = new ArrayList<>();
+		byte[] peptide = peptideSequence.getBytes( StandardCharsets.UTF_8 );
+
+		int bucket = getRarestBucket( peptideSequence );
+
+		if( bucket == -1 ) {
+
+			for( int i = 0; i < entryCount; i++ ) {
+				if( sequenceContains( i, peptide ) )
+					entries.add( i );
+			}
+
+		} else {
+
+			int count = getBucketCount( bucket );
+			long position = postingsPosition + mappedFile.getLong( bucketOffsetsPosition + (long)bucket * 8 );
+			int entry = 0;
+
+			for( int i = 0; i < count; i++ ) {
+
+				// read the next variable-length delta, 7 bits per byte, low bits first
+				int delta = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = mappedFile.get( position++ );
+					delta |= ( b & 0x7f ) << shift;
+					shift += 7;
+				} while( ( b & 0x80 ) != 0 );
+
+				entry += delta;
+
+				if( sequenceContains( entry, peptide ) )
+					entries.add( entry );
+			}
+		}
+
+		return entries;
+	}
+
+	/**
+	 * @param entry The number of the entry
+	 * @return The sequence of the entry
+	 */
+	public String getSequence( int entry ) {
+
+		long position = getEntryPosition( entry );
+		int length = mappedFile.getInt( position );
+
+		return new String( mappedFile.getBytes( position + 4, position + 4 + length ), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Check the sequence of an entry for a peptide without decoding the sequence to a String
+	 *
+	 * @param entry The number of the entry
+	 * @param peptide The UTF-8 bytes of the peptide
+	 * @return true if the sequence of the entry contains the peptide
+	 */
+	private boolean sequenceContains( int entry, byte[] peptide ) {
+
+		long position = getEntryPosition( entry );
+		int length = mappedFile.getInt( position );
+
+		if( length < peptide.length )
+			return false;
+
+		return ResidueScanner.contains( mappedFile.getBytes( position + 4, position + 4 + length ), peptide );
+	}
+
+	/**
+	 * @param entry The number of the entry
+	 * @return The annotations (one for each header) of the entry
+	 */
+	public Collection<FastaProteinAnnotation> getAnnotations( int entry ) {
+
+		long position = getEntryPosition( entry );
+		position += 4 + mappedFile.getInt( position );
+
+		int headerCount = mappedFile.getInt( position );
+		position += 4;
+
+		Collection<FastaProteinAnnotation> annotations = new ArrayList<>( headerCount );
+
+		for( int i = 0; i < headerCount; i++ ) {
+
+			FastaProteinAnnotation anno = new FastaProteinAnnotation();
+
+			int nameLength = mappedFile.getInt( position );
+			anno.setName( new String( mappedFile.getBytes( position + 4, position + 4 + nameLength ), StandardCharsets.UTF_8 ) );
+			position += 4 + nameLength;
+
+			int descriptionLength = mappedFile.getInt( position );
+			position += 4;
+			if( descriptionLength >= 0 ) {
+				anno.setDescription( new String( mappedFile.getBytes( position, position + descriptionLength ), StandardCharsets.UTF_8 ) );
+				position += descriptionLength;
+			}
+
+			int taxId = mappedFile.getInt( position );
+			position += 4;
+			if( taxId != 0 )
+				anno.setTaxonomId( taxId );
+
+			annotations.add( anno );
+		}
+
+		return annotations;
+	}
+
+	/**
+	 * @return The number of entries in the FASTA file
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	@Override
+	public void close() {
+		mappedFile.close();
+	}
+
+
+	private long getEntryPosition( int entry ) {
+		return mappedFile.getLong( entryOffsetsPosition + (long)entry * 8 );
+	}
+
+	private int getBucketCount( int bucket ) {
+		return mappedFile.getInt( bucketCountsPosition + (long)bucket * 4 );
+	}
+
+	/**
+	 * @return The k-mer of the peptide with the fewest entries, or -1 if the peptide has no indexable k-mer
+	 */
+	private int getRarestBucket( String peptideSequence ) {
+
+		int rarestBucket = -1;
+		long rarestCount = Long.MAX_VALUE;
+
+		for( int i = 0; i + k <= peptideSequence.length(); i++ ) {
+
+			int bucket = getBucket( peptideSequence, i, k );
+			if( bucket == -1 )
+				continue;
+
+			long count = getBucketCount( bucket );
+			if( count < rarestCount ) {
+				rarestBucket = bucket;
+				rarestCount = count;
+			}
+		}
+
+		return rarestBucket;
+	}
+
+	/**
+	 * @return The bucket for the k-mer of k residues starting at the supplied position, or -1 if it has a
+	 *         character other than a letter. Lower case letters are the same as upper case.
+	 */
+	private static int getBucket( CharSequence sequence, int start, int k ) {
+
+		int bucket = 0;
+
+		for( int i = start; i < start + k; i++ ) {
+			char c = sequence.charAt( i );
+
+			if( c >= 'a' && c <= 'z' )
+				c -= 'a' - 'A';
+			else if( c < 'A' || c > 'Z' )
+				return -1;
+
+			bucket = bucket * RESIDUE_COUNT + ( c - 'A' );
+		}
+
+		return bucket;
+	}
+
+	/**
+	 * @param k
+	 * @return The number of k-mers of k residues
+	 */
+	private static int getKmerCount( int k ) {
+
+		int bucketCount = 1;
+		for( int i = 0; i < k; i++ )
+			bucketCount *= RESIDUE_COUNT;
+
+		return bucketCount;
+	}
+
+	/**
+	 * Choose the length of the indexed k-mers for a FASTA file: the largest for which the fixed per
+	 * k-mer tables are no larger than the FASTA file, so a small FASTA file gets a small index
+	 *
+	 * @param fastaSize The size of the FASTA file
+	 * @return
+	 */
+	private static int getK( long fastaSize ) {
+
+		int k = MIN_K;
+		while( k < MAX_K && (long)getKmerCount( k + 1 ) * BUCKET_TABLE_SIZE <= fastaSize )
+			k++;
+
+		return k;
+	}
+
+
+	/**
+	 * Build the index of the supplied FASTA file. The FASTA file is read twice: once to write the
+	 * entries and count the entries for each k-mer, and once to fill in the posting lists.
+	 *
+	 * @param fastaFile
+	 * @param sampledHash
+	 * @param indexFile
+	 * @throws Exception
+	 */
+	private static void build( File fastaFile, byte[] sampledHash, File indexFile ) throws Exception {
+
+		long fastaSize = fastaFile.length();
+		long fastaLastModified = fastaFile.lastModified();
+
+		int k = getK( fastaSize );
+		int bucketCount = getKmerCount( k );
+
+		// a unique temp file, conversions running at the same time may both build the index
+		File tempFile = File.createTempFile( indexFile.getName() + ".", ".tmp", indexFile.getParentFile() );
+
+		long[] bucketCounts = new long[ bucketCount + 1 ];
+		int[] lastEntryForBucket = new int[ bucketCount ];
+
+		long[] entryOffsets = new long[ 1024 ];
+		int entryCount = 0;
+
+		try {
+
+			try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ), 1024 * 1024 ) ) ) {
+
+				// the header is filled in once the positions of the sections are known
+				out.write( new byte[ HEADER_SIZE ] );
+				long position = HEADER_SIZE;
+
+				Arrays.fill( lastEntryForBucket, -1 );
+
+				FASTAReader fastaReader = null;
+
+				try {
+
+					fastaReader = FASTAReader.getInstance( fastaFile );
+
+					for( FASTAEntry entry = fastaReader.readNext(); entry != null; entry = fastaReader.readNext() ) {
+
+						CancellationUtils.checkCancelled();
+
+						if( entryCount == entryOffsets.length )
+							entryOffsets = Arrays.copyOf( entryOffsets, entryOffsets.length * 2 );
+
+						entryOffsets[ entryCount ] = position;
+						position += writeEntry( out, entry );
+
+						String sequence = entry.getSequence();
+						for( int i = 0; i + k <= sequence.length(); i++ ) {
+							int bucket = getBucket( sequence, i, k );
+
+							if( bucket != -1 && lastEntryForBucket[ bucket ] != entryCount ) {
+								lastEntryForBucket[ bucket ] = entryCount;
+								bucketCounts[ bucket ]++;
+							}
+						}
+
+						entryCount++;
+					}
+
+				} finally {
+					if( fastaReader != null ) {
+						fastaReader.close();
+						fastaReader = null;
+					}
+				}
+
+				long entryOffsetsPosition = position;
+				for( int i = 0; i < entryCount; i++ )
+					out.writeLong( entryOffsets[ i ] );
+				position += (long)entryCount * 8;
+
+				// turn the counts into the start of each bucket's posting list
+				long postingsCount = 0;
+				for( int i = 0; i <= bucketCount; i++ ) {
+					long count = bucketCounts[ i ];
+					bucketCounts[ i ] = postingsCount;
+					postingsCount += count;
+				}
+
+				if( postingsCount > Integer.MAX_VALUE - 8 )
+					throw new Exception( "FASTA file too large to index: " + fastaFile.getAbsolutePath() );
+
+				int[] postings = getPostings( fastaFile, k, bucketCounts, lastEntryForBucket, (int)postingsCount );
+
+				long bucketCountsPosition = position;
+				for( int i = 0; i < bucketCount; i++ )
+					out.writeInt( (int)( bucketCounts[ i + 1 ] - bucketCounts[ i ] ) );
+				position += (long)bucketCount * 4;
+
+				// the byte offset of each bucket's encoded posting list
+				long bucketOffsetsPosition = position;
+				long encodedSize = 0;
+				for( int i = 0; i < bucketCount; i++ ) {
+					out.writeLong( encodedSize );
+
+					int previous = 0;
+					for( long j = bucketCounts[ i ]; j < bucketCounts[ i + 1 ]; j++ ) {
+						encodedSize += getVarIntSize( postings[ (int)j ] - previous );
+						previous = postings[ (int)j ];
+					}
+				}
+				position += (long)bucketCount * 8;
+
+				long postingsPosition = position;
+				for( int i = 0; i < bucketCount; i++ ) {
+
+					int previous = 0;
+					for( long j = bucketCounts[ i ]; j < bucketCounts[ i + 1 ]; j++ ) {
+						writeVarInt( out, postings[ (int)j ] - previous );
+						previous = postings[ (int)j ];
+					}
+				}
+
+				out.flush();
+
+				writeHeader( tempFile, fastaSize, fastaLastModified, sampledHash, k, entryCount, postingsCount,
+						entryOffsetsPosition, bucketOffsetsPosition, postingsPosition, bucketCountsPosition );
+			}
+
+			Files.move( tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Read the FASTA file again to fill in the posting list for each bucket
+	 */
+	private static int[] getPostings( File fastaFile, int k, long[] bucketStarts, int[] lastEntryForBucket, int postingsCount ) throws Exception {
+
+		int[] postings = new int[ postingsCount ];
+		long[] next = Arrays.copyOf( bucketStarts, lastEntryForBucket.length );
+
+		Arrays.fill( lastEntryForBucket, -1 );
+		int entryNumber = 0;
+
+		FASTAReader fastaReader = null;
+
+		try {
+
+			fastaReader = FASTAReader.getInstance( fastaFile );
+
+			for( FASTAEntry entry = fastaReader.readNext(); entry != null; entry = fastaReader.readNext() ) {
+
+				CancellationUtils.checkCancelled();
+
+				String sequence = entry.getSequence();
+				for( int i = 0; i + k <= sequence.length(); i++ ) {
+					int bucket = getBucket( sequence, i, k );
+
+					if( bucket != -1 && lastEntryForBucket[ bucket ] != entryNumber ) {
+						lastEntryForBucket[ bucket ] = entryNumber;
+						postings[ (int)next[ bucket ]++ ] = entryNumber;
+					}
+				}
+
+				entryNumber++;
+			}
+
+		} finally {
+			if( fastaReader != null ) {
+				fastaReader.close();
+				fastaReader = null;
+			}
+		}
+
+		return postings;
+	}
+
+	/**
+	 * Write a single entry: its sequence and, for each header, the name, description and taxonomy id
+	 *
+	 * @return The number of bytes written
+	 */
+	private static long writeEntry( DataOutputStream out, FASTAEntry entry ) throws Exception {
+
+		long written = 0;
+
+		written += writeString( out, entry.getSequence() );
+
+		out.writeInt( entry.getHeaders().size() );
+		written += 4;
+
+		for( FASTAHeader header : entry.getHeaders() ) {
+			written += writeString( out, header.getName() );
+			written += writeString( out, header.getDescription() );
+
+			Integer taxId = TaxonomyIdResolver.getInstance().getTaxonomyId( header.getName(), header.getDescription() );
+			out.writeInt( taxId == null ? 0 : taxId );
+			written += 4;
+		}
+
+		return written;
+	}
+
+	/**
+	 * Write a string as its length in UTF-8 bytes (-1 for null) followed by the bytes
+	 *
+	 * @return The number of bytes written
+	 */
+	private static long writeString( DataOutputStream out, String s ) throws Exception {
+
+		if( s == null ) {
+			out.writeInt( -1 );
+			return 4;
+		}
+
+		byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+		out.writeInt( bytes.length );
+		out.write( bytes );
+
+		return 4 + bytes.length;
+	}
+
+	private static int getVarIntSize( int value ) {
+		int size = 1;
+		while( ( value >>>= 7 ) != 0 )
+			size++;
+
+		return size;
+	}
+
+	/**
+	 * Write a non-negative int in 7 bit groups, low bits first, with the high bit set on all but the last byte
+	 */
+	private static void writeVarInt( DataOutputStream out, int value ) throws Exception {
+
+		while( ( value & ~0x7f ) != 0 ) {
+			out.write( ( value & 0x7f ) | 0x80 );
+			value >>>= 7;
+		}
+
+		out.write( value );
+	}
+
+	private static void writeHeader( File file, long fastaSize, long fastaLastModified, byte[] sampledHash, int k, int entryCount, long postingsCount,
+			long entryOffsetsPosition, long bucketOffsetsPosition, long postingsPosition, long bucketCountsPosition ) throws Exception {
+
+		try( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) ) {
+			raf.seek( 0 );
+			raf.write( MAGIC );
+			raf.writeLong( fastaSize );
+			raf.writeLong( fastaLastModified );
+			raf.write( sampledHash );
+			raf.writeInt( k );
+			raf.writeInt( entryCount );
+			raf.writeLong( postingsCount );
+			raf.writeLong( entryOffsetsPosition );
+			raf.writeLong( bucketOffsetsPosition );
+			raf.writeLong( postingsPosition );
+			raf.writeLong( bucketCountsPosition );
+		}
+	}
+
+
+	private final LargeMappedFile mappedFile;
+
+	private final long fastaSize;
+	private final long fastaLastModified;
+	private final byte[] fastaSampledHash;
+
+	private final int k;
+	private final int bucketCount;
+
+	private final int entryCount;
+	private final long entryOffsetsPosition;
+	private final long bucketOffsetsPosition;
+	private final long postingsPosition;
+	private final long bucketCountsPosition;
+}
@@ -0,0 +1,71 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2016-2018 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.util.Objects;
+
+/**
+ * An annotation for a protein in a Fasta file
+ * 
+ * @author mriffle
+ *
+ */
+public class FastaProteinAnnotation {
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		FastaProteinAnnotation that = (FastaProteinAnnotation) o;
+		return name.equals(that.name) &&
+				Objects.equals(description, that.description) &&
+				Objects.equals(taxonomId, that.taxonomId);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(name, description, taxonomId);
+	}
+
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public String getDescription() {
+		return description;
+	}
+	public void setDescription(String description) {
+		this.description = description;
+	}
+	public Integer getTaxonomId() {
+		return taxonomId;
+	}
+	public void setTaxonomId(Integer taxonomId) {
+		this.taxonomId = taxonomId;
+	}
+
+	
+	
+	private String name;
+	private String description;
+	private Integer taxonomId;
+	
+}
@@ -0,0 +1,197 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.yeastrc.fasta.FASTAEntry;
+import org.yeastrc.fasta.FASTAReader;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
+import org.yeastrc.proxl.xml.plink2.utils.LargeMappedFile;
+
+/**
+ * Scan a FASTA file for matched proteins in two passes over a memory mapping of the file, so that
+ * heap use depends on the number of matched proteins rather than the size of the FASTA file.
+ *
+ * The first pass runs the raw bytes of every sequence through the PeptideMatcher without creating
+ * any Strings, and records only the start and end offsets of the records whose sequence contains a
+ * peptide. The second pass parses just those records with FASTAReader and adds them to a
+ * MatchedProteinCollector, which does the decoy checks and builds the annotations.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class MappedFASTAScanner {
+
+	public static MappedFASTAScanner getInstance() { return new MappedFASTAScanner(); }
+
+	/**
+	 * Get the matched proteins from the supplied FASTA file
+	 *
+	 * @param fastaFile
+	 * @param peptideMatcher
+	 * @param decoyLabelMatcher
+	 * @return
+	 * @throws Exception
+	 */
+	public MatchedProteinCollector scan( File fastaFile, PeptideMatcher peptideMatcher, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+
+		MatchedProteinCollector collector = new MatchedProteinCollector( peptideMatcher, decoyLabelMatcher );
+
+		try( LargeMappedFile mappedFile = new LargeMappedFile( fastaFile ) ) {
+
+			long[] matchedRecords = findMatchedRecords( mappedFile, peptideMatcher );
+
+			for( int i = 0; i < matchedRecords.length; i += 2 ) {
+				CancellationUtils.checkCancelled();
+				addRecord( mappedFile, matchedRecords[ i ], matchedRecords[ i + 1 ], collector );
+			}
+		}
+
+		return collector;
+	}
+
+	/**
+	 * Get the matched proteins from only the supplied records of the FASTA file, e.g., those found
+	 * with a FastaNameIndex
+	 *
+	 * @param fastaFile
+	 * @param records The start (inclusive) and end (exclusive) offsets of each record
+	 * @param peptideMatcher
+	 * @param decoyLabelMatcher
+	 * @return
+	 * @throws Exception
+	 */
+	public MatchedProteinCollector scanRecords( File fastaFile, Collection<long[]> records, PeptideMatcher peptideMatcher, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+
+		MatchedProteinCollector collector = new MatchedProteinCollector( peptideMatcher, decoyLabelMatcher );
+
+		try( LargeMappedFile mappedFile = new LargeMappedFile( fastaFile ) ) {
+
+			for( long[] record : records ) {
+				CancellationUtils.checkCancelled();
+				addRecord( mappedFile, record[ 0 ], record[ 1 ], collector );
+			}
+		}
+
+		return collector;
+	}
+
+	/**
+	 * First pass: find the records whose sequence contains any of the peptides
+	 *
+	 * @param mappedFile
+	 * @param peptideMatcher
+	 * @return Pairs of start (inclusive) and end (exclusive) offsets of the matched records
+	 */
+	private long[] findMatchedRecords( LargeMappedFile mappedFile, PeptideMatcher peptideMatcher ) throws InterruptedException {
+
+		long[] matchedRecords = new long[ 64 ];
+		int matchedCount = 0;
+
+		long size = mappedFile.size();
+
+		long recordStart = -1;
+		boolean inHeader = false;
+		boolean matched = false;
+		boolean lineStart = true;
+		int state = peptideMatcher.getInitialState();
+
+		for( long position = 0; position < size; position++ ) {
+
+			byte b = mappedFile.get( position );
+
+			if( lineStart && b == '>' ) {
+
+				CancellationUtils.checkCancelled();
+
+				// the start of a new record ends the previous one
+				if( matched ) {
+					matchedRecords = add( matchedRecords, matchedCount, recordStart, position );
+					matchedCount += 2;
+				}
+
+				recordStart = position;
+				inHeader = true;
+				matched = false;
+				state = peptideMatcher.getInitialState();
+			}
+
+			lineStart = ( b == '\n' || b == '\r' );
+
+			if( inHeader ) {
+				if( lineStart )
+					inHeader = false;
+
+				continue;
+			}
+
+			if( matched || recordStart == -1 || lineStart )
+				continue;
+
+			state = peptideMatcher.getNextState( state, b );
+			if( peptideMatcher.isMatch( state ) )
+				matched = true;
+		}
+
+		if( matched ) {
+			matchedRecords = add( matchedRecords, matchedCount, recordStart, size );
+			matchedCount += 2;
+		}
+
+		return Arrays.copyOf( matchedRecords, matchedCount );
+	}
+
+	/**
+	 * Second pass: parse a single matched record and add it to the collector
+	 */
+	private void addRecord( LargeMappedFile mappedFile, long start, long end, MatchedProteinCollector collector ) throws Exception {
+
+		FASTAReader fastaReader = null;
+
+		try {
+
+			fastaReader = FASTAReader.getInstance( new ByteArrayInputStream( mappedFile.getBytes( start, end ) ) );
+
+			for( FASTAEntry entry = fastaReader.readNext(); entry != null; entry = fastaReader.readNext() )
+				collector.addEntry( entry );
+
+		} finally {
+			if( fastaReader != null ) {
+				fastaReader.close();
+				fastaReader = null;
+			}
+		}
+	}
+
+	private long[] add( long[] array, int count, long start, long end ) {
+
+		if( count + 2 > array.length )
+			array = Arrays.copyOf( array, array.length * 2 );
+
+		array[ count ] = start;
+		array[ count + 1 ] = end;
+
+		return array;
+	}
+
+}
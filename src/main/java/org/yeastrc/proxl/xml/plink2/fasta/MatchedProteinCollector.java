@@ -0,0 +1,155 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.yeastrc.fasta.FASTAEntry;
+import org.yeastrc.fasta.FASTAHeader;
+
+/**
+ * Collects the distinct target protein sequences that contain any of the peptides found in the
+ * experiment, each mapped to the annotations (name, description, taxonomy id) for that sequence
+ * from the FASTA file. Entries are offered one at a time; decoys and entries without a peptide
+ * are skipped.
+ *
+ * Not thread safe: when scanning in parallel, use one collector per thread and merge them.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class MatchedProteinCollector {
+
+	/**
+	 * @param peptideMatcher Finds the peptides found in the experiment in a protein sequence
+	 * @param decoyLabelMatcher An entry is a decoy if any of its names is a decoy according to this
+	 */
+	public MatchedProteinCollector( PeptideMatcher peptideMatcher, DecoyLabelMatcher decoyLabelMatcher ) {
+		this.peptideMatcher = peptideMatcher;
+		this.decoyLabelMatcher = decoyLabelMatcher;
+	}
+
+	/**
+	 * Add the supplied FASTA entry, if it is a target protein containing any of the peptides
+	 *
+	 * @param entry
+	 * @throws Exception
+	 */
+	public void addEntry( FASTAEntry entry ) throws Exception {
+
+		if( decoyLabelMatcher.isDecoy( entry ) )
+			return;
+
+		if( !peptideMatcher.containsAny( entry.getSequence() ) )
+			return;
+
+		for( FastaProteinAnnotation anno : getAnnotations( entry ) ) {
+
+			if( !proteinAnnotations.containsKey( entry.getSequence() ) )
+				proteinAnnotations.put( entry.getSequence(), new HashSet<FastaProteinAnnotation>() );
+
+			proteinAnnotations.get( entry.getSequence() ).add( anno );
+		}
+	}
+
+	/**
+	 * Get the annotations (name, description and taxonomy id) for each header of the supplied FASTA entry
+	 *
+	 * @param entry
+	 * @return
+	 * @throws Exception
+	 */
+	public static Collection<FastaProteinAnnotation> getAnnotations( FASTAEntry entry ) throws Exception {
+
+		Collection<FastaProteinAnnotation> annotations = new ArrayList<>( entry.getHeaders().size() );
+
+		for( FASTAHeader header : entry.getHeaders() ) {
+
+			FastaProteinAnnotation anno = new FastaProteinAnnotation();
+			anno.setName( header.getName() );
+			anno.setDescription( header.getDescription() );
+
+			Integer taxId = TaxonomyIdResolver.getInstance().getTaxonomyId( header.getName(), header.getDescription() );
+			if( taxId != null )
+				anno.setTaxonomId( taxId );
+
+			annotations.add( anno );
+		}
+
+		return annotations;
+	}
+
+	/**
+	 * Add a protein whose headers have already been parsed into annotations (e.g., read from a
+	 * FastaPeptideIndex), if it is a target protein containing any of the peptides
+	 *
+	 * @param sequence
+	 * @param annotations The annotations for all headers of the entry
+	 */
+	public void addAnnotatedEntry( String sequence, Collection<FastaProteinAnnotation> annotations ) {
+
+		for( FastaProteinAnnotation anno : annotations ) {
+			if( decoyLabelMatcher.isDecoy( anno.getName() ) )
+				return;
+		}
+
+		if( !peptideMatcher.containsAny( sequence ) )
+			return;
+
+		if( !proteinAnnotations.containsKey( sequence ) )
+			proteinAnnotations.put( sequence, new HashSet<FastaProteinAnnotation>() );
+
+		proteinAnnotations.get( sequence ).addAll( annotations );
+	}
+
+	/**
+	 * Add all proteins found by another collector to this one. Annotations for a sequence found by
+	 * both are combined, as if all entries had been added to this collector.
+	 *
+	 * @param other
+	 */
+	public void addAll( MatchedProteinCollector other ) {
+
+		for( Map.Entry<String, Collection<FastaProteinAnnotation>> entry : other.proteinAnnotations.entrySet() ) {
+
+			Collection<FastaProteinAnnotation> annotations = proteinAnnotations.get( entry.getKey() );
+
+			if( annotations == null )
+				proteinAnnotations.put( entry.getKey(), entry.getValue() );
+			else
+				annotations.addAll( entry.getValue() );
+		}
+	}
+
+	/**
+	 * @return The distinct protein sequences found, mapped to their annotations
+	 */
+	public Map<String, Collection<FastaProteinAnnotation>> getProteins() {
+		return proteinAnnotations;
+	}
+
+	private final PeptideMatcher peptideMatcher;
+	private final DecoyLabelMatcher decoyLabelMatcher;
+
+	private final Map<String, Collection<FastaProteinAnnotation>> proteinAnnotations = new HashMap<>();
+}
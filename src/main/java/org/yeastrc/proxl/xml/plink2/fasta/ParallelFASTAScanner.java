@@ -0,0 +1,219 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.yeastrc.fasta.FASTAEntry;
+import org.yeastrc.fasta.FASTAReader;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
+
+/**
+ * Scan a FASTA file for matched proteins on several threads. The file is split into chunks that
+ * each start at the beginning of a record (a '>' at the start of a line); each chunk is parsed with
+ * its own FASTAReader and MatchedProteinCollector on a work-stealing pool, and the per-chunk results
+ * are merged by sequence, giving the same result as scanning the file on one thread.
+ *
+ * The scan is cancelled by interrupting the calling thread: it stops waiting for the chunks, and the
+ * pool is shut down, which interrupts the threads still scanning chunks so they stop at their next entry.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ParallelFASTAScanner {
+
+	/**
+	 * Chunks are at least this large, so small FASTA files are scanned as a single chunk
+	 */
+	private static final int MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Chunks are read fully into memory, so they are kept to a moderate size
+	 */
+	private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	private static final int BOUNDARY_SEARCH_BUFFER_SIZE = 64 * 1024;
+
+	public static ParallelFASTAScanner getInstance() { return new ParallelFASTAScanner(); }
+
+	/**
+	 * Get the matched proteins from the supplied FASTA file
+	 *
+	 * @param fastaFile
+	 * @param peptideMatcher
+	 * @param decoyLabelMatcher
+	 * @param threads The number of threads to use
+	 * @return
+	 * @throws Exception
+	 */
+	public MatchedProteinCollector scan( File fastaFile, PeptideMatcher peptideMatcher, DecoyLabelMatcher decoyLabelMatcher, int threads ) throws Exception {
+
+		List<long[]> chunks = getChunks( fastaFile, threads );
+
+		if( chunks.size() == 1 )
+			return scanChunk( fastaFile, chunks.get( 0 ), peptideMatcher, decoyLabelMatcher );
+
+		ForkJoinPool pool = new ForkJoinPool( threads );
+
+		try {
+
+			List<Future<MatchedProteinCollector>> futures = new ArrayList<>( chunks.size() );
+			for( long[] chunk : chunks )
+				futures.add( pool.submit( () -> scanChunk( fastaFile, chunk, peptideMatcher, decoyLabelMatcher ) ) );
+
+			MatchedProteinCollector result = new MatchedProteinCollector( peptideMatcher, decoyLabelMatcher );
+
+			for( Future<MatchedProteinCollector> future : futures ) {
+				try {
+					result.addAll( future.get() );
+				} catch( ExecutionException e ) {
+					if( e.getCause() instanceof Exception )
+						throw (Exception)e.getCause();
+
+					throw e;
+				}
+			}
+
+			return result;
+
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Parse the entries in a single chunk of the FASTA file
+	 */
+	private MatchedProteinCollector scanChunk( File fastaFile, long[] chunk, PeptideMatcher peptideMatcher, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+
+		MatchedProteinCollector collector = new MatchedProteinCollector( peptideMatcher, decoyLabelMatcher );
+
+		byte[] bytes = new byte[ (int)( chunk[ 1 ] - chunk[ 0 ] ) ];
+
+		try( RandomAccessFile raf = new RandomAccessFile( fastaFile, "r" ) ) {
+			raf.seek( chunk[ 0 ] );
+			raf.readFully( bytes );
+		}
+
+		FASTAReader fastaReader = null;
+
+		try {
+
+			fastaReader = FASTAReader.getInstance( new ByteArrayInputStream( bytes ) );
+
+			for( FASTAEntry entry = fastaReader.readNext(); entry != null; entry = fastaReader.readNext() ) {
+				CancellationUtils.checkCancelled();
+				collector.addEntry( entry );
+			}
+
+		} finally {
+			if( fastaReader != null ) {
+				fastaReader.close();
+				fastaReader = null;
+			}
+		}
+
+		return collector;
+	}
+
+	/**
+	 * Split the FASTA file into chunks of roughly equal size, each starting at the beginning of a record
+	 *
+	 * @param fastaFile
+	 * @param threads
+	 * @return The start (inclusive) and end (exclusive) offset of each chunk
+	 * @throws Exception
+	 */
+	private List<long[]> getChunks( File fastaFile, int threads ) throws Exception {
+
+		long fileSize = fastaFile.length();
+
+		// a few chunks per thread, so that work stealing can even out chunks that take longer
+		long targetChunkSize = fileSize / ( Math.max( threads, 1 ) * 4L );
+		targetChunkSize = Math.max( MIN_CHUNK_SIZE, Math.min( MAX_CHUNK_SIZE, targetChunkSize ) );
+
+		List<long[]> chunks = new ArrayList<>();
+
+		try( RandomAccessFile raf = new RandomAccessFile( fastaFile, "r" ) ) {
+
+			FileChannel channel = raf.getChannel();
+			long start = 0;
+
+			while( start < fileSize ) {
+
+				long end = start + targetChunkSize >= fileSize ? fileSize : findRecordStart( channel, start + targetChunkSize, fileSize );
+
+				if( end - start > Integer.MAX_VALUE )
+					throw new Exception( "FASTA record too large to scan in parallel in: " + fastaFile.getAbsolutePath() );
+
+				chunks.add( new long[] { start, end } );
+				start = end;
+			}
+		}
+
+		if( chunks.isEmpty() )
+			chunks.add( new long[] { 0, 0 } );
+
+		return chunks;
+	}
+
+	/**
+	 * Find the first '>' at the start of a line at or after the supplied position
+	 *
+	 * @return The offset of the '>', or the file size if there are no more records
+	 */
+	private long findRecordStart( FileChannel channel, long position, long fileSize ) throws Exception {
+
+		ByteBuffer buffer = ByteBuffer.allocate( BOUNDARY_SEARCH_BUFFER_SIZE );
+
+		// start one byte early so a '>' right at position can be checked for a preceding line break
+		long bufferStart = position - 1;
+
+		while( bufferStart < fileSize ) {
+
+			buffer.clear();
+			int read = channel.read( buffer, bufferStart );
+			if( read <= 0 )
+				break;
+
+			for( int i = 1; i < read; i++ ) {
+				if( buffer.get( i ) == '>' && ( buffer.get( i - 1 ) == '\n' || buffer.get( i - 1 ) == '\r' ) )
+					return bufferStart + i;
+			}
+
+			// overlap by one byte to see line breaks at the end of this buffer
+			bufferStart += read - 1;
+
+			if( read == 1 )
+				break;
+		}
+
+		return fileSize;
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds whether a protein sequence contains any of a set of peptide sequences, using an
+ * Aho-Corasick automaton built from the peptides. Each protein sequence is read once, one
+ * character at a time, so the time to check a protein depends only on its length and not on
+ * the number of peptides.
+ *
+ * The automaton (see AhoCorasickAutomaton) is compiled over the alphabet of the peptides
+ * (case-insensitive), so matching is a single table lookup per character. Characters not found
+ * in any peptide send the automaton back to the start.
+ *
+ * Instances are immutable after construction and may be used from multiple threads.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PeptideMatcher {
+
+	/**
+	 * @param peptideSequences The peptide sequences to find
+	 */
+	public PeptideMatcher( Collection<String> peptideSequences ) {
+
+		symbolForChar = buildAlphabet( peptideSequences );
+
+		int alphabetSize = 0;
+		for( int symbol : symbolForChar )
+			alphabetSize = Math.max( alphabetSize, symbol );
+
+		List<String> peptides = new ArrayList<>( peptideSequences.size() );
+		for( String peptide : peptideSequences ) {
+			if( !peptide.isEmpty() )
+				peptides.add( peptide );
+		}
+
+		automaton = new AhoCorasickAutomaton( peptides, alphabetSize, c -> symbolForChar[ c ] );
+	}
+
+	/**
+	 * @param sequence A protein sequence
+	 * @return true if the sequence contains at least one of the peptides
+	 */
+	public boolean containsAny( CharSequence sequence ) {
+
+		int state = AhoCorasickAutomaton.ROOT;
+
+		for( int i = 0; i < sequence.length(); i++ ) {
+			char c = sequence.charAt( i );
+
+			state = automaton.getNextState( state, c < 128 ? symbolForChar[ c ] : 0 );
+			if( automaton.isMatch( state ) )
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Check a protein sequence held as ASCII bytes, e.g., read directly from a FASTA file. Bytes
+	 * that are not letters (such as line breaks) are skipped, so a sequence spanning several lines
+	 * may be checked in one call.
+	 *
+	 * @param bytes
+	 * @param start The index of the first byte of the sequence
+	 * @param end The index after the last byte of the sequence
+	 * @return true if the sequence contains at least one of the peptides
+	 */
+	public boolean containsAny( byte[] bytes, int start, int end ) {
+
+		int state = AhoCorasickAutomaton.ROOT;
+
+		for( int i = start; i < end; i++ ) {
+			int b = bytes[ i ];
+
+			if( b == '\n' || b == '\r' )
+				continue;
+
+			state = automaton.getNextState( state, b >= 0 ? symbolForChar[ b ] : 0 );
+			if( automaton.isMatch( state ) )
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The state to start matching a new sequence from, for use with getNextState()
+	 */
+	public int getInitialState() {
+		return AhoCorasickAutomaton.ROOT;
+	}
+
+	/**
+	 * Advance the automaton by one byte of a sequence, for callers that feed a sequence a byte at a time
+	 *
+	 * @param state The current state
+	 * @param b The next byte of the sequence
+	 * @return The new state
+	 */
+	public int getNextState( int state, byte b ) {
+		return automaton.getNextState( state, b >= 0 ? symbolForChar[ b ] : 0 );
+	}
+
+	/**
+	 * @param state
+	 * @return true if reaching the supplied state means one of the peptides has been found
+	 */
+	public boolean isMatch( int state ) {
+		return automaton.isMatch( state );
+	}
+
+	/**
+	 * @return The number of states in the automaton
+	 */
+	public int getStateCount() {
+		return automaton.getStateCount();
+	}
+
+
+	/**
+	 * Map each ASCII character found in the peptides to a symbol from 1..n, case-insensitive. All
+	 * other characters map to 0.
+	 */
+	private static int[] buildAlphabet( Collection<String> peptideSequences ) {
+
+		int[] symbols = new int[ 128 ];
+		int nextSymbol = 1;
+
+		for( String peptide : peptideSequences ) {
+			for( int i = 0; i < peptide.length(); i++ ) {
+				char c = Character.toUpperCase( peptide.charAt( i ) );
+
+				if( c >= 128 )
+					throw new IllegalArgumentException( "Unsupported character in peptide sequence: " + peptide );
+
+				if( symbols[ c ] == 0 ) {
+					symbols[ c ] = nextSymbol++;
+
+					char lower = Character.toLowerCase( c );
+					if( lower < 128 )
+						symbols[ lower ] = symbols[ c ];
+				}
+			}
+		}
+
+		return symbols;
+	}
+
+
+	private final int[] symbolForChar;
+	private final AhoCorasickAutomaton automaton;
+}
@@ -0,0 +1,272 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A process-wide cache of PreparedFASTADatabases, so that conversions run one after another in the
+ * same process (e.g., several searches against the same FASTA file) read and parse the FASTA file
+ * only once.
+ *
+ * A database is cached under the FASTA file's canonical path, size and modification time, and the
+ * decoy labels used to prepare it, so a changed FASTA file or different decoy labels are prepared
+ * again. The cache is bounded by the approximate heap used by the cached databases: when a new
+ * database would go over the maximum, the least recently used databases are evicted. A database
+ * larger than the maximum on its own is not cached.
+ *
+ * If several threads ask for the same database at once, it is prepared once and shared.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PreparedFASTACache {
+
+	/**
+	 * The default maximum size of the cache, a quarter of the maximum heap
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = Runtime.getRuntime().maxMemory() / 4;
+
+	private static final PreparedFASTACache _INSTANCE = new PreparedFASTACache();
+
+	public static PreparedFASTACache getInstance() { return _INSTANCE; }
+
+	private PreparedFASTACache() { }
+
+	/**
+	 * Get the prepared target entries of the supplied FASTA file from the cache, preparing them first if
+	 * they aren't cached
+	 *
+	 * @param fastaFile
+	 * @param decoyLabelMatcher Entries that are decoys according to this are left out
+	 * @return
+	 * @throws Exception
+	 */
+	public PreparedFASTADatabase get( File fastaFile, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+
+		Key key = new Key( fastaFile, decoyLabelMatcher );
+
+		CompletableFuture<PreparedFASTADatabase> future;
+		boolean prepareHere = false;
+
+		synchronized( this ) {
+
+			PreparedFASTADatabase database = cache.get( key );
+
+			if( database != null ) {
+				hits++;
+				return database;
+			}
+
+			future = preparing.get( key );
+
+			if( future == null ) {
+				misses++;
+				future = new CompletableFuture<>();
+				preparing.put( key, future );
+				prepareHere = true;
+			} else {
+				hits++;
+			}
+		}
+
+		if( !prepareHere )
+			return PreparedFASTADatabase.getPrepared( future );
+
+		try {
+
+			PreparedFASTADatabase database = PreparedFASTADatabase.prepare( fastaFile, decoyLabelMatcher );
+
+			synchronized( this ) {
+				preparing.remove( key );
+				add( key, database );
+			}
+
+			future.complete( database );
+			return database;
+
+		} catch( Exception e ) {
+
+			synchronized( this ) {
+				preparing.remove( key );
+			}
+
+			future.completeExceptionally( new CompletionException( e ) );
+			throw e;
+		}
+	}
+
+	/**
+	 * Add a database to the cache, evicting the least recently used databases to make room
+	 */
+	private void add( Key key, PreparedFASTADatabase database ) {
+
+		if( database.getApproximateSize() > maximumSize )
+			return;
+
+		cache.put( key, database );
+		size += database.getApproximateSize();
+
+		evict( maximumSize );
+	}
+
+	/**
+	 * Evict the least recently used databases until the cache is no larger than the supplied size
+	 */
+	private void evict( long targetSize ) {
+
+		Iterator<PreparedFASTADatabase> iterator = cache.values().iterator();
+
+		while( size > targetSize && iterator.hasNext() ) {
+			size -= iterator.next().getApproximateSize();
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Remove all databases from the cache
+	 */
+	public synchronized void clear() {
+		size = 0;
+		cache.clear();
+	}
+
+	/**
+	 * @return The maximum approximate heap used by the cached databases, in bytes
+	 */
+	public synchronized long getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @param maximumSize The maximum approximate heap used by the cached databases, in bytes. Databases
+	 * are evicted right away if the cache is now larger than this.
+	 */
+	public synchronized void setMaximumSize( long maximumSize ) {
+		this.maximumSize = maximumSize;
+		evict( maximumSize );
+	}
+
+	/**
+	 * @return The approximate heap used by the cached databases, in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The FASTA files of the cached databases, least recently used first
+	 */
+	public synchronized List<File> getCachedFiles() {
+
+		List<File> files = new ArrayList<>();
+		for( Key key : cache.keySet() )
+			files.add( new File( key.path ) );
+
+		return Collections.unmodifiableList( files );
+	}
+
+	/**
+	 * @return The number of requests answered from the cache (or by waiting for another thread preparing the same database)
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return The number of requests for which the database was prepared
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return The number of databases evicted to keep the cache under its maximum size
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return A one line summary of the cache's use so far
+	 */
+	public synchronized String getStatistics() {
+		return String.format( "Prepared FASTA cache: %d hits, %d misses, %d evictions, %d cached (%.1f of %.1f MB)",
+				hits, misses, evictions, cache.size(), size / 1048576.0, maximumSize / 1048576.0 );
+	}
+
+
+	/**
+	 * What a cached database was prepared from
+	 */
+	private static class Key {
+
+		Key( File fastaFile, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+			this.path = fastaFile.getCanonicalPath();
+			this.size = fastaFile.length();
+			this.lastModified = fastaFile.lastModified();
+			this.decoyLabels = new TreeSet<>( decoyLabelMatcher.getDecoyLabels() ).toString();
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if( this == o ) return true;
+			if( o == null || getClass() != o.getClass() ) return false;
+			Key that = (Key) o;
+			return size == that.size &&
+					lastModified == that.lastModified &&
+					path.equals( that.path ) &&
+					decoyLabels.equals( that.decoyLabels );
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash( path, size, lastModified, decoyLabels );
+		}
+
+		private final String path;
+		private final long size;
+		private final long lastModified;
+		private final String decoyLabels;
+	}
+
+
+	// in access order, so iteration starts at the least recently used
+	private final Map<Key, PreparedFASTADatabase> cache = new LinkedHashMap<>( 16, 0.75f, true );
+	private final Map<Key, CompletableFuture<PreparedFASTADatabase>> preparing = new HashMap<>();
+
+	private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+	private long size = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+}
@@ -0,0 +1,200 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import org.yeastrc.fasta.FASTAEntry;
+import org.yeastrc.fasta.FASTAReader;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
+
+/**
+ * The target entries of a FASTA file, read and with their headers parsed into annotations (including
+ * the taxonomy ids), ready to be checked for the peptides found in the experiment.
+ *
+ * None of this depends on the search results, so it can be prepared in the background (see
+ * prepareAsync()) while the pLink results are read; finding the matched proteins is then only a
+ * pass over the prepared sequences with a PeptideMatcher. The whole target database is kept on the
+ * heap while it is used.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PreparedFASTADatabase {
+
+	/**
+	 * Read and prepare the target entries of the supplied FASTA file
+	 *
+	 * @param fastaFile
+	 * @param decoyLabelMatcher Entries that are decoys according to this are left out
+	 * @return
+	 * @throws Exception
+	 */
+	public static PreparedFASTADatabase prepare( File fastaFile, DecoyLabelMatcher decoyLabelMatcher ) throws Exception {
+
+		PreparedFASTADatabase database = new PreparedFASTADatabase();
+
+		FASTAReader fastaReader = null;
+
+		try {
+
+			fastaReader = FASTAReader.getInstance( fastaFile );
+
+			for( FASTAEntry entry = fastaReader.readNext(); entry != null; entry = fastaReader.readNext() ) {
+
+				if( decoyLabelMatcher.isDecoy( entry ) )
+					continue;
+
+				Collection<FastaProteinAnnotation> annotations = MatchedProteinCollector.getAnnotations( entry );
+
+				database.sequences.add( entry.getSequence() );
+				database.annotations.add( annotations );
+
+				database.approximateSize += getApproximateSize( entry.getSequence(), annotations );
+			}
+
+		} finally {
+			if( fastaReader != null ) {
+				fastaReader.close();
+				fastaReader = null;
+			}
+		}
+
+		return database;
+	}
+
+	/**
+	 * Start preparing the target entries of the supplied FASTA file on a background (daemon) thread
+	 *
+	 * @param fastaFile
+	 * @param decoyLabelMatcher Entries that are decoys according to this are left out
+	 * @param useCache If true, get the database from the PreparedFASTACache, preparing it only if it isn't cached
+	 * @return The prepared database, when done. Get it with getPrepared().
+	 */
+	public static CompletableFuture<PreparedFASTADatabase> prepareAsync( File fastaFile, DecoyLabelMatcher decoyLabelMatcher, boolean useCache ) {
+
+		return CompletableFuture.supplyAsync( () -> {
+
+			try {
+				if( useCache )
+					return PreparedFASTACache.getInstance().get( fastaFile, decoyLabelMatcher );
+
+				return prepare( fastaFile, decoyLabelMatcher );
+			} catch( Exception e ) {
+				throw new CompletionException( e );
+			}
+
+		}, runnable -> {
+
+			Thread thread = new Thread( runnable, "fasta-prepare" );
+			thread.setDaemon( true );
+			thread.start();
+		} );
+	}
+
+	/**
+	 * Wait for a database started with prepareAsync() to be prepared
+	 *
+	 * @param future
+	 * @return
+	 * @throws Exception The exception thrown while preparing the database, if any, or an InterruptedException if
+	 * the conversion is cancelled while waiting
+	 */
+	public static PreparedFASTADatabase getPrepared( CompletableFuture<PreparedFASTADatabase> future ) throws Exception {
+
+		// unlike join(), get() can be interrupted, so a cancelled conversion doesn't wait for the database
+		try {
+			return future.get();
+		} catch( ExecutionException e ) {
+
+			if( e.getCause() instanceof Exception )
+				throw (Exception)e.getCause();
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the target proteins containing any of the peptides
+	 *
+	 * @param peptideMatcher
+	 * @param decoyLabelMatcher
+	 * @return
+	 * @throws InterruptedException If the conversion is cancelled
+	 */
+	public MatchedProteinCollector getMatchedProteins( PeptideMatcher peptideMatcher, DecoyLabelMatcher decoyLabelMatcher ) throws InterruptedException {
+
+		MatchedProteinCollector collector = new MatchedProteinCollector( peptideMatcher, decoyLabelMatcher );
+
+		for( int i = 0; i < sequences.size(); i++ ) {
+			CancellationUtils.checkCancelled();
+			collector.addAnnotatedEntry( sequences.get( i ), annotations.get( i ) );
+		}
+
+		return collector;
+	}
+
+	/**
+	 * @return The number of target entries
+	 */
+	public int getEntryCount() {
+		return sequences.size();
+	}
+
+	/**
+	 * @return The approximate number of bytes of heap used by this database
+	 */
+	public long getApproximateSize() {
+		return approximateSize;
+	}
+
+	/**
+	 * Estimate the heap used by one entry: the sequence, the annotations and their list, and the
+	 * entry's slots in the lists of this database. Strings are assumed to be one byte per character.
+	 */
+	private static long getApproximateSize( String sequence, Collection<FastaProteinAnnotation> annotations ) {
+
+		long size = 16 + getApproximateSize( sequence ) + 40;
+
+		for( FastaProteinAnnotation anno : annotations ) {
+			size += 32 + 8 + getApproximateSize( anno.getName() ) + getApproximateSize( anno.getDescription() );
+
+			if( anno.getTaxonomId() != null )
+				size += 16;
+		}
+
+		return size;
+	}
+
+	private static long getApproximateSize( String s ) {
+		return s == null ? 0 : 40 + s.length();
+	}
+
+
+	private final List<String> sequences = new ArrayList<>();
+	private final List<Collection<FastaProteinAnnotation>> annotations = new ArrayList<>();
+
+	private long approximateSize = 0;
+}
@@ -0,0 +1,306 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Finds a single peptide in a byte-encoded protein sequence (one byte per residue), for checking a
+ * candidate protein for a peptide it was found to possibly contain, e.g., by a FastaPeptideIndex.
+ *
+ * The search is done by one of three kernels, chosen once when the class is loaded:
+ *
+ * vector: the sequence is compared against the first two residues of the peptide a whole vector
+ * register at a time, using jdk.incubator.vector (see VectorResidueScanner). It is only available on
+ * Java 17+, from the multi-release jar, with the module added to the JVM, e.g.,
+ * java --add-modules jdk.incubator.vector -jar plink2toProxlXML.jar ...
+ *
+ * swar: the sequence is scanned eight residues at a time: each 8 byte word is compared against the
+ * first residue of the peptide in all eight lanes at once (SWAR, "SIMD within a register"), using the
+ * usual test for a zero byte in a word. The word starting one residue later is compared against the
+ * second residue of the peptide in the same way, so a lane is flagged only where the first two
+ * residues match, which rules out most positions. The zero byte test may flag a position above a
+ * real match that doesn't hold the first residues, which the check that follows rejects.
+ *
+ * scalar: the sequence is scanned one residue at a time.
+ *
+ * The vector kernel is used on Java 21+ if it is available, and the swar kernel otherwise: on Java 17
+ * the vector kernel was slower than the swar kernel in the ResidueScannerBenchmark. Another kernel may
+ * be chosen with the system property plink2proxl.residueScanner (vector, swar or scalar), e.g., to
+ * compare them or to rule the faster kernels out; asking for the vector kernel where it isn't
+ * available gets the swar kernel.
+ *
+ * All kernels check the positions they flag against the first four residues of the peptide with a
+ * single int compare, and then against the whole peptide. Sequences too short for a word (or vector),
+ * and the last few residues of a sequence, are scanned one residue at a time.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ResidueScanner {
+
+	/**
+	 * The system property used to choose the kernel
+	 */
+	public static final String KERNEL_PROPERTY = "plink2proxl.residueScanner";
+
+	/**
+	 * A search for a peptide in part of a sequence, see indexOf()
+	 */
+	interface Kernel {
+
+		int indexOf( byte[] sequence, int from, int to, byte[] peptide );
+
+		/**
+		 * @return vector, swar or scalar
+		 */
+		String getName();
+	}
+
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle( long[].class, ByteOrder.LITTLE_ENDIAN );
+	private static final VarHandle INT_VIEW = MethodHandles.byteArrayViewVarHandle( int[].class, ByteOrder.LITTLE_ENDIAN );
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+
+	/**
+	 * Only in the multi-release jar, under META-INF/versions/17
+	 */
+	private static final String VECTOR_KERNEL_CLASS = "org.yeastrc.proxl.xml.plink2.fasta.VectorResidueScanner";
+
+	/**
+	 * The first Java version the vector kernel is used on by default
+	 */
+	private static final int VECTOR_KERNEL_DEFAULT_VERSION = 21;
+
+	private static final Kernel SWAR_KERNEL = new Kernel() {
+
+		@Override
+		public int indexOf( byte[] sequence, int from, int to, byte[] peptide ) {
+			return indexOfSWAR( sequence, from, to, peptide );
+		}
+
+		@Override
+		public String getName() {
+			return "swar";
+		}
+	};
+
+	private static final Kernel SCALAR_KERNEL = new Kernel() {
+
+		@Override
+		public int indexOf( byte[] sequence, int from, int to, byte[] peptide ) {
+			return indexOfScalar( sequence, from, to, peptide );
+		}
+
+		@Override
+		public String getName() {
+			return "scalar";
+		}
+	};
+
+	private static final Kernel KERNEL = getKernel( System.getProperty( KERNEL_PROPERTY ) );
+
+	/**
+	 * @param sequence
+	 * @param peptide
+	 * @return true if the sequence contains the peptide
+	 */
+	public static boolean contains( byte[] sequence, byte[] peptide ) {
+		return indexOf( sequence, 0, sequence.length, peptide ) != -1;
+	}
+
+	/**
+	 * Find the first occurrence of the peptide in the supplied part of the sequence
+	 *
+	 * @param sequence
+	 * @param from The start of the part of the sequence to search (inclusive)
+	 * @param to The end of the part of the sequence to search (exclusive)
+	 * @param peptide
+	 * @return The position of the peptide in the sequence, or -1 if it isn't found
+	 */
+	public static int indexOf( byte[] sequence, int from, int to, byte[] peptide ) {
+		return KERNEL.indexOf( sequence, from, to, peptide );
+	}
+
+	/**
+	 * @return The name of the kernel in use: vector, swar or scalar
+	 */
+	public static String getKernelName() {
+		return KERNEL.getName();
+	}
+
+	/**
+	 * Get the kernel with the supplied name
+	 *
+	 * @param name vector, swar or scalar, or null for the default (see above)
+	 * @return The kernel, which is the swar kernel if the vector kernel isn't available
+	 */
+	static Kernel getKernel( String name ) {
+
+		if( name == null )
+			return getKernel( Runtime.version().feature() >= VECTOR_KERNEL_DEFAULT_VERSION ? "vector" : "swar" );
+
+		String kernelName = name.trim().toLowerCase( Locale.ROOT );
+
+		switch( kernelName ) {
+		case "vector":
+			Kernel vectorKernel = getVectorKernel();
+			return vectorKernel != null ? vectorKernel : SWAR_KERNEL;
+		case "swar":
+			return SWAR_KERNEL;
+		case "scalar":
+			return SCALAR_KERNEL;
+		default:
+			throw new IllegalArgumentException( "Unknown value for " + KERNEL_PROPERTY + ": \"" + name + "\", must be vector, swar or scalar." );
+		}
+	}
+
+	/**
+	 * @return The vector kernel, or null if it isn't available: before Java 17 (where the class isn't
+	 * loaded from the jar), or if the jdk.incubator.vector module wasn't added to the JVM
+	 */
+	private static Kernel getVectorKernel() {
+		try {
+			return (Kernel)Class.forName( VECTOR_KERNEL_CLASS ).getDeclaredConstructor().newInstance();
+		} catch( ReflectiveOperationException | LinkageError e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * The swar kernel, see above
+	 */
+	private static int indexOfSWAR( byte[] sequence, int from, int to, byte[] peptide ) {
+
+		int length = peptide.length;
+
+		if( length == 0 )
+			return from <= to ? from : -1;
+
+		// the last position the peptide may start at
+		int last = to - length;
+		if( last < from )
+			return -1;
+
+		byte first = peptide[ 0 ];
+		long firstInAllLanes = ( first & 0xffL ) * ONES;
+
+		// with only one residue, a second residue that matches anything
+		int secondOffset = getSecondOffset( peptide );
+		long secondInAllLanes = ( peptide[ secondOffset ] & 0xffL ) * ONES;
+
+		int prefix = getPrefix( peptide );
+
+		int position = from;
+
+		// whole words, while the word (and so any flagged position in it) starts at or before the last start position
+		for( ; position <= last && position + 8 + secondOffset <= sequence.length; position += 8 ) {
+
+			// a lane is zero only where both the first and second residues of the peptide are found
+			long word = ( (long)LONG_VIEW.get( sequence, position ) ^ firstInAllLanes ) |
+					( (long)LONG_VIEW.get( sequence, position + secondOffset ) ^ secondInAllLanes );
+
+			long flags = ( word - ONES ) & ~word & HIGHS;
+
+			while( flags != 0 ) {
+
+				int candidate = position + ( Long.numberOfTrailingZeros( flags ) >>> 3 );
+				if( candidate > last )
+					return -1;
+
+				if( matchesAt( sequence, candidate, peptide, prefix ) )
+					return candidate;
+
+				flags &= flags - 1;
+			}
+		}
+
+		return indexOfScalar( sequence, position, to, peptide, prefix );
+	}
+
+	/**
+	 * The scalar kernel, see above
+	 */
+	private static int indexOfScalar( byte[] sequence, int from, int to, byte[] peptide ) {
+
+		if( peptide.length == 0 )
+			return from <= to ? from : -1;
+
+		return indexOfScalar( sequence, from, to, peptide, getPrefix( peptide ) );
+	}
+
+	/**
+	 * Scan the supplied part of the sequence one residue at a time, for the rest of the sequence
+	 * after the part scanned by a faster kernel
+	 *
+	 * @param prefix The first four residues of the peptide, see getPrefix()
+	 * @return The position of the peptide in the sequence, or -1 if it isn't found
+	 */
+	static int indexOfScalar( byte[] sequence, int from, int to, byte[] peptide, int prefix ) {
+
+		byte first = peptide[ 0 ];
+		int last = to - peptide.length;
+
+		for( int position = from; position <= last; position++ ) {
+			if( sequence[ position ] == first && matchesAt( sequence, position, peptide, prefix ) )
+				return position;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return The offset of the residue checked along with the first residue of the peptide: 1, or 0
+	 * for a peptide of one residue (which then has its first residue checked twice)
+	 */
+	static int getSecondOffset( byte[] peptide ) {
+		return peptide.length >= 2 ? 1 : 0;
+	}
+
+	/**
+	 * @return The first four residues of the peptide as a little-endian int, for matchesAt(), or 0 for
+	 * a shorter peptide (where it isn't used)
+	 */
+	static int getPrefix( byte[] peptide ) {
+		return peptide.length >= 4 ? (int)INT_VIEW.get( peptide, 0 ) : 0;
+	}
+
+	/**
+	 * @return true if the peptide is at the supplied position of the sequence, which must have room for it
+	 */
+	static boolean matchesAt( byte[] sequence, int position, byte[] peptide, int prefix ) {
+
+		int length = peptide.length;
+
+		if( length >= 4 ) {
+			if( (int)INT_VIEW.get( sequence, position ) != prefix )
+				return false;
+
+			return Arrays.equals( sequence, position + 4, position + length, peptide, 4, length );
+		}
+
+		return Arrays.equals( sequence, position, position + length, peptide, 0, length );
+	}
+
+}
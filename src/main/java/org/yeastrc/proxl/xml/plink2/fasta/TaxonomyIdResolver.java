@@ -0,0 +1,214 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.yeastrc.taxonomy.main.GetTaxonomyId;
+
+/**
+ * Resolves the NCBI taxonomy id for a FASTA header, giving the same result as
+ * GetTaxonomyId.getTaxonomyId( name, description ) but with far less work for large FASTA files.
+ *
+ * GetTaxonomyId tries eight regular expressions against the description of every header, looking
+ * for a whitespace-delimited Tax_Id=[number] or Taxonomy_Id=[number] token (case-insensitive). The
+ * result depends only on those tokens, so:
+ *
+ *  - descriptions containing neither "tax_id=" nor "taxonomy_id=" resolve to null without running
+ *    any regular expression
+ *  - otherwise, the whitespace-delimited tokens starting with those prefixes (and whether they are
+ *    at the start or end of the description) are the cache key, and
+ *    GetTaxonomyId is only called the first time a key is seen. A FASTA file with millions of
+ *    headers then needs one lookup per organism rather than one per header.
+ *
+ * Safe to use from multiple threads.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class TaxonomyIdResolver {
+
+	private static final String TAX_ID_PREFIX = "tax_id=";
+	private static final String TAXONOMY_ID_PREFIX = "taxonomy_id=";
+
+	private static final String UNCACHEABLE = new String( "uncacheable" );
+
+	private static final TaxonomyIdResolver _INSTANCE = new TaxonomyIdResolver();
+
+	public static TaxonomyIdResolver getInstance() { return _INSTANCE; }
+
+	private TaxonomyIdResolver() { }
+
+	/**
+	 * Get the taxonomy id for a FASTA header
+	 *
+	 * @param name The name from the FASTA header
+	 * @param description The description from the FASTA header, may be null
+	 * @return The taxonomy id, or null if the header doesn't have one
+	 * @throws Exception If the header has a taxonomy id that isn't a valid number
+	 */
+	public Integer getTaxonomyId( String name, String description ) throws Exception {
+
+		lookups.increment();
+
+		String key = getKey( description );
+
+		if( key == UNCACHEABLE )
+			return GetTaxonomyId.getInstance().getTaxonomyId( name, description );
+
+		if( key == null ) {
+			noTaxonomyId.increment();
+			return null;
+		}
+
+		Optional<Integer> taxonomyId = cache.get( key );
+
+		if( taxonomyId != null ) {
+			cacheHits.increment();
+			return taxonomyId.orElse( null );
+		}
+
+		// not cached; errors are not cached, so an invalid id fails every time it is seen
+		taxonomyId = Optional.ofNullable( GetTaxonomyId.getInstance().getTaxonomyId( name, description ) );
+		cache.putIfAbsent( key, taxonomyId );
+
+		return taxonomyId.orElse( null );
+	}
+
+	/**
+	 * Get the whitespace-delimited tokens of the description that could hold a taxonomy id,
+	 * separated by spaces, or null if there are none. Whitespace is what \s matches in the
+	 * GetTaxonomyId regular expressions. Descriptions with line terminators, which those regular
+	 * expressions treat specially, are not cached.
+	 *
+	 * @param description
+	 * @return The key, null if there is no taxonomy id, or UNCACHEABLE
+	 */
+	private String getKey( String description ) {
+
+		if( description == null )
+			return null;
+
+		StringBuilder key = null;
+
+		int length = description.length();
+		int i = 0;
+
+		while( i < length ) {
+
+			while( i < length && isWhitespace( description.charAt( i ) ) )
+				i++;
+
+			int tokenStart = i;
+
+			while( i < length && !isWhitespace( description.charAt( i ) ) ) {
+				if( isLineTerminator( description.charAt( i ) ) )
+					return UNCACHEABLE;
+
+				i++;
+			}
+
+			if( description.regionMatches( true, tokenStart, TAX_ID_PREFIX, 0, TAX_ID_PREFIX.length() ) ||
+					description.regionMatches( true, tokenStart, TAXONOMY_ID_PREFIX, 0, TAXONOMY_ID_PREFIX.length() ) ) {
+
+				if( key == null )
+					key = new StringBuilder();
+				else
+					key.append( ' ' );
+
+				// whether the token is at the start or end of the description changes which regular expression
+				// matches it; mark these with line breaks, which can't be part of a token
+				if( tokenStart == 0 )
+					key.append( '\n' );
+
+				key.append( description, tokenStart, i );
+
+				if( i == length )
+					key.append( '\n' );
+			}
+		}
+
+		return key == null ? null : key.toString();
+	}
+
+	/**
+	 * @return true if the regular expression \s matches the character
+	 */
+	private static boolean isWhitespace( char c ) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * @return true if the character is a line terminator that is not also whitespace
+	 */
+	private static boolean isLineTerminator( char c ) {
+		return c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	/**
+	 * @return The number of taxonomy ids resolved
+	 */
+	public long getLookupCount() {
+		return lookups.sum();
+	}
+
+	/**
+	 * @return The number of lookups answered from the cache
+	 */
+	public long getCacheHitCount() {
+		return cacheHits.sum();
+	}
+
+	/**
+	 * @return The number of lookups for headers with no taxonomy id, answered without a cache lookup
+	 */
+	public long getNoTaxonomyIdCount() {
+		return noTaxonomyId.sum();
+	}
+
+	/**
+	 * @return The number of distinct keys that have been resolved
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 * @return A one line summary of the lookups done so far
+	 */
+	public String getStatistics() {
+
+		long lookupCount = getLookupCount();
+		long resolved = getCacheHitCount() + getNoTaxonomyIdCount();
+		double hitRate = lookupCount == 0 ? 0 : 100.0 * resolved / lookupCount;
+
+		return String.format( "Taxonomy id lookups: %d, %d cached, %d without a taxonomy id, %d distinct (%.1f%% resolved without GetTaxonomyId)",
+				lookupCount, getCacheHitCount(), getNoTaxonomyIdCount(), getCacheSize(), hitRate );
+	}
+
+
+	private final ConcurrentMap<String, Optional<Integer>> cache = new ConcurrentHashMap<>();
+
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder noTaxonomyId = new LongAdder();
+}
@@ -0,0 +1,124 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.ini;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The properties read from an INI file, as a flat, immutable table of section name to key to value.
+ * Properties are referenced as "section_name/key_name", or just "key_name" for properties that come
+ * before the first section (e.g., all of pLink's modification.ini).
+ *
+ * If a key appears more than once in a section, the first value is kept.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class INISettings {
+
+	/**
+	 * The name used for the properties that come before the first section
+	 */
+	public static final String GLOBAL_SECTION = "";
+
+	/**
+	 * @param sections The properties, by section name and then key. Not copied, must not be changed after this.
+	 */
+	public INISettings( Map<String, Map<String, String>> sections ) {
+		this.sections = sections;
+	}
+
+	/**
+	 * Get the value for a property
+	 *
+	 * @param key "section_name/key_name" or, for a property before the first section, "key_name"
+	 * @return The value, or null if the property isn't in the INI file
+	 */
+	public String getString( String key ) {
+
+		int delimiter = key.indexOf( '/' );
+
+		if( delimiter != -1 ) {
+			Map<String, String> section = sections.get( key.substring( 0, delimiter ) );
+
+			if( section != null ) {
+				String value = section.get( key.substring( delimiter + 1 ) );
+				if( value != null )
+					return value;
+			}
+		}
+
+		Map<String, String> global = sections.get( GLOBAL_SECTION );
+		return global == null ? null : global.get( key );
+	}
+
+	/**
+	 * Get the value for a property as an int. Hexadecimal (0x...) and binary (0b...) values are supported.
+	 *
+	 * @param key "section_name/key_name" or, for a property before the first section, "key_name"
+	 * @return
+	 * @throws NoSuchElementException If the property isn't in the INI file
+	 * @throws NumberFormatException If the value isn't an int
+	 */
+	public int getInt( String key ) {
+
+		String value = getString( key );
+		if( value == null )
+			throw new NoSuchElementException( "Key '" + key + "' does not map to an existing object!" );
+
+		if( value.startsWith( "0x" ) || value.startsWith( "0X" ) )
+			return Integer.parseInt( value.substring( 2 ), 16 );
+
+		if( value.startsWith( "0b" ) || value.startsWith( "0B" ) )
+			return Integer.parseInt( value.substring( 2 ), 2 );
+
+		return Integer.parseInt( value );
+	}
+
+	/**
+	 * @param key "section_name/key_name" or, for a property before the first section, "key_name"
+	 * @return true if the property is in the INI file
+	 */
+	public boolean containsKey( String key ) {
+		return getString( key ) != null;
+	}
+
+	/**
+	 * @return The names of the sections, in the order they first appear. GLOBAL_SECTION is included if
+	 * there are properties before the first section.
+	 */
+	public Set<String> getSections() {
+		return Collections.unmodifiableSet( sections.keySet() );
+	}
+
+	/**
+	 * @param section
+	 * @return The properties of the section, by key in the order they appear, empty if there is no such section
+	 */
+	public Map<String, String> getSection( String section ) {
+		Map<String, String> properties = sections.get( section );
+		return properties == null ? Collections.emptyMap() : Collections.unmodifiableMap( properties );
+	}
+
+
+	private final Map<String, Map<String, String>> sections;
+}
@@ -19,12 +19,8 @@
 package org.yeastrc.proxl.xml.plink2.ini;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
-import org.apache.commons.configuration2.INIConfiguration;
-import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.yeastrc.proxl.xml.plink2.utils.INIUtils;
 
 /**
@@ -36,22 +32,18 @@ import org.yeastrc.proxl.xml.plink2.utils.INIUtils;
  */
 public class ParsedINIFile {
 
-	public ParsedINIFile( String filename ) throws ConfigurationException, FileNotFoundException, IOException {
+	public ParsedINIFile( String filename ) throws IOException {
 
 		this.filename = filename;
 		
-		config = new INIConfiguration();
-		config.setExpressionEngine( INIUtils.EXPRESSION_ENGINE );
-		config.read( new FileReader( new File( filename ) ) );
+		config = INIUtils.getINISettings( filename );
 	}
 	
-	public ParsedINIFile( File file ) throws ConfigurationException, FileNotFoundException, IOException {
+	public ParsedINIFile( File file ) throws IOException {
 		
 		this.filename = file.getAbsolutePath();
 		
-		config = new INIConfiguration();
-		config.setExpressionEngine( INIUtils.EXPRESSION_ENGINE );
-		config.read( new FileReader( file ) );
+		config = INIUtils.getINISettings( file );
 	}
 	
 	
@@ -74,11 +66,11 @@ public class ParsedINIFile {
 	 * 
 	 * @return
 	 */
-	public INIConfiguration getConfig() {
+	public INISettings getConfig() {
 		return config;
 	}
 
 
-	private INIConfiguration config;
+	private INISettings config;
 	private String filename;
 }
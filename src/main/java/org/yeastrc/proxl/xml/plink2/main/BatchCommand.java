@@ -0,0 +1,241 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.main;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.yeastrc.proxl.xml.plink2.batch.BatchJob;
+import org.yeastrc.proxl.xml.plink2.batch.BatchJobStatus;
+import org.yeastrc.proxl.xml.plink2.batch.BatchListener;
+import org.yeastrc.proxl.xml.plink2.batch.BatchManifest;
+import org.yeastrc.proxl.xml.plink2.batch.BatchReport;
+import org.yeastrc.proxl.xml.plink2.batch.BatchRunner;
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverterOptions;
+import org.yeastrc.proxl.xml.plink2.fasta.PreparedFASTACache;
+
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " batch",
+		mixinStandardHelpOptions = true,
+		version = PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " " + PLinkConverterConstants.CONVERSION_PROGRAM_VERSION,
+		sortOptions = false,
+		synopsisHeading = "%n",
+		descriptionHeading = "%n@|bold,underline Description:|@%n%n",
+		optionListHeading = "%n@|bold,underline Options:|@%n",
+		description = "Convert many pLink 2.x searches to ProXL XML files at the same time, in one JVM. The searches are " +
+				"listed in a manifest file, in CSV (with a header line) or JSON (an array of objects), with the columns or " +
+				"keys: params, fasta and output (required), and reports, bin and id (optional). Relative paths are " +
+				"relative to the manifest file. Searches that used the same FASTA file share one copy of it in memory.",
+		footer = {
+				"",
+				"@|bold,underline Example manifest (CSV)|@:",
+				"params,reports,fasta,output",
+				"fraction1\\run.plink,fraction1,yeast.fasta,out\\fraction1.proxl.xml",
+				"fraction2\\run.plink,fraction2,yeast.fasta,out\\fraction2.proxl.xml",
+				""
+		}
+)
+public class BatchCommand implements Runnable {
+
+	@CommandLine.Parameters(index = "0", paramLabel = "<manifest>", description = "The manifest file listing the searches to convert.")
+	private String manifestFile;
+
+	@CommandLine.Option(names = { "-b", "--bin" }, description = "[Optional] Full path to the pLink installation directory, " +
+			"used for searches that don't have a bin in the manifest.")
+	private String binDirectory;
+
+	@CommandLine.Option(names = { "-j", "--jobs" }, paramLabel = "<jobs>", description = "[Optional] The number of " +
+			"searches converted at the same time. Defaults to the number of available processors.")
+	private int cpuBudget = Runtime.getRuntime().availableProcessors();
+
+	@CommandLine.Option(names = { "--memory-budget" }, paramLabel = "<MB>", description = "[Optional] The memory, in MB, " +
+			"that the searches being converted may use together, estimated from the size of their pLink results. A " +
+			"search waits until its share is free. Defaults to three quarters of the maximum heap size.")
+	private long memoryBudgetMegabytes = Runtime.getRuntime().maxMemory() / 4 * 3 / ( 1024 * 1024 );
+
+	@CommandLine.Option(names = { "--report" }, paramLabel = "<file>", description = "[Optional] Write the status, " +
+			"counts and timings of every search to this JSON file.")
+	private String reportFile;
+
+	@CommandLine.Option(names = { "--definition-cache-dir" }, paramLabel = "<directory>", description = "[Optional] " +
+			"Directory in which to keep compiled copies of pLink's modification and cross-linker definitions, " +
+			"shared by all searches with the same bin directory. See the main command.")
+	private String definitionCacheDirectory;
+
+	@CommandLine.Option(names = { "--validate-while-writing" }, description = "[Optional] Validate each proxl XML " +
+			"as it is written. See the main command.")
+	private boolean validateWhileWriting = false;
+
+	@CommandLine.Option(names = { "--compact" }, description = "[Optional] Write compact proxl XML. See the main command.")
+	private boolean compact = false;
+
+	@CommandLine.Option(names = { "--manifest" }, description = "[Optional] Write a JSON manifest next to each proxl " +
+			"XML. See the main command.")
+	private boolean writeManifest = false;
+
+	@CommandLine.Option(names = { "--index" }, description = "[Optional] Write an index next to each proxl XML. See " +
+			"the main command.")
+	private boolean writeIndex = false;
+
+	@CommandLine.Option(names = { "--decoy-label" }, paramLabel = "<label>", description = "[Optional] A protein is a " +
+			"decoy if its name contains this label. May be given more than once. Defaults to random, decoy, reverse " +
+			"and shuffle.")
+	private String[] decoyLabels = PLinkConverterConstants.DEFAULT_DECOY_LABELS.toArray( new String[ 0 ] );
+
+	@CommandLine.Option(names = { "--skip-decoy-results" }, description = "[Optional] Drop results matched only to " +
+			"decoys while reading. See the main command.")
+	private boolean skipDecoyResults = false;
+
+	@CommandLine.Option(names = { "-v", "--verbose" }, description = "[Optional] Include the full stack trace of " +
+			"any error.")
+	private boolean verboseRequested = false;
+
+
+	@Override
+	public void run() {
+
+		MainProgram.printRuntimeInfo();
+
+		List<BatchJob> jobs;
+
+		try {
+			jobs = BatchManifest.read( new File( manifestFile ) );
+		} catch( Exception e ) {
+			System.err.println( "Could not read batch manifest: " + e.getMessage() );
+			System.exit( 1 );
+			return;
+		}
+
+		BatchRunner runner = new BatchRunner( cpuBudget, memoryBudgetMegabytes * 1024 * 1024 );
+
+		System.err.println( "Converting " + jobs.size() + " searches, " + runner.getCpuBudget() + " at a time" +
+				( BatchRunner.isUsingVirtualThreads() ? " (virtual threads)" : "" ) + ", memory budget " + ( runner.getMemoryBudget() / ( 1024 * 1024 ) ) + " MB." );
+
+		long startTime = System.nanoTime();
+		AtomicInteger finished = new AtomicInteger();
+
+		List<BatchJobStatus> statuses;
+
+		try {
+			statuses = runner.run( jobs, this::getConverterOptions, new BatchListener() {
+
+				@Override
+				public void jobFinished( BatchJobStatus status ) {
+					printStatus( status, finished.incrementAndGet(), jobs.size() );
+				}
+			} );
+
+		} catch( Throwable t ) {
+			if( verboseRequested )
+				t.printStackTrace();
+
+			System.err.println( "\n\nEncountered an error running the batch:" );
+			System.err.println( t.getMessage() );
+			System.exit( 1 );
+			return;
+		}
+
+		long totalMillis = ( System.nanoTime() - startTime ) / 1000000;
+
+		int failed = 0;
+		for( BatchJobStatus status : statuses ) {
+			if( status.getState() != BatchJobStatus.State.SUCCEEDED )
+				failed++;
+		}
+
+		System.err.println( "\nConverted " + ( statuses.size() - failed ) + " of " + statuses.size() + " searches in " + formatSeconds( totalMillis ) + "." );
+
+		if( verboseRequested )
+			System.err.println( PreparedFASTACache.getInstance().getStatistics() );
+
+		if( reportFile != null ) {
+			try {
+				BatchReport.write( new File( reportFile ), statuses, totalMillis );
+			} catch( Exception e ) {
+				System.err.println( "Could not write batch report: " + e.getMessage() );
+				System.exit( 1 );
+			}
+		}
+
+		if( failed > 0 )
+			System.exit( 1 );
+	}
+
+	/**
+	 * Get the conversion options for a job in the batch
+	 *
+	 * @param job
+	 * @return
+	 */
+	private PLinkConverterOptions getConverterOptions( BatchJob job ) {
+
+		File bin = job.getBinDirectory();
+		if( bin == null && binDirectory != null )
+			bin = new File( binDirectory );
+
+		return PLinkConverterOptions.builder()
+				.paramsFile( job.getParamsFile() )
+				.binDirectory( bin )
+				.dataDirectory( job.getDataDirectory() )
+				.fastaFile( job.getFastaFile() )
+				.outputFile( job.getOutputFile() )
+				.validateWhileWriting( validateWhileWriting )
+				.compact( compact )
+				.writeManifest( writeManifest )
+				.writeIndex( writeIndex )
+				.cachePreparedFasta( true )
+				.decoyLabels( Arrays.asList( decoyLabels ) )
+				.skipDecoyResults( skipDecoyResults )
+				.definitionCacheDirectory( definitionCacheDirectory == null ? null : new File( definitionCacheDirectory ) )
+				.build();
+	}
+
+	/**
+	 * Print the outcome of a job, as one line (plus any messages and errors)
+	 */
+	private synchronized void printStatus( BatchJobStatus status, int finished, int total ) {
+
+		String prefix = "[" + finished + "/" + total + "] ";
+
+		if( status.getState() == BatchJobStatus.State.SUCCEEDED ) {
+			PLinkConversionResult result = status.getResult();
+			System.err.println( prefix + "Done: " + status.getJob().getId() + " (" + result.getReportedPeptideCount() + " reported peptides, " +
+					result.getPsmCount() + " PSMs) in " + formatSeconds( status.getRunMillis() ) +
+					( status.getWaitMillis() >= 100 ? ", after waiting " + formatSeconds( status.getWaitMillis() ) : "" ) );
+		} else {
+			System.err.println( prefix + "Failed: " + status.getJob().getId() + ": " + status.getError().getMessage() );
+
+			if( verboseRequested )
+				status.getError().printStackTrace();
+		}
+
+		for( String message : status.getMessages() )
+			System.err.println( "\t" + message.replace( "\n", "\n\t" ) );
+	}
+
+	private static String formatSeconds( long millis ) {
+		return String.format( "%.1f s", millis / 1000.0 );
+	}
+
+}
@@ -21,15 +21,17 @@ package org.yeastrc.proxl.xml.plink2.main;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.util.Collection;
+import java.util.Arrays;
 
-import org.yeastrc.proxl.xml.plink2.builder.XMLBuilder;
 import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
-import org.yeastrc.proxl.xml.plink2.objects.PLinkResult;
-import org.yeastrc.proxl.xml.plink2.reader.PLinkConstants;
-import org.yeastrc.proxl.xml.plink2.reader.PLinkResultsLoader;
-import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParameters;
-import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParametersLoader;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionListener;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionStage;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverter;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverterOptions;
+import org.yeastrc.proxl.xml.plink2.fasta.TaxonomyIdResolver;
+import org.yeastrc.proxl.xml.plink2.writer.ConversionManifest;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLIndex;
 
 import picocli.CommandLine;
 
@@ -57,6 +59,11 @@ import picocli.CommandLine;
 						" -f C:\\fastas\\myFasta.fasta ^\n" +
 						" -b C:\\pFindStudio\\pLink\\2.3.0\\bin ^\n" +
 						" -r C:\\Users\\User\\Desktop\\gTuSC\\pLink_test\\reports",
+				"",
+				"To convert many searches at once, see: java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " batch --help",
+				"To run as a server that accepts conversion jobs, see: java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " serve --help",
+				"To convert pLink runs as soon as they finish, see: java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " watch --help",
+				"To merge several pLink runs into one search, see: java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " merge --help",
 				""
 		}
 )
@@ -89,25 +96,183 @@ public class MainProgram implements Runnable {
 			"maintainer of this converter.")
 	private boolean verboseRequested = false;
 
+	@CommandLine.Option(names = { "--validate-while-writing" }, description = "[Optional] If this flag is set, the " +
+			"proxl XML is validated as it is written, in a single pass, instead of being read back and validated " +
+			"after it is written. An invalid document stops the write at the first problem found.")
+	private boolean validateWhileWriting = false;
+
+	@CommandLine.Option(names = { "--compact" }, description = "[Optional] If this flag is set, the proxl XML is " +
+			"written as small as possible: no indentation, decimals in their shortest exact form, and no optional " +
+			"attributes or sections that carry no information. The file is still valid for import into ProXL.")
+	private boolean compact = false;
+
+	@CommandLine.Option(names = { "--manifest" }, description = "[Optional] If this flag is set, a SHA-256 of the " +
+			"proxl XML is computed as it is written and a JSON manifest (the digest, size, PSM and reported peptide " +
+			"counts, and the input files used) is written next to it, named as the output file plus " +
+			ConversionManifest.MANIFEST_FILE_SUFFIX + ".")
+	private boolean writeManifest = false;
+
+	@CommandLine.Option(names = { "--crc32c" }, description = "[Optional] If this flag is set along with --manifest, " +
+			"a CRC32C of the proxl XML is also computed as it is written and added to the manifest.")
+	private boolean computeCRC32C = false;
+
+	@CommandLine.Option(names = { "--index" }, description = "[Optional] If this flag is set, an index of the byte " +
+			"offsets of each reported peptide and of the matched proteins in the proxl XML is written next to it, " +
+			"named as the output file plus " + ProxlXMLIndex.INDEX_FILE_SUFFIX + ", so tools can read a single " +
+			"reported peptide without parsing the whole file.")
+	private boolean writeIndex = false;
+
+	@CommandLine.Option(names = { "--fasta-threads" }, paramLabel = "<threads>", description = "[Optional] The number of " +
+			"threads used to scan the FASTA file for matched proteins. Large FASTA files are split into chunks that are " +
+			"scanned in parallel. Defaults to the number of available processors.")
+	private int fastaScanThreads = Runtime.getRuntime().availableProcessors();
+
+	@CommandLine.Option(names = { "--fasta-mmap" }, description = "[Optional] If this flag is set, the FASTA file is " +
+			"memory mapped and scanned in two passes: the first finds the proteins that contain an identified peptide " +
+			"and the second reads only those. Memory use then depends on the number of matched proteins rather than " +
+			"the size of the FASTA file. Overrides --fasta-threads.")
+	private boolean mappedFastaScan = false;
+
+	@CommandLine.Option(names = { "--fasta-index-dir" }, paramLabel = "<directory>", description = "[Optional] Directory " +
+			"in which to keep a persistent peptide index of each FASTA file. The index is built the first time a FASTA " +
+			"file is used (or after it changes) and reused by later conversions, so matched proteins are found by " +
+			"index lookups instead of scanning the FASTA file. Overrides --fasta-threads and --fasta-mmap.")
+	private String fastaIndexDirectory;
+
+	@CommandLine.Option(names = { "--fasta-by-name" }, description = "[Optional] If this flag is set, only the FASTA " +
+			"entries for the proteins named in pLink's results are read (found with a name index of the FASTA file, kept " +
+			"in --fasta-index-dir if set) and checked for the identified peptides, instead of searching the whole FASTA " +
+			"file. Proteins that pLink did not report are then left out of the matched proteins. If any name is not " +
+			"found, the whole FASTA file is searched.")
+	private boolean fastaByName = false;
+
+	@CommandLine.Option(names = { "--fasta-async" }, description = "[Optional] If this flag is set, the FASTA file is " +
+			"read, and its decoys filtered and headers parsed, in the background while the pLink results are read. The " +
+			"matched proteins are then found in the prepared entries. All target entries of the FASTA file are kept in " +
+			"memory. Overrides the other FASTA options.")
+	private boolean fastaAsync = false;
+
+	@CommandLine.Option(names = { "--decoy-label" }, paramLabel = "<label>", description = "[Optional] A protein is a " +
+			"decoy if its name contains this label. May be given more than once. Defaults to random, decoy, reverse " +
+			"and shuffle.")
+	private String[] decoyLabels = PLinkConverterConstants.DEFAULT_DECOY_LABELS.toArray( new String[ 0 ] );
+
+	@CommandLine.Option(names = { "--skip-decoy-results" }, description = "[Optional] If this flag is set, results " +
+			"in which every matched protein is a decoy are dropped while the pLink reports are read, so they are not " +
+			"kept in memory or written to the proxl XML.")
+	private boolean skipDecoyResults = false;
+
+	@CommandLine.Option(names = { "--definition-cache-dir" }, paramLabel = "<directory>", description = "[Optional] " +
+			"Directory in which to keep a compiled copy of the modification and cross-linker definitions in pLink's " +
+			"modification.ini and xlink.ini. It is built the first time a pLink bin directory is used (or after its INI " +
+			"files change) and reused by later conversions, so the INI files don't need to be parsed.")
+	private String definitionCacheDirectory;
+
+	@CommandLine.Option(names = { "--incremental" }, description = "[Optional] If this flag is set, the inputs are " +
+			"fingerprinted and compared to those recorded in the manifest of the previous conversion to the same output " +
+			"file. If nothing has changed the output is kept, and if only the FASTA file has changed only the matched " +
+			"proteins in the output are replaced. Implies --manifest and --index.")
+	private boolean incremental = false;
+
 
 	public void convertSearch( String plinkSearchParametersFile, String plinkBinDirectory, String plinkDataDirectory, String outfile, String fastaFilePath ) throws Exception {
-		
-		System.err.print( "Loading search parameters... " );
-		PLinkSearchParameters params = PLinkSearchParametersLoader.getInstance().getPLinkSearch( plinkSearchParametersFile, plinkBinDirectory );
-		System.err.println( "Done." );
-		
-		System.err.print( "Loading search results... " );
-		Collection<PLinkResult> results = PLinkResultsLoader.getInstance().getAllResults( params, plinkDataDirectory );
-		System.err.println( "Done." );
-
-		System.err.print( "Writing proxl XML... " );
-		XMLBuilder builder = new XMLBuilder();
-		builder.buildAndSaveXML(params, results, new File( outfile ), fastaFilePath );
-		System.err.println( "Done." );
-
-		System.err.print( "Validating proxl XML... " );
-		ProxlXMLValidator.validateProxlXML(new File( outfile ));
-		System.err.println( "Done." );
+		convertSearch( PLinkConverterOptions.builder()
+				.paramsFile( new File( plinkSearchParametersFile ) )
+				.binDirectory( plinkBinDirectory == null ? null : new File( plinkBinDirectory ) )
+				.dataDirectory( plinkDataDirectory == null ? null : new File( plinkDataDirectory ) )
+				.outputFile( new File( outfile ) )
+				.fastaFile( new File( fastaFilePath ) )
+				.build() );
+	}
+
+	/**
+	 * Run a conversion, printing its progress to STD ERR
+	 *
+	 * @param options
+	 * @return
+	 * @throws Exception
+	 */
+	public PLinkConversionResult convertSearch( PLinkConverterOptions options ) throws Exception {
+		return new PLinkConverter().convert( options, new ConsoleConversionListener( options ) );
+	}
+
+	/**
+	 * Get the options for a conversion from the command line options
+	 *
+	 * @return
+	 */
+	private PLinkConverterOptions getConverterOptions() {
+		return PLinkConverterOptions.builder()
+				.paramsFile( new File( paramFile ) )
+				.binDirectory( binDirectory == null ? null : new File( binDirectory ) )
+				.dataDirectory( dataDirectory == null ? null : new File( dataDirectory ) )
+				.outputFile( new File( outFile ) )
+				.fastaFile( new File( fastaFile ) )
+				.validateWhileWriting( validateWhileWriting )
+				.compact( compact )
+				.writeManifest( writeManifest )
+				.computeCRC32C( computeCRC32C )
+				.writeIndex( writeIndex )
+				.fastaScanThreads( fastaScanThreads )
+				.mappedFastaScan( mappedFastaScan )
+				.fastaIndexDirectory( fastaIndexDirectory == null ? null : new File( fastaIndexDirectory ) )
+				.fastaByName( fastaByName )
+				.fastaAsync( fastaAsync )
+				.decoyLabels( Arrays.asList( decoyLabels ) )
+				.skipDecoyResults( skipDecoyResults )
+				.definitionCacheDirectory( definitionCacheDirectory == null ? null : new File( definitionCacheDirectory ) )
+				.incremental( incremental )
+				.build();
+	}
+
+	/**
+	 * Prints the progress of a conversion to STD ERR
+	 */
+	private static class ConsoleConversionListener implements ConversionListener {
+
+		ConsoleConversionListener( PLinkConverterOptions options ) {
+			this.options = options;
+		}
+
+		@Override
+		public void stageStarted( ConversionStage stage ) {
+
+			switch( stage ) {
+				case LOADING_PARAMETERS:
+					System.err.print( "Loading search parameters... " );
+					break;
+				case FINGERPRINTING:
+					System.err.print( "Fingerprinting inputs... " );
+					break;
+				case LOADING_RESULTS:
+					System.err.print( "Loading search results... " );
+					break;
+				case WRITING:
+					System.err.print( options.isValidateWhileWriting() ? "Writing and validating proxl XML... " : "Writing proxl XML... " );
+					break;
+				case UPDATING_MATCHED_PROTEINS:
+					System.err.print( "Updating matched proteins... " );
+					break;
+				case VALIDATING:
+					System.err.print( "Validating proxl XML... " );
+					break;
+				case WRITING_MANIFEST:
+					System.err.print( "Writing conversion manifest... " );
+					break;
+			}
+		}
+
+		@Override
+		public void stageFinished( ConversionStage stage, long elapsedMillis ) {
+			System.err.println( "Done." );
+		}
+
+		@Override
+		public void message( String message ) {
+			System.err.print( message );
+		}
+
+		private final PLinkConverterOptions options;
 	}
 
 	public void run()  {
@@ -129,7 +294,10 @@ public class MainProgram implements Runnable {
 		MainProgram mp = new MainProgram();
 
 		try {
-			mp.convertSearch( paramFile, binDirectory, dataDirectory, outFile, fastaFile );
+			mp.convertSearch( getConverterOptions() );
+
+			if( verboseRequested )
+				System.err.println( TaxonomyIdResolver.getInstance().getStatistics() );
 		} catch( Throwable t ) {
 
 			if( verboseRequested ) {
@@ -145,6 +313,26 @@ public class MainProgram implements Runnable {
 	
 	public static void main( String[] args ) {
 
+		if( args.length > 0 && args[ 0 ].equals( "batch" ) ) {
+			CommandLine.run( new BatchCommand(), Arrays.copyOfRange( args, 1, args.length ) );
+			return;
+		}
+
+		if( args.length > 0 && args[ 0 ].equals( "serve" ) ) {
+			CommandLine.run( new ServerCommand(), Arrays.copyOfRange( args, 1, args.length ) );
+			return;
+		}
+
+		if( args.length > 0 && args[ 0 ].equals( "watch" ) ) {
+			CommandLine.run( new WatchCommand(), Arrays.copyOfRange( args, 1, args.length ) );
+			return;
+		}
+
+		if( args.length > 0 && args[ 0 ].equals( "merge" ) ) {
+			CommandLine.run( new MergeCommand(), Arrays.copyOfRange( args, 1, args.length ) );
+			return;
+		}
+
 		CommandLine.run(new MainProgram(), args);
 
 	}
@@ -0,0 +1,202 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.yeastrc.proxl.xml.plink2.main;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionListener;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionStage;
+import org.yeastrc.proxl.xml.plink2.fasta.DecoyLabelMatcher;
+import org.yeastrc.proxl.xml.plink2.merge.PLinkRunMerger;
+
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " merge",
+		mixinStandardHelpOptions = true,
+		version = PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " " + PLinkConverterConstants.CONVERSION_PROGRAM_VERSION,
+		sortOptions = false,
+		synopsisHeading = "%n",
+		descriptionHeading = "%n@|bold,underline Description:|@%n%n",
+		optionListHeading = "%n@|bold,underline Options:|@%n",
+		description = "Merge several pLink 2.x runs of one experiment (e.g., one per fraction) into a single ProXL XML " +
+				"file, to be uploaded as one search. The runs must have used the same cross-linker and static " +
+				"modifications. Reported peptides found in more than one run are combined into one with all of their " +
+				"PSMs. The runs are read one at a time, so only one run's results are held in memory.",
+		footer = {
+				"",
+				"@|bold,underline Example|@:",
+				"java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " merge ^\n" +
+						"-p fraction1\\run.plink -r fraction1 ^\n" +
+						"-p fraction2\\run.plink -r fraction2 ^\n" +
+						"-o experiment.proxl.xml -f yeast.fasta",
+				""
+		}
+)
+public class MergeCommand implements Runnable {
+
+	@CommandLine.Option(names = { "-p", "--param" }, required = true, description = "[Required] Full path to the pLink 2 " +
+			"parameters (.plink) file of a run to merge. Give once for each run.")
+	private List<File> paramFiles;
+
+	@CommandLine.Option(names = { "-r", "--reports" }, description = "[Optional] The directory holding the reports " +
+			"directory of a run. If given, give once for each run, in the same order as -p. If not set, the location " +
+			"in each run's .plink file is used.")
+	private List<File> dataDirectories;
+
+	@CommandLine.Option(names = { "-o", "--out" }, required = true, description = "[Required] Full path to use for " +
+			"the merged ProXL XML output file (including file name).")
+	private File outputFile;
+
+	@CommandLine.Option(names = { "-f", "--fasta" }, required = true, description = "[Required] Full path to the " +
+			"FASTA file searched by the runs.")
+	private File fastaFile;
+
+	@CommandLine.Option(names = { "-b", "--bin" }, description = "[Optional] Full path to the pLink installation directory. " +
+			"If not set, the default install location for the runs' version of pLink is used.")
+	private File binDirectory;
+
+	@CommandLine.Option(names = { "--temp-dir" }, paramLabel = "<directory>", description = "[Optional] Directory for " +
+			"the temporary files holding each run's sorted reported peptides. Defaults to the output file's directory.")
+	private File tempDirectory;
+
+	@CommandLine.Option(names = { "--definition-cache-dir" }, paramLabel = "<directory>", description = "[Optional] " +
+			"Directory in which to keep compiled copies of pLink's modification and cross-linker definitions. See the " +
+			"main command.")
+	private File definitionCacheDirectory;
+
+	@CommandLine.Option(names = { "--validate-while-writing" }, description = "[Optional] Validate the proxl XML " +
+			"as it is written. See the main command.")
+	private boolean validateWhileWriting = false;
+
+	@CommandLine.Option(names = { "--compact" }, description = "[Optional] Write compact proxl XML. See the main command.")
+	private boolean compact = false;
+
+	@CommandLine.Option(names = { "--manifest" }, description = "[Optional] Write a JSON manifest, listing the input " +
+			"files of every run, next to the proxl XML. See the main command.")
+	private boolean writeManifest = false;
+
+	@CommandLine.Option(names = { "--index" }, description = "[Optional] Write an index next to the proxl XML. See " +
+			"the main command.")
+	private boolean writeIndex = false;
+
+	@CommandLine.Option(names = { "--decoy-label" }, paramLabel = "<label>", description = "[Optional] A protein is a " +
+			"decoy if its name contains this label. May be given more than once. Defaults to random, decoy, reverse " +
+			"and shuffle.")
+	private String[] decoyLabels = PLinkConverterConstants.DEFAULT_DECOY_LABELS.toArray( new String[ 0 ] );
+
+	@CommandLine.Option(names = { "--skip-decoy-results" }, description = "[Optional] Drop results matched only to " +
+			"decoys while reading. See the main command.")
+	private boolean skipDecoyResults = false;
+
+	@CommandLine.Option(names = { "-v", "--verbose" }, description = "[Optional] Include the full stack trace of " +
+			"any error.")
+	private boolean verboseRequested = false;
+
+
+	@Override
+	public void run() {
+
+		MainProgram.printRuntimeInfo();
+
+		if( dataDirectories != null && dataDirectories.size() != paramFiles.size() ) {
+			System.err.println( "-r must be given once for each -p (" + paramFiles.size() + " runs, " + dataDirectories.size() + " report directories)." );
+			System.exit( 1 );
+			return;
+		}
+
+		List<PLinkRunMerger.Run> runs = new ArrayList<>();
+
+		for( int i = 0; i < paramFiles.size(); i++ )
+			runs.add( new PLinkRunMerger.Run( paramFiles.get( i ), dataDirectories == null ? null : dataDirectories.get( i ) ) );
+
+		PLinkRunMerger merger = new PLinkRunMerger();
+		merger.setBinDirectory( binDirectory );
+		merger.setDefinitionCacheDirectory( definitionCacheDirectory );
+		merger.setTempDirectory( tempDirectory );
+		merger.setCompact( compact );
+		merger.setValidateWhileWriting( validateWhileWriting );
+		merger.setWriteManifest( writeManifest );
+		merger.setWriteIndex( writeIndex );
+		merger.setDecoyLabelMatcher( new DecoyLabelMatcher( Arrays.asList( decoyLabels ) ) );
+		merger.setSkipDecoyResults( skipDecoyResults );
+
+		try {
+			merger.merge( runs, fastaFile, outputFile, new ConsoleMergeListener() );
+		} catch( Throwable t ) {
+
+			if( verboseRequested )
+				t.printStackTrace();
+
+			System.err.println( "\n\nEncountered an error during the merge:" );
+			System.err.println( t.getMessage() );
+			System.exit( 1 );
+			return;
+		}
+
+		System.err.println( "\nMerged " + runs.size() + " runs (" + merger.getResultCount() + " results) into " + merger.getReportedPeptideCount() +
+				" reported peptides and " + merger.getPsmCount() + " PSMs, combining " + merger.getCombinedCount() + " reported peptides found in more than one run." );
+	}
+
+	/**
+	 * Prints the progress of the merge to STD ERR
+	 */
+	private class ConsoleMergeListener implements ConversionListener {
+
+		@Override
+		public void stageStarted( ConversionStage stage ) {
+
+			switch( stage ) {
+				case LOADING_PARAMETERS:
+					System.err.print( "\tLoading search parameters... " );
+					break;
+				case LOADING_RESULTS:
+					System.err.print( "\tLoading search results... " );
+					break;
+				case SPILLING_REPORTED_PEPTIDES:
+					System.err.print( "\tSorting and saving reported peptides... " );
+					break;
+				case WRITING:
+					System.err.print( validateWhileWriting ? "Merging runs and writing and validating proxl XML... " : "Merging runs and writing proxl XML... " );
+					break;
+				case VALIDATING:
+					System.err.print( "Validating proxl XML... " );
+					break;
+				case WRITING_MANIFEST:
+					System.err.print( "Writing conversion manifest... " );
+					break;
+			}
+		}
+
+		@Override
+		public void stageFinished( ConversionStage stage, long elapsedMillis ) {
+			System.err.println( "Done." );
+		}
+
+		@Override
+		public void message( String message ) {
+			System.err.print( message );
+		}
+	}
+
+}
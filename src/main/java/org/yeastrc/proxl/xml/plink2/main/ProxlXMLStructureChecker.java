@@ -0,0 +1,198 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.main;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks on the structure of a proxl XML document that the XSD can not express. Receives
+ * the SAX events for a document after they have passed through the schema validator, and
+ * only keeps the state of the current reported peptide, so memory use is constant.
+ *
+ * Checks performed:
+ * - every PSM annotation refers to an annotation type defined for its search program
+ * - the number of peptides and linked positions agrees with the type of the reported peptide
+ * - linked positions and modification positions fall within the peptide sequence
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLStructureChecker extends DefaultHandler {
+
+	@Override
+	public void setDocumentLocator( Locator locator ) {
+		this.locator = locator;
+	}
+
+	@Override
+	public void startElement( String uri, String localName, String qName, Attributes attributes ) throws SAXException {
+
+		String name = localName == null || localName.isEmpty() ? qName : localName;
+
+		switch( name ) {
+
+			case "search_program":
+				currentSearchProgram = attributes.getValue( "name" );
+				break;
+
+			case "filterable_psm_annotation_type":
+				filterablePsmAnnotationTypes.add( getAnnotationTypeKey( currentSearchProgram, attributes.getValue( "name" ) ) );
+				break;
+
+			case "descriptive_psm_annotation_type":
+				descriptivePsmAnnotationTypes.add( getAnnotationTypeKey( currentSearchProgram, attributes.getValue( "name" ) ) );
+				break;
+
+			case "reported_peptide":
+				currentReportedPeptide = attributes.getValue( "reported_peptide_string" );
+				currentReportedPeptideType = attributes.getValue( "type" );
+				peptideCount = 0;
+				linkedPositionCount = 0;
+				break;
+
+			case "peptide":
+				peptideCount++;
+				currentPeptideLength = attributes.getValue( "sequence" ).length();
+				break;
+
+			case "linked_position":
+				linkedPositionCount++;
+				checkPosition( attributes.getValue( "position" ), "Linked position" );
+				break;
+
+			case "modification":
+				if( attributes.getValue( "position" ) != null )
+					checkPosition( attributes.getValue( "position" ), "Modification position" );
+				break;
+
+			case "filterable_psm_annotation":
+				checkAnnotation( filterablePsmAnnotationTypes, attributes, "filterable" );
+				break;
+
+			case "descriptive_psm_annotation":
+				checkAnnotation( descriptivePsmAnnotationTypes, attributes, "descriptive" );
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	@Override
+	public void endElement( String uri, String localName, String qName ) throws SAXException {
+
+		String name = localName == null || localName.isEmpty() ? qName : localName;
+
+		if( name.equals( "peptides" ) ) {
+			checkPeptideCounts();
+		}
+	}
+
+	/**
+	 * Ensure the number of peptides and linked positions seen for the current reported
+	 * peptide are consistent with its link type
+	 *
+	 * @throws SAXParseException
+	 */
+	private void checkPeptideCounts() throws SAXParseException {
+
+		int expectedPeptides;
+		int expectedLinkedPositions;
+
+		if( "crosslink".equals( currentReportedPeptideType ) ) {
+			expectedPeptides = 2;
+			expectedLinkedPositions = 2;
+		} else if( "looplink".equals( currentReportedPeptideType ) ) {
+			expectedPeptides = 1;
+			expectedLinkedPositions = 2;
+		} else {
+			expectedPeptides = 1;
+			expectedLinkedPositions = 0;
+		}
+
+		if( peptideCount != expectedPeptides )
+			throw getException( "Expected " + expectedPeptides + " peptide(s) for " + currentReportedPeptideType + ", got " + peptideCount );
+
+		if( linkedPositionCount != expectedLinkedPositions )
+			throw getException( "Expected " + expectedLinkedPositions + " linked position(s) for " + currentReportedPeptideType + ", got " + linkedPositionCount );
+	}
+
+	/**
+	 * Ensure the supplied position (starting at 1) is within the current peptide
+	 *
+	 * @param position
+	 * @param description
+	 * @throws SAXParseException
+	 */
+	private void checkPosition( String position, String description ) throws SAXParseException {
+
+		if( Integer.parseInt( position ) > currentPeptideLength )
+			throw getException( description + " " + position + " is outside of a peptide of length " + currentPeptideLength );
+	}
+
+	/**
+	 * Ensure the PSM annotation described by the supplied attributes was defined as an annotation type
+	 *
+	 * @param definedTypes
+	 * @param attributes
+	 * @param description
+	 * @throws SAXParseException
+	 */
+	private void checkAnnotation( Set<String> definedTypes, Attributes attributes, String description ) throws SAXParseException {
+
+		String searchProgram = attributes.getValue( "search_program" );
+		String annotationName = attributes.getValue( "annotation_name" );
+
+		if( !definedTypes.contains( getAnnotationTypeKey( searchProgram, annotationName ) ) )
+			throw getException( "PSM annotation \"" + annotationName + "\" for search program \"" + searchProgram + "\" is not a defined " + description + " PSM annotation type" );
+	}
+
+	private String getAnnotationTypeKey( String searchProgram, String annotationName ) {
+		return searchProgram + "\t" + annotationName;
+	}
+
+	private SAXParseException getException( String message ) {
+
+		if( currentReportedPeptide != null )
+			message += " (reported peptide: " + currentReportedPeptide + ")";
+
+		return new SAXParseException( message, locator );
+	}
+
+
+	private Locator locator;
+
+	private String currentSearchProgram;
+	private final Set<String> filterablePsmAnnotationTypes = new HashSet<>();
+	private final Set<String> descriptivePsmAnnotationTypes = new HashSet<>();
+
+	private String currentReportedPeptide;
+	private String currentReportedPeptideType;
+	private int currentPeptideLength;
+	private int peptideCount;
+	private int linkedPositionCount;
+
+}
@@ -1,20 +1,128 @@
 package org.yeastrc.proxl.xml.plink2.main;
 
-import org.yeastrc.proxl_import.api.xml_dto.ProxlInput;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLContext;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
 
+/**
+ * Validate a proxl XML file by streaming it through the proxl XSD (shipped in proxl-import-api.jar)
+ * and the structural checks in ProxlXMLStructureChecker. The file is never unmarshalled, so memory
+ * use does not depend on the size of the file.
+ */
 public class ProxlXMLValidator {
 
-    public static void validateProxlXML(File proxlXMLFile) throws JAXBException {
+    /**
+     * The name of the proxl XSD on the classpath, matches the version of proxl-import-api.jar in lib/
+     */
+    public static final String PROXL_XSD_RESOURCE_NAME = "proxl-xml-v1.10.0.xsd";
 
-        JAXBContext jaxbContext = JAXBContext.newInstance(ProxlInput.class);
-        Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-        ProxlInput proxlInput = (ProxlInput)jaxbUnmarshaller.unmarshal( proxlXMLFile );
+    public static void validateProxlXML(File proxlXMLFile) throws Exception {
 
+        ValidatorHandler validatorHandler = getValidatorHandler();
+
+        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware( true );
+        parserFactory.setFeature( XMLConstants.FEATURE_SECURE_PROCESSING, true );
+
+        XMLReader xmlReader = parserFactory.newSAXParser().getXMLReader();
+        xmlReader.setContentHandler( validatorHandler );
+        xmlReader.setErrorHandler( validatorHandler.getErrorHandler() );
+
+        try( InputStream is = new BufferedInputStream( new FileInputStream( proxlXMLFile ) ) ) {
+
+            InputSource inputSource = new InputSource( is );
+            inputSource.setSystemId( proxlXMLFile.toURI().toString() );
+
+            xmlReader.parse( inputSource );
+
+        } catch( SAXParseException e ) {
+            throw getValidationException( e );
+        }
+    }
+
+    /**
+     * Get a handler that validates the SAX events of a proxl XML document against the proxl XSD
+     * and ProxlXMLStructureChecker as they are received, throwing a SAXParseException at the
+     * first problem found.
+     *
+     * @return
+     * @throws Exception
+     */
+    public static ValidatorHandler getValidatorHandler() throws Exception {
+
+        ValidatorHandler validatorHandler = getSchema().newValidatorHandler();
+        validatorHandler.setErrorHandler( new FailFastErrorHandler() );
+        validatorHandler.setContentHandler( new ProxlXMLStructureChecker() );
+
+        return validatorHandler;
+    }
+
+    /**
+     * Get an exception describing the supplied validation error, including its line and column
+     *
+     * @param e
+     * @return
+     */
+    public static Exception getValidationException( SAXParseException e ) {
+        return new Exception( "Invalid proxl XML (line " + e.getLineNumber() + ", column " + e.getColumnNumber() + "): " + e.getMessage(), e );
+    }
+
+    /**
+     * Get the compiled proxl XSD, compiled from the classpath the first time it is needed
+     *
+     * @return
+     * @throws Exception
+     */
+    public static Schema getSchema() throws Exception {
+        return ProxlXMLContext.getSchema();
+    }
+
+    /**
+     * Compile the proxl XSD from the classpath. Use getSchema() to get the shared compiled copy.
+     *
+     * @return
+     * @throws Exception
+     */
+    public static Schema compileSchema() throws Exception {
+
+        URL xsdURL = ProxlXMLValidator.class.getClassLoader().getResource( PROXL_XSD_RESOURCE_NAME );
+        if( xsdURL == null )
+            throw new Exception( "Could not find " + PROXL_XSD_RESOURCE_NAME + " on the classpath." );
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance( XMLConstants.W3C_XML_SCHEMA_NS_URI );
+        return schemaFactory.newSchema( xsdURL );
+    }
+
+    /**
+     * Stop at the first error, the SAXParseException carries the line and column
+     */
+    private static class FailFastErrorHandler implements ErrorHandler {
+
+        @Override
+        public void warning( SAXParseException exception ) { }
+
+        @Override
+        public void error( SAXParseException exception ) throws SAXParseException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError( SAXParseException exception ) throws SAXParseException {
+            throw exception;
+        }
     }
 
 }
@@ -0,0 +1,160 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.main;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.server.ConversionServer;
+import org.yeastrc.proxl.xml.plink2.server.ServerJob;
+import org.yeastrc.proxl.xml.plink2.server.ServerListener;
+
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " serve",
+		mixinStandardHelpOptions = true,
+		version = PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " " + PLinkConverterConstants.CONVERSION_PROGRAM_VERSION,
+		sortOptions = false,
+		synopsisHeading = "%n",
+		descriptionHeading = "%n@|bold,underline Description:|@%n%n",
+		optionListHeading = "%n@|bold,underline Options:|@%n",
+		description = "Run the converter as a server that accepts conversion jobs over HTTP on this computer only " +
+				"(the loopback interface). Conversions start in a JVM that is already warm, and FASTA files and pLink " +
+				"definitions are kept between jobs. Stop the server with Ctrl-C.",
+		footer = {
+				"",
+				"@|bold,underline API|@:",
+				"POST   /jobs              Submit a job: a JSON object with params, fasta, output and optionally",
+				"                          reports, bin, validateWhileWriting, compact, manifest, index,",
+				"                          skipDecoyResults, decoyLabels and timeoutSeconds. Paths must be absolute.",
+				"                          Sent with Content-Type: application/json.",
+				"GET    /jobs              The status of every job.",
+				"GET    /jobs/<id>         The status of a job.",
+				"GET    /jobs/<id>/events  The progress of a job, streamed as one JSON object per line.",
+				"DELETE /jobs/<id>         Cancel a job.",
+				"GET    /stats             Queue depth, job counts and timings.",
+				"Requests from web pages (with an Origin header, or a Host other than localhost) are refused.",
+				"",
+				"@|bold,underline Example|@:",
+				"curl -X POST http://localhost:8089/jobs -H 'Content-Type: application/json' -d '{\"params\": \"/data/run/run.plink\", " +
+						"\"fasta\": \"/data/yeast.fasta\", \"output\": \"/data/run.proxl.xml\"}'",
+				""
+		}
+)
+public class ServerCommand implements Runnable {
+
+	@CommandLine.Option(names = { "--port" }, paramLabel = "<port>", description = "[Optional] The port to listen on. " +
+			"Defaults to " + ConversionServer.DEFAULT_PORT + ".")
+	private int port = ConversionServer.DEFAULT_PORT;
+
+	@CommandLine.Option(names = { "-j", "--jobs" }, paramLabel = "<jobs>", description = "[Optional] The number of " +
+			"jobs converted at the same time. Defaults to the number of available processors.")
+	private int concurrency = Runtime.getRuntime().availableProcessors();
+
+	@CommandLine.Option(names = { "--timeout" }, paramLabel = "<seconds>", description = "[Optional] Cancel a job " +
+			"that runs for longer than this, unless it sets its own timeoutSeconds. Defaults to no limit.")
+	private long timeoutSeconds = 0;
+
+	@CommandLine.Option(names = { "-b", "--bin" }, description = "[Optional] Full path to the pLink installation directory, " +
+			"used for jobs that don't have a bin.")
+	private String binDirectory;
+
+	@CommandLine.Option(names = { "--definition-cache-dir" }, paramLabel = "<directory>", description = "[Optional] " +
+			"Directory in which to keep compiled copies of pLink's modification and cross-linker definitions. See the " +
+			"main command.")
+	private String definitionCacheDirectory;
+
+	@CommandLine.Option(names = { "-v", "--verbose" }, description = "[Optional] Print the full stack trace of " +
+			"jobs that fail.")
+	private boolean verboseRequested = false;
+
+
+	@Override
+	public void run() {
+
+		MainProgram.printRuntimeInfo();
+
+		ConversionServer server = new ConversionServer( port, concurrency );
+
+		server.setDefaultTimeoutMillis( timeoutSeconds * 1000 );
+
+		if( binDirectory != null )
+			server.setDefaultBinDirectory( new File( binDirectory ) );
+
+		if( definitionCacheDirectory != null )
+			server.setDefinitionCacheDirectory( new File( definitionCacheDirectory ) );
+
+		server.setListener( new ServerListener() {
+
+			@Override
+			public void jobSubmitted( ServerJob job ) {
+				System.err.println( "Job " + job.getId() + " queued: " + job.getOptions().getParamsFile() + " -> " + job.getOptions().getOutputFile() );
+			}
+
+			@Override
+			public void jobFinished( ServerJob job ) {
+				printStatus( job );
+			}
+		} );
+
+		try {
+			server.start();
+		} catch( Exception e ) {
+			System.err.println( "Could not start the server: " + e.getMessage() );
+			System.exit( 1 );
+			return;
+		}
+
+		CountDownLatch stopped = new CountDownLatch( 1 );
+
+		Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+			System.err.println( "Stopping the server..." );
+			server.stop();
+			stopped.countDown();
+		} ) );
+
+		System.err.println( "Listening on http://localhost:" + server.getPort() + "/, running " + concurrency + " jobs at a time." );
+
+		try {
+			stopped.await();
+		} catch( InterruptedException e ) {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Print the outcome of a job
+	 */
+	private synchronized void printStatus( ServerJob job ) {
+
+		if( job.getState() == ServerJob.State.SUCCEEDED ) {
+			System.err.println( "Job " + job.getId() + " done (" + job.getResult().getReportedPeptideCount() + " reported peptides, " +
+					job.getResult().getPsmCount() + " PSMs) in " + String.format( "%.1f s", job.getRunMillis() / 1000.0 ) );
+		} else {
+			System.err.println( "Job " + job.getId() + " " + job.getState().name().toLowerCase( Locale.ROOT ).replace( '_', ' ' ) +
+					( job.getError() != null ? ": " + job.getError().getMessage() : "" ) );
+
+			if( verboseRequested && job.getError() != null && job.getState() == ServerJob.State.FAILED )
+				job.getError().printStackTrace();
+		}
+	}
+
+}
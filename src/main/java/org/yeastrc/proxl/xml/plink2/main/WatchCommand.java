@@ -0,0 +1,304 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.main;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverterOptions;
+import org.yeastrc.proxl.xml.plink2.ini.ParsedINIFile;
+import org.yeastrc.proxl.xml.plink2.watch.ConversionLedger;
+import org.yeastrc.proxl.xml.plink2.watch.FolderWatcher;
+import org.yeastrc.proxl.xml.plink2.watch.WatchListener;
+
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " watch",
+		mixinStandardHelpOptions = true,
+		version = PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " " + PLinkConverterConstants.CONVERSION_PROGRAM_VERSION,
+		sortOptions = false,
+		synopsisHeading = "%n",
+		descriptionHeading = "%n@|bold,underline Description:|@%n%n",
+		optionListHeading = "%n@|bold,underline Options:|@%n",
+		description = "Watch directories for pLink 2.x runs and convert each one to ProXL XML as soon as it is complete: " +
+				"once its .plink file has a reports directory next to it with the summary and spectra files, and those " +
+				"files have stopped changing. Runs that have already been converted are remembered in a ledger file and " +
+				"not converted again unless pLink writes them again. Stop watching with Ctrl-C.",
+		footer = {
+				"",
+				"@|bold,underline Example|@:",
+				"java -jar " + PLinkConverterConstants.CONVERSION_PROGRAM_NAME + " watch D:\\pLink_results " +
+						"-f D:\\fastas -o D:\\proxl_uploads -b C:\\pFindStudio\\pLink\\2.3.0\\bin",
+				""
+		}
+)
+public class WatchCommand implements Runnable {
+
+	@CommandLine.Parameters(paramLabel = "<directory>", arity = "1..*", description = "The directories to watch, " +
+			"including all directories below them.")
+	private List<File> directories;
+
+	@CommandLine.Option(names = { "-f", "--fasta" }, required = true, description = "[Required] The FASTA file " +
+			"searched by the runs, or a directory of FASTA files, in which a run's FASTA file is found from the " +
+			"database name in its .plink file (<db_name>.fasta).")
+	private File fasta;
+
+	@CommandLine.Option(names = { "-o", "--out-dir" }, paramLabel = "<directory>", description = "[Optional] Write " +
+			"the ProXL XML files to this directory, named for the .plink files and the directories they are in below the " +
+			"watched directory (e.g., exp1_fraction2_run.proxl.xml). Defaults to next to each .plink file, named for the .plink file.")
+	private File outputDirectory;
+
+	@CommandLine.Option(names = { "-b", "--bin" }, description = "[Optional] Full path to the pLink installation directory. " +
+			"If not set, the default install location for the runs' version of pLink is used.")
+	private File binDirectory;
+
+	@CommandLine.Option(names = { "-j", "--jobs" }, paramLabel = "<jobs>", description = "[Optional] The number of " +
+			"runs converted at the same time. Defaults to 1.")
+	private int concurrency = 1;
+
+	@CommandLine.Option(names = { "--stable-seconds" }, paramLabel = "<seconds>", description = "[Optional] How long " +
+			"a run's files must stay the same size before it is converted. Defaults to " + ( FolderWatcher.DEFAULT_STABLE_MILLIS / 1000 ) + ".")
+	private long stableSeconds = FolderWatcher.DEFAULT_STABLE_MILLIS / 1000;
+
+	@CommandLine.Option(names = { "--ledger" }, paramLabel = "<file>", description = "[Optional] The file listing the " +
+			"runs already converted. Defaults to " + ConversionLedger.DEFAULT_LEDGER_FILENAME + " in the output " +
+			"directory, or in the first watched directory.")
+	private File ledgerFile;
+
+	@CommandLine.Option(names = { "--definition-cache-dir" }, paramLabel = "<directory>", description = "[Optional] " +
+			"Directory in which to keep compiled copies of pLink's modification and cross-linker definitions. See the " +
+			"main command.")
+	private File definitionCacheDirectory;
+
+	@CommandLine.Option(names = { "--validate-while-writing" }, description = "[Optional] Validate each proxl XML " +
+			"as it is written. See the main command.")
+	private boolean validateWhileWriting = false;
+
+	@CommandLine.Option(names = { "--compact" }, description = "[Optional] Write compact proxl XML. See the main command.")
+	private boolean compact = false;
+
+	@CommandLine.Option(names = { "--manifest" }, description = "[Optional] Write a JSON manifest next to each proxl " +
+			"XML. See the main command.")
+	private boolean writeManifest = false;
+
+	@CommandLine.Option(names = { "--decoy-label" }, paramLabel = "<label>", description = "[Optional] A protein is a " +
+			"decoy if its name contains this label. May be given more than once. Defaults to random, decoy, reverse " +
+			"and shuffle.")
+	private String[] decoyLabels = PLinkConverterConstants.DEFAULT_DECOY_LABELS.toArray( new String[ 0 ] );
+
+	@CommandLine.Option(names = { "--skip-decoy-results" }, description = "[Optional] Drop results matched only to " +
+			"decoys while reading. See the main command.")
+	private boolean skipDecoyResults = false;
+
+	@CommandLine.Option(names = { "-v", "--verbose" }, description = "[Optional] Print the full stack trace of " +
+			"conversions that fail.")
+	private boolean verboseRequested = false;
+
+	private List<File> watchedDirectories;
+
+
+	@Override
+	public void run() {
+
+		MainProgram.printRuntimeInfo();
+
+		watchedDirectories = new ArrayList<>();
+
+		for( File directory : directories ) {
+			if( !directory.isDirectory() ) {
+				System.err.println( "Not a directory: " + directory );
+				System.exit( 1 );
+				return;
+			}
+
+			watchedDirectories.add( directory.getAbsoluteFile() );
+		}
+
+		if( !fasta.exists() ) {
+			System.err.println( "FASTA file or directory does not exist: " + fasta );
+			System.exit( 1 );
+			return;
+		}
+
+		if( outputDirectory != null && !outputDirectory.isDirectory() ) {
+			System.err.println( "Output directory does not exist: " + outputDirectory );
+			System.exit( 1 );
+			return;
+		}
+
+		if( ledgerFile == null )
+			ledgerFile = new File( outputDirectory != null ? outputDirectory : watchedDirectories.get( 0 ), ConversionLedger.DEFAULT_LEDGER_FILENAME );
+
+		ConversionLedger ledger;
+
+		try {
+			ledger = new ConversionLedger( ledgerFile );
+		} catch( Exception e ) {
+			System.err.println( "Could not read the ledger " + ledgerFile + ": " + e.getMessage() );
+			System.exit( 1 );
+			return;
+		}
+
+		FolderWatcher watcher = new FolderWatcher( watchedDirectories, this::getConverterOptions, ledger, concurrency, stableSeconds * 1000 );
+
+		watcher.setListener( new WatchListener() {
+
+			@Override
+			public void conversionStarted( File plinkFile, File outputFile ) {
+				System.err.println( "Converting " + plinkFile + " -> " + outputFile );
+			}
+
+			@Override
+			public void conversionSucceeded( File plinkFile, PLinkConversionResult result ) {
+				System.err.println( "Done: " + plinkFile + " (" + result.getReportedPeptideCount() + " reported peptides, " +
+						result.getPsmCount() + " PSMs) in " + String.format( "%.1f s", result.getTotalMillis() / 1000.0 ) );
+			}
+
+			@Override
+			public void conversionFailed( File plinkFile, Throwable error ) {
+				System.err.println( "Failed: " + plinkFile + ": " + error.getMessage() );
+
+				if( verboseRequested )
+					error.printStackTrace();
+			}
+		} );
+
+		Thread watchThread = Thread.currentThread();
+
+		Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+			System.err.println( "Stopping, after the conversions that are running..." );
+			watcher.stop();
+
+			try {
+				watchThread.join();
+			} catch( InterruptedException e ) {
+				// exiting anyway
+			}
+		} ) );
+
+		System.err.println( "Watching " + watchedDirectories + ", converting " + concurrency + " at a time. Ledger: " + ledgerFile.getAbsolutePath() );
+
+		try {
+			watcher.watch();
+		} catch( Exception e ) {
+			if( verboseRequested )
+				e.printStackTrace();
+
+			System.err.println( "\n\nEncountered an error watching for pLink runs:" );
+			System.err.println( e.getMessage() );
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Get the conversion options for a run
+	 *
+	 * @param plinkFile The run's parameters file
+	 * @return
+	 * @throws Exception If the run's FASTA file can't be found
+	 */
+	private PLinkConverterOptions getConverterOptions( File plinkFile ) throws Exception {
+
+		return PLinkConverterOptions.builder()
+				.paramsFile( plinkFile )
+				.binDirectory( binDirectory )
+				.dataDirectory( plinkFile.getParentFile() )
+				.fastaFile( getFastaFile( plinkFile ) )
+				.outputFile( getOutputFile( plinkFile ) )
+				.validateWhileWriting( validateWhileWriting )
+				.compact( compact )
+				.writeManifest( writeManifest )
+				.cachePreparedFasta( true )
+				.decoyLabels( Arrays.asList( decoyLabels ) )
+				.skipDecoyResults( skipDecoyResults )
+				.definitionCacheDirectory( definitionCacheDirectory )
+				.build();
+	}
+
+	/**
+	 * Get the proxl XML file for a run. Runs in different directories often have .plink files with the same
+	 * name, so in the output directory the name also includes the run's directories below the watched directory
+	 * (and the watched directory, if there are several). The FolderWatcher refuses any run whose file would
+	 * still be the same as another run's.
+	 *
+	 * @param plinkFile The run's parameters file
+	 * @return
+	 */
+	private File getOutputFile( File plinkFile ) {
+
+		String name = plinkFile.getName().substring( 0, plinkFile.getName().length() - ".plink".length() );
+
+		if( outputDirectory == null )
+			return new File( plinkFile.getParentFile(), name + ".proxl.xml" );
+
+		Path plinkPath = plinkFile.getAbsoluteFile().toPath();
+
+		for( File directory : watchedDirectories ) {
+
+			if( !plinkPath.startsWith( directory.toPath() ) )
+				continue;
+
+			StringBuilder prefix = new StringBuilder();
+
+			if( watchedDirectories.size() > 1 )
+				prefix.append( directory.getName() ).append( '_' );
+
+			for( Path part : directory.toPath().relativize( plinkPath.getParent() ) ) {
+				if( !part.toString().isEmpty() )
+					prefix.append( part ).append( '_' );
+			}
+
+			name = prefix + name;
+			break;
+		}
+
+		return new File( outputDirectory, name + ".proxl.xml" );
+	}
+
+	/**
+	 * Get the FASTA file for a run: the FASTA file given, or the one named for the run's database in the FASTA directory given
+	 *
+	 * @param plinkFile
+	 * @return
+	 * @throws Exception
+	 */
+	private File getFastaFile( File plinkFile ) throws Exception {
+
+		if( !fasta.isDirectory() )
+			return fasta;
+
+		String databaseName = new ParsedINIFile( plinkFile ).getConfig().getString( "database/db_name" );
+		if( databaseName == null )
+			throw new Exception( "Could not find the database name in " + plinkFile );
+
+		for( String extension : new String[] { ".fasta", ".fa" } ) {
+			File fastaFile = new File( fasta, databaseName + extension );
+			if( fastaFile.isFile() )
+				return fastaFile;
+		}
+
+		throw new Exception( "Could not find a FASTA file for database " + databaseName + " in " + fasta );
+	}
+
+}
@@ -0,0 +1,431 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.yeastrc.proxl.xml.plink2.merge;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.yeastrc.proxl.xml.plink2.builder.XMLBuilder;
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionListener;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionStage;
+import org.yeastrc.proxl.xml.plink2.fasta.DecoyLabelMatcher;
+import org.yeastrc.proxl.xml.plink2.main.ProxlXMLValidator;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkModification;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkResult;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkConstants;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkResultsLoader;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParameters;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParametersLoader;
+import org.yeastrc.proxl.xml.plink2.utils.ModificationLookupUtils;
+import org.yeastrc.proxl.xml.plink2.utils.PLinkUtils;
+import org.yeastrc.proxl.xml.plink2.writer.ConversionManifest;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLWriter;
+import org.yeastrc.proxl_import.api.xml_dto.Peptide;
+import org.yeastrc.proxl_import.api.xml_dto.ProxlInput;
+import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
+
+/**
+ * Merges several pLink 2.x runs of one experiment (e.g., one per fraction) into a single proxl XML
+ * file, so they are uploaded to proxl as one search.
+ *
+ * The runs must be compatible: the same cross-linker, the same static modifications, and e-values
+ * calculated for all or none of them. The runs are read one at a time; the reported peptides of
+ * each are sorted and written to a temporary spill file (see ReportedPeptideSpillFile) before the next
+ * is read. The spill files are then merged in step (see ReportedPeptideMerger), combining identical
+ * reported peptides from different runs into one with all of their PSMs, and the merged reported
+ * peptides are streamed into the proxl XML as it is written. So only one run's results are ever held in
+ * memory. The PSMs of different runs stay distinguishable by their scan file names.
+ *
+ * Progress is reported to a ConversionListener, as for a PLinkConverter conversion.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PLinkRunMerger {
+
+	/**
+	 * A pLink run to merge
+	 */
+	public static class Run {
+
+		/**
+		 * @param paramsFile The pLink parameters (.plink) file of the run
+		 * @param dataDirectory The directory holding the run's reports directory, or null to use the one in the parameters file
+		 */
+		public Run( File paramsFile, File dataDirectory ) {
+			this.paramsFile = paramsFile;
+			this.dataDirectory = dataDirectory;
+		}
+
+		public File getParamsFile() {
+			return paramsFile;
+		}
+
+		public File getDataDirectory() {
+			return dataDirectory;
+		}
+
+		private final File paramsFile;
+		private final File dataDirectory;
+	}
+
+	/**
+	 * Merge the supplied runs into one proxl XML file
+	 *
+	 * @param runs The runs, in the order in which their PSMs are listed for reported peptides found in more than one
+	 * @param fastaFile The FASTA file searched by all of the runs
+	 * @param outputFile The proxl XML file to write
+	 * @param listener Receives the progress of the merge, may be null
+	 * @throws Exception If a run can't be read or isn't compatible with the first run
+	 */
+	public void merge( List<Run> runs, File fastaFile, File outputFile, ConversionListener listener ) throws Exception {
+
+		if( runs.isEmpty() )
+			throw new Exception( "No pLink runs to merge." );
+
+		ConversionListener progress = listener != null ? listener : new ConversionListener() { };
+
+		resultCount = 0;
+		combinedCount = 0;
+		manifestFile = null;
+
+		List<PLinkSearchParameters> runParams = new ArrayList<>();
+		Collection<String> peptideSequences = new HashSet<>();
+		List<File> spillFiles = new ArrayList<>();
+		List<ReportedPeptideSpillFile.Reader> readers = new ArrayList<>();
+
+		XMLBuilder builder = new XMLBuilder();
+		builder.setCompact( compact );
+		builder.setDecoyLabelMatcher( decoyLabelMatcher );
+
+		File tempDirectory = this.tempDirectory != null ? this.tempDirectory : outputFile.getAbsoluteFile().getParentFile();
+
+		try {
+
+			for( int i = 0; i < runs.size(); i++ ) {
+				Run run = runs.get( i );
+
+				progress.message( "Run " + ( i + 1 ) + " of " + runs.size() + ": " + run.getParamsFile().getPath() + "\n" );
+
+				PLinkSearchParameters params = runStage( ConversionStage.LOADING_PARAMETERS, progress, () ->
+						PLinkSearchParametersLoader.getInstance().getPLinkSearch( run.getParamsFile().getPath(), getPath( binDirectory ), definitionCacheDirectory ) );
+
+				if( !runParams.isEmpty() )
+					checkCompatible( runs.get( 0 ), runParams.get( 0 ), run, params );
+
+				runParams.add( params );
+
+				Collection<PLinkResult> results = runStage( ConversionStage.LOADING_RESULTS, progress, () ->
+						PLinkResultsLoader.getInstance().getAllResults( params, getPath( run.getDataDirectory() ), decoyLabelMatcher, skipDecoyResults, progress ) );
+
+				resultCount += results.size();
+
+				File spillFile = File.createTempFile( outputFile.getName() + ".run" + ( i + 1 ) + ".", ".tmp", tempDirectory );
+				spillFiles.add( spillFile );
+
+				runStage( ConversionStage.SPILLING_REPORTED_PEPTIDES, progress, () -> {
+					List<ReportedPeptide> reportedPeptides = builder.buildReportedPeptides( params, results );
+
+					for( ReportedPeptide reportedPeptide : reportedPeptides ) {
+						for( Peptide peptide : reportedPeptide.getPeptides().getPeptide() )
+							peptideSequences.add( peptide.getSequence() );
+					}
+
+					ReportedPeptideSpillFile.write( reportedPeptides, spillFile );
+					return null;
+				} );
+			}
+
+			ProxlXMLWriter writer = new ProxlXMLWriter();
+			writer.setValidateWhileWriting( validateWhileWriting );
+			writer.setCompact( compact );
+			writer.setComputeSHA256( writeManifest );
+			writer.setWriteIndex( writeIndex );
+
+			runStage( ConversionStage.WRITING, progress, () -> {
+				ProxlInput proxlInputRoot = builder.buildMergedProxlInput( runParams, peptideSequences, fastaFile.getPath() );
+
+				for( int i = 0; i < spillFiles.size(); i++ )
+					readers.add( new ReportedPeptideSpillFile.Reader( spillFiles.get( i ), i ) );
+
+				ReportedPeptideMerger merger = new ReportedPeptideMerger( readers );
+				writer.writeProxlXML( proxlInputRoot, merger, outputFile );
+
+				combinedCount = merger.getCombinedCount();
+				return null;
+			} );
+
+			if( !validateWhileWriting ) {
+				runStage( ConversionStage.VALIDATING, progress, () -> {
+					ProxlXMLValidator.validateProxlXML( outputFile );
+					return null;
+				} );
+			}
+
+			if( writeManifest ) {
+				manifestFile = runStage( ConversionStage.WRITING_MANIFEST, progress, () ->
+						writeManifest( runs, runParams, fastaFile, outputFile, writer ) );
+			}
+
+			reportedPeptideCount = writer.getReportedPeptideCount();
+			psmCount = writer.getPsmCount();
+			bytesWritten = writer.getBytesWritten();
+
+		} finally {
+
+			for( ReportedPeptideSpillFile.Reader reader : readers )
+				reader.close();
+
+			for( File spillFile : spillFiles )
+				spillFile.delete();
+		}
+	}
+
+	/**
+	 * Check that a run can be merged with the first run: it has the same cross-linker and static
+	 * modifications, and e-values were calculated for both or neither
+	 *
+	 * @throws Exception If it can't
+	 */
+	private void checkCompatible( Run firstRun, PLinkSearchParameters firstParams, Run run, PLinkSearchParameters params ) throws Exception {
+
+		String mismatch = null;
+
+		if( !firstParams.getLinker().toString().equals( params.getLinker().toString() ) )
+			mismatch = "a different cross-linker (" + params.getLinker().getName() + " vs. " + firstParams.getLinker().getName() + ")";
+		else if( !getStaticModifications( firstParams ).equals( getStaticModifications( params ) ) )
+			mismatch = "different static modifications (" + getStaticModifications( params ) + " vs. " + getStaticModifications( firstParams ) + ")";
+		else if( PLinkUtils.evaluePresent( firstParams ) != PLinkUtils.evaluePresent( params ) )
+			mismatch = "a different e-value setting";
+
+		if( mismatch != null )
+			throw new Exception( "pLink run " + run.getParamsFile().getPath() + " can't be merged with " + firstRun.getParamsFile().getPath() +
+					", it has " + mismatch + "." );
+	}
+
+	/**
+	 * Get the static modifications of a run, as residue:mass
+	 */
+	private Collection<String> getStaticModifications( PLinkSearchParameters params ) throws Exception {
+
+		Collection<String> staticModifications = new TreeSet<>();
+
+		for( String modName : ModificationLookupUtils.getStaticModificationNames( params ) ) {
+			PLinkModification mod = ModificationLookupUtils.getPLinkModificationFromParameters( modName, params );
+
+			for( String residue : mod.getResidues() )
+				staticModifications.add( residue + ":" + mod.getMonoisotopicMass() );
+		}
+
+		return staticModifications;
+	}
+
+	/**
+	 * Write the JSON manifest for the merge, next to the proxl XML file. It lists the input files of every run.
+	 *
+	 * @return The manifest file
+	 */
+	private File writeManifest( List<Run> runs, List<PLinkSearchParameters> runParams, File fastaFile, File outputFile, ProxlXMLWriter writer ) throws Exception {
+
+		ConversionManifest manifest = new ConversionManifest();
+
+		for( int i = 0; i < runs.size(); i++ ) {
+			PLinkSearchParameters params = runParams.get( i );
+
+			manifest.addInputFile( "parameters", runs.get( i ).getParamsFile() );
+			manifest.addInputFile( PLinkConstants.MODIFY_INI_FILENAME, params.getModifyINIFile() );
+			manifest.addInputFile( PLinkConstants.XLINK_INI_FILENAME, params.getXlinkINIFile() );
+
+			for( int type : PLinkConstants.PLINK_NAME_FOR_TYPE.keySet() ) {
+				File resultsFile = PLinkResultsLoader.getInstance().getResultsFile( params, getPath( runs.get( i ).getDataDirectory() ), type );
+
+				if( resultsFile.exists() )
+					manifest.addInputFile( "results", resultsFile );
+			}
+		}
+
+		manifest.addInputFile( "fasta", fastaFile );
+
+		manifest.setOutput( outputFile, writer );
+
+		File manifestFile = ConversionManifest.getManifestFile( outputFile );
+		manifest.write( manifestFile );
+
+		return manifestFile;
+	}
+
+	/**
+	 * A stage of a merge
+	 */
+	private interface Stage<T> {
+		T run() throws Exception;
+	}
+
+	/**
+	 * Run a stage of a merge, reporting it to the listener
+	 */
+	private <T> T runStage( ConversionStage stage, ConversionListener listener, Stage<T> task ) throws Exception {
+
+		if( Thread.interrupted() )
+			throw new InterruptedException( "The merge was cancelled." );
+
+		listener.stageStarted( stage );
+
+		long startTime = System.nanoTime();
+		T value = task.run();
+
+		listener.stageFinished( stage, ( System.nanoTime() - startTime ) / 1000000 );
+
+		return value;
+	}
+
+	private static String getPath( File file ) {
+		return file == null ? null : file.getPath();
+	}
+
+
+	/**
+	 * @param binDirectory The pLink installation directory, or null to use the one in each run's parameters file
+	 */
+	public void setBinDirectory(File binDirectory) {
+		this.binDirectory = binDirectory;
+	}
+
+	/**
+	 * @param definitionCacheDirectory If not null, the directory in which compiled pLink definitions are kept
+	 */
+	public void setDefinitionCacheDirectory(File definitionCacheDirectory) {
+		this.definitionCacheDirectory = definitionCacheDirectory;
+	}
+
+	/**
+	 * @param tempDirectory The directory for the spill files, or null to use the output file's directory
+	 */
+	public void setTempDirectory(File tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * @param compact If true, write compact proxl XML
+	 */
+	public void setCompact(boolean compact) {
+		this.compact = compact;
+	}
+
+	/**
+	 * @param validateWhileWriting If true, validate the proxl XML as it is written instead of after
+	 */
+	public void setValidateWhileWriting(boolean validateWhileWriting) {
+		this.validateWhileWriting = validateWhileWriting;
+	}
+
+	/**
+	 * @param writeManifest If true, write a JSON manifest next to the proxl XML
+	 */
+	public void setWriteManifest(boolean writeManifest) {
+		this.writeManifest = writeManifest;
+	}
+
+	/**
+	 * @param writeIndex If true, write an index next to the proxl XML
+	 */
+	public void setWriteIndex(boolean writeIndex) {
+		this.writeIndex = writeIndex;
+	}
+
+	/**
+	 * @param decoyLabelMatcher The matcher used to identify decoy proteins
+	 */
+	public void setDecoyLabelMatcher(DecoyLabelMatcher decoyLabelMatcher) {
+		this.decoyLabelMatcher = decoyLabelMatcher;
+	}
+
+	/**
+	 * @param skipDecoyResults If true, results matched only to decoy proteins are dropped while the runs are read
+	 */
+	public void setSkipDecoyResults(boolean skipDecoyResults) {
+		this.skipDecoyResults = skipDecoyResults;
+	}
+
+	/**
+	 * @return The number of pLink results (PSMs) read from all of the runs
+	 */
+	public long getResultCount() {
+		return resultCount;
+	}
+
+	/**
+	 * @return The number of reported peptides written, after combining those found in more than one run
+	 */
+	public long getReportedPeptideCount() {
+		return reportedPeptideCount;
+	}
+
+	/**
+	 * @return The number of PSMs written
+	 */
+	public long getPsmCount() {
+		return psmCount;
+	}
+
+	/**
+	 * @return The number of times a reported peptide of one run was combined with the same reported peptide of another
+	 */
+	public long getCombinedCount() {
+		return combinedCount;
+	}
+
+	/**
+	 * @return The size, in bytes, of the proxl XML written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return The manifest file, or null if it wasn't written
+	 */
+	public File getManifestFile() {
+		return manifestFile;
+	}
+
+
+	private File binDirectory;
+	private File definitionCacheDirectory;
+	private File tempDirectory;
+	private boolean compact = false;
+	private boolean validateWhileWriting = false;
+	private boolean writeManifest = false;
+	private boolean writeIndex = false;
+	private DecoyLabelMatcher decoyLabelMatcher = new DecoyLabelMatcher( PLinkConverterConstants.DEFAULT_DECOY_LABELS );
+	private boolean skipDecoyResults = false;
+
+	private long resultCount;
+	private long reportedPeptideCount;
+	private long psmCount;
+	private long combinedCount;
+	private long bytesWritten;
+	private File manifestFile;
+}
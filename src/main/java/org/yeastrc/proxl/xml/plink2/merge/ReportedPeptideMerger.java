@@ -0,0 +1,109 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.yeastrc.proxl.xml.plink2.merge;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
+
+/**
+ * A k-way merge of the sorted reported peptides of several pLink runs, read from their spill files.
+ * Reported peptides with the same reported peptide string in more than one run are combined into
+ * one, with the PSMs of every run in run order. Only the next reported peptide of each run is held
+ * in memory.
+ *
+ * Errors reading a spill file are thrown as an IllegalStateException, since an Iterator can't throw
+ * checked exceptions.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ReportedPeptideMerger implements Iterator<ReportedPeptide> {
+
+	/**
+	 * @param readers A reader for the spill file of each run
+	 */
+	public ReportedPeptideMerger( List<ReportedPeptideSpillFile.Reader> readers ) {
+
+		queue = new PriorityQueue<>( Math.max( 1, readers.size() ),
+				Comparator.comparing( ( ReportedPeptideSpillFile.Reader reader ) -> reader.peek().getReportedPeptideString() )
+						.thenComparingInt( ReportedPeptideSpillFile.Reader::getOrder ) );
+
+		for( ReportedPeptideSpillFile.Reader reader : readers ) {
+			if( reader.peek() != null )
+				queue.add( reader );
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !queue.isEmpty();
+	}
+
+	@Override
+	public ReportedPeptide next() {
+
+		if( queue.isEmpty() )
+			throw new NoSuchElementException();
+
+		ReportedPeptide merged = take( queue.poll() );
+
+		while( !queue.isEmpty() && queue.peek().peek().getReportedPeptideString().equals( merged.getReportedPeptideString() ) ) {
+			merged.getPsms().getPsm().addAll( take( queue.poll() ).getPsms().getPsm() );
+			combinedCount++;
+		}
+
+		return merged;
+	}
+
+	/**
+	 * Get the next reported peptide from the supplied reader, putting the reader back in the queue if it has more
+	 */
+	private ReportedPeptide take( ReportedPeptideSpillFile.Reader reader ) {
+
+		ReportedPeptide reportedPeptide;
+
+		try {
+			reportedPeptide = reader.next();
+		} catch( Exception e ) {
+			throw new IllegalStateException( "Could not read " + reader.getFile().getAbsolutePath() + ": " + e.getMessage(), e );
+		}
+
+		if( reader.peek() != null )
+			queue.add( reader );
+
+		return reportedPeptide;
+	}
+
+	/**
+	 * @return The number of times a reported peptide from one run has been combined with the same reported peptide from another
+	 */
+	public long getCombinedCount() {
+		return combinedCount;
+	}
+
+
+	private final PriorityQueue<ReportedPeptideSpillFile.Reader> queue;
+	private long combinedCount;
+}
@@ -0,0 +1,180 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.yeastrc.proxl.xml.plink2.merge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLContext;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLIndex;
+import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
+
+/**
+ * A temporary file holding the reported peptides of one pLink run sorted by their reported peptide
+ * string, as proxl XML reported_peptide elements, so the reported peptides of many runs can be merged
+ * by reading the files in step (see ReportedPeptideMerger) instead of holding all of the runs in memory.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ReportedPeptideSpillFile {
+
+	private static final String ROOT_ELEMENT = "reported_peptides";
+
+	/**
+	 * Sort the supplied reported peptides by their reported peptide string and write them to the supplied file
+	 *
+	 * @param reportedPeptides
+	 * @param file
+	 * @throws Exception
+	 */
+	public static void write( List<ReportedPeptide> reportedPeptides, File file ) throws Exception {
+
+		List<ReportedPeptide> sorted = new ArrayList<>( reportedPeptides );
+		sorted.sort( Comparator.comparing( ReportedPeptide::getReportedPeptideString ) );
+
+		Marshaller marshaller = ProxlXMLContext.getJAXBContext().createMarshaller();
+		marshaller.setProperty( Marshaller.JAXB_FRAGMENT, true );
+
+		try( OutputStream os = new BufferedOutputStream( Files.newOutputStream( file.toPath() ) ) ) {
+
+			XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter( os, "UTF-8" );
+
+			writer.writeStartDocument( "UTF-8", "1.0" );
+			writer.writeStartElement( ROOT_ELEMENT );
+
+			for( ReportedPeptide reportedPeptide : sorted ) {
+				CancellationUtils.checkCancelled();
+				marshaller.marshal( new JAXBElement<>( new QName( ProxlXMLIndex.REPORTED_PEPTIDE_ELEMENT ), ReportedPeptide.class, reportedPeptide ), writer );
+			}
+
+			writer.writeEndElement();
+			writer.writeEndDocument();
+			writer.close();
+		}
+	}
+
+	/**
+	 * Reads the reported peptides back from a spill file, one at a time and in order
+	 */
+	public static class Reader implements Closeable {
+
+		/**
+		 * @param file The spill file
+		 * @param order The position of the run in the merge, used to keep the PSMs of merged reported peptides in run order
+		 * @throws Exception
+		 */
+		public Reader( File file, int order ) throws Exception {
+
+			this.file = file;
+			this.order = order;
+
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+			factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+
+			is = new BufferedInputStream( Files.newInputStream( file.toPath() ) );
+			reader = factory.createXMLStreamReader( is );
+			unmarshaller = ProxlXMLContext.getJAXBContext().createUnmarshaller();
+
+			next = readNext();
+		}
+
+		/**
+		 * @return The next reported peptide, without moving past it, or null if there are no more
+		 */
+		public ReportedPeptide peek() {
+			return next;
+		}
+
+		/**
+		 * @return The next reported peptide, or null if there are no more
+		 * @throws Exception If the file can't be read
+		 */
+		public ReportedPeptide next() throws Exception {
+
+			ReportedPeptide reportedPeptide = next;
+
+			if( reportedPeptide != null )
+				next = readNext();
+
+			return reportedPeptide;
+		}
+
+		private ReportedPeptide readNext() throws Exception {
+
+			while( reader.hasNext() ) {
+
+				if( reader.isStartElement() && reader.getLocalName().equals( ProxlXMLIndex.REPORTED_PEPTIDE_ELEMENT ) )
+					return unmarshaller.unmarshal( reader, ReportedPeptide.class ).getValue();
+
+				reader.next();
+			}
+
+			return null;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public int getOrder() {
+			return order;
+		}
+
+		@Override
+		public void close() {
+
+			try {
+				reader.close();
+				is.close();
+			} catch( Exception e ) {
+				// nothing was written, nothing to lose
+			}
+		}
+
+		private final File file;
+		private final int order;
+		private final InputStream is;
+		private final XMLStreamReader reader;
+		private final Unmarshaller unmarshaller;
+
+		private ReportedPeptide next;
+	}
+
+}
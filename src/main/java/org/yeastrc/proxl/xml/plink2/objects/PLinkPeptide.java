@@ -25,7 +25,6 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.lang3.StringUtils;
 import org.yeastrc.proxl.xml.plink2.utils.NumberUtils;
 
 /**
@@ -67,7 +66,7 @@ public class PLinkPeptide {
 						        }
 						});
 						
-						String modsString = StringUtils.join( modsAtPosition, "," );
+						String modsString = String.join( ",", modsAtPosition );
 						str += "[" + modsString + "]";
 					}
 				}
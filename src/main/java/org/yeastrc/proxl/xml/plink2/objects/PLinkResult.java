@@ -18,6 +18,8 @@
 
 package org.yeastrc.proxl.xml.plink2.objects;
 
+import java.util.List;
+
 /**
  * A PSM result as parsed from the plink results file.
  * 
@@ -156,6 +158,28 @@ public class PLinkResult {
 		this.scanFilePrefix = scanFilePrefix;
 	}
 
+	/**
+	 * @return The names of the target (non-decoy) proteins pLink matched this result to, or null if they weren't read
+	 */
+	public List<String> getTargetProteinNames() {
+		return targetProteinNames;
+	}
+
+	public void setTargetProteinNames(List<String> targetProteinNames) {
+		this.targetProteinNames = targetProteinNames;
+	}
+
+	/**
+	 * @return true if pLink matched this result only to decoy proteins
+	 */
+	public boolean isDecoyOnly() {
+		return decoyOnly;
+	}
+
+	public void setDecoyOnly(boolean decoyOnly) {
+		this.decoyOnly = decoyOnly;
+	}
+
 	private PLinkReportedPeptide reportedPeptide;
 
 	private int scanNumber;
@@ -177,5 +201,8 @@ public class PLinkResult {
 	private double deltaMass;
 	private double deltaMassPPM;
 	private int type;
+
+	private List<String> targetProteinNames;
+	private boolean decoyOnly;
 	
 }
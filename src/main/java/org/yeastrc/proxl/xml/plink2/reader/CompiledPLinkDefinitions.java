@@ -0,0 +1,528 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.yeastrc.proxl.xml.plink2.ini.INISettings;
+import org.yeastrc.proxl.xml.plink2.ini.ParsedINIFile;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkLinker;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkLinkerEnd;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkModification;
+import org.yeastrc.proxl.xml.plink2.utils.INIUtils;
+import org.yeastrc.proxl.xml.plink2.utils.LargeMappedFile;
+import org.yeastrc.proxl.xml.plink2.utils.ModificationLookupUtils;
+import org.yeastrc.proxl.xml.plink2.utils.PLinkLinkerUtils;
+
+/**
+ * PLinkDefinitions read from a compiled binary file of every modification in modification.ini and
+ * every cross-linker in xlink.ini, already parsed. The file is built once for a pLink bin directory
+ * and memory mapped on later conversions, so the INI files don't need to be parsed again and only
+ * the definitions that are used are read.
+ *
+ * A compiled file is tied to the INI files by their sizes, modification times and SHA-256 digests,
+ * and is rebuilt if either of them changes. A name that isn't in the compiled file (e.g., a definition
+ * that could not be parsed when it was built) is looked up in the INI files, so the result is always
+ * the same as for INIPLinkDefinitions.
+ *
+ * File layout (big-endian): a fixed header, then each modification (name, monoisotopic mass and
+ * residues) and each cross-linker (name, masses, ends, cleaved masses and formula), then the positions
+ * of the modifications and of the cross-linkers in name order, for binary search.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class CompiledPLinkDefinitions implements PLinkDefinitions, AutoCloseable {
+
+	public static final String DEFINITIONS_FILE_SUFFIX = ".pdef";
+
+	private static final byte[] MAGIC = "PXPDEF01".getBytes( StandardCharsets.US_ASCII );
+
+	private static final int HEADER_SIZE = 128;
+
+	/**
+	 * Get the compiled definitions for the supplied modification.ini and xlink.ini from the supplied
+	 * directory, building them first if they don't exist or are out of date
+	 *
+	 * @param modifyINIFile
+	 * @param xlinkINIFile
+	 * @param cacheDirectory
+	 * @return
+	 * @throws Exception
+	 */
+	public static CompiledPLinkDefinitions getDefinitions( File modifyINIFile, File xlinkINIFile, File cacheDirectory ) throws Exception {
+
+		if( !cacheDirectory.exists() && !cacheDirectory.mkdirs() )
+			throw new Exception( "Could not create definition cache directory: " + cacheDirectory.getAbsolutePath() );
+
+		File definitionsFile = getDefinitionsFile( modifyINIFile, cacheDirectory );
+
+		SourceFile modifySource = new SourceFile( modifyINIFile );
+		SourceFile xlinkSource = new SourceFile( xlinkINIFile );
+
+		if( definitionsFile.exists() ) {
+			CompiledPLinkDefinitions definitions = new CompiledPLinkDefinitions( definitionsFile, modifyINIFile, xlinkINIFile );
+
+			if( definitions.isCompiledFrom( modifySource, xlinkSource ) )
+				return definitions;
+
+			definitions.close();
+		}
+
+		build( modifySource, xlinkSource, definitionsFile );
+
+		CompiledPLinkDefinitions definitions = new CompiledPLinkDefinitions( definitionsFile, modifyINIFile, xlinkINIFile );
+
+		if( !definitions.isCompiledFrom( modifySource, xlinkSource ) ) {
+			definitions.close();
+			throw new Exception( "pLink definition files changed while they were being compiled: " + modifyINIFile.getParent() );
+		}
+
+		return definitions;
+	}
+
+	/**
+	 * Get the compiled definitions file for a pLink bin directory. The name includes a hash of the bin
+	 * directory's full path, so different pLink installs don't share a file.
+	 *
+	 * @param modifyINIFile The modification.ini in the bin directory
+	 * @param cacheDirectory
+	 * @return
+	 * @throws Exception
+	 */
+	public static File getDefinitionsFile( File modifyINIFile, File cacheDirectory ) throws Exception {
+		String pathHash = String.format( "%08x", modifyINIFile.getCanonicalFile().getParent().hashCode() );
+		return new File( cacheDirectory, "pLink-definitions-" + pathHash + DEFINITIONS_FILE_SUFFIX );
+	}
+
+	/**
+	 * Open an existing compiled definitions file
+	 *
+	 * @param definitionsFile
+	 * @param modifyINIFile The modification.ini to fall back to for names not in the file
+	 * @param xlinkINIFile The xlink.ini to fall back to for names not in the file
+	 * @throws Exception
+	 */
+	public CompiledPLinkDefinitions( File definitionsFile, File modifyINIFile, File xlinkINIFile ) throws Exception {
+
+		this.modifyINIFile = modifyINIFile;
+		this.xlinkINIFile = xlinkINIFile;
+
+		mappedFile = new LargeMappedFile( definitionsFile );
+
+		if( mappedFile.size() < HEADER_SIZE || !Arrays.equals( mappedFile.getBytes( 0, MAGIC.length ), MAGIC ) )
+			throw new Exception( "Not a compiled pLink definitions file: " + definitionsFile.getAbsolutePath() );
+
+		modifySource = new SourceFile( mappedFile.getLong( 8 ), mappedFile.getLong( 16 ), mappedFile.getBytes( 24, 56 ) );
+		xlinkSource = new SourceFile( mappedFile.getLong( 56 ), mappedFile.getLong( 64 ), mappedFile.getBytes( 72, 104 ) );
+
+		modificationCount = mappedFile.getInt( 104 );
+		linkerCount = mappedFile.getInt( 108 );
+		modificationPositionsPosition = mappedFile.getLong( 112 );
+		linkerPositionsPosition = mappedFile.getLong( 120 );
+	}
+
+	@Override
+	public PLinkModification getModification( String name ) throws Exception {
+
+		long position = findRecord( name, modificationPositionsPosition, modificationCount );
+
+		if( position == -1 )
+			return getINIDefinitions().getModification( name );
+
+		RecordReader reader = new RecordReader( position );
+
+		PLinkModification mod = new PLinkModification();
+		mod.setName( reader.readString() );
+		mod.setMonoisotopicMass( reader.readDouble() );
+
+		String residueString = reader.readString();
+		Collection<String> residues = new HashSet<String>();
+		for( int i = 0; i < residueString.length(); i++ )
+			residues.add( String.valueOf( residueString.charAt( i ) ) );
+
+		mod.setResidues( residues );
+
+		return mod;
+	}
+
+	@Override
+	public PLinkLinker getLinker( String name ) throws Exception {
+
+		long position = findRecord( name, linkerPositionsPosition, linkerCount );
+
+		if( position == -1 )
+			return getINIDefinitions().getLinker( name );
+
+		RecordReader reader = new RecordReader( position );
+
+		PLinkLinker linker = new PLinkLinker();
+		linker.setName( reader.readString() );
+		linker.setMonoCrosslinkMass( reader.readNullableDouble() );
+		linker.setMonoMonolinkMass( reader.readNullableDouble() );
+		linker.setAverageMonolinkMass( reader.readNullableDouble() );
+
+		int endCount = reader.readInt();
+		List<PLinkLinkerEnd> linkerEnds = new ArrayList<>( endCount );
+
+		for( int i = 0; i < endCount; i++ ) {
+			String residueString = reader.readString();
+			List<String> residues = new ArrayList<>( residueString.length() );
+			for( int j = 0; j < residueString.length(); j++ )
+				residues.add( String.valueOf( residueString.charAt( j ) ) );
+
+			boolean linksNTerminus = reader.readBoolean();
+			boolean linksCTerminus = reader.readBoolean();
+
+			linkerEnds.add( new PLinkLinkerEnd( residues, linksNTerminus, linksCTerminus ) );
+		}
+
+		linker.setLinkerEnds( linkerEnds );
+
+		int cleavedMassCount = reader.readInt();
+		if( cleavedMassCount >= 0 ) {
+			List<Double> cleavedMasses = new ArrayList<>( cleavedMassCount );
+			for( int i = 0; i < cleavedMassCount; i++ )
+				cleavedMasses.add( reader.readDouble() );
+
+			linker.setCleavedLinkerMasses( cleavedMasses );
+		}
+
+		linker.setFormula( reader.readNullableString() );
+
+		return linker;
+	}
+
+	/**
+	 * @return The number of modifications in the compiled file
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * @return The number of cross-linkers in the compiled file
+	 */
+	public int getLinkerCount() {
+		return linkerCount;
+	}
+
+	@Override
+	public void close() {
+		mappedFile.close();
+	}
+
+
+	/**
+	 * @param modifySource
+	 * @param xlinkSource
+	 * @return true if this file was compiled from the supplied INI files, as they are now
+	 */
+	private boolean isCompiledFrom( SourceFile modifySource, SourceFile xlinkSource ) {
+		return this.modifySource.equals( modifySource ) && this.xlinkSource.equals( xlinkSource );
+	}
+
+	/**
+	 * Binary search the supplied table of record positions for the record with the supplied name
+	 *
+	 * @param name
+	 * @param positionsPosition
+	 * @param count
+	 * @return The position of the record, or -1 if there isn't one
+	 */
+	private long findRecord( String name, long positionsPosition, int count ) {
+
+		int low = 0;
+		int high = count - 1;
+
+		while( low <= high ) {
+			int middle = ( low + high ) >>> 1;
+
+			long position = mappedFile.getLong( positionsPosition + (long)middle * 8 );
+			int comparison = new RecordReader( position ).readString().compareTo( name );
+
+			if( comparison < 0 )
+				low = middle + 1;
+			else if( comparison > 0 )
+				high = middle - 1;
+			else
+				return position;
+		}
+
+		return -1;
+	}
+
+	private synchronized PLinkDefinitions getINIDefinitions() throws Exception {
+
+		if( iniDefinitions == null )
+			iniDefinitions = new INIPLinkDefinitions( new ParsedINIFile( modifyINIFile ), new ParsedINIFile( xlinkINIFile ) );
+
+		return iniDefinitions;
+	}
+
+
+	/**
+	 * Reads the fields of a record in the mapped file, in order
+	 */
+	private class RecordReader {
+
+		RecordReader( long position ) {
+			this.position = position;
+		}
+
+		int readInt() {
+			int value = mappedFile.getInt( position );
+			position += 4;
+			return value;
+		}
+
+		double readDouble() {
+			double value = Double.longBitsToDouble( mappedFile.getLong( position ) );
+			position += 8;
+			return value;
+		}
+
+		boolean readBoolean() {
+			return mappedFile.get( position++ ) != 0;
+		}
+
+		Double readNullableDouble() {
+			return readBoolean() ? readDouble() : null;
+		}
+
+		String readString() {
+			int length = readInt();
+			String value = new String( mappedFile.getBytes( position, position + length ), StandardCharsets.UTF_8 );
+			position += length;
+			return value;
+		}
+
+		String readNullableString() {
+			return readBoolean() ? readString() : null;
+		}
+
+		private long position;
+	}
+
+
+	/**
+	 * The size, modification time and SHA-256 of an INI file
+	 */
+	private static class SourceFile {
+
+		SourceFile( File file ) throws Exception {
+			this.file = file;
+
+			// read the modification time and size first, so a change during the read is seen on the next check
+			lastModified = file.lastModified();
+			size = file.length();
+			sha256 = MessageDigest.getInstance( "SHA-256" ).digest( Files.readAllBytes( file.toPath() ) );
+		}
+
+		SourceFile( long size, long lastModified, byte[] sha256 ) {
+			this.file = null;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.sha256 = sha256;
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if( !( o instanceof SourceFile ) )
+				return false;
+
+			SourceFile other = (SourceFile)o;
+			return size == other.size && lastModified == other.lastModified && Arrays.equals( sha256, other.sha256 );
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode( sha256 );
+		}
+
+		private final File file;
+		private final long size;
+		private final long lastModified;
+		private final byte[] sha256;
+	}
+
+
+	/**
+	 * Compile the supplied modification.ini and xlink.ini into the supplied file. Every definition that
+	 * can be parsed is included, entries that aren't definitions (e.g., the name list) are skipped.
+	 *
+	 * @param modifySource
+	 * @param xlinkSource
+	 * @param definitionsFile
+	 * @throws Exception
+	 */
+	private static void build( SourceFile modifySource, SourceFile xlinkSource, File definitionsFile ) throws Exception {
+
+		Map<String, PLinkModification> modifications = new TreeMap<>();
+		INISettings modifySettings = INIUtils.getINISettings( modifySource.file );
+
+		for( Map.Entry<String, String> entry : modifySettings.getSection( INISettings.GLOBAL_SECTION ).entrySet() ) {
+			try {
+				modifications.put( entry.getKey(), ModificationLookupUtils.parsePLinkModificationDefinition( entry.getKey(), entry.getValue() ) );
+			} catch( Exception e ) {
+				// not a modification definition
+			}
+		}
+
+		Map<String, PLinkLinker> linkers = new TreeMap<>();
+		Map<String, String> xlinkSection = INIUtils.getINISettings( xlinkSource.file ).getSection( "xlink" );
+
+		if( xlinkSection != null ) {
+			for( Map.Entry<String, String> entry : xlinkSection.entrySet() ) {
+				try {
+					linkers.put( entry.getKey(), PLinkLinkerUtils.getPLinkLinker( entry.getKey(), entry.getValue() ) );
+				} catch( Exception e ) {
+					// not a cross-linker definition
+				}
+			}
+		}
+
+		// a unique temp file, conversions running at the same time may both build the file
+		File tempFile = File.createTempFile( definitionsFile.getName() + ".", ".tmp", definitionsFile.getParentFile() );
+
+		try {
+
+			List<Long> modificationPositions = new ArrayList<>( modifications.size() );
+			List<Long> linkerPositions = new ArrayList<>( linkers.size() );
+
+			try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) ) ) {
+
+				// the header is filled in once the positions of the tables are known
+				out.write( new byte[ HEADER_SIZE ] );
+
+				for( PLinkModification mod : modifications.values() ) {
+					modificationPositions.add( (long)out.size() );
+
+					StringBuilder residues = new StringBuilder();
+					for( String residue : mod.getResidues() )
+						residues.append( residue );
+
+					writeString( out, mod.getName() );
+					out.writeDouble( mod.getMonoisotopicMass() );
+					writeString( out, residues.toString() );
+				}
+
+				for( PLinkLinker linker : linkers.values() ) {
+					linkerPositions.add( (long)out.size() );
+
+					writeString( out, linker.getName() );
+					writeNullableDouble( out, linker.getMonoCrosslinkMass() );
+					writeNullableDouble( out, linker.getMonoMonolinkMass() );
+					writeNullableDouble( out, linker.getAverageMonolinkMass() );
+
+					out.writeInt( linker.getLinkerEnds().size() );
+					for( PLinkLinkerEnd linkerEnd : linker.getLinkerEnds() ) {
+						writeString( out, String.join( "", linkerEnd.getResidues() ) );
+						out.writeBoolean( linkerEnd.isLinksNTerminus() );
+						out.writeBoolean( linkerEnd.isLinksCTerminus() );
+					}
+
+					if( linker.getCleavedLinkerMasses() == null ) {
+						out.writeInt( -1 );
+					} else {
+						out.writeInt( linker.getCleavedLinkerMasses().size() );
+						for( double mass : linker.getCleavedLinkerMasses() )
+							out.writeDouble( mass );
+					}
+
+					out.writeBoolean( linker.getFormula() != null );
+					if( linker.getFormula() != null )
+						writeString( out, linker.getFormula() );
+				}
+
+				// the records were written in name order
+				long modificationPositionsPosition = out.size();
+				for( long position : modificationPositions )
+					out.writeLong( position );
+
+				long linkerPositionsPosition = out.size();
+				for( long position : linkerPositions )
+					out.writeLong( position );
+
+				out.flush();
+
+				try( RandomAccessFile raf = new RandomAccessFile( tempFile, "rw" ) ) {
+					raf.write( MAGIC );
+					raf.writeLong( modifySource.size );
+					raf.writeLong( modifySource.lastModified );
+					raf.write( modifySource.sha256 );
+					raf.writeLong( xlinkSource.size );
+					raf.writeLong( xlinkSource.lastModified );
+					raf.write( xlinkSource.sha256 );
+					raf.writeInt( modifications.size() );
+					raf.writeInt( linkers.size() );
+					raf.writeLong( modificationPositionsPosition );
+					raf.writeLong( linkerPositionsPosition );
+				}
+			}
+
+			Files.move( tempFile.toPath(), definitionsFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	private static void writeString( DataOutputStream out, String value ) throws Exception {
+		byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+		out.writeInt( bytes.length );
+		out.write( bytes );
+	}
+
+	private static void writeNullableDouble( DataOutputStream out, Double value ) throws Exception {
+		out.writeBoolean( value != null );
+		if( value != null )
+			out.writeDouble( value );
+	}
+
+
+	private final File modifyINIFile;
+	private final File xlinkINIFile;
+	private PLinkDefinitions iniDefinitions;
+
+	private final LargeMappedFile mappedFile;
+
+	private final SourceFile modifySource;
+	private final SourceFile xlinkSource;
+
+	private final int modificationCount;
+	private final int linkerCount;
+	private final long modificationPositionsPosition;
+	private final long linkerPositionsPosition;
+}
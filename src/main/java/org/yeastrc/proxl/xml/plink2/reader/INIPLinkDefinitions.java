@@ -0,0 +1,68 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.reader;
+
+import org.yeastrc.proxl.xml.plink2.ini.ParsedINIFile;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkLinker;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkModification;
+import org.yeastrc.proxl.xml.plink2.utils.ModificationLookupUtils;
+import org.yeastrc.proxl.xml.plink2.utils.PLinkLinkerUtils;
+
+/**
+ * PLinkDefinitions read from the parsed modification.ini and xlink.ini files, parsing each definition
+ * when it is asked for
+ * 
+ * @author Michael Riffle
+ *
+ */
+public class INIPLinkDefinitions implements PLinkDefinitions {
+
+	/**
+	 * @param modifyINI The parsed modification.ini
+	 * @param xlinkINI The parsed xlink.ini
+	 */
+	public INIPLinkDefinitions( ParsedINIFile modifyINI, ParsedINIFile xlinkINI ) {
+		this.modifyINI = modifyINI;
+		this.xlinkINI = xlinkINI;
+	}
+
+	@Override
+	public PLinkModification getModification( String name ) throws Exception {
+
+		String definition = modifyINI.getConfig().getString( name );
+		if( definition == null )
+			return null;
+
+		return ModificationLookupUtils.parsePLinkModificationDefinition( name, definition );
+	}
+
+	@Override
+	public PLinkLinker getLinker( String name ) throws Exception {
+
+		String definition = xlinkINI.getConfig().getString( "xlink/" + name );
+		if( definition == null )
+			return null;
+
+		return PLinkLinkerUtils.getPLinkLinker( name, definition );
+	}
+
+
+	private final ParsedINIFile modifyINI;
+	private final ParsedINIFile xlinkINI;
+}
@@ -0,0 +1,46 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.reader;
+
+import org.yeastrc.proxl.xml.plink2.objects.PLinkLinker;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkModification;
+
+/**
+ * The modification and cross-linker definitions of a pLink install, from its modification.ini and xlink.ini
+ * 
+ * @author Michael Riffle
+ *
+ */
+public interface PLinkDefinitions {
+
+	/**
+	 * @param name The name of the modification, e.g., "Oxidation[M]"
+	 * @return The modification, or null if there is no modification with that name
+	 * @throws Exception
+	 */
+	PLinkModification getModification( String name ) throws Exception;
+
+	/**
+	 * @param name The name of the cross-linker, e.g., "DSS"
+	 * @return The cross-linker, or null if there is no cross-linker with that name
+	 * @throws Exception
+	 */
+	PLinkLinker getLinker( String name ) throws Exception;
+
+}
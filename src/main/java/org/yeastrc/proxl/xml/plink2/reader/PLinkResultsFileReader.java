@@ -21,10 +21,14 @@ package org.yeastrc.proxl.xml.plink2.reader;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.opencsv.CSVReader;
+import org.yeastrc.proxl.xml.plink2.fasta.DecoyLabelMatcher;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkReportedPeptide;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkResult;
+import org.yeastrc.proxl.xml.plink2.utils.PLinkProteinUtils;
 import org.yeastrc.proxl.xml.plink2.utils.PLinkReportedPeptideUtils;
 import org.yeastrc.proxl.xml.plink2.utils.ScanParsingUtils;
 
@@ -71,6 +75,23 @@ public class PLinkResultsFileReader {
 	 * @throws Exception
 	 */
 	public PLinkResult readNextResult() throws Exception {
+
+		PLinkResult result = readNextRow();
+
+		while( result != null && skipDecoyResults && result.isDecoyOnly() ) {
+			decoyResultsSkipped++;
+			result = readNextRow();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read the next row of the results file, including results matched only to decoys
+	 * @return the next plink result, null if they have all been returned
+	 * @throws Exception
+	 */
+	private PLinkResult readNextRow() throws Exception {
 	
 		if( this.isClosed )
 			throw new Exception( "Called readNextResult() on closed result file reader." );
@@ -124,24 +145,65 @@ public class PLinkResultsFileReader {
 		
 			result.setAlphaEValue( Double.parseDouble( fields[ 19 ] ) );
 			result.setBetaEValue( Double.parseDouble( fields[ 20 ] ) );
+
+			if( decoyLabelMatcher != null )
+				setProteins( result, fields[ 13 ] );
 		
 		} catch (Exception e) {
-
-			System.err.println( "Got error processing pLink result:" );
-			System.err.println( "\tFields: " + fields );
-			System.err.println( "Reason: " + e.getMessage() + "\n" );
-			
-			throw e;
+			throw new Exception( "Got error processing pLink result in " + file.getName() + ": " + String.join( ",", fields ) + "\nReason: " + e.getMessage(), e );
 		}
 		
 		return result;
 	}
 	
 	
+	/**
+	 * Set the names of the target proteins for the result from the Proteins column, and whether it
+	 * matched only decoys
+	 */
+	private void setProteins( PLinkResult result, String proteinsColumn ) {
+
+		List<String> proteinNames = PLinkProteinUtils.getProteinNames( proteinsColumn );
+		List<String> targetProteinNames = new ArrayList<>( proteinNames.size() );
+
+		for( String proteinName : proteinNames ) {
+			if( !decoyLabelMatcher.isDecoy( proteinName ) && !targetProteinNames.contains( proteinName ) )
+				targetProteinNames.add( proteinName );
+		}
+
+		result.setTargetProteinNames( targetProteinNames );
+		result.setDecoyOnly( !proteinNames.isEmpty() && targetProteinNames.isEmpty() );
+	}
+
+	/**
+	 * @param decoyLabelMatcher If set, the Proteins column is read and decoy proteins are identified with this
+	 */
+	public void setDecoyLabelMatcher(DecoyLabelMatcher decoyLabelMatcher) {
+		this.decoyLabelMatcher = decoyLabelMatcher;
+	}
+
+	/**
+	 * @param skipDecoyResults If true (and a decoy label matcher is set), skip results matched only to decoy proteins
+	 */
+	public void setSkipDecoyResults(boolean skipDecoyResults) {
+		this.skipDecoyResults = skipDecoyResults;
+	}
+
+	/**
+	 * @return The number of results skipped because they matched only decoy proteins
+	 */
+	public int getDecoyResultsSkipped() {
+		return decoyResultsSkipped;
+	}
+
+
 	private File file;
 	private CSVReader csvReader;
 	private boolean isDone = false;
 	private int type;
 	private boolean isClosed = false;
 	private PLinkSearchParameters params;
+	private DecoyLabelMatcher decoyLabelMatcher;
+	private boolean skipDecoyResults = false;
+	private int decoyResultsSkipped = 0;
 }
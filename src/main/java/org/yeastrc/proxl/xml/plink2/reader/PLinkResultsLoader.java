@@ -23,7 +23,10 @@ import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import org.yeastrc.proxl.xml.plink2.converter.ConversionListener;
+import org.yeastrc.proxl.xml.plink2.fasta.DecoyLabelMatcher;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkResult;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
 import org.yeastrc.proxl.xml.plink2.utils.PLinkUtils;
 
 /**
@@ -33,7 +36,7 @@ import org.yeastrc.proxl.xml.plink2.utils.PLinkUtils;
  */
 public class PLinkResultsLoader {
 
-	private static PLinkResultsLoader _INSTANCE = new PLinkResultsLoader();
+	private static final PLinkResultsLoader _INSTANCE = new PLinkResultsLoader();
 	public static PLinkResultsLoader getInstance() { return _INSTANCE; }
 	
 	private PLinkResultsLoader() { }
@@ -46,21 +49,10 @@ public class PLinkResultsLoader {
 	 * @return All of the corresponding results
 	 * @throws Exception
 	 */
-	private Collection<PLinkResult> getResults( PLinkSearchParameters params, String dataDirectory, int type ) throws Exception {
+	private Collection<PLinkResult> getResults( PLinkSearchParameters params, String dataDirectory, int type, DecoyLabelMatcher decoyLabelMatcher, boolean skipDecoyResults, ConversionListener listener ) throws Exception {
 		Collection<PLinkResult> results = new ArrayList<PLinkResult>();
 		
-		if( dataDirectory == null )
-			dataDirectory = PLinkUtils.getOutputDirectory( params );
-		
-		File fullDataDirectory = new File( dataDirectory, PLinkConstants.DATA_SUBDIRECTORY );
-		if( !fullDataDirectory.exists() )
-			throw new Exception( "can not find data directory: " + fullDataDirectory );
-		
-		String filename = PLinkUtils.getSearchTitle( params );
-		filename += ".filtered_" + PLinkConstants.PLINK_NAME_FOR_TYPE.get( type ) + "_";
-		filename += "spectra.csv";
-		
-		File dataFile = new File( fullDataDirectory, filename );
+		File dataFile = getResultsFile( params, dataDirectory, type );
 		if( !dataFile.exists() )
 			throw new FileNotFoundException( "can not find data file: " + dataFile );
 		
@@ -68,14 +60,21 @@ public class PLinkResultsLoader {
 		
 		try {
 			plReader = PLinkResultsFileReader.getPLinkResultsFileReader( dataFile, type, params );
+			plReader.setDecoyLabelMatcher( decoyLabelMatcher );
+			plReader.setSkipDecoyResults( skipDecoyResults );
 			
 			PLinkResult result = plReader.readNextResult();
 		
 			while( result != null ) {
+				CancellationUtils.checkCancelled();
+
 				results.add( result );
 				result = plReader.readNextResult();
 			}
 
+			if( plReader.getDecoyResultsSkipped() > 0 )
+				listener.message( "(skipped " + plReader.getDecoyResultsSkipped() + " " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( type ) + " results matched only to decoys) " );
+
 		} finally {
 			if( plReader != null )
 				plReader.close();
@@ -85,7 +84,33 @@ public class PLinkResultsLoader {
 	}
 	
 	/**
-	 * Read and return all results from the plink analysis
+	 * Get the results (spectra) file for the given type of peptide. The file may not exist, if
+	 * plink found no results of that type.
+	 * @param params The params file for the search
+	 * @param dataDirectory Optional, the directory in which the data live. If null, the value from the plink.ini file will be used
+	 * @param type The type of the peptide (e.g. PLinkConstants.LINK_TYPE_CROSSLINK)
+	 * @return The results file
+	 * @throws Exception If the data directory does not exist
+	 */
+	public File getResultsFile( PLinkSearchParameters params, String dataDirectory, int type ) throws Exception {
+		
+		if( dataDirectory == null )
+			dataDirectory = PLinkUtils.getOutputDirectory( params );
+		
+		File fullDataDirectory = new File( dataDirectory, PLinkConstants.DATA_SUBDIRECTORY );
+		if( !fullDataDirectory.exists() )
+			throw new Exception( "can not find data directory: " + fullDataDirectory );
+		
+		String filename = PLinkUtils.getSearchTitle( params );
+		filename += ".filtered_" + PLinkConstants.PLINK_NAME_FOR_TYPE.get( type ) + "_";
+		filename += "spectra.csv";
+		
+		return new File( fullDataDirectory, filename );
+	}
+	
+	/**
+	 * Read and return all results from the plink analysis. Warnings about results that could not be
+	 * loaded are dropped, use the overload that takes a ConversionListener to receive them.
 	 * @param params The params file for the search
 	 * @param dataDirectory Optional, the directory in which the data live. If null, the value from the plink.ini file will be used
 	 * @return All of the corresponding results
@@ -96,42 +121,57 @@ public class PLinkResultsLoader {
 	 * @throws Exception
 	 */
 	public Collection<PLinkResult> getAllResults( PLinkSearchParameters params, String dataDirectory ) throws Exception {
+		return getAllResults( params, dataDirectory, null, false, new ConversionListener() { } );
+	}
+
+	/**
+	 * Read and return all results from the plink analysis, identifying the decoy proteins each result
+	 * was matched to
+	 * @param params The params file for the search
+	 * @param dataDirectory Optional, the directory in which the data live. If null, the value from the plink.ini file will be used
+	 * @param decoyLabelMatcher Optional, if set the proteins each result was matched to are read and decoys identified with this
+	 * @param skipDecoyResults If true, results matched only to decoy proteins are skipped
+	 * @param listener Receives warnings about results that could not be loaded
+	 * @return All of the corresponding results
+	 * @throws Exception
+	 */
+	public Collection<PLinkResult> getAllResults( PLinkSearchParameters params, String dataDirectory, DecoyLabelMatcher decoyLabelMatcher, boolean skipDecoyResults, ConversionListener listener ) throws Exception {
 		Collection<PLinkResult> results = new ArrayList<PLinkResult>();
 		
 		int TYPE = PLinkConstants.LINK_TYPE_CROSSLINK;
 		try {
-			results.addAll( this.getResults( params, dataDirectory, TYPE ) );
+			results.addAll( this.getResults( params, dataDirectory, TYPE, decoyLabelMatcher, skipDecoyResults, listener ) );
 		} catch (FileNotFoundException e) {
-			System.err.println( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data." );
-			System.err.println( "Reason: " + e.getMessage() );
-			System.err.println( "Skipping." );
+			listener.message( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data.\n" +
+					"Reason: " + e.getMessage() + "\n" +
+					"Skipping.\n" );
 		}
 		
 		TYPE = PLinkConstants.LINK_TYPE_LOOPLINK;
 		try {
-			results.addAll( this.getResults( params, dataDirectory, TYPE ) );
+			results.addAll( this.getResults( params, dataDirectory, TYPE, decoyLabelMatcher, skipDecoyResults, listener ) );
 		} catch (FileNotFoundException e) {
-			System.err.println( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data." );
-			System.err.println( "Reason: " + e.getMessage() );
-			System.err.println( "Skipping." );
+			listener.message( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data.\n" +
+					"Reason: " + e.getMessage() + "\n" +
+					"Skipping.\n" );
 		}
 		
 		TYPE = PLinkConstants.LINK_TYPE_MONOLINK;
 		try {
-			results.addAll( this.getResults( params, dataDirectory, TYPE ) );
+			results.addAll( this.getResults( params, dataDirectory, TYPE, decoyLabelMatcher, skipDecoyResults, listener ) );
 		} catch (FileNotFoundException e) {
-			System.err.println( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data." );
-			System.err.println( "Reason: " + e.getMessage() );
-			System.err.println( "Skipping." );
+			listener.message( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data.\n" +
+					"Reason: " + e.getMessage() + "\n" +
+					"Skipping.\n" );
 		}
 		
 		TYPE = PLinkConstants.LINK_TYPE_UNLINKED;
 		try {
-			results.addAll( this.getResults( params, dataDirectory, TYPE ) );
+			results.addAll( this.getResults( params, dataDirectory, TYPE, decoyLabelMatcher, skipDecoyResults, listener ) );
 		} catch (FileNotFoundException e) {
-			System.err.println( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data." );
-			System.err.println( "Reason: " + e.getMessage() );
-			System.err.println( "Skipping." );
+			listener.message( "Warning: Could not load " + PLinkConstants.PLINK_NAME_FOR_TYPE.get( TYPE ) + " data.\n" +
+					"Reason: " + e.getMessage() + "\n" +
+					"Skipping.\n" );
 		}
 
 		if( results.size() == 0 ) {
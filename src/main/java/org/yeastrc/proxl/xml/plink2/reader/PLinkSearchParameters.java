@@ -18,8 +18,14 @@
 
 package org.yeastrc.proxl.xml.plink2.reader;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.yeastrc.proxl.xml.plink2.ini.ParsedINIFile;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkLinker;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkModification;
 
 /**
  * Access to the various INI files that define the search parameters of a plink search.
@@ -36,18 +42,65 @@ public class PLinkSearchParameters {
 	public void setPlinkINI(ParsedINIFile plinkINI) {
 		this.plinkINI = plinkINI;
 	}
+	/**
+	 * @return The parsed modification.ini, or null if the definitions were read from a compiled file
+	 */
 	public ParsedINIFile getModifyINI() {
 		return modifyINI;
 	}
 	public void setModifyINI(ParsedINIFile modifyINI) {
 		this.modifyINI = modifyINI;
 	}
+	/**
+	 * @return The parsed xlink.ini, or null if the definitions were read from a compiled file
+	 */
 	public ParsedINIFile getXlinkINI() {
 		return xlinkINI;
 	}
 	public void setXlinkINI(ParsedINIFile xlinkINI) {
 		this.xlinkINI = xlinkINI;
 	}
+	public File getModifyINIFile() {
+		return modifyINIFile;
+	}
+	public void setModifyINIFile(File modifyINIFile) {
+		this.modifyINIFile = modifyINIFile;
+	}
+	public File getXlinkINIFile() {
+		return xlinkINIFile;
+	}
+	public void setXlinkINIFile(File xlinkINIFile) {
+		this.xlinkINIFile = xlinkINIFile;
+	}
+	
+	/**
+	 * @return The modification and cross-linker definitions of the pLink install used for the search
+	 */
+	public PLinkDefinitions getDefinitions() {
+		return definitions;
+	}
+	public void setDefinitions(PLinkDefinitions definitions) {
+		this.definitions = definitions;
+	}
+	
+	
+	
+	/**
+	 * @return The modifications looked up so far for this search, by name (see ModificationLookupUtils)
+	 */
+	public Map<String, PLinkModification> getModificationCache() {
+		return modificationCache;
+	}
+	
+	/**
+	 * @return The names of the static modifications of this search, or null if they haven't been read yet (see ModificationLookupUtils)
+	 */
+	public Collection<String> getStaticModificationNames() {
+		return staticModificationNames;
+	}
+	public void setStaticModificationNames(Collection<String> staticModificationNames) {
+		this.staticModificationNames = staticModificationNames;
+	}
 	
 	
 	
@@ -66,4 +119,11 @@ public class PLinkSearchParameters {
 	private ParsedINIFile modifyINI;
 	private ParsedINIFile xlinkINI;
 	
+	private File modifyINIFile;
+	private File xlinkINIFile;
+	private PLinkDefinitions definitions;
+	
+	private final Map<String, PLinkModification> modificationCache = new HashMap<String, PLinkModification>();
+	private Collection<String> staticModificationNames;
+	
 }
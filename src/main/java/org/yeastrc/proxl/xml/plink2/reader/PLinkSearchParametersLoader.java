@@ -22,7 +22,6 @@ import java.io.File;
 
 import org.yeastrc.proxl.xml.plink2.ini.ParsedINIFile;
 import org.yeastrc.proxl.xml.plink2.objects.PLinkLinker;
-import org.yeastrc.proxl.xml.plink2.utils.PLinkLinkerUtils;
 
 public class PLinkSearchParametersLoader {
 	
@@ -39,6 +38,20 @@ public class PLinkSearchParametersLoader {
 	 * @throws Exception
 	 */
 	public PLinkSearchParameters getPLinkSearch( String pLinkINIFilename, String pLinkBinDirectory ) throws Exception {
+		return getPLinkSearch( pLinkINIFilename, pLinkBinDirectory, null );
+	}
+
+	/**
+	 * Load the plink search parameters. Also parses, verifies, and populates the linker used in this experiment.
+	 * 
+	 * @param pLinkINIFilename The full path to the pLink.ini file used in the experiment.
+	 * @param pLinkBinDirectory (Optional) The full path the the bin directory for plink. If absent, value from the pLink.ini file is used.
+	 * @param definitionCacheDirectory (Optional) If present, the modification and cross-linker definitions are read from a
+	 *                                 compiled file in this directory (see CompiledPLinkDefinitions) instead of parsing the INI files
+	 * @return
+	 * @throws Exception
+	 */
+	public PLinkSearchParameters getPLinkSearch( String pLinkINIFilename, String pLinkBinDirectory, File definitionCacheDirectory ) throws Exception {
 
 		PLinkSearchParameters plinkSearch = new PLinkSearchParameters();
 
@@ -60,11 +73,27 @@ public class PLinkSearchParametersLoader {
 		else
 			plinkPath = pLinkBinDirectory;
 		
-		// load and add the modify.ini
-		plinkSearch.setModifyINI( new ParsedINIFile( new File(plinkPath, PLinkConstants.MODIFY_INI_FILENAME ) ) );
-		
-		// load and add the xlink.ini
-		plinkSearch.setXlinkINI( new ParsedINIFile( new File(plinkPath, PLinkConstants.XLINK_INI_FILENAME ) ) );
+		File modifyINIFile = new File( plinkPath, PLinkConstants.MODIFY_INI_FILENAME );
+		File xlinkINIFile = new File( plinkPath, PLinkConstants.XLINK_INI_FILENAME );
+
+		plinkSearch.setModifyINIFile( modifyINIFile );
+		plinkSearch.setXlinkINIFile( xlinkINIFile );
+
+		if( definitionCacheDirectory != null ) {
+
+			// read the definitions from the compiled file, the INI files are only parsed if it's out of date
+			plinkSearch.setDefinitions( CompiledPLinkDefinitions.getDefinitions( modifyINIFile, xlinkINIFile, definitionCacheDirectory ) );
+
+		} else {
+
+			// load and add the modify.ini
+			plinkSearch.setModifyINI( new ParsedINIFile( modifyINIFile ) );
+
+			// load and add the xlink.ini
+			plinkSearch.setXlinkINI( new ParsedINIFile( xlinkINIFile ) );
+
+			plinkSearch.setDefinitions( new INIPLinkDefinitions( plinkSearch.getModifyINI(), plinkSearch.getXlinkINI() ) );
+		}
 
 		// load the referenced linker
 						
@@ -78,13 +107,11 @@ public class PLinkSearchParametersLoader {
 		if( linkerName == null )
 			throw new Exception( "Could not find linker name in plink parameters file for linker 1" );
 
-		String linkerDefinition = plinkSearch.getXlinkINI().getConfig().getString( "xlink/" + linkerName );
+		PLinkLinker linker = plinkSearch.getDefinitions().getLinker( linkerName );
 			
-		if( linkerDefinition == null )
+		if( linker == null )
 			throw new Exception( "Could not find linker: \"" + linkerName + "\" in xlink.ini file." );
 
-		PLinkLinker linker = PLinkLinkerUtils.getPLinkLinker( linkerName,  linkerDefinition );
-
 		// since we only support 1 link, just set the linker to the first linker found
 		plinkSearch.setLinker( linker );
 		
@@ -0,0 +1,755 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.yeastrc.proxl.xml.plink2.batch.BatchManifest;
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverter;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverterOptions;
+import org.yeastrc.proxl.xml.plink2.fasta.PreparedFASTACache;
+import org.yeastrc.proxl.xml.plink2.utils.JSONUtils;
+import org.yeastrc.proxl.xml.plink2.writer.ConversionManifest;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLIndex;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A long-running converter that accepts conversion jobs over HTTP on the loopback interface, so that
+ * conversions start in a JVM that is already warm: its code is JIT compiled, its JAXB context and
+ * schema are loaded, and prepared FASTA files (PreparedFASTACache) and, if a directory is set, compiled
+ * pLink definitions are kept between jobs. Jobs are queued and run a configurable number at a time.
+ *
+ * The API, all JSON:
+ *
+ *   POST   /jobs             Submit a job. The body is an object with the keys of a batch manifest job
+ *                            (params, fasta, output, and optionally reports and bin; paths must be
+ *                            absolute) and optionally: validateWhileWriting, compact, manifest, index,
+ *                            skipDecoyResults (booleans), decoyLabels (array of strings) and
+ *                            timeoutSeconds. Responds 201 with the job's status.
+ *   GET    /jobs             The status of every job.
+ *   GET    /jobs/{id}        The status of a job.
+ *   GET    /jobs/{id}/events The job's progress, streamed as one JSON object per line from its first
+ *                            event until it finishes. Blank lines are sent to keep the connection open.
+ *   DELETE /jobs/{id}        Cancel a job. A running job stops at its next check for cancellation.
+ *   GET    /stats            Queue depth, job counts, queue wait and run time statistics, and the
+ *                            prepared FASTA cache statistics.
+ *
+ * The server only listens on the loopback interface, and runs conversions on the local files named
+ * in the jobs. Since a web page open in a local browser can also reach the loopback interface, requests
+ * that come from one are refused: requests with an Origin header, and requests whose Host isn't a
+ * loopback address (e.g., a DNS rebinding name) get a 403. Jobs must be posted as application/json
+ * (415 otherwise), which a page can't send to another origin without the browser asking first.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ConversionServer {
+
+	public static final int DEFAULT_PORT = 8089;
+
+	/**
+	 * The number of finished jobs that are kept, the oldest are forgotten first
+	 */
+	public static final int MAXIMUM_FINISHED_JOBS = 1000;
+
+	/**
+	 * How long to wait for a job's next event before sending a blank line to keep the connection open
+	 */
+	private static final long EVENT_KEEPALIVE_MILLIS = 15000;
+
+	/**
+	 * @param port The port to listen on, 0 for any free port
+	 * @param concurrency The number of jobs that may run at the same time
+	 */
+	public ConversionServer( int port, int concurrency ) {
+
+		if( concurrency < 1 )
+			throw new IllegalArgumentException( "The concurrency must be at least 1." );
+
+		this.port = port;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Start listening for jobs
+	 *
+	 * @throws Exception If the port can't be listened on
+	 */
+	public synchronized void start() throws Exception {
+
+		if( httpServer != null )
+			throw new IllegalStateException( "The server has already been started." );
+
+		jobExecutor = Executors.newFixedThreadPool( concurrency );
+		timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+		requestExecutor = Executors.newCachedThreadPool();
+
+		httpServer = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), port ), 0 );
+		httpServer.setExecutor( requestExecutor );
+
+		httpServer.createContext( "/jobs", exchange -> handle( exchange, this::handleJobs ) );
+		httpServer.createContext( "/stats", exchange -> handle( exchange, this::handleStats ) );
+
+		startTime = System.nanoTime();
+		httpServer.start();
+	}
+
+	/**
+	 * Stop listening, and cancel all queued and running jobs
+	 */
+	public synchronized void stop() {
+
+		if( httpServer == null )
+			return;
+
+		httpServer.stop( 0 );
+
+		for( ServerJob job : getJobs() ) {
+			if( job.cancel( ServerJob.State.CANCELLED ) && job.getState().isFinished() )
+				jobFinished( job );
+		}
+
+		jobExecutor.shutdownNow();
+		timeoutScheduler.shutdownNow();
+		requestExecutor.shutdownNow();
+
+		httpServer = null;
+	}
+
+	/**
+	 * @return The port the server is listening on
+	 */
+	public synchronized int getPort() {
+		return httpServer != null ? httpServer.getAddress().getPort() : port;
+	}
+
+	/**
+	 * Queue a conversion
+	 *
+	 * @param options
+	 * @param timeoutMillis How long the job may run before it is cancelled, or 0 for no limit
+	 * @return The job
+	 * @throws IllegalStateException If a queued or running job already writes the same output file
+	 */
+	public ServerJob submit( PLinkConverterOptions options, long timeoutMillis ) {
+
+		ServerJob job;
+
+		synchronized( jobs ) {
+
+			File outputFile = options.getOutputFile().getAbsoluteFile();
+
+			for( ServerJob otherJob : jobs.values() ) {
+				if( !otherJob.getState().isFinished() && otherJob.getOptions().getOutputFile().getAbsoluteFile().equals( outputFile ) )
+					throw new IllegalStateException( "Job " + otherJob.getId() + " is already writing " + outputFile );
+			}
+
+			job = new ServerJob( String.valueOf( submittedCount.incrementAndGet() ), options, timeoutMillis );
+			jobs.put( job.getId(), job );
+		}
+
+		listener.jobSubmitted( job );
+		jobExecutor.execute( () -> runJob( job ) );
+
+		return job;
+	}
+
+	/**
+	 * @param id
+	 * @return The job with the supplied id, or null if there is none (or it has been forgotten)
+	 */
+	public ServerJob getJob( String id ) {
+		synchronized( jobs ) {
+			return jobs.get( id );
+		}
+	}
+
+	/**
+	 * @return All jobs the server knows about, oldest first
+	 */
+	public List<ServerJob> getJobs() {
+		synchronized( jobs ) {
+			return new ArrayList<>( jobs.values() );
+		}
+	}
+
+	/**
+	 * Cancel a job
+	 *
+	 * @param job
+	 * @return false if the job had already finished
+	 */
+	public boolean cancel( ServerJob job ) {
+
+		if( !job.cancel( ServerJob.State.CANCELLED ) )
+			return false;
+
+		// a queued job is finished as soon as it is cancelled, a running one when its conversion stops
+		if( job.getState().isFinished() )
+			jobFinished( job );
+
+		return true;
+	}
+
+	/**
+	 * @return The server's statistics as a JSON object
+	 */
+	public String getStatisticsJSON() {
+
+		int queued = 0;
+		int running = 0;
+
+		for( ServerJob job : getJobs() ) {
+			if( job.getState() == ServerJob.State.QUEUED )
+				queued++;
+			else if( job.getState() == ServerJob.State.RUNNING )
+				running++;
+		}
+
+		Map<ServerJob.State, Long> finished;
+		synchronized( finishedCounts ) {
+			finished = new EnumMap<>( finishedCounts );
+		}
+
+		PreparedFASTACache fastaCache = PreparedFASTACache.getInstance();
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append( "{\n" );
+		sb.append( "  \"converter\": " ).append( JSONUtils.quote( PLinkConverterConstants.CONVERSION_PROGRAM_NAME ) ).append( ",\n" );
+		sb.append( "  \"converterVersion\": " ).append( JSONUtils.quote( PLinkConverterConstants.CONVERSION_PROGRAM_VERSION ) ).append( ",\n" );
+		sb.append( "  \"uptimeMillis\": " ).append( ( System.nanoTime() - startTime ) / 1000000 ).append( ",\n" );
+		sb.append( "  \"concurrency\": " ).append( concurrency ).append( ",\n" );
+		sb.append( "  \"queued\": " ).append( queued ).append( ",\n" );
+		sb.append( "  \"running\": " ).append( running ).append( ",\n" );
+		sb.append( "  \"submitted\": " ).append( submittedCount.get() ).append( ",\n" );
+
+		for( ServerJob.State state : ServerJob.State.values() ) {
+			if( state.isFinished() )
+				sb.append( "  \"" ).append( state.name().toLowerCase( Locale.ROOT ) ).append( "\": " ).append( finished.getOrDefault( state, 0L ) ).append( ",\n" );
+		}
+
+		sb.append( "  \"queueWait\": " ).append( queueWaitStatistics.toJSON() ).append( ",\n" );
+		sb.append( "  \"run\": " ).append( runStatistics.toJSON() ).append( ",\n" );
+		sb.append( "  \"fastaCache\": { \"hits\": " ).append( fastaCache.getHitCount() )
+				.append( ", \"misses\": " ).append( fastaCache.getMissCount() )
+				.append( ", \"evictions\": " ).append( fastaCache.getEvictionCount() )
+				.append( ", \"files\": " ).append( fastaCache.getCachedFiles().size() )
+				.append( ", \"bytes\": " ).append( fastaCache.getSize() ).append( " }\n" );
+		sb.append( "}\n" );
+
+		return sb.toString();
+	}
+
+
+	/**
+	 * Run a job on one of the job threads
+	 */
+	private void runJob( ServerJob job ) {
+
+		// cancelled while it was queued
+		if( !job.started() )
+			return;
+
+		queueWaitStatistics.add( job.getWaitMillis() );
+
+		ScheduledFuture<?> timeout = null;
+		if( job.getTimeoutMillis() > 0 )
+			timeout = timeoutScheduler.schedule( () -> job.cancel( ServerJob.State.TIMED_OUT ), job.getTimeoutMillis(), TimeUnit.MILLISECONDS );
+
+		try {
+			PLinkConversionResult result = new PLinkConverter().convert( job.getOptions(), job );
+			job.succeeded( result );
+		} catch( Throwable t ) {
+			job.failed( t );
+		} finally {
+			if( timeout != null )
+				timeout.cancel( false );
+
+			// a cancellation that came too late to stop the conversion must not interrupt the next job
+			Thread.interrupted();
+		}
+
+		// don't leave a proxl XML file behind that wasn't validated. One that was cancelled or failed while it
+		// was being written was never moved into place, so any earlier output is still there and is kept.
+		if( job.getState() != ServerJob.State.SUCCEEDED && job.isOutputWritten() ) {
+			File outputFile = job.getOptions().getOutputFile();
+
+			outputFile.delete();
+			ConversionManifest.getManifestFile( outputFile ).delete();
+			ProxlXMLIndex.getIndexFile( outputFile ).delete();
+		}
+
+		runStatistics.add( job.getRunMillis() );
+		jobFinished( job );
+	}
+
+	/**
+	 * Count a finished job, tell the listener, and forget the oldest finished jobs if there are too many
+	 */
+	private void jobFinished( ServerJob job ) {
+
+		synchronized( finishedCounts ) {
+			finishedCounts.merge( job.getState(), 1L, Long::sum );
+		}
+
+		listener.jobFinished( job );
+
+		synchronized( jobs ) {
+
+			int finishedJobs = 0;
+			for( ServerJob otherJob : jobs.values() ) {
+				if( otherJob.getState().isFinished() )
+					finishedJobs++;
+			}
+
+			Iterator<ServerJob> iterator = jobs.values().iterator();
+
+			while( finishedJobs > MAXIMUM_FINISHED_JOBS && iterator.hasNext() ) {
+				if( iterator.next().getState().isFinished() ) {
+					iterator.remove();
+					finishedJobs--;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Handles the requests to one context
+	 */
+	private interface RequestHandler {
+
+		/**
+		 * @param exchange
+		 * @param path The path of the request, without its context
+		 * @throws Exception
+		 */
+		void handle( HttpExchange exchange, String path ) throws Exception;
+	}
+
+	/**
+	 * A request that can't be handled, answered with the supplied HTTP status and message
+	 */
+	private static class RequestException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		RequestException( int status, String message ) {
+			super( message );
+			this.status = status;
+		}
+
+		private final int status;
+	}
+
+	private void handle( HttpExchange exchange, RequestHandler handler ) throws IOException {
+
+		try {
+			checkClient( exchange );
+
+			String path = exchange.getRequestURI().getPath().substring( exchange.getHttpContext().getPath().length() );
+			if( path.endsWith( "/" ) )
+				path = path.substring( 0, path.length() - 1 );
+
+			handler.handle( exchange, path );
+
+		} catch( RequestException e ) {
+			sendJSON( exchange, e.status, "{ \"error\": " + JSONUtils.quote( e.getMessage() ) + " }\n" );
+		} catch( Exception e ) {
+
+			// nothing more can be sent once the response has started, e.g., if the client of an event stream went away
+			if( exchange.getResponseCode() == -1 )
+				sendJSON( exchange, 500, "{ \"error\": " + JSONUtils.quote( String.valueOf( e.getMessage() ) ) + " }\n" );
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Refuse requests from web pages, see above
+	 */
+	private static void checkClient( HttpExchange exchange ) throws RequestException {
+
+		if( exchange.getRequestHeaders().containsKey( "Origin" ) )
+			throw new RequestException( 403, "Requests from web pages (with an Origin header) are not accepted." );
+
+		String host = exchange.getRequestHeaders().getFirst( "Host" );
+		if( !isLoopbackHost( host ) )
+			throw new RequestException( 403, "The Host of a request must be a loopback address, e.g., localhost, not: " + host );
+	}
+
+	/**
+	 * @param host The value of a Host header: a name or an IP address (IPv6 in brackets), and optionally a port
+	 * @return true if the host is localhost or a loopback IP address. Other names are never looked up.
+	 */
+	static boolean isLoopbackHost( String host ) {
+
+		if( host == null )
+			return false;
+
+		host = host.trim().toLowerCase( Locale.ROOT );
+
+		if( host.startsWith( "[" ) ) {
+			int end = host.indexOf( ']' );
+			if( end == -1 )
+				return false;
+
+			host = host.substring( 1, end );
+
+		} else if( host.indexOf( ':' ) != -1 ) {
+			host = host.substring( 0, host.indexOf( ':' ) );
+		}
+
+		if( host.equals( "localhost" ) || host.matches( "127(\\.[0-9]{1,3}){3}" ) )
+			return true;
+
+		// an IPv6 address, which is parsed without looking up any name
+		if( host.indexOf( ':' ) == -1 )
+			return false;
+
+		try {
+			return InetAddress.getByName( host ).isLoopbackAddress();
+		} catch( UnknownHostException e ) {
+			return false;
+		}
+	}
+
+	private void handleJobs( HttpExchange exchange, String path ) throws Exception {
+
+		String method = exchange.getRequestMethod();
+
+		if( path.isEmpty() ) {
+
+			if( method.equals( "POST" ) ) {
+				ServerJob job = submit( exchange );
+
+				exchange.getResponseHeaders().set( "Location", "/jobs/" + job.getId() );
+				sendJSON( exchange, 201, job.toJSON() + "\n" );
+
+			} else if( method.equals( "GET" ) ) {
+				List<String> statuses = new ArrayList<>();
+				for( ServerJob job : getJobs() )
+					statuses.add( job.toJSON() );
+
+				sendJSON( exchange, 200, "{ \"jobs\": [" + ( statuses.isEmpty() ? "" : "\n  " + String.join( ",\n  ", statuses ) + "\n" ) + "] }\n" );
+
+			} else
+				throw new RequestException( 405, "Use GET or POST for /jobs." );
+
+			return;
+		}
+
+		String[] parts = path.substring( 1 ).split( "/" );
+
+		ServerJob job = getJob( parts[ 0 ] );
+		if( job == null || parts.length > 2 || ( parts.length == 2 && !parts[ 1 ].equals( "events" ) ) )
+			throw new RequestException( 404, "Not found: " + exchange.getRequestURI().getPath() );
+
+		if( parts.length == 2 ) {
+			if( !method.equals( "GET" ) )
+				throw new RequestException( 405, "Use GET for job events." );
+
+			streamEvents( exchange, job );
+
+		} else if( method.equals( "GET" ) ) {
+			sendJSON( exchange, 200, job.toJSON() + "\n" );
+
+		} else if( method.equals( "DELETE" ) ) {
+			if( !cancel( job ) )
+				throw new RequestException( 409, "Job " + job.getId() + " has already finished." );
+
+			sendJSON( exchange, 200, job.toJSON() + "\n" );
+
+		} else
+			throw new RequestException( 405, "Use GET or DELETE for a job." );
+	}
+
+	private void handleStats( HttpExchange exchange, String path ) throws Exception {
+
+		if( !path.isEmpty() )
+			throw new RequestException( 404, "Not found: " + exchange.getRequestURI().getPath() );
+
+		if( !exchange.getRequestMethod().equals( "GET" ) )
+			throw new RequestException( 405, "Use GET for /stats." );
+
+		sendJSON( exchange, 200, getStatisticsJSON() );
+	}
+
+	/**
+	 * Stream the events of a job, one JSON object per line, until it finishes or the client goes away
+	 */
+	private void streamEvents( HttpExchange exchange, ServerJob job ) throws Exception {
+
+		exchange.getResponseHeaders().set( "Content-Type", "application/x-ndjson; charset=utf-8" );
+		exchange.sendResponseHeaders( 200, 0 );
+
+		try( OutputStream os = exchange.getResponseBody() ) {
+
+			int count = 0;
+
+			while( true ) {
+				List<String> events = job.awaitEvents( count, EVENT_KEEPALIVE_MILLIS );
+
+				if( events.isEmpty() ) {
+					if( job.getState().isFinished() )
+						break;
+
+					os.write( '\n' );
+				}
+
+				for( String event : events )
+					os.write( ( event + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+
+				os.flush();
+				count += events.size();
+			}
+		}
+	}
+
+	/**
+	 * Submit the job in the body of a POST to /jobs
+	 */
+	@SuppressWarnings( "unchecked" )
+	private ServerJob submit( HttpExchange exchange ) throws Exception {
+
+		String contentType = exchange.getRequestHeaders().getFirst( "Content-Type" );
+		if( contentType == null || !contentType.split( ";" )[ 0 ].trim().equalsIgnoreCase( "application/json" ) )
+			throw new RequestException( 415, "A job must be sent with Content-Type: application/json" );
+
+		Object body;
+
+		try( InputStream is = exchange.getRequestBody() ) {
+			body = JSONUtils.parse( new String( is.readAllBytes(), StandardCharsets.UTF_8 ) );
+		} catch( IOException e ) {
+			throw e;
+		} catch( Exception e ) {
+			throw new RequestException( 400, e.getMessage() );
+		}
+
+		if( !( body instanceof Map ) )
+			throw new RequestException( 400, "A job must be a JSON object." );
+
+		Map<String, Object> request = (Map<String, Object>)body;
+
+		PLinkConverterOptions options;
+
+		try {
+			File binDirectory = getFile( request, BatchManifest.BIN, false );
+
+			options = PLinkConverterOptions.builder()
+					.paramsFile( getFile( request, BatchManifest.PARAMS, true ) )
+					.dataDirectory( getFile( request, BatchManifest.REPORTS, false ) )
+					.fastaFile( getFile( request, BatchManifest.FASTA, true ) )
+					.outputFile( getFile( request, BatchManifest.OUTPUT, true ) )
+					.binDirectory( binDirectory != null ? binDirectory : defaultBinDirectory )
+					.validateWhileWriting( getBoolean( request, "validateWhileWriting" ) )
+					.compact( getBoolean( request, "compact" ) )
+					.writeManifest( getBoolean( request, "manifest" ) )
+					.writeIndex( getBoolean( request, "index" ) )
+					.skipDecoyResults( getBoolean( request, "skipDecoyResults" ) )
+					.decoyLabels( getDecoyLabels( request ) )
+					.cachePreparedFasta( true )
+					.definitionCacheDirectory( definitionCacheDirectory )
+					.build();
+
+		} catch( IllegalStateException e ) {
+			throw new RequestException( 400, e.getMessage() );
+		}
+
+		long timeoutMillis = defaultTimeoutMillis;
+
+		Object timeoutSeconds = request.get( "timeoutSeconds" );
+		if( timeoutSeconds != null ) {
+			if( !( timeoutSeconds instanceof Double ) || (Double)timeoutSeconds < 0 )
+				throw new RequestException( 400, "timeoutSeconds must be a number of seconds, or 0 for no limit." );
+
+			timeoutMillis = (long)( (Double)timeoutSeconds * 1000 );
+		}
+
+		try {
+			return submit( options, timeoutMillis );
+		} catch( IllegalStateException e ) {
+			throw new RequestException( 409, e.getMessage() );
+		}
+	}
+
+	private static File getFile( Map<String, Object> request, String key, boolean required ) throws RequestException {
+
+		Object path = request.get( key );
+
+		if( path == null || path.toString().trim().isEmpty() ) {
+			if( required )
+				throw new RequestException( 400, "The job has no " + key + "." );
+
+			return null;
+		}
+
+		if( !( path instanceof String ) )
+			throw new RequestException( 400, key + " must be a string." );
+
+		File file = new File( ( (String)path ).trim() );
+		if( !file.isAbsolute() )
+			throw new RequestException( 400, key + " must be an absolute path: " + path );
+
+		return file;
+	}
+
+	private static boolean getBoolean( Map<String, Object> request, String key ) throws RequestException {
+
+		Object value = request.get( key );
+
+		if( value == null )
+			return false;
+
+		if( !( value instanceof Boolean ) )
+			throw new RequestException( 400, key + " must be true or false." );
+
+		return (Boolean)value;
+	}
+
+	private static Collection<String> getDecoyLabels( Map<String, Object> request ) throws RequestException {
+
+		Object value = request.get( "decoyLabels" );
+
+		if( value == null )
+			return PLinkConverterConstants.DEFAULT_DECOY_LABELS;
+
+		if( !( value instanceof List ) )
+			throw new RequestException( 400, "decoyLabels must be an array of strings." );
+
+		List<String> decoyLabels = new ArrayList<>();
+		for( Object label : (List<?>)value ) {
+			if( !( label instanceof String ) )
+				throw new RequestException( 400, "decoyLabels must be an array of strings." );
+
+			decoyLabels.add( (String)label );
+		}
+
+		return decoyLabels;
+	}
+
+	private static void sendJSON( HttpExchange exchange, int status, String json ) throws IOException {
+
+		byte[] bytes = json.getBytes( StandardCharsets.UTF_8 );
+
+		exchange.getResponseHeaders().set( "Content-Type", "application/json; charset=utf-8" );
+		exchange.sendResponseHeaders( status, bytes.length );
+
+		try( OutputStream os = exchange.getResponseBody() ) {
+			os.write( bytes );
+		}
+	}
+
+
+	/**
+	 * @return The pLink bin directory used for jobs that don't name one, may be null
+	 */
+	public File getDefaultBinDirectory() {
+		return defaultBinDirectory;
+	}
+
+	/**
+	 * @param defaultBinDirectory The pLink bin directory used for jobs that don't name one
+	 */
+	public void setDefaultBinDirectory(File defaultBinDirectory) {
+		this.defaultBinDirectory = defaultBinDirectory;
+	}
+
+	/**
+	 * @return The directory compiled pLink definitions are kept in, may be null
+	 */
+	public File getDefinitionCacheDirectory() {
+		return definitionCacheDirectory;
+	}
+
+	/**
+	 * @param definitionCacheDirectory The directory to keep compiled pLink definitions in (see CompiledPLinkDefinitions)
+	 */
+	public void setDefinitionCacheDirectory(File definitionCacheDirectory) {
+		this.definitionCacheDirectory = definitionCacheDirectory;
+	}
+
+	/**
+	 * @return How long a job may run if it doesn't set its own timeout, in milliseconds, 0 for no limit
+	 */
+	public long getDefaultTimeoutMillis() {
+		return defaultTimeoutMillis;
+	}
+
+	/**
+	 * @param defaultTimeoutMillis How long a job may run if it doesn't set its own timeout, in milliseconds, 0 for no limit
+	 */
+	public void setDefaultTimeoutMillis(long defaultTimeoutMillis) {
+		this.defaultTimeoutMillis = defaultTimeoutMillis;
+	}
+
+	/**
+	 * @param listener Receives the jobs as they are submitted and finish
+	 */
+	public void setListener(ServerListener listener) {
+		this.listener = listener != null ? listener : new ServerListener() { };
+	}
+
+
+	private final int port;
+	private final int concurrency;
+
+	private File defaultBinDirectory;
+	private File definitionCacheDirectory;
+	private long defaultTimeoutMillis;
+	private volatile ServerListener listener = new ServerListener() { };
+
+	private HttpServer httpServer;
+	private ExecutorService jobExecutor;
+	private ExecutorService requestExecutor;
+	private ScheduledExecutorService timeoutScheduler;
+	private long startTime;
+
+	private final Map<String, ServerJob> jobs = new LinkedHashMap<>();
+	private final AtomicLong submittedCount = new AtomicLong();
+	private final Map<ServerJob.State, Long> finishedCounts = new EnumMap<>( ServerJob.State.class );
+	private final LatencyStatistics queueWaitStatistics = new LatencyStatistics();
+	private final LatencyStatistics runStatistics = new LatencyStatistics();
+}
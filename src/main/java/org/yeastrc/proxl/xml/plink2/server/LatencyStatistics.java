@@ -0,0 +1,89 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.server;
+
+import java.util.Arrays;
+
+/**
+ * Summarizes a stream of latencies: their count, and the mean, median, 95th percentile and maximum
+ * of the most recent ones.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class LatencyStatistics {
+
+	/**
+	 * The number of most recent latencies kept
+	 */
+	public static final int WINDOW_SIZE = 1000;
+
+	/**
+	 * Record a latency
+	 *
+	 * @param millis
+	 */
+	public synchronized void add( long millis ) {
+		window[ (int)( count % WINDOW_SIZE ) ] = millis;
+		count++;
+	}
+
+	/**
+	 * @return The number of latencies recorded
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The summary as a JSON object
+	 */
+	public synchronized String toJSON() {
+
+		int size = (int)Math.min( count, WINDOW_SIZE );
+
+		if( size == 0 )
+			return "{ \"count\": 0 }";
+
+		long[] sorted = Arrays.copyOf( window, size );
+		Arrays.sort( sorted );
+
+		long total = 0;
+		for( long millis : sorted )
+			total += millis;
+
+		return "{ \"count\": " + count +
+				", \"meanMillis\": " + ( total / size ) +
+				", \"p50Millis\": " + getPercentile( sorted, 50 ) +
+				", \"p95Millis\": " + getPercentile( sorted, 95 ) +
+				", \"maxMillis\": " + sorted[ size - 1 ] + " }";
+	}
+
+	/**
+	 * Get a percentile of the supplied sorted values, by the nearest rank method
+	 */
+	private static long getPercentile( long[] sorted, int percentile ) {
+		int rank = (int)Math.ceil( percentile / 100.0 * sorted.length );
+		return sorted[ Math.max( 0, rank - 1 ) ];
+	}
+
+
+	private final long[] window = new long[ WINDOW_SIZE ];
+	private long count;
+}
@@ -0,0 +1,290 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.yeastrc.proxl.xml.plink2.converter.ConversionListener;
+import org.yeastrc.proxl.xml.plink2.converter.ConversionStage;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverterOptions;
+import org.yeastrc.proxl.xml.plink2.utils.JSONUtils;
+
+/**
+ * A conversion job submitted to a ConversionServer. Records the job's state and every progress event
+ * as a line of JSON, so that any number of clients can follow the job from its first event. Updated by
+ * the thread running the job, safe to read from others.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ServerJob implements ConversionListener {
+
+	public enum State {
+		QUEUED,
+		RUNNING,
+		SUCCEEDED,
+		FAILED,
+		CANCELLED,
+		TIMED_OUT;
+
+		public boolean isFinished() {
+			return this != QUEUED && this != RUNNING;
+		}
+	}
+
+	ServerJob( String id, PLinkConverterOptions options, long timeoutMillis ) {
+		this.id = id;
+		this.options = options;
+		this.timeoutMillis = timeoutMillis;
+		this.submittedTime = System.nanoTime();
+
+		events.add( "{ \"event\": \"queued\", \"id\": " + JSONUtils.quote( id ) + " }" );
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public PLinkConverterOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * @return How long the job may run before it is cancelled, in milliseconds, or 0 for no limit
+	 */
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return The stage the job is running, or null if it isn't running
+	 */
+	public synchronized ConversionStage getStage() {
+		return stage;
+	}
+
+	/**
+	 * @return The result of the conversion, or null if it hasn't succeeded
+	 */
+	public synchronized PLinkConversionResult getResult() {
+		return result;
+	}
+
+	/**
+	 * @return Why the conversion failed, or null if it hasn't failed
+	 */
+	public synchronized Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return How long the job waited in the queue, in milliseconds (so far, if it is still queued)
+	 */
+	public synchronized long getWaitMillis() {
+		long endTime = startedTime != 0 ? startedTime : ( finishedTime != 0 ? finishedTime : System.nanoTime() );
+		return ( endTime - submittedTime ) / 1000000;
+	}
+
+	/**
+	 * @return How long the job ran, in milliseconds (so far, if it is still running)
+	 */
+	public synchronized long getRunMillis() {
+		if( startedTime == 0 )
+			return 0;
+
+		return ( ( finishedTime != 0 ? finishedTime : System.nanoTime() ) - startedTime ) / 1000000;
+	}
+
+	/**
+	 * Wait until the job has more than the supplied number of events, or has finished
+	 *
+	 * @param count The number of events already seen
+	 * @param timeoutMillis The longest time to wait
+	 * @return The events after the first count, may be empty
+	 * @throws InterruptedException
+	 */
+	public synchronized List<String> awaitEvents( int count, long timeoutMillis ) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+
+		while( events.size() <= count && !state.isFinished() ) {
+			long remaining = deadline - System.currentTimeMillis();
+			if( remaining <= 0 )
+				break;
+
+			wait( remaining );
+		}
+
+		return new ArrayList<>( events.subList( Math.min( count, events.size() ), events.size() ) );
+	}
+
+	/**
+	 * @return The job's status as a JSON object
+	 */
+	public synchronized String toJSON() {
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append( "{ \"id\": " ).append( JSONUtils.quote( id ) );
+		sb.append( ", \"state\": " ).append( JSONUtils.quote( state.name() ) );
+		sb.append( ", \"stage\": " ).append( JSONUtils.quote( stage == null ? null : stage.name() ) );
+		sb.append( ", \"output\": " ).append( JSONUtils.quote( options.getOutputFile().getAbsolutePath() ) );
+		sb.append( ", \"waitMillis\": " ).append( getWaitMillis() );
+		sb.append( ", \"runMillis\": " ).append( getRunMillis() );
+
+		if( result != null ) {
+			sb.append( ", \"reportedPeptides\": " ).append( result.getReportedPeptideCount() );
+			sb.append( ", \"psms\": " ).append( result.getPsmCount() );
+			sb.append( ", \"bytes\": " ).append( result.getBytesWritten() );
+		}
+
+		if( error != null )
+			sb.append( ", \"error\": " ).append( JSONUtils.quote( String.valueOf( error.getMessage() ) ) );
+
+		sb.append( " }" );
+
+		return sb.toString();
+	}
+
+
+	@Override
+	public synchronized void stageStarted( ConversionStage stage ) {
+		this.stage = stage;
+		addEvent( "{ \"event\": \"stageStarted\", \"stage\": " + JSONUtils.quote( stage.name() ) + " }" );
+	}
+
+	@Override
+	public synchronized void stageFinished( ConversionStage stage, long elapsedMillis ) {
+
+		// the proxl XML file is only replaced once it has been written in full
+		if( stage == ConversionStage.WRITING || stage == ConversionStage.UPDATING_MATCHED_PROTEINS )
+			outputWritten = true;
+
+		addEvent( "{ \"event\": \"stageFinished\", \"stage\": " + JSONUtils.quote( stage.name() ) + ", \"millis\": " + elapsedMillis + " }" );
+	}
+
+	@Override
+	public synchronized void message( String message ) {
+		addEvent( "{ \"event\": \"message\", \"message\": " + JSONUtils.quote( message.trim() ) + " }" );
+	}
+
+
+	/**
+	 * Mark the job as running on the current thread
+	 *
+	 * @return false if the job was cancelled while it was queued, and shouldn't be run
+	 */
+	synchronized boolean started() {
+
+		if( state != State.QUEUED )
+			return false;
+
+		state = State.RUNNING;
+		thread = Thread.currentThread();
+		startedTime = System.nanoTime();
+
+		addEvent( "{ \"event\": \"started\", \"waitMillis\": " + getWaitMillis() + " }" );
+
+		return true;
+	}
+
+	synchronized void succeeded( PLinkConversionResult result ) {
+		this.result = result;
+		finished( State.SUCCEEDED );
+	}
+
+	/**
+	 * The conversion threw an exception. If the job was being cancelled or had timed out, that is why.
+	 *
+	 * @param error
+	 */
+	synchronized void failed( Throwable error ) {
+		this.error = error;
+		finished( cancelledState != null ? cancelledState : State.FAILED );
+	}
+
+	/**
+	 * Cancel the job: remove it from the queue, or interrupt the conversion if it is running. A running
+	 * conversion stops at its next check for cancellation (see PLinkConverter).
+	 *
+	 * @param cancelledState CANCELLED or TIMED_OUT
+	 * @return false if the job had already finished
+	 */
+	synchronized boolean cancel( State cancelledState ) {
+
+		if( state.isFinished() || this.cancelledState != null )
+			return false;
+
+		this.cancelledState = cancelledState;
+
+		if( state == State.QUEUED ) {
+			finished( cancelledState );
+		} else {
+			addEvent( "{ \"event\": \"cancelling\", \"reason\": " + JSONUtils.quote( cancelledState.name() ) + " }" );
+			thread.interrupt();
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return true if the conversion has written (replaced) the proxl XML file
+	 */
+	synchronized boolean isOutputWritten() {
+		return outputWritten;
+	}
+
+	private void finished( State finalState ) {
+
+		state = finalState;
+		stage = null;
+		thread = null;
+		finishedTime = System.nanoTime();
+
+		addEvent( "{ \"event\": \"finished\", \"status\": " + toJSON() + " }" );
+	}
+
+	private void addEvent( String event ) {
+		events.add( event );
+		notifyAll();
+	}
+
+
+	private final String id;
+	private final PLinkConverterOptions options;
+	private final long timeoutMillis;
+	private final long submittedTime;
+
+	private State state = State.QUEUED;
+	private State cancelledState;
+	private ConversionStage stage;
+	private PLinkConversionResult result;
+	private Throwable error;
+	private Thread thread;
+	private boolean outputWritten;
+	private long startedTime;
+	private long finishedTime;
+	private final List<String> events = new ArrayList<>();
+}
@@ -0,0 +1,44 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.server;
+
+/**
+ * Receives the jobs of a ConversionServer as they are submitted and finish. Called on the server's
+ * threads, so may be called for several jobs at the same time; all methods do nothing by default.
+ *
+ * @author Michael Riffle
+ *
+ */
+public interface ServerListener {
+
+	/**
+	 * A job has been submitted and queued
+	 *
+	 * @param job
+	 */
+	default void jobSubmitted( ServerJob job ) { }
+
+	/**
+	 * A job has succeeded, failed, been cancelled or timed out
+	 *
+	 * @param job
+	 */
+	default void jobFinished( ServerJob job ) { }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.utils;
+
+/**
+ * Some utility methods for cancelling conversions. A conversion is cancelled by interrupting the
+ * thread running it; long running loops call checkCancelled() so they stop soon after.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class CancellationUtils {
+
+	/**
+	 * Throw an InterruptedException if the current thread has been interrupted, clearing its interrupted status
+	 *
+	 * @throws InterruptedException
+	 */
+	public static void checkCancelled() throws InterruptedException {
+		if( Thread.interrupted() )
+			throw new InterruptedException( "The conversion was cancelled." );
+	}
+}
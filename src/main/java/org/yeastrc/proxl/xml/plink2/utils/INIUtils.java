@@ -18,70 +18,251 @@
 
 package org.yeastrc.proxl.xml.plink2.utils;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import org.apache.commons.configuration2.INIConfiguration;
-import org.apache.commons.configuration2.ex.ConfigurationException;
-import org.apache.commons.configuration2.tree.DefaultExpressionEngine;
-import org.apache.commons.configuration2.tree.DefaultExpressionEngineSymbols;
+import org.yeastrc.proxl.xml.plink2.ini.INISettings;
 
 /**
  * Some util methods for INI file parsing.
  * 
+ * INI files are read in a single pass into a flat INISettings. Lines are handled as by
+ * commons-configuration's INIConfiguration, which was used before:
+ * 
+ *  - lines are trimmed; blank lines and lines starting with ; or # are comments
+ *  - [name] starts a section; a section that appears again adds to the earlier one
+ *  - otherwise the key is everything before the first = or :, trimmed, and the value everything after it
+ *  - an unquoted value ends at a ; or # that follows whitespace, and is trimmed
+ *  - a value may be quoted with " or ', in which case \ escapes the quote character
+ *  - a value ending with whitespace and \ is continued on the next line
+ * 
  * @author Michael Riffle
  * @date Mar 5, 2016
  *
  */
 public class INIUtils {
 
+	private static final String COMMENT_CHARS = "#;";
+	private static final String SEPARATOR_CHARS = "=:";
+	private static final String QUOTE_CHARS = "\"'";
+	private static final String LINE_CONTINUATION = "\\";
+
 	/**
-	 * Get an expression engine that separates sections from keys using a "/" instead of a
-	 * ".", which causes problems given how pLink names its keys using period.
+	 * Read the supplied INI file, using a "/" to separate sections from key names.
+	 * The file is read using the platform's default character set.
+	 * 
+	 * @param filename The full path (including file name) of the INI file.
+	 * @return
+	 * @throws IOException
 	 */
-	public static final DefaultExpressionEngine EXPRESSION_ENGINE = getExpressionEngine();
+	public static INISettings getINISettings( String filename ) throws IOException {
+		return getINISettings( new File( filename ) );
+	}
 
 	/**
-	 * Get a INIConfiguration representing the supplied INI file, using a "/" instead of a "."
-	 * to separate sections from key names.
+	 * Read the supplied INI file, using a "/" to separate sections from key names.
+	 * The file is read using the platform's default character set.
 	 * 
-	 * @param filename The full path (including file name) of the INI file.
+	 * @param file
 	 * @return
-	 * @throws FileNotFoundException
-	 * @throws ConfigurationException
 	 * @throws IOException
 	 */
-	public static INIConfiguration getINIConfiguration( String filename ) throws FileNotFoundException, ConfigurationException, IOException {
-		INIConfiguration config = new INIConfiguration();
-		config.setExpressionEngine( INIUtils.EXPRESSION_ENGINE );
-		config.read( new FileReader( new File( filename ) ) );
-		return config;
+	public static INISettings getINISettings( File file ) throws IOException {
+		try( Reader reader = Files.newBufferedReader( file.toPath(), Charset.defaultCharset() ) ) {
+			return read( reader );
+		}
 	}
-	
+
 	/**
-	 * Get an expression engine that uses "/" to separate section names from key names
+	 * Read INI data from the supplied reader
+	 * 
+	 * @param in
 	 * @return
+	 * @throws IOException
+	 */
+	public static INISettings read( Reader in ) throws IOException {
+
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader( in );
+
+		Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+		Map<String, String> section = null;
+
+		for( String line = reader.readLine(); line != null; line = reader.readLine() ) {
+
+			line = line.trim();
+
+			if( line.isEmpty() || COMMENT_CHARS.indexOf( line.charAt( 0 ) ) != -1 )
+				continue;
+
+			if( line.startsWith( "[" ) && line.endsWith( "]" ) ) {
+				section = sections.computeIfAbsent( line.substring( 1, line.length() - 1 ), k -> new HashMap<>() );
+				continue;
+			}
+
+			String key;
+			String value = "";
+
+			int separator = findSeparator( line );
+			if( separator != -1 ) {
+				key = line.substring( 0, separator ).trim();
+				value = parseValue( line.substring( separator + 1 ), reader );
+			} else {
+				key = line;
+			}
+
+			// as in INIConfiguration, a property with no key gets a key of a space
+			if( key.isEmpty() )
+				key = " ";
+
+			if( section == null )
+				section = sections.computeIfAbsent( INISettings.GLOBAL_SECTION, k -> new HashMap<>() );
+
+			section.putIfAbsent( key, value );
+		}
+
+		return new INISettings( sections );
+	}
+
+	/**
+	 * Find the separator between the key and the value: a separator just before a quoted value, or
+	 * the first separator on the line
+	 * 
+	 * @return The position of the separator, or -1 if there is none
+	 */
+	private static int findSeparator( String line ) {
+
+		int quote = findFirst( line, QUOTE_CHARS );
+
+		int index = quote - 1;
+		while( index >= 0 && Character.isWhitespace( line.charAt( index ) ) )
+			index--;
+
+		if( index >= 0 && SEPARATOR_CHARS.indexOf( line.charAt( index ) ) != -1 )
+			return index;
+
+		return findFirst( line, SEPARATOR_CHARS );
+	}
+
+	private static int findFirst( String line, String chars ) {
+
+		for( int i = 0; i < line.length(); i++ ) {
+			if( chars.indexOf( line.charAt( i ) ) != -1 )
+				return i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Parse a value, reading continuation lines from the reader
 	 */
-	private static DefaultExpressionEngine getExpressionEngine() {
-		DefaultExpressionEngineSymbols symbols =
-			    new DefaultExpressionEngineSymbols.Builder(
-			        DefaultExpressionEngineSymbols.DEFAULT_SYMBOLS)
-			        // Use a slash as property delimiter
-			        .setPropertyDelimiter("/")
-			        // Indices should be specified in curly brackets
-			        .setIndexStart("{")
-			        .setIndexEnd("}")
-			        // For attributes use simply a @
-			        .setAttributeStart("@")
-			        .setAttributeEnd(null)
-			        // A Backslash is used for escaping property delimiters
-			        .setEscapedDelimiter("\\/")
-			        .create();
-		
-		DefaultExpressionEngine engine = new DefaultExpressionEngine(symbols);
-		return engine;
+	private static String parseValue( String text, BufferedReader reader ) throws IOException {
+
+		StringBuilder value = new StringBuilder();
+		String line = text.trim();
+		boolean continues;
+
+		do {
+
+			boolean quoted = line.startsWith( "\"" ) || line.startsWith( "'" );
+			char quote = quoted ? line.charAt( 0 ) : 0;
+
+			StringBuilder part = new StringBuilder();
+			boolean escape = false;
+			boolean stop = false;
+			char lastChar = 0;
+
+			int i = quoted ? 1 : 0;
+
+			for( ; i < line.length() && !stop; i++ ) {
+
+				char c = line.charAt( i );
+
+				if( quoted ) {
+
+					if( c == '\\' && !escape ) {
+						escape = true;
+					} else if( c == quote ) {
+						if( escape ) {
+							escape = false;
+							part.append( c );
+						} else {
+							stop = true;
+						}
+					} else {
+						if( escape ) {
+							escape = false;
+							part.append( '\\' );
+						}
+						part.append( c );
+					}
+
+				} else {
+
+					if( COMMENT_CHARS.indexOf( c ) != -1 && Character.isWhitespace( lastChar ) )
+						stop = true;
+					else
+						part.append( c );
+				}
+
+				lastChar = c;
+			}
+
+			String partValue = part.toString();
+
+			if( quoted ) {
+				continues = continues( getUncommented( line, i ) );
+			} else {
+				partValue = partValue.trim();
+				continues = continues( partValue );
+
+				if( continues )
+					partValue = partValue.substring( 0, partValue.length() - 1 ).trim();
+			}
+
+			value.append( partValue );
+
+			if( continues ) {
+				value.append( System.lineSeparator() );
+				line = reader.readLine();
+			}
+
+		} while( continues && line != null );
+
+		return value.toString();
+	}
+
+	/**
+	 * @return The part of the line after a quoted value, up to any comment
+	 */
+	private static String getUncommented( String line, int position ) {
+
+		if( position >= line.length() )
+			return line;
+
+		int end = position;
+		while( end < line.length() && COMMENT_CHARS.indexOf( line.charAt( end ) ) == -1 )
+			end++;
+
+		return line.substring( position, end );
 	}
-	
+
+	/**
+	 * @return true if the value continues on the next line
+	 */
+	private static boolean continues( String s ) {
+
+		s = s.trim();
+
+		return s.equals( LINE_CONTINUATION ) ||
+				( s.length() > 2 && s.endsWith( LINE_CONTINUATION ) && Character.isWhitespace( s.charAt( s.length() - 2 ) ) );
+	}
+
 }
@@ -0,0 +1,312 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Some utility methods for writing the small JSON files produced by the converter, and for reading
+ * the small JSON documents it is given (e.g., batch manifests).
+ *
+ * @author Michael Riffle
+ *
+ */
+public class JSONUtils {
+
+	/**
+	 * Get the supplied string as a quoted, escaped JSON string. Null becomes null.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static String quote( String value ) {
+
+		if( value == null )
+			return "null";
+
+		StringBuilder sb = new StringBuilder( value.length() + 2 );
+		sb.append( '"' );
+
+		for( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt( i );
+
+			switch( c ) {
+				case '"':
+					sb.append( "\\\"" );
+					break;
+				case '\\':
+					sb.append( "\\\\" );
+					break;
+				case '\n':
+					sb.append( "\\n" );
+					break;
+				case '\r':
+					sb.append( "\\r" );
+					break;
+				case '\t':
+					sb.append( "\\t" );
+					break;
+				default:
+					if( c < 0x20 )
+						sb.append( String.format( "\\u%04x", (int)c ) );
+					else
+						sb.append( c );
+			}
+		}
+
+		sb.append( '"' );
+		return sb.toString();
+	}
+
+	/**
+	 * Parse a JSON document. Objects become a Map (in document order), arrays a List, strings a String,
+	 * numbers a Double, true and false a Boolean and null null.
+	 *
+	 * @param json
+	 * @return
+	 * @throws Exception If the document is not valid JSON
+	 */
+	public static Object parse( String json ) throws Exception {
+
+		JSONParser parser = new JSONParser( json );
+
+		Object value = parser.readValue();
+		parser.skipWhitespace();
+
+		if( parser.position < json.length() )
+			throw parser.error( "Unexpected content after the JSON value" );
+
+		return value;
+	}
+
+	/**
+	 * A recursive descent parser for a JSON document
+	 */
+	private static class JSONParser {
+
+		JSONParser( String json ) {
+			this.json = json;
+		}
+
+		Object readValue() throws Exception {
+
+			skipWhitespace();
+
+			if( position >= json.length() )
+				throw error( "Unexpected end of JSON" );
+
+			char c = json.charAt( position );
+
+			switch( c ) {
+				case '{':
+					return readObject();
+				case '[':
+					return readArray();
+				case '"':
+					return readString();
+				case 't':
+					readLiteral( "true" );
+					return Boolean.TRUE;
+				case 'f':
+					readLiteral( "false" );
+					return Boolean.FALSE;
+				case 'n':
+					readLiteral( "null" );
+					return null;
+				default:
+					if( c == '-' || ( c >= '0' && c <= '9' ) )
+						return readNumber();
+
+					throw error( "Unexpected character '" + c + "'" );
+			}
+		}
+
+		private Map<String, Object> readObject() throws Exception {
+
+			Map<String, Object> object = new LinkedHashMap<>();
+			position++;
+
+			skipWhitespace();
+			if( peek() == '}' ) {
+				position++;
+				return object;
+			}
+
+			while( true ) {
+				skipWhitespace();
+				if( peek() != '"' )
+					throw error( "Expected a string key" );
+
+				String key = readString();
+
+				skipWhitespace();
+				expect( ':' );
+
+				object.put( key, readValue() );
+
+				skipWhitespace();
+				if( peek() == ',' ) {
+					position++;
+					continue;
+				}
+
+				expect( '}' );
+				return object;
+			}
+		}
+
+		private List<Object> readArray() throws Exception {
+
+			List<Object> array = new ArrayList<>();
+			position++;
+
+			skipWhitespace();
+			if( peek() == ']' ) {
+				position++;
+				return array;
+			}
+
+			while( true ) {
+				array.add( readValue() );
+
+				skipWhitespace();
+				if( peek() == ',' ) {
+					position++;
+					continue;
+				}
+
+				expect( ']' );
+				return array;
+			}
+		}
+
+		private String readString() throws Exception {
+
+			StringBuilder sb = new StringBuilder();
+			position++;
+
+			while( true ) {
+				if( position >= json.length() )
+					throw error( "Unterminated string" );
+
+				char c = json.charAt( position++ );
+
+				if( c == '"' )
+					return sb.toString();
+
+				if( c != '\\' ) {
+					sb.append( c );
+					continue;
+				}
+
+				if( position >= json.length() )
+					throw error( "Unterminated string" );
+
+				char escaped = json.charAt( position++ );
+
+				switch( escaped ) {
+					case '"':
+					case '\\':
+					case '/':
+						sb.append( escaped );
+						break;
+					case 'b':
+						sb.append( '\b' );
+						break;
+					case 'f':
+						sb.append( '\f' );
+						break;
+					case 'n':
+						sb.append( '\n' );
+						break;
+					case 'r':
+						sb.append( '\r' );
+						break;
+					case 't':
+						sb.append( '\t' );
+						break;
+					case 'u':
+						if( position + 4 > json.length() )
+							throw error( "Invalid unicode escape" );
+
+						try {
+							sb.append( (char)Integer.parseInt( json.substring( position, position + 4 ), 16 ) );
+						} catch( NumberFormatException e ) {
+							throw error( "Invalid unicode escape" );
+						}
+
+						position += 4;
+						break;
+					default:
+						throw error( "Invalid escape '\\" + escaped + "'" );
+				}
+			}
+		}
+
+		private Double readNumber() throws Exception {
+
+			int start = position;
+
+			while( position < json.length() && "+-0123456789.eE".indexOf( json.charAt( position ) ) != -1 )
+				position++;
+
+			try {
+				return Double.valueOf( json.substring( start, position ) );
+			} catch( NumberFormatException e ) {
+				throw error( "Invalid number" );
+			}
+		}
+
+		private void readLiteral( String literal ) throws Exception {
+
+			if( !json.startsWith( literal, position ) )
+				throw error( "Unexpected character '" + json.charAt( position ) + "'" );
+
+			position += literal.length();
+		}
+
+		private void expect( char c ) throws Exception {
+
+			if( peek() != c )
+				throw error( "Expected '" + c + "'" );
+
+			position++;
+		}
+
+		private char peek() {
+			return position < json.length() ? json.charAt( position ) : 0;
+		}
+
+		void skipWhitespace() {
+			while( position < json.length() && Character.isWhitespace( json.charAt( position ) ) )
+				position++;
+		}
+
+		Exception error( String message ) {
+			return new Exception( message + " at position " + position + " of JSON." );
+		}
+
+		private final String json;
+		private int position;
+	}
+
+}
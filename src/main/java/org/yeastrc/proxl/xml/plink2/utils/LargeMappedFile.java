@@ -0,0 +1,139 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.utils;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of a whole file, of any size. A single MappedByteBuffer can only map
+ * 2 GB, so the file is mapped as a series of fixed-size segments and positions are long offsets
+ * into the file.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class LargeMappedFile implements AutoCloseable {
+
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * Map the supplied file
+	 *
+	 * @param file
+	 * @throws Exception
+	 */
+	public LargeMappedFile( File file ) throws Exception {
+
+		try( RandomAccessFile raf = new RandomAccessFile( file, "r" ) ) {
+
+			FileChannel channel = raf.getChannel();
+			size = channel.size();
+
+			int segmentCount = (int)( ( size + SEGMENT_SIZE - 1 ) / SEGMENT_SIZE );
+			segments = new MappedByteBuffer[ segmentCount ];
+
+			for( int i = 0; i < segmentCount; i++ ) {
+				long start = i * SEGMENT_SIZE;
+				segments[ i ] = channel.map( FileChannel.MapMode.READ_ONLY, start, Math.min( SEGMENT_SIZE, size - start ) );
+			}
+		}
+	}
+
+	/**
+	 * @param position
+	 * @return The byte at the supplied position in the file
+	 */
+	public byte get( long position ) {
+		return segments[ (int)( position >>> SEGMENT_BITS ) ].get( (int)( position & SEGMENT_MASK ) );
+	}
+
+	/**
+	 * @param position
+	 * @return The big-endian int starting at the supplied position in the file
+	 */
+	public int getInt( long position ) {
+		return ( ( get( position ) & 0xff ) << 24 ) |
+				( ( get( position + 1 ) & 0xff ) << 16 ) |
+				( ( get( position + 2 ) & 0xff ) << 8 ) |
+				( get( position + 3 ) & 0xff );
+	}
+
+	/**
+	 * @param position
+	 * @return The big-endian long starting at the supplied position in the file
+	 */
+	public long getLong( long position ) {
+		return ( (long)getInt( position ) << 32 ) | ( getInt( position + 4 ) & 0xffffffffL );
+	}
+
+	/**
+	 * Copy a range of the file into a new array
+	 *
+	 * @param start The position of the first byte (inclusive)
+	 * @param end The position after the last byte (exclusive)
+	 * @return
+	 */
+	public byte[] getBytes( long start, long end ) {
+
+		byte[] bytes = new byte[ (int)( end - start ) ];
+		int copied = 0;
+
+		while( copied < bytes.length ) {
+			long position = start + copied;
+			MappedByteBuffer segment = segments[ (int)( position >>> SEGMENT_BITS ) ];
+			int offset = (int)( position & SEGMENT_MASK );
+			int length = Math.min( bytes.length - copied, segment.limit() - offset );
+
+			ByteBuffer buffer = segment.duplicate();
+			buffer.position( offset );
+			buffer.get( bytes, copied, length );
+
+			copied += length;
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * @return The size of the file in bytes
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Release this object's references to the mapped segments. The mapping itself is released when
+	 * they are garbage collected.
+	 */
+	@Override
+	public void close() {
+		for( int i = 0; i < segments.length; i++ )
+			segments[ i ] = null;
+	}
+
+
+	private final long size;
+	private final MappedByteBuffer[] segments;
+}
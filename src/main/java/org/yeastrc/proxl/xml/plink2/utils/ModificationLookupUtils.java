@@ -38,9 +38,6 @@ import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParameters;
  */
 public class ModificationLookupUtils {
 
-	private static Map<String, PLinkModification> modCache = new HashMap<String, PLinkModification>();
-	private static Collection<String> staticModCache = null;
-	
 	/**
 	 * Get the names of all static mods in this search
 	 * @param params
@@ -49,7 +46,7 @@ public class ModificationLookupUtils {
 	 */
 	public static Collection<String> getStaticModificationNames( PLinkSearchParameters params ) throws Exception {
 
-		if( staticModCache == null ) {
+		if( params.getStaticModificationNames() == null ) {
 			Collection<String> mods = new ArrayList<String>();
 			
 			String numModsString = params.getPlinkINI().getConfig().getString( "modification/fix_total" );
@@ -66,10 +63,10 @@ public class ModificationLookupUtils {
 				mods.add( modName );
 			}
 			
-			staticModCache = mods;
+			params.setStaticModificationNames( mods );
 		}
 				
-		return staticModCache;
+		return params.getStaticModificationNames();
 	}
 
 	/**
@@ -81,9 +78,14 @@ public class ModificationLookupUtils {
 	 */
 	public static PLinkModification getPLinkModificationFromParameters( String name, PLinkSearchParameters params ) throws Exception {
 		
+		Map<String, PLinkModification> modCache = params.getModificationCache();
+
 		if( !modCache.containsKey( name ) ) {
-			String definition = params.getModifyINI().getConfig().getString( name );
-			modCache.put( name, parsePLinkModificationDefinition( name, definition ) );
+			PLinkModification mod = params.getDefinitions().getModification( name );
+			if( mod == null )
+				throw new Exception( "Could not find modification: \"" + name + "\" in modification.ini file." );
+
+			modCache.put( name, mod );
 		}
 		
 		return modCache.get( name );
@@ -96,7 +98,7 @@ public class ModificationLookupUtils {
 	 * @return
 	 * @throws Exception
 	 */
-	protected static PLinkModification parsePLinkModificationDefinition( String name, String definition ) throws Exception {
+	public static PLinkModification parsePLinkModificationDefinition( String name, String definition ) throws Exception {
 		
 		String[] fields = definition.split( " " );
 		
@@ -50,6 +50,24 @@ public class NumberUtils {
 	}
 
 
+	/**
+	 * Get the shortest exact representation of the supplied big decimal that can be written
+	 * as an xs:decimal (i.e., no trailing zeros and no exponent).
+	 * E.g., 156.0780 becomes 156.078 and 3.5640E-5 becomes 0.00003564
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static BigDecimal getShortestBigDecimal( BigDecimal value ) {
+		BigDecimal bd = value.stripTrailingZeros();
+
+		// a negative scale would be written with an exponent by toString()
+		if( bd.scale() < 0 )
+			bd = bd.setScale( 0 );
+
+		return bd;
+	}
+
 	public static BigDecimal getScientificNotationBigDecimal( double value ) {
 		return new BigDecimal( getScientificNotation( value ) );
 	}
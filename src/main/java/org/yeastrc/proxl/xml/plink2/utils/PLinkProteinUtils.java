@@ -0,0 +1,101 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Methods for the protein references in the Proteins column of pLink's spectra reports.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PLinkProteinUtils {
+
+	/**
+	 * Get the protein names from the Proteins column of a pLink spectra report. The column lists
+	 * one or more protein matches, each followed by a '/', where each match is one or two protein
+	 * names followed by their linked positions, e.g.:
+	 *
+	 * Spc97-yeast(355)-Spc97-yeast(328)/ (cross-link)
+	 * His-TEV-Tub4-yeast(197)(198)/His-TEV-Tub4-yeast-random(198)(199)/ (loop-link)
+	 * His-TEV-Tub4-yeast(376)/ (mono-link)
+	 * His-TEV-Tub4-yeast/His-TEV-Tub4-yeast-random/ (unlinked)
+	 *
+	 * Protein names may contain '-', so the names in a cross-link are separated at ")-".
+	 *
+	 * @param proteinsColumn
+	 * @return The protein names, in the order they appear (may contain duplicates)
+	 */
+	public static List<String> getProteinNames( String proteinsColumn ) {
+
+		List<String> names = new ArrayList<>();
+
+		int length = proteinsColumn.length();
+		int nameStart = 0;
+		int i = 0;
+
+		while( i < length ) {
+			char c = proteinsColumn.charAt( i );
+
+			if( c == '/' ) {
+				addName( names, proteinsColumn, nameStart, i );
+				nameStart = ++i;
+
+			} else if( c == '(' && isPosition( proteinsColumn, i ) ) {
+				addName( names, proteinsColumn, nameStart, i );
+
+				// skip the positions, and the '-' before a second protein
+				while( i < length && proteinsColumn.charAt( i ) == '(' && isPosition( proteinsColumn, i ) )
+					i = proteinsColumn.indexOf( ')', i ) + 1;
+
+				if( i < length && proteinsColumn.charAt( i ) == '-' )
+					i++;
+
+				nameStart = i;
+
+			} else {
+				i++;
+			}
+		}
+
+		addName( names, proteinsColumn, nameStart, length );
+
+		return names;
+	}
+
+	/**
+	 * @return true if there is a "(number)" at the supplied position
+	 */
+	private static boolean isPosition( String s, int open ) {
+
+		int i = open + 1;
+		while( i < s.length() && Character.isDigit( s.charAt( i ) ) )
+			i++;
+
+		return i > open + 1 && i < s.length() && s.charAt( i ) == ')';
+	}
+
+	private static void addName( List<String> names, String s, int start, int end ) {
+		if( end > start )
+			names.add( s.substring( start, end ) );
+	}
+
+}
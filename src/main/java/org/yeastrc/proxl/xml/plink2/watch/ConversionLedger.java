@@ -0,0 +1,133 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.watch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The pLink runs that have already been converted, kept in a tab-delimited file so that a run is only
+ * converted once, even across restarts. A run is identified by the path of its parameters file and
+ * the fingerprint of its files (see RunSnapshot), so a run that pLink writes again is converted again.
+ *
+ * Each line of the file is: parameters file, fingerprint, proxl XML file, time of the conversion. The
+ * ledger also knows which run each proxl XML file was written for, so a different run isn't converted
+ * over it.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ConversionLedger {
+
+	public static final String DEFAULT_LEDGER_FILENAME = ".plink2toProxlXML-converted.tsv";
+
+	/**
+	 * Open the supplied ledger file, reading the runs already in it. It is created when the first run is added.
+	 *
+	 * @param ledgerFile
+	 * @throws Exception If the file exists and can't be read
+	 */
+	public ConversionLedger( File ledgerFile ) throws Exception {
+
+		this.ledgerFile = ledgerFile;
+
+		if( !ledgerFile.exists() )
+			return;
+
+		try( BufferedReader reader = Files.newBufferedReader( ledgerFile.toPath(), StandardCharsets.UTF_8 ) ) {
+
+			String line;
+			while( ( line = reader.readLine() ) != null ) {
+				String[] fields = line.split( "\t" );
+
+				if( fields.length < 2 || line.startsWith( "#" ) )
+					continue;
+
+				converted.add( getKey( fields[ 0 ], fields[ 1 ] ) );
+
+				if( fields.length >= 3 )
+					runsForOutputs.put( fields[ 2 ], fields[ 0 ] );
+			}
+		}
+	}
+
+	/**
+	 * @param plinkFile
+	 * @param fingerprint
+	 * @return true if this run, with these files, has already been converted
+	 */
+	public synchronized boolean contains( File plinkFile, String fingerprint ) {
+		return converted.contains( getKey( plinkFile.getAbsolutePath(), fingerprint ) );
+	}
+
+	/**
+	 * Record that a run has been converted
+	 *
+	 * @param plinkFile
+	 * @param fingerprint
+	 * @param outputFile The proxl XML file it was converted to
+	 * @throws Exception If the ledger file can't be written
+	 */
+	public synchronized void add( File plinkFile, String fingerprint, File outputFile ) throws Exception {
+
+		boolean newFile = !ledgerFile.exists();
+
+		try( Writer writer = Files.newBufferedWriter( ledgerFile.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND ) ) {
+
+			if( newFile )
+				writer.write( "# parameters file\tfingerprint\tproxl XML file\tconverted\n" );
+
+			writer.write( plinkFile.getAbsolutePath() + "\t" + fingerprint + "\t" + outputFile.getAbsolutePath() + "\t" + Instant.now() + "\n" );
+		}
+
+		converted.add( getKey( plinkFile.getAbsolutePath(), fingerprint ) );
+		runsForOutputs.put( outputFile.getAbsolutePath(), plinkFile.getAbsolutePath() );
+	}
+
+	/**
+	 * @param outputFile
+	 * @return The parameters file of the run last converted to the supplied proxl XML file, or null if no run has been
+	 */
+	public synchronized File getRunForOutput( File outputFile ) {
+		String plinkPath = runsForOutputs.get( outputFile.getAbsolutePath() );
+		return plinkPath == null ? null : new File( plinkPath );
+	}
+
+	public File getLedgerFile() {
+		return ledgerFile;
+	}
+
+	private static String getKey( String plinkPath, String fingerprint ) {
+		return plinkPath + "\t" + fingerprint;
+	}
+
+
+	private final File ledgerFile;
+	private final Set<String> converted = new HashSet<>();
+	private final Map<String, String> runsForOutputs = new HashMap<>();
+}
@@ -0,0 +1,375 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.watch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverter;
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConverterOptions;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkConstants;
+
+/**
+ * Watches directories (and all directories below them) for pLink runs and converts each one as soon
+ * as it is complete: once its parameters (.plink) file has a reports directory next to it with a
+ * summary and spectra files (see RunSnapshot), and none of those files has changed for a while.
+ *
+ * Changes are found with a WatchService, and the directories are also scanned when watching starts,
+ * so runs that finished while the watcher wasn't running are found too. Runs already in the ledger
+ * are skipped, a run whose conversion failed isn't tried again until its files change, and at most
+ * the given number of runs are converted at the same time.
+ *
+ * A run is refused (reported as failed) if its proxl XML file is being written by the conversion of
+ * another run, or is in the ledger as the output of another run, so runs never overwrite each other's
+ * output. Conversions of the same run are never run at the same time.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class FolderWatcher {
+
+	/**
+	 * Gets the conversion options for a run
+	 */
+	public interface OptionsFactory {
+
+		/**
+		 * @param plinkFile The run's parameters file
+		 * @return
+		 * @throws Exception If the run can't be converted, e.g., its FASTA file can't be found
+		 */
+		PLinkConverterOptions getOptions( File plinkFile ) throws Exception;
+	}
+
+	public static final long DEFAULT_STABLE_MILLIS = 30000;
+
+	/**
+	 * @param directories The directories to watch
+	 * @param optionsFactory Gets the conversion options for a run
+	 * @param ledger The runs already converted
+	 * @param concurrency The number of runs that may be converted at the same time
+	 * @param stableMillis How long a run's files must stay unchanged before it is converted
+	 */
+	public FolderWatcher( List<File> directories, OptionsFactory optionsFactory, ConversionLedger ledger, int concurrency, long stableMillis ) {
+
+		if( concurrency < 1 )
+			throw new IllegalArgumentException( "The concurrency must be at least 1." );
+
+		this.directories = directories;
+		this.optionsFactory = optionsFactory;
+		this.ledger = ledger;
+		this.concurrency = concurrency;
+		this.stableMillis = stableMillis;
+	}
+
+	/**
+	 * Watch the directories and convert runs until stop() is called or the thread is interrupted
+	 *
+	 * @throws Exception If the directories can't be watched
+	 */
+	public void watch() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool( concurrency );
+
+		try( WatchService watchService = FileSystems.getDefault().newWatchService() ) {
+
+			for( File directory : directories )
+				register( watchService, directory.toPath() );
+
+			// how often the runs waiting for their files to stop changing are checked
+			long checkMillis = Math.max( 100, Math.min( 1000, stableMillis / 4 ) );
+
+			while( !stopped ) {
+
+				WatchKey key = watchService.poll( checkMillis, TimeUnit.MILLISECONDS );
+
+				while( key != null ) {
+					Path directory = (Path)key.watchable();
+
+					for( WatchEvent<?> event : key.pollEvents() ) {
+
+						// events were lost, look at the whole directory again
+						if( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+							register( watchService, directory );
+							continue;
+						}
+
+						Path path = directory.resolve( (Path)event.context() );
+
+						if( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( path ) )
+							register( watchService, path );
+						else
+							addCandidates( path.toFile() );
+					}
+
+					key.reset();
+					key = watchService.poll();
+				}
+
+				checkCandidates( executor );
+			}
+
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+		}
+	}
+
+	/**
+	 * Stop watching, once the conversions that are running have finished
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Watch the supplied directory and all directories below it, and look for runs in them
+	 */
+	private void register( WatchService watchService, Path start ) throws IOException {
+
+		Files.walkFileTree( start, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory( Path directory, BasicFileAttributes attributes ) throws IOException {
+
+				directory.register( watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY );
+				addCandidates( directory.toFile() );
+
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed( Path file, IOException e ) {
+
+				// e.g., a directory that was removed or can't be read
+				return FileVisitResult.CONTINUE;
+			}
+		} );
+	}
+
+	/**
+	 * Add the runs that the supplied changed file or directory may belong to as candidates: the
+	 * parameters files in its directory, or next to the reports directory it is in
+	 */
+	private void addCandidates( File changed ) {
+
+		if( changed.getName().endsWith( ".plink" ) ) {
+			addCandidate( changed );
+			return;
+		}
+
+		File directory = changed.isDirectory() ? changed : changed.getParentFile();
+
+		if( directory == null )
+			return;
+
+		if( directory.getName().equals( PLinkConstants.DATA_SUBDIRECTORY ) && directory.getParentFile() != null )
+			directory = directory.getParentFile();
+
+		File[] plinkFiles = directory.listFiles( ( dir, name ) -> name.endsWith( ".plink" ) );
+
+		if( plinkFiles != null ) {
+			for( File plinkFile : plinkFiles )
+				addCandidate( plinkFile );
+		}
+	}
+
+	private void addCandidate( File plinkFile ) {
+		candidates.putIfAbsent( plinkFile.getAbsoluteFile(), new Candidate() );
+	}
+
+	/**
+	 * Take a snapshot of every candidate run, and convert the ones whose files have stopped changing
+	 */
+	private void checkCandidates( ExecutorService executor ) {
+
+		long now = System.currentTimeMillis();
+
+		for( Iterator<Map.Entry<File, Candidate>> iterator = candidates.entrySet().iterator(); iterator.hasNext(); ) {
+
+			Map.Entry<File, Candidate> entry = iterator.next();
+			File plinkFile = entry.getKey();
+			Candidate candidate = entry.getValue();
+
+			RunSnapshot snapshot = RunSnapshot.take( plinkFile );
+
+			// not finished yet, or gone
+			if( snapshot == null ) {
+				if( !plinkFile.exists() )
+					iterator.remove();
+
+				candidate.snapshot = null;
+				continue;
+			}
+
+			// files that were last changed a while ago (e.g., a run that finished before watching started) are
+			// already stable, but are still looked at twice in case they are being copied with their times kept
+			if( !snapshot.equals( candidate.snapshot ) ) {
+				candidate.snapshot = snapshot;
+				candidate.changedTime = candidate.changedTime == 0 ? Math.min( now, snapshot.getLastModified() ) : now;
+				continue;
+			}
+
+			if( now - candidate.changedTime < stableMillis )
+				continue;
+
+			// converting an earlier version of this run, look again when that's done
+			synchronized( running ) {
+				if( running.containsKey( plinkFile ) )
+					continue;
+			}
+
+			iterator.remove();
+
+			String fingerprint = snapshot.getFingerprint();
+
+			if( ledger.contains( plinkFile, fingerprint ) || fingerprint.equals( failed.get( plinkFile ) ) )
+				continue;
+
+			listener.runFound( plinkFile );
+
+			PLinkConverterOptions options;
+
+			try {
+				options = optionsFactory.getOptions( plinkFile );
+				startRunning( plinkFile, options.getOutputFile() );
+			} catch( Exception e ) {
+				failed.put( plinkFile, fingerprint );
+				listener.conversionFailed( plinkFile, e );
+				continue;
+			}
+
+			executor.execute( () -> convert( plinkFile, fingerprint, options ) );
+		}
+	}
+
+	/**
+	 * Record that a run is being converted to the supplied proxl XML file
+	 *
+	 * @param plinkFile
+	 * @param outputFile
+	 * @throws Exception If another run is being converted to, or was last converted to, the same proxl XML file
+	 */
+	private void startRunning( File plinkFile, File outputFile ) throws Exception {
+
+		outputFile = outputFile.getAbsoluteFile();
+
+		synchronized( running ) {
+
+			for( Map.Entry<File, File> entry : running.entrySet() ) {
+				if( entry.getValue().equals( outputFile ) )
+					throw new Exception( "Not converting, " + entry.getKey() + " is being converted to the same proxl XML file: " + outputFile );
+			}
+
+			File previousRun = ledger.getRunForOutput( outputFile );
+
+			if( previousRun != null && !previousRun.equals( plinkFile ) )
+				throw new Exception( "Not converting, " + outputFile + " was converted from " + previousRun + " (see " + ledger.getLedgerFile() + ")" );
+
+			running.put( plinkFile, outputFile );
+		}
+	}
+
+	/**
+	 * Convert a run, and record it in the ledger
+	 */
+	private void convert( File plinkFile, String fingerprint, PLinkConverterOptions options ) {
+
+		try {
+			listener.conversionStarted( plinkFile, options.getOutputFile() );
+
+			PLinkConversionResult result = new PLinkConverter().convert( options );
+
+			ledger.add( plinkFile, fingerprint, options.getOutputFile() );
+			failed.remove( plinkFile );
+
+			listener.conversionSucceeded( plinkFile, result );
+
+		} catch( Throwable t ) {
+			failed.put( plinkFile, fingerprint );
+			listener.conversionFailed( plinkFile, t );
+
+		} finally {
+			synchronized( running ) {
+				running.remove( plinkFile );
+			}
+		}
+
+		// the run may have changed while it was converted
+		addCandidate( plinkFile );
+	}
+
+
+	/**
+	 * A run that may be ready to convert
+	 */
+	private static class Candidate {
+
+		/**
+		 * The last snapshot taken, null if the run wasn't finished
+		 */
+		private RunSnapshot snapshot;
+
+		/**
+		 * When the snapshot last changed
+		 */
+		private long changedTime;
+	}
+
+
+	/**
+	 * @param listener Receives the runs as they are found and converted
+	 */
+	public void setListener(WatchListener listener) {
+		this.listener = listener != null ? listener : new WatchListener() { };
+	}
+
+
+	private final List<File> directories;
+	private final OptionsFactory optionsFactory;
+	private final ConversionLedger ledger;
+	private final int concurrency;
+	private final long stableMillis;
+
+	private volatile WatchListener listener = new WatchListener() { };
+	private volatile boolean stopped = false;
+
+	private final Map<File, Candidate> candidates = new ConcurrentHashMap<>();
+	private final Map<File, File> running = new HashMap<>();
+	private final Map<File, String> failed = new ConcurrentHashMap<>();
+}
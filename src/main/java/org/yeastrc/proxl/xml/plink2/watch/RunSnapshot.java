@@ -0,0 +1,146 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.watch;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.yeastrc.proxl.xml.plink2.reader.PLinkConstants;
+
+/**
+ * The size and modification time of the files of a finished pLink run: the parameters (.plink) file,
+ * and the summary and spectra files in its reports directory. A run is finished once it has a summary
+ * and at least one spectra file, and is complete once two snapshots taken some time apart are equal.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class RunSnapshot {
+
+	public static final String SUMMARY_FILE_SUFFIX = "summary.txt";
+	public static final String SPECTRA_FILE_SUFFIX = "_spectra.csv";
+
+	/**
+	 * Take a snapshot of the run with the supplied parameters file, whose results are in the reports
+	 * directory next to it
+	 *
+	 * @param plinkFile
+	 * @return The snapshot, or null if the run hasn't finished (or the files went away)
+	 */
+	public static RunSnapshot take( File plinkFile ) {
+
+		if( !plinkFile.isFile() )
+			return null;
+
+		File[] reportFiles = new File( plinkFile.getParentFile(), PLinkConstants.DATA_SUBDIRECTORY ).listFiles( ( dir, name ) ->
+				name.endsWith( SUMMARY_FILE_SUFFIX ) || name.endsWith( SPECTRA_FILE_SUFFIX ) );
+
+		if( reportFiles == null )
+			return null;
+
+		boolean hasSummary = false;
+		boolean hasSpectra = false;
+
+		Map<String, long[]> files = new TreeMap<>();
+		files.put( plinkFile.getName(), new long[] { plinkFile.length(), plinkFile.lastModified() } );
+
+		for( File file : reportFiles ) {
+			if( file.getName().endsWith( SUMMARY_FILE_SUFFIX ) )
+				hasSummary = true;
+			else
+				hasSpectra = true;
+
+			files.put( PLinkConstants.DATA_SUBDIRECTORY + "/" + file.getName(), new long[] { file.length(), file.lastModified() } );
+		}
+
+		if( !hasSummary || !hasSpectra )
+			return null;
+
+		return new RunSnapshot( files );
+	}
+
+	private RunSnapshot( Map<String, long[]> files ) {
+		this.files = files;
+	}
+
+	/**
+	 * @return The latest modification time of the run's files
+	 */
+	public long getLastModified() {
+
+		long lastModified = 0;
+		for( long[] file : files.values() )
+			lastModified = Math.max( lastModified, file[ 1 ] );
+
+		return lastModified;
+	}
+
+	/**
+	 * @return A SHA-256 (as hex) of the names, sizes and modification times of the run's files
+	 */
+	public String getFingerprint() {
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+
+			for( Map.Entry<String, long[]> entry : files.entrySet() )
+				digest.update( ( entry.getKey() + "\t" + entry.getValue()[ 0 ] + "\t" + entry.getValue()[ 1 ] + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+
+			StringBuilder sb = new StringBuilder();
+			for( byte b : digest.digest() )
+				sb.append( String.format( "%02x", b ) );
+
+			return sb.toString();
+
+		} catch( Exception e ) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+	@Override
+	public boolean equals( Object o ) {
+
+		if( !( o instanceof RunSnapshot ) )
+			return false;
+
+		Map<String, long[]> otherFiles = ( (RunSnapshot)o ).files;
+
+		if( !files.keySet().equals( otherFiles.keySet() ) )
+			return false;
+
+		for( Map.Entry<String, long[]> entry : files.entrySet() ) {
+			if( !Arrays.equals( entry.getValue(), otherFiles.get( entry.getKey() ) ) )
+				return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return files.keySet().hashCode();
+	}
+
+
+	private final Map<String, long[]> files;
+}
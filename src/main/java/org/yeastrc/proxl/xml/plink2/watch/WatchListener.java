@@ -0,0 +1,66 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.watch;
+
+import java.io.File;
+
+import org.yeastrc.proxl.xml.plink2.converter.PLinkConversionResult;
+
+/**
+ * Receives the runs found and converted by a FolderWatcher. Called on the watcher's threads, so may
+ * be called for several runs at the same time; all methods do nothing by default.
+ *
+ * @author Michael Riffle
+ *
+ */
+public interface WatchListener {
+
+	/**
+	 * A finished run that hasn't been converted has been found, and will be converted once its files
+	 * stop changing
+	 *
+	 * @param plinkFile The run's parameters file
+	 */
+	default void runFound( File plinkFile ) { }
+
+	/**
+	 * A run's conversion has started
+	 *
+	 * @param plinkFile The run's parameters file
+	 * @param outputFile The proxl XML file being written
+	 */
+	default void conversionStarted( File plinkFile, File outputFile ) { }
+
+	/**
+	 * A run has been converted
+	 *
+	 * @param plinkFile The run's parameters file
+	 * @param result
+	 */
+	default void conversionSucceeded( File plinkFile, PLinkConversionResult result ) { }
+
+	/**
+	 * A run's conversion failed. It is tried again if the run's files change, or when watching starts again.
+	 *
+	 * @param plinkFile The run's parameters file
+	 * @param error
+	 */
+	default void conversionFailed( File plinkFile, Throwable error ) { }
+
+}
@@ -0,0 +1,350 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.yeastrc.proxl.xml.plink2.constants.PLinkConverterConstants;
+import org.yeastrc.proxl.xml.plink2.utils.JSONUtils;
+
+/**
+ * A small JSON file written next to the proxl XML file describing a conversion: the digest(s) and
+ * size of the proxl XML file, the number of reported peptides and PSMs it contains, and the input
+ * files used to generate it. Lets a pipeline check the integrity of the proxl XML without reading
+ * it again.
+ *
+ * For incremental conversions the manifest also holds the SHA-256 of each input file and the
+ * fingerprints of the inputs (see ConversionFingerprint), and is read back by the next conversion
+ * to find out what, if anything, has to be done again.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ConversionManifest {
+
+	public static final String MANIFEST_FILE_SUFFIX = ".manifest.json";
+
+	/**
+	 * Get the manifest file to use for the supplied proxl XML file
+	 *
+	 * @param proxlXMLFile
+	 * @return
+	 */
+	public static File getManifestFile( File proxlXMLFile ) {
+		return new File( proxlXMLFile.getPath() + MANIFEST_FILE_SUFFIX );
+	}
+
+	/**
+	 * Read a manifest written by write()
+	 *
+	 * @param manifestFile
+	 * @return
+	 * @throws Exception If the file can't be read or is not a conversion manifest
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static ConversionManifest read( File manifestFile ) throws Exception {
+
+		Object document = JSONUtils.parse( new String( Files.readAllBytes( manifestFile.toPath() ), StandardCharsets.UTF_8 ) );
+
+		if( !( document instanceof Map ) || !( ( (Map<String, Object>)document ).get( "output" ) instanceof Map ) )
+			throw new Exception( "Not a conversion manifest: " + manifestFile.getAbsolutePath() );
+
+		Map<String, Object> root = (Map<String, Object>)document;
+		Map<String, Object> output = (Map<String, Object>)root.get( "output" );
+
+		ConversionManifest manifest = new ConversionManifest();
+
+		manifest.outputFile = new File( manifestFile.getAbsoluteFile().getParentFile(), (String)output.get( "file" ) );
+		manifest.outputBytes = getLong( output, "bytes" );
+		manifest.sha256 = (String)output.get( "sha256" );
+		manifest.crc32c = (String)output.get( "crc32c" );
+		manifest.reportedPeptideCount = getLong( output, "reportedPeptides" );
+		manifest.psmCount = getLong( output, "psms" );
+
+		if( output.get( "lastModified" ) != null )
+			manifest.outputLastModified = Instant.parse( (String)output.get( "lastModified" ) ).toEpochMilli();
+
+		if( root.get( "fingerprint" ) instanceof Map ) {
+			Map<String, Object> fingerprint = (Map<String, Object>)root.get( "fingerprint" );
+
+			manifest.resultsFingerprint = (String)fingerprint.get( "results" );
+			manifest.fastaFingerprint = (String)fingerprint.get( "fasta" );
+		}
+
+		if( root.get( "inputs" ) instanceof List ) {
+			for( Object element : (List<Object>)root.get( "inputs" ) ) {
+				Map<String, Object> input = (Map<String, Object>)element;
+
+				manifest.inputFiles.add( new InputFile( (String)input.get( "role" ), new File( (String)input.get( "path" ) ), getLong( input, "bytes" ),
+						Instant.parse( (String)input.get( "lastModified" ) ).toEpochMilli(), (String)input.get( "sha256" ) ) );
+			}
+		}
+
+		return manifest;
+	}
+
+	private static long getLong( Map<String, Object> object, String key ) {
+		Object value = object.get( key );
+		return value instanceof Double ? ( (Double)value ).longValue() : 0;
+	}
+
+	/**
+	 * Add an input file to the manifest
+	 *
+	 * @param role What the file was used for, e.g., "fasta"
+	 * @param file
+	 */
+	public void addInputFile( String role, File file ) {
+		inputFiles.add( new InputFile( role, file ) );
+	}
+
+	/**
+	 * Add an input file to the manifest
+	 *
+	 * @param inputFile
+	 */
+	public void addInputFile( InputFile inputFile ) {
+		inputFiles.add( inputFile );
+	}
+
+	/**
+	 * Write this manifest as JSON to the supplied file
+	 *
+	 * @param manifestFile
+	 * @throws Exception
+	 */
+	public void write( File manifestFile ) throws Exception {
+
+		try( Writer writer = Files.newBufferedWriter( manifestFile.toPath(), StandardCharsets.UTF_8 ) ) {
+
+			writer.write( "{\n" );
+			writer.write( "  \"converter\": " + JSONUtils.quote( PLinkConverterConstants.CONVERSION_PROGRAM_NAME ) + ",\n" );
+			writer.write( "  \"converterVersion\": " + JSONUtils.quote( PLinkConverterConstants.CONVERSION_PROGRAM_VERSION ) + ",\n" );
+			writer.write( "  \"created\": " + JSONUtils.quote( Instant.now().toString() ) + ",\n" );
+
+			writer.write( "  \"output\": {\n" );
+			writer.write( "    \"file\": " + JSONUtils.quote( outputFile.getName() ) + ",\n" );
+			writer.write( "    \"bytes\": " + outputBytes + ",\n" );
+			writer.write( "    \"sha256\": " + JSONUtils.quote( sha256 ) + ",\n" );
+			writer.write( "    \"crc32c\": " + JSONUtils.quote( crc32c ) + ",\n" );
+			writer.write( "    \"reportedPeptides\": " + reportedPeptideCount + ",\n" );
+			writer.write( "    \"psms\": " + psmCount + ( outputLastModified != null ? ",\n" : "\n" ) );
+
+			if( outputLastModified != null )
+				writer.write( "    \"lastModified\": " + JSONUtils.quote( Instant.ofEpochMilli( outputLastModified ).toString() ) + "\n" );
+
+			writer.write( "  },\n" );
+
+			if( resultsFingerprint != null ) {
+				writer.write( "  \"fingerprint\": {\n" );
+				writer.write( "    \"results\": " + JSONUtils.quote( resultsFingerprint ) + ",\n" );
+				writer.write( "    \"fasta\": " + JSONUtils.quote( fastaFingerprint ) + "\n" );
+				writer.write( "  },\n" );
+			}
+
+			writer.write( "  \"inputs\": [" );
+
+			for( int i = 0; i < inputFiles.size(); i++ ) {
+				InputFile inputFile = inputFiles.get( i );
+
+				writer.write( i == 0 ? "\n" : ",\n" );
+				writer.write( "    { \"role\": " + JSONUtils.quote( inputFile.role ) +
+						", \"path\": " + JSONUtils.quote( inputFile.file.getAbsolutePath() ) +
+						", \"bytes\": " + inputFile.bytes +
+						", \"lastModified\": " + JSONUtils.quote( Instant.ofEpochMilli( inputFile.lastModified ).toString() ) +
+						( inputFile.sha256 != null ? ", \"sha256\": " + JSONUtils.quote( inputFile.sha256 ) : "" ) + " }" );
+			}
+
+			writer.write( inputFiles.isEmpty() ? "]\n" : "\n  ]\n" );
+			writer.write( "}\n" );
+		}
+	}
+
+	/**
+	 * Fill in the output section of this manifest from the supplied writer, after it has written the proxl XML
+	 *
+	 * @param outputFile The proxl XML file
+	 * @param writer The writer used to write the proxl XML file
+	 */
+	public void setOutput( File outputFile, ProxlXMLWriter writer ) {
+		setOutput( outputFile, writer.getBytesWritten(), writer.getSHA256(), writer.getCRC32C(), writer.getReportedPeptideCount(), writer.getPsmCount() );
+	}
+
+	/**
+	 * Fill in the output section of this manifest
+	 *
+	 * @param outputFile The proxl XML file
+	 * @param outputBytes Its size
+	 * @param sha256 Its SHA-256, may be null
+	 * @param crc32c Its CRC32C, may be null
+	 * @param reportedPeptideCount The number of reported peptides in it
+	 * @param psmCount The number of PSMs in it
+	 */
+	public void setOutput( File outputFile, long outputBytes, String sha256, String crc32c, long reportedPeptideCount, long psmCount ) {
+		this.outputFile = outputFile;
+		this.outputBytes = outputBytes;
+		this.sha256 = sha256;
+		this.crc32c = crc32c;
+		this.reportedPeptideCount = reportedPeptideCount;
+		this.psmCount = psmCount;
+	}
+
+	/**
+	 * Record the inputs' fingerprints and the modification time of the proxl XML file, for the next incremental conversion
+	 *
+	 * @param resultsFingerprint
+	 * @param fastaFingerprint
+	 * @param outputLastModified
+	 */
+	public void setFingerprints( String resultsFingerprint, String fastaFingerprint, long outputLastModified ) {
+		this.resultsFingerprint = resultsFingerprint;
+		this.fastaFingerprint = fastaFingerprint;
+		this.outputLastModified = outputLastModified;
+	}
+
+	/**
+	 * @return The proxl XML file
+	 */
+	public File getOutputFile() {
+		return outputFile;
+	}
+
+	/**
+	 * @return The size of the proxl XML file
+	 */
+	public long getOutputBytes() {
+		return outputBytes;
+	}
+
+	/**
+	 * @return The modification time of the proxl XML file when the manifest was written, or null if it wasn't recorded
+	 */
+	public Long getOutputLastModified() {
+		return outputLastModified;
+	}
+
+	public String getSHA256() {
+		return sha256;
+	}
+
+	public String getCRC32C() {
+		return crc32c;
+	}
+
+	public long getReportedPeptideCount() {
+		return reportedPeptideCount;
+	}
+
+	public long getPsmCount() {
+		return psmCount;
+	}
+
+	/**
+	 * @return The fingerprint of the inputs that determine the proxl XML other than its matched proteins, may be null
+	 */
+	public String getResultsFingerprint() {
+		return resultsFingerprint;
+	}
+
+	/**
+	 * @return The fingerprint of the inputs that determine the matched proteins, may be null
+	 */
+	public String getFastaFingerprint() {
+		return fastaFingerprint;
+	}
+
+	/**
+	 * @return The input files, in the order they were added
+	 */
+	public List<InputFile> getInputFiles() {
+		return Collections.unmodifiableList( inputFiles );
+	}
+
+
+	/**
+	 * An input file, with its size and modification time at the time of the conversion, and optionally its SHA-256
+	 */
+	public static class InputFile {
+
+		public InputFile( String role, File file ) {
+			this( role, file, file.length(), file.lastModified(), null );
+		}
+
+		public InputFile( String role, File file, long bytes, long lastModified, String sha256 ) {
+			this.role = role;
+			this.file = file;
+			this.bytes = bytes;
+			this.lastModified = lastModified;
+			this.sha256 = sha256;
+		}
+
+		/**
+		 * @return What the file was used for, e.g., "fasta"
+		 */
+		public String getRole() {
+			return role;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @return The SHA-256 (as hex) of the file, or null if it wasn't computed
+		 */
+		public String getSHA256() {
+			return sha256;
+		}
+
+		private final String role;
+		private final File file;
+		private final long bytes;
+		private final long lastModified;
+		private final String sha256;
+	}
+
+
+	private File outputFile;
+	private long outputBytes;
+	private String sha256;
+	private String crc32c;
+	private long reportedPeptideCount;
+	private long psmCount;
+	private Long outputLastModified;
+	private String resultsFingerprint;
+	private String fastaFingerprint;
+
+	private final List<InputFile> inputFiles = new ArrayList<>();
+}
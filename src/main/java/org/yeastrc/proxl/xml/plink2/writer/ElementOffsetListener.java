@@ -0,0 +1,48 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Notified by ProxlXMLSerializer of the byte offsets in the output at which elements start and end.
+ *
+ * @author Michael Riffle
+ *
+ */
+public interface ElementOffsetListener {
+
+	/**
+	 * Called just before the start tag of an element is written
+	 *
+	 * @param qName The name of the element
+	 * @param atts The attributes of the element
+	 * @param offset The offset in the output of the '<' of the start tag
+	 */
+	void elementStarted( String qName, Attributes atts, long offset );
+
+	/**
+	 * Called just after the end tag of an element is written
+	 *
+	 * @param qName The name of the element
+	 * @param offset The offset in the output of the byte following the end tag
+	 */
+	void elementEnded( String qName, long offset );
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.validation.Schema;
+
+import org.yeastrc.proxl.xml.plink2.main.ProxlXMLValidator;
+import org.yeastrc.proxl_import.api.xml_dto.ProxlInput;
+
+/**
+ * The JAXBContext for the proxl XML DTOs and the compiled proxl XSD, each created the first time it
+ * is needed and then shared by everything that writes, reads or validates proxl XML in this process.
+ * Creating either takes a few hundred milliseconds, a large part of the run time of a small search,
+ * and both are thread-safe once created.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLContext {
+
+	/**
+	 * @return The JAXBContext for ProxlInput, created on the first call
+	 * @throws Exception
+	 */
+	public static JAXBContext getJAXBContext() throws Exception {
+
+		JAXBContext context = jaxbContext;
+
+		if( context == null ) {
+			synchronized( ProxlXMLContext.class ) {
+				context = jaxbContext;
+
+				if( context == null ) {
+
+					// JAXB can't generate its optimized accessor classes at run time in a GraalVM native image
+					if( System.getProperty( "org.graalvm.nativeimage.imagecode" ) != null )
+						System.setProperty( "com.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize", "true" );
+
+					context = JAXBContext.newInstance( ProxlInput.class );
+					jaxbContext = context;
+				}
+			}
+		}
+
+		return context;
+	}
+
+	/**
+	 * @return The compiled proxl XSD, compiled on the first call
+	 * @throws Exception
+	 */
+	public static Schema getSchema() throws Exception {
+
+		Schema compiledSchema = schema;
+
+		if( compiledSchema == null ) {
+			synchronized( ProxlXMLContext.class ) {
+				compiledSchema = schema;
+
+				if( compiledSchema == null ) {
+					compiledSchema = ProxlXMLValidator.compileSchema();
+					schema = compiledSchema;
+				}
+			}
+		}
+
+		return compiledSchema;
+	}
+
+
+	private static volatile JAXBContext jaxbContext;
+	private static volatile Schema schema;
+}
@@ -0,0 +1,129 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+
+import org.yeastrc.proxl_import.api.xml_dto.MatchedProteins;
+import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
+
+/**
+ * Read single reported peptides, or the matched proteins section, from a proxl XML file using
+ * the index written next to it (see ProxlXMLIndex), without parsing the rest of the file.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLFragmentReader {
+
+	/**
+	 * @param proxlXMLFile The proxl XML file, which must have an index file next to it
+	 * @throws Exception If the index is missing or does not match the proxl XML file
+	 */
+	public ProxlXMLFragmentReader( File proxlXMLFile ) throws Exception {
+
+		File indexFile = ProxlXMLIndex.getIndexFile( proxlXMLFile );
+		if( !indexFile.exists() )
+			throw new Exception( "Could not find index for proxl XML file: " + indexFile.getAbsolutePath() );
+
+		this.proxlXMLFile = proxlXMLFile;
+		this.index = ProxlXMLIndex.load( indexFile );
+
+		if( index.getIndexedFileSize() != proxlXMLFile.length() )
+			throw new Exception( "Index " + indexFile.getAbsolutePath() + " does not match proxl XML file " + proxlXMLFile.getAbsolutePath() +
+					" (file has changed since it was indexed)." );
+	}
+
+	/**
+	 * Read the reported peptide with the supplied reported peptide string
+	 *
+	 * @param reportedPeptideString
+	 * @return The reported peptide, or null if the file does not contain it
+	 * @throws Exception
+	 */
+	public ReportedPeptide getReportedPeptide( String reportedPeptideString ) throws Exception {
+
+		ProxlXMLIndex.Fragment fragment = index.getReportedPeptide( reportedPeptideString );
+		if( fragment == null )
+			return null;
+
+		return unmarshal( fragment, ReportedPeptide.class );
+	}
+
+	/**
+	 * Read the matched proteins section
+	 *
+	 * @return The matched proteins, or null if the file does not contain them
+	 * @throws Exception
+	 */
+	public MatchedProteins getMatchedProteins() throws Exception {
+
+		ProxlXMLIndex.Fragment fragment = index.getMatchedProteins();
+		if( fragment == null )
+			return null;
+
+		return unmarshal( fragment, MatchedProteins.class );
+	}
+
+	/**
+	 * @return The index of the proxl XML file
+	 */
+	public ProxlXMLIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Read the bytes of the supplied fragment from the proxl XML file
+	 *
+	 * @param fragment
+	 * @return
+	 * @throws Exception
+	 */
+	public byte[] readFragment( ProxlXMLIndex.Fragment fragment ) throws Exception {
+
+		if( fragment.getLength() > Integer.MAX_VALUE )
+			throw new Exception( "Fragment too large to read: " + fragment.getElement() + " " + fragment.getKey() );
+
+		byte[] bytes = new byte[ (int)fragment.getLength() ];
+
+		try( RandomAccessFile raf = new RandomAccessFile( proxlXMLFile, "r" ) ) {
+			raf.seek( fragment.getOffset() );
+			raf.readFully( bytes );
+		}
+
+		return bytes;
+	}
+
+	private <T> T unmarshal( ProxlXMLIndex.Fragment fragment, Class<T> type ) throws Exception {
+
+		Unmarshaller unmarshaller = ProxlXMLContext.getJAXBContext().createUnmarshaller();
+		StreamSource source = new StreamSource( new ByteArrayInputStream( readFragment( fragment ) ) );
+
+		return unmarshaller.unmarshal( source, type ).getValue();
+	}
+
+
+	private final File proxlXMLFile;
+	private final ProxlXMLIndex index;
+}
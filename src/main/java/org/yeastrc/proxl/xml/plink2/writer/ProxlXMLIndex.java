@@ -0,0 +1,259 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+
+/**
+ * An index of a proxl XML file: the byte offset and length of each reported peptide (by its
+ * reported peptide string) and of the matched proteins section. Built while the file is written,
+ * by listening to the offsets reported by ProxlXMLSerializer, and saved as a small tab-delimited
+ * file next to the proxl XML file so that a fragment can be read without parsing the whole file.
+ *
+ * The index file starts with a header line giving the format version and the size of the indexed
+ * proxl XML file, followed by one line per fragment: element name, offset, length, key.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLIndex implements ElementOffsetListener {
+
+	public static final String INDEX_FILE_SUFFIX = ".index";
+
+	public static final String REPORTED_PEPTIDE_ELEMENT = "reported_peptide";
+	public static final String MATCHED_PROTEINS_ELEMENT = "matched_proteins";
+
+	private static final String REPORTED_PEPTIDE_STRING_ATTRIBUTE = "reported_peptide_string";
+
+	private static final String HEADER_PREFIX = "#proxl_xml_index";
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Get the index file to use for the supplied proxl XML file
+	 *
+	 * @param proxlXMLFile
+	 * @return
+	 */
+	public static File getIndexFile( File proxlXMLFile ) {
+		return new File( proxlXMLFile.getPath() + INDEX_FILE_SUFFIX );
+	}
+
+	/**
+	 * Load a previously saved index
+	 *
+	 * @param indexFile
+	 * @return
+	 * @throws Exception If the file is not a proxl XML index
+	 */
+	public static ProxlXMLIndex load( File indexFile ) throws Exception {
+
+		ProxlXMLIndex index = new ProxlXMLIndex();
+
+		try( BufferedReader br = Files.newBufferedReader( indexFile.toPath(), StandardCharsets.UTF_8 ) ) {
+
+			String line = br.readLine();
+			if( line == null || !line.startsWith( HEADER_PREFIX + "\t" ) )
+				throw new Exception( "Not a proxl XML index file: " + indexFile.getAbsolutePath() );
+
+			String[] header = line.split( "\t" );
+			if( header.length != 3 || Integer.parseInt( header[ 1 ] ) != FORMAT_VERSION )
+				throw new Exception( "Unsupported proxl XML index format in: " + indexFile.getAbsolutePath() );
+
+			index.indexedFileSize = Long.parseLong( header[ 2 ] );
+
+			while( ( line = br.readLine() ) != null ) {
+
+				if( line.isEmpty() )
+					continue;
+
+				String[] fields = line.split( "\t", 4 );
+				if( fields.length != 4 )
+					throw new Exception( "Invalid line in proxl XML index " + indexFile.getAbsolutePath() + ": " + line );
+
+				Fragment fragment = new Fragment( fields[ 0 ], fields[ 3 ], Long.parseLong( fields[ 1 ] ), Long.parseLong( fields[ 2 ] ) );
+				index.addFragment( fragment );
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Save this index
+	 *
+	 * @param indexFile
+	 * @throws Exception
+	 */
+	public void save( File indexFile ) throws Exception {
+
+		try( Writer writer = Files.newBufferedWriter( indexFile.toPath(), StandardCharsets.UTF_8 ) ) {
+
+			writer.write( HEADER_PREFIX + "\t" + FORMAT_VERSION + "\t" + indexedFileSize + "\n" );
+
+			if( matchedProteins != null )
+				writeFragment( writer, matchedProteins );
+
+			for( Fragment fragment : reportedPeptides.values() )
+				writeFragment( writer, fragment );
+		}
+	}
+
+	private void writeFragment( Writer writer, Fragment fragment ) throws Exception {
+		writer.write( fragment.getElement() + "\t" + fragment.getOffset() + "\t" + fragment.getLength() + "\t" + fragment.getKey() + "\n" );
+	}
+
+	private void addFragment( Fragment fragment ) {
+
+		if( fragment.getElement().equals( MATCHED_PROTEINS_ELEMENT ) )
+			matchedProteins = fragment;
+		else
+			reportedPeptides.put( fragment.getKey(), fragment );
+	}
+
+	@Override
+	public void elementStarted( String qName, Attributes atts, long offset ) {
+
+		if( qName.equals( REPORTED_PEPTIDE_ELEMENT ) ) {
+			currentKey = atts.getValue( REPORTED_PEPTIDE_STRING_ATTRIBUTE );
+			currentStart = offset;
+		} else if( qName.equals( MATCHED_PROTEINS_ELEMENT ) ) {
+			currentKey = "";
+			currentStart = offset;
+		}
+	}
+
+	@Override
+	public void elementEnded( String qName, long offset ) {
+
+		if( qName.equals( REPORTED_PEPTIDE_ELEMENT ) || qName.equals( MATCHED_PROTEINS_ELEMENT ) ) {
+			addFragment( new Fragment( qName, currentKey, currentStart, offset - currentStart ) );
+			currentKey = null;
+		}
+	}
+
+	/**
+	 * Get the fragment for the reported peptide with the supplied reported peptide string
+	 *
+	 * @param reportedPeptideString
+	 * @return The fragment, or null if there is no such reported peptide
+	 */
+	public Fragment getReportedPeptide( String reportedPeptideString ) {
+		return reportedPeptides.get( reportedPeptideString );
+	}
+
+	/**
+	 * @return The fragments for all reported peptides, in the order they appear in the file
+	 */
+	public Collection<Fragment> getReportedPeptides() {
+		return Collections.unmodifiableCollection( reportedPeptides.values() );
+	}
+
+	/**
+	 * @return The fragment for the matched proteins section, or null if the file has none
+	 */
+	public Fragment getMatchedProteins() {
+		return matchedProteins;
+	}
+
+	/**
+	 * @param matchedProteins The fragment for the matched proteins section, e.g., after it has been replaced
+	 */
+	public void setMatchedProteins( Fragment matchedProteins ) {
+		this.matchedProteins = matchedProteins;
+	}
+
+	/**
+	 * @return The size, in bytes, of the indexed proxl XML file
+	 */
+	public long getIndexedFileSize() {
+		return indexedFileSize;
+	}
+
+	/**
+	 * @param indexedFileSize The size, in bytes, of the indexed proxl XML file
+	 */
+	public void setIndexedFileSize(long indexedFileSize) {
+		this.indexedFileSize = indexedFileSize;
+	}
+
+
+	/**
+	 * The location of a single element in the proxl XML file
+	 */
+	public static class Fragment {
+
+		public Fragment( String element, String key, long offset, long length ) {
+			this.element = element;
+			this.key = key;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * @return The name of the element
+		 */
+		public String getElement() {
+			return element;
+		}
+
+		/**
+		 * @return The reported peptide string for a reported peptide, an empty string otherwise
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return The byte offset of the start tag
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return The length, in bytes, from the start of the start tag to the end of the end tag
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		private final String element;
+		private final String key;
+		private final long offset;
+		private final long length;
+	}
+
+
+	private final Map<String, Fragment> reportedPeptides = new LinkedHashMap<>();
+	private Fragment matchedProteins;
+	private long indexedFileSize;
+
+	private String currentKey;
+	private long currentStart;
+}
@@ -0,0 +1,304 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.Attributes;
+import org.yeastrc.proxl_import.api.xml_dto.MatchedProteins;
+
+/**
+ * Replaces the matched proteins section of an existing proxl XML file, using the index written next to
+ * it (see ProxlXMLIndex), without building or writing the rest of the file again. Used when only the
+ * FASTA file of a conversion has changed.
+ *
+ * The new section is serialized the same way ProxlXMLWriter would have written it, and spliced between
+ * the bytes before and after the old one into a new file, which then replaces the old one. The index is
+ * updated to match. Digests of the new file may be computed as it is written, as in ProxlXMLWriter.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLMatchedProteinsUpdater {
+
+	private static final String REPORTED_PEPTIDES_ELEMENT = "reported_peptides";
+	private static final String PEPTIDE_ELEMENT = "peptide";
+	private static final String SEQUENCE_ATTRIBUTE = "sequence";
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Read the distinct peptide sequences of the reported peptides in a proxl XML file
+	 *
+	 * @param proxlXMLFile
+	 * @return
+	 * @throws Exception
+	 */
+	public static Collection<String> readPeptideSequences( File proxlXMLFile ) throws Exception {
+
+		Collection<String> peptideSequences = new HashSet<>();
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+
+		try( InputStream is = new BufferedInputStream( Files.newInputStream( proxlXMLFile.toPath() ), BUFFER_SIZE ) ) {
+
+			XMLStreamReader reader = factory.createXMLStreamReader( is );
+
+			try {
+				boolean inReportedPeptides = false;
+
+				while( reader.hasNext() ) {
+					int event = reader.next();
+
+					if( event == XMLStreamConstants.START_ELEMENT ) {
+
+						if( reader.getLocalName().equals( REPORTED_PEPTIDES_ELEMENT ) )
+							inReportedPeptides = true;
+						else if( inReportedPeptides && reader.getLocalName().equals( PEPTIDE_ELEMENT ) )
+							peptideSequences.add( reader.getAttributeValue( null, SEQUENCE_ATTRIBUTE ) );
+
+					} else if( event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals( REPORTED_PEPTIDES_ELEMENT ) ) {
+						break;
+					}
+				}
+
+			} finally {
+				reader.close();
+			}
+		}
+
+		return peptideSequences;
+	}
+
+	/**
+	 * @param proxlXMLFile
+	 * @return true if the supplied proxl XML file has an up to date index with a matched proteins section, so its
+	 *         matched proteins can be replaced
+	 */
+	public static boolean canUpdate( File proxlXMLFile ) {
+
+		File indexFile = ProxlXMLIndex.getIndexFile( proxlXMLFile );
+
+		if( !proxlXMLFile.exists() || !indexFile.exists() )
+			return false;
+
+		try {
+			ProxlXMLIndex index = ProxlXMLIndex.load( indexFile );
+			return index.getIndexedFileSize() == proxlXMLFile.length() && index.getMatchedProteins() != null;
+		} catch( Exception e ) {
+			return false;
+		}
+	}
+
+	/**
+	 * Replace the matched proteins section of the supplied proxl XML file
+	 *
+	 * @param proxlXMLFile The proxl XML file, which must have an up to date index with a matched proteins section
+	 * @param matchedProteins The new matched proteins section
+	 * @throws Exception
+	 */
+	public void replaceMatchedProteins( File proxlXMLFile, MatchedProteins matchedProteins ) throws Exception {
+
+		sha256 = null;
+		crc32c = null;
+
+		File indexFile = ProxlXMLIndex.getIndexFile( proxlXMLFile );
+		ProxlXMLIndex index = ProxlXMLIndex.load( indexFile );
+
+		long fileSize = proxlXMLFile.length();
+
+		if( index.getIndexedFileSize() != fileSize )
+			throw new Exception( "Index " + indexFile.getAbsolutePath() + " does not match proxl XML file " + proxlXMLFile.getAbsolutePath() +
+					" (file has changed since it was indexed)." );
+
+		ProxlXMLIndex.Fragment oldFragment = index.getMatchedProteins();
+		if( oldFragment == null )
+			throw new Exception( "No matched proteins section in the index of " + proxlXMLFile.getAbsolutePath() );
+
+		byte[] newFragment = serialize( matchedProteins );
+
+		MessageDigest sha256Digest = computeSHA256 ? MessageDigest.getInstance( "SHA-256" ) : null;
+		Checksum crc32cChecksum = computeCRC32C ? new CRC32C() : null;
+
+		File tempFile = File.createTempFile( proxlXMLFile.getName() + ".", ".tmp", proxlXMLFile.getAbsoluteFile().getParentFile() );
+
+		try {
+
+			try( RandomAccessFile in = new RandomAccessFile( proxlXMLFile, "r" );
+					OutputStream os = ProxlXMLWriter.getOutputStream( tempFile, sha256Digest, crc32cChecksum ) ) {
+
+				long after = oldFragment.getOffset() + oldFragment.getLength();
+
+				copy( in, 0, oldFragment.getOffset(), os );
+				os.write( newFragment );
+				copy( in, after, fileSize - after, os );
+			}
+
+			Files.move( tempFile.toPath(), proxlXMLFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+		} finally {
+			tempFile.delete();
+		}
+
+		bytesWritten = fileSize - oldFragment.getLength() + newFragment.length;
+
+		// everything after the matched proteins section has moved, but nothing after it is indexed
+		index.setMatchedProteins( new ProxlXMLIndex.Fragment( ProxlXMLIndex.MATCHED_PROTEINS_ELEMENT, "", oldFragment.getOffset(), newFragment.length ) );
+		index.setIndexedFileSize( bytesWritten );
+		index.save( indexFile );
+
+		if( sha256Digest != null )
+			sha256 = ProxlXMLWriter.toHex( sha256Digest.digest() );
+
+		if( crc32cChecksum != null )
+			crc32c = String.format( "%08x", crc32cChecksum.getValue() );
+	}
+
+	/**
+	 * Serialize the matched proteins section as it would be written in a whole proxl XML file, from the
+	 * start of its start tag to the end of its end tag
+	 */
+	private byte[] serialize( MatchedProteins matchedProteins ) throws Exception {
+
+		Marshaller marshaller = ProxlXMLContext.getJAXBContext().createMarshaller();
+		marshaller.setProperty( Marshaller.JAXB_FRAGMENT, true );
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		ProxlXMLSerializer serializer = new ProxlXMLSerializer( baos, !compact );
+		serializer.setDepth( 1 );
+
+		long[] offsets = { -1, -1 };
+
+		serializer.setElementOffsetListener( new ElementOffsetListener() {
+
+			@Override
+			public void elementStarted( String qName, Attributes atts, long offset ) {
+				if( qName.equals( ProxlXMLIndex.MATCHED_PROTEINS_ELEMENT ) )
+					offsets[ 0 ] = offset;
+			}
+
+			@Override
+			public void elementEnded( String qName, long offset ) {
+				if( qName.equals( ProxlXMLIndex.MATCHED_PROTEINS_ELEMENT ) )
+					offsets[ 1 ] = offset;
+			}
+		} );
+
+		marshaller.marshal( new JAXBElement<>( new QName( ProxlXMLIndex.MATCHED_PROTEINS_ELEMENT ), MatchedProteins.class, matchedProteins ), serializer );
+		serializer.flush();
+
+		return Arrays.copyOfRange( baos.toByteArray(), (int)offsets[ 0 ], (int)offsets[ 1 ] );
+	}
+
+	private static void copy( RandomAccessFile in, long offset, long length, OutputStream os ) throws Exception {
+
+		byte[] buffer = new byte[ BUFFER_SIZE ];
+
+		in.seek( offset );
+
+		while( length > 0 ) {
+			int read = in.read( buffer, 0, (int)Math.min( buffer.length, length ) );
+			if( read == -1 )
+				throw new Exception( "Unexpected end of proxl XML file." );
+
+			os.write( buffer, 0, read );
+			length -= read;
+		}
+	}
+
+	/**
+	 * @return true if the XML is written without line breaks or indentation
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * @param compact If true, write the XML without line breaks or indentation. Must match the rest of the file.
+	 */
+	public void setCompact(boolean compact) {
+		this.compact = compact;
+	}
+
+	/**
+	 * @param computeSHA256 If true, compute a SHA-256 digest of the new file as it is written
+	 */
+	public void setComputeSHA256(boolean computeSHA256) {
+		this.computeSHA256 = computeSHA256;
+	}
+
+	/**
+	 * @param computeCRC32C If true, compute a CRC32C checksum of the new file as it is written
+	 */
+	public void setComputeCRC32C(boolean computeCRC32C) {
+		this.computeCRC32C = computeCRC32C;
+	}
+
+	/**
+	 * @return The SHA-256 (as hex) of the new file, or null if it wasn't computed
+	 */
+	public String getSHA256() {
+		return sha256;
+	}
+
+	/**
+	 * @return The CRC32C (as hex) of the new file, or null if it wasn't computed
+	 */
+	public String getCRC32C() {
+		return crc32c;
+	}
+
+	/**
+	 * @return The size, in bytes, of the new file
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+
+	private boolean compact = false;
+	private boolean computeSHA256 = false;
+	private boolean computeCRC32C = false;
+
+	private String sha256;
+	private String crc32c;
+	private long bytesWritten;
+}
@@ -0,0 +1,373 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.yeastrc.proxl.xml.plink2.utils.CancellationUtils;
+
+/**
+ * Serializes the SAX events produced by marshalling a proxl XML document to UTF-8 bytes. The
+ * output matches what JAXB produces with formatted output turned on (XML declaration, four
+ * spaces of indentation per level, text-only elements on one line), so files written through
+ * here are interchangeable with files written by CreateImportFileFromJavaObjectsMain.
+ *
+ * If formatted output is turned off, no whitespace is written between elements, which gives the
+ * smallest possible file for the same document.
+ *
+ * An ElementOffsetListener may be set to be told the byte offsets at which elements start and end.
+ *
+ * Also acts as a Locator for the output being written, so that anything validating the event
+ * stream can report the line and column in the output file.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLSerializer implements ContentHandler, Locator {
+
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+	private static final String INDENT = "    ";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public ProxlXMLSerializer( OutputStream outputStream ) {
+		this( outputStream, true );
+	}
+
+	/**
+	 * @param outputStream The stream to which the XML is written
+	 * @param formatted If false, no line breaks or indentation are written
+	 */
+	public ProxlXMLSerializer( OutputStream outputStream, boolean formatted ) {
+		this.outputStream = outputStream;
+		this.formatted = formatted;
+	}
+
+	@Override
+	public void startDocument() throws SAXException {
+		write( XML_DECLARATION );
+		writeLineBreak();
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		writeLineBreak();
+		flush();
+	}
+
+	@Override
+	public void startPrefixMapping( String prefix, String uri ) {
+
+		// proxl XML does not use namespaces, but don't silently drop any that show up
+		if( prefix.isEmpty() && uri.isEmpty() )
+			return;
+
+		pendingPrefixMappings.add( new String[] { prefix, uri } );
+	}
+
+	@Override
+	public void endPrefixMapping( String prefix ) { }
+
+	@Override
+	public void startElement( String uri, String localName, String qName, Attributes atts ) throws SAXException {
+
+		// the conversion may be cancelled while it is being written, check once for each reported peptide
+		if( qName.equals( ProxlXMLIndex.REPORTED_PEPTIDE_ELEMENT ) ) {
+			try {
+				CancellationUtils.checkCancelled();
+			} catch( InterruptedException e ) {
+				throw new SAXException( e );
+			}
+		}
+
+		closePendingStartTag();
+
+		if( depth > 0 ) {
+			writeLineBreak();
+			writeIndent( depth );
+		}
+
+		if( elementOffsetListener != null )
+			elementOffsetListener.elementStarted( qName, atts, getBytesWritten() );
+
+		write( '<' );
+		write( qName );
+
+		for( String[] mapping : pendingPrefixMappings ) {
+			write( mapping[ 0 ].isEmpty() ? " xmlns" : " xmlns:" + mapping[ 0 ] );
+			write( "=\"" );
+			writeEscaped( mapping[ 1 ], true );
+			write( '"' );
+		}
+		pendingPrefixMappings.clear();
+
+		for( int i = 0; i < atts.getLength(); i++ ) {
+			write( ' ' );
+			write( atts.getQName( i ) );
+			write( "=\"" );
+			writeEscaped( atts.getValue( i ), true );
+			write( '"' );
+		}
+
+		startTagPending = true;
+		hasChildElements = false;
+		depth++;
+	}
+
+	@Override
+	public void endElement( String uri, String localName, String qName ) throws SAXException {
+
+		depth--;
+
+		if( startTagPending ) {
+			write( "/>" );
+			startTagPending = false;
+		} else {
+
+			if( hasChildElements ) {
+				writeLineBreak();
+				writeIndent( depth );
+			}
+
+			write( "</" );
+			write( qName );
+			write( '>' );
+		}
+
+		if( elementOffsetListener != null )
+			elementOffsetListener.elementEnded( qName, getBytesWritten() );
+
+		// the parent of this element has child elements
+		hasChildElements = true;
+	}
+
+	@Override
+	public void characters( char[] ch, int start, int length ) throws SAXException {
+
+		if( length == 0 )
+			return;
+
+		closePendingStartTag();
+		writeEscaped( ch, start, length, false );
+	}
+
+	@Override
+	public void ignorableWhitespace( char[] ch, int start, int length ) { }
+
+	@Override
+	public void processingInstruction( String target, String data ) { }
+
+	@Override
+	public void skippedEntity( String name ) { }
+
+	@Override
+	public void setDocumentLocator( Locator locator ) { }
+
+
+	/**
+	 * Write any buffered bytes to the underlying stream. Does not flush the underlying stream.
+	 *
+	 * @throws SAXException
+	 */
+	public void flush() throws SAXException {
+
+		if( bufferPosition == 0 )
+			return;
+
+		try {
+			outputStream.write( buffer, 0, bufferPosition );
+		} catch( IOException e ) {
+			throw new SAXException( "Error writing proxl XML: " + e.getMessage(), e );
+		}
+
+		bytesFlushed += bufferPosition;
+		bufferPosition = 0;
+	}
+
+	/**
+	 * @return The total number of bytes serialized so far, including bytes not yet flushed
+	 */
+	public long getBytesWritten() {
+		return bytesFlushed + bufferPosition;
+	}
+
+	/**
+	 * For serializing a fragment of a document: indent the fragment as if its top element were at the
+	 * supplied depth, e.g., 1 for a child of the root element. Set before anything is written.
+	 *
+	 * @param depth
+	 */
+	public void setDepth( int depth ) {
+		this.depth = depth;
+	}
+
+	/**
+	 * @param elementOffsetListener Told the byte offsets at which elements start and end, may be null
+	 */
+	public void setElementOffsetListener( ElementOffsetListener elementOffsetListener ) {
+		this.elementOffsetListener = elementOffsetListener;
+	}
+
+	@Override
+	public String getPublicId() {
+		return null;
+	}
+
+	@Override
+	public String getSystemId() {
+		return null;
+	}
+
+	@Override
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public int getColumnNumber() {
+		return (int)( getBytesWritten() - lineStartByte ) + 1;
+	}
+
+
+	private void closePendingStartTag() throws SAXException {
+		if( startTagPending ) {
+			write( '>' );
+			startTagPending = false;
+		}
+	}
+
+	private void writeLineBreak() throws SAXException {
+		if( formatted )
+			write( '\n' );
+	}
+
+	private void writeIndent( int level ) throws SAXException {
+		if( !formatted )
+			return;
+
+		for( int i = 0; i < level; i++ )
+			write( INDENT );
+	}
+
+	private void write( String s ) throws SAXException {
+		for( int i = 0; i < s.length(); i++ )
+			write( s.charAt( i ) );
+	}
+
+	private void writeEscaped( String s, boolean isAttribute ) throws SAXException {
+		writeEscaped( s.toCharArray(), 0, s.length(), isAttribute );
+	}
+
+	/**
+	 * Write the characters, escaping the same characters JAXB escapes
+	 */
+	private void writeEscaped( char[] ch, int start, int length, boolean isAttribute ) throws SAXException {
+
+		for( int i = start; i < start + length; i++ ) {
+			char c = ch[ i ];
+
+			switch( c ) {
+				case '&':
+					write( "&amp;" );
+					break;
+				case '<':
+					write( "&lt;" );
+					break;
+				case '>':
+					write( "&gt;" );
+					break;
+				case '"':
+					if( isAttribute )
+						write( "&quot;" );
+					else
+						write( c );
+					break;
+				default:
+					if( Character.isHighSurrogate( c ) && i + 1 < start + length && Character.isLowSurrogate( ch[ i + 1 ] ) ) {
+						writeCodePoint( Character.toCodePoint( c, ch[ i + 1 ] ) );
+						i++;
+					} else {
+						write( c );
+					}
+			}
+		}
+	}
+
+	/**
+	 * Encode a single (non-surrogate) char as UTF-8
+	 */
+	private void write( char c ) throws SAXException {
+
+		if( bufferPosition + 4 > BUFFER_SIZE )
+			flush();
+
+		if( c < 0x80 ) {
+			buffer[ bufferPosition++ ] = (byte)c;
+
+			if( c == '\n' ) {
+				lineNumber++;
+				lineStartByte = getBytesWritten();
+			}
+
+		} else if( c < 0x800 ) {
+			buffer[ bufferPosition++ ] = (byte)( 0xc0 | ( c >> 6 ) );
+			buffer[ bufferPosition++ ] = (byte)( 0x80 | ( c & 0x3f ) );
+		} else {
+			buffer[ bufferPosition++ ] = (byte)( 0xe0 | ( c >> 12 ) );
+			buffer[ bufferPosition++ ] = (byte)( 0x80 | ( ( c >> 6 ) & 0x3f ) );
+			buffer[ bufferPosition++ ] = (byte)( 0x80 | ( c & 0x3f ) );
+		}
+	}
+
+	private void writeCodePoint( int codePoint ) throws SAXException {
+
+		if( bufferPosition + 4 > BUFFER_SIZE )
+			flush();
+
+		buffer[ bufferPosition++ ] = (byte)( 0xf0 | ( codePoint >> 18 ) );
+		buffer[ bufferPosition++ ] = (byte)( 0x80 | ( ( codePoint >> 12 ) & 0x3f ) );
+		buffer[ bufferPosition++ ] = (byte)( 0x80 | ( ( codePoint >> 6 ) & 0x3f ) );
+		buffer[ bufferPosition++ ] = (byte)( 0x80 | ( codePoint & 0x3f ) );
+	}
+
+
+	private final OutputStream outputStream;
+	private final boolean formatted;
+	private ElementOffsetListener elementOffsetListener;
+
+	private final byte[] buffer = new byte[ BUFFER_SIZE ];
+	private int bufferPosition = 0;
+	private long bytesFlushed = 0;
+
+	private int lineNumber = 1;
+	private long lineStartByte = 0;
+
+	private int depth = 0;
+	private boolean startTagPending = false;
+	private boolean hasChildElements = false;
+
+	private final List<String[]> pendingPrefixMappings = new ArrayList<>();
+}
@@ -0,0 +1,383 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+import javax.xml.bind.MarshalException;
+import javax.xml.bind.Marshaller;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXParseException;
+import org.yeastrc.proxl.xml.plink2.main.ProxlXMLValidator;
+import org.yeastrc.proxl_import.api.xml_dto.ProxlInput;
+import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
+
+/**
+ * Write a populated ProxlInput to a proxl XML file.
+ *
+ * If validate while writing is turned on, the SAX events generated while marshalling are
+ * validated against the proxl XSD (and ProxlXMLStructureChecker) before they are written,
+ * so writing and validating are done in a single pass and an invalid document stops the
+ * write at the first problem. The file is written to a temporary file next to it and moved into
+ * place only once the write has succeeded, so an error (or cancellation) leaves any earlier file as
+ * it was.
+ *
+ * If compact is turned on, no line breaks or indentation are written.
+ *
+ * A SHA-256 and/or CRC32C digest of the file may be computed on the bytes as they are written,
+ * so that the file does not need to be read again to get them.
+ *
+ * If write index is turned on, a ProxlXMLIndex of the byte offsets of each reported peptide and
+ * the matched proteins is built during the write and saved next to the file.
+ *
+ * The reported peptides may also be streamed into the file from an Iterator as it is written,
+ * instead of all being held in the ProxlInput (see StreamingReportedPeptidesHandler).
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLWriter {
+
+	/**
+	 * Write the supplied proxl XML root element to the supplied file
+	 *
+	 * @param proxlInputRoot
+	 * @param outfile
+	 * @throws Exception
+	 */
+	public void writeProxlXML( ProxlInput proxlInputRoot, File outfile ) throws Exception {
+		writeProxlXML( proxlInputRoot, null, outfile );
+	}
+
+	/**
+	 * Write the supplied proxl XML root element to the supplied file, streaming the supplied reported
+	 * peptides into its reported peptides element, which must be empty, as it is written. Each reported
+	 * peptide is only needed until it has been written.
+	 *
+	 * @param proxlInputRoot
+	 * @param reportedPeptides May be null, to write only the reported peptides in the root element
+	 * @param outfile
+	 * @throws Exception
+	 */
+	public void writeProxlXML( ProxlInput proxlInputRoot, Iterator<ReportedPeptide> reportedPeptides, File outfile ) throws Exception {
+
+		Marshaller marshaller = ProxlXMLContext.getJAXBContext().createMarshaller();
+
+		sha256 = null;
+		crc32c = null;
+		bytesWritten = 0;
+		reportedPeptideCount = 0;
+		psmCount = 0;
+
+		MessageDigest sha256Digest = computeSHA256 ? MessageDigest.getInstance( "SHA-256" ) : null;
+		Checksum crc32cChecksum = computeCRC32C ? new CRC32C() : null;
+
+		ProxlXMLIndex index = writeIndex ? new ProxlXMLIndex() : null;
+
+		// write to a temporary file next to the output file, and only replace the output file once the write has
+		// succeeded, so a failed or cancelled write leaves any earlier output (and its index) as it was
+		File directory = outfile.getAbsoluteFile().getParentFile();
+		File tempFile = File.createTempFile( outfile.getName() + ".", ".tmp", directory );
+		File tempIndexFile = null;
+
+		try {
+
+			try( OutputStream os = getOutputStream( tempFile, sha256Digest, crc32cChecksum ) ) {
+
+				ProxlXMLSerializer serializer = new ProxlXMLSerializer( os, !compact );
+				ContentHandler contentHandler = serializer;
+				StreamingReportedPeptidesHandler streamingHandler = null;
+
+				if( index != null )
+					serializer.setElementOffsetListener( index );
+
+				if( validateWhileWriting ) {
+					ValidatorHandler validatorHandler = ProxlXMLValidator.getValidatorHandler();
+
+					contentHandler = new TeeContentHandler( validatorHandler, serializer ) {
+
+						// JAXB supplies a locator without positions, report positions in the output file instead
+						@Override
+						public void setDocumentLocator( Locator locator ) {
+							super.setDocumentLocator( serializer );
+						}
+					};
+				}
+
+				if( reportedPeptides != null ) {
+					streamingHandler = new StreamingReportedPeptidesHandler( contentHandler, reportedPeptides );
+					contentHandler = streamingHandler;
+				}
+
+				try {
+					marshaller.marshal( proxlInputRoot, contentHandler );
+				} catch( MarshalException e ) {
+
+					InterruptedException cancelled = getInterruptedException( e );
+					if( cancelled != null )
+						throw cancelled;
+
+					SAXParseException validationError = getSAXParseException( e );
+					if( validationError != null )
+						throw ProxlXMLValidator.getValidationException( validationError );
+
+					throw e;
+				}
+
+				bytesWritten = serializer.getBytesWritten();
+
+				if( streamingHandler != null ) {
+					reportedPeptideCount += streamingHandler.getReportedPeptideCount();
+					psmCount += streamingHandler.getPsmCount();
+				}
+			}
+
+			if( index != null ) {
+				File indexFile = ProxlXMLIndex.getIndexFile( outfile );
+				tempIndexFile = File.createTempFile( indexFile.getName() + ".", ".tmp", directory );
+
+				index.setIndexedFileSize( bytesWritten );
+				index.save( tempIndexFile );
+			}
+
+			Files.move( tempFile.toPath(), outfile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+			if( tempIndexFile != null )
+				Files.move( tempIndexFile.toPath(), ProxlXMLIndex.getIndexFile( outfile ).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+		} finally {
+			tempFile.delete();
+
+			if( tempIndexFile != null )
+				tempIndexFile.delete();
+		}
+
+		if( sha256Digest != null )
+			sha256 = toHex( sha256Digest.digest() );
+
+		if( crc32cChecksum != null )
+			crc32c = String.format( "%08x", crc32cChecksum.getValue() );
+
+		if( proxlInputRoot.getReportedPeptides() != null ) {
+			for( ReportedPeptide reportedPeptide : proxlInputRoot.getReportedPeptides().getReportedPeptide() ) {
+				reportedPeptideCount++;
+				psmCount += reportedPeptide.getPsms().getPsm().size();
+			}
+		}
+	}
+
+	/**
+	 * Get the stream to write the file to, computing the requested digests of the bytes as they pass through
+	 *
+	 * @param outfile
+	 * @param sha256Digest May be null
+	 * @param crc32cChecksum May be null
+	 * @return
+	 * @throws Exception
+	 */
+	static OutputStream getOutputStream( File outfile, MessageDigest sha256Digest, Checksum crc32cChecksum ) throws Exception {
+
+		OutputStream os = new FileOutputStream( outfile );
+
+		if( sha256Digest != null )
+			os = new DigestOutputStream( os, sha256Digest );
+
+		if( crc32cChecksum != null )
+			os = new CheckedOutputStream( os, crc32cChecksum );
+
+		return os;
+	}
+
+	static String toHex( byte[] bytes ) {
+
+		StringBuilder sb = new StringBuilder( bytes.length * 2 );
+		for( byte b : bytes )
+			sb.append( String.format( "%02x", b ) );
+
+		return sb.toString();
+	}
+
+	/**
+	 * Find an InterruptedException (the conversion was cancelled) in the causes of the supplied exception
+	 *
+	 * @param t
+	 * @return The InterruptedException, or null if there isn't one
+	 */
+	private InterruptedException getInterruptedException( Throwable t ) {
+
+		while( t != null ) {
+			if( t instanceof InterruptedException )
+				return (InterruptedException)t;
+
+			t = t.getCause();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Find a SAXParseException (a validation error) in the causes of the supplied exception
+	 *
+	 * @param t
+	 * @return The SAXParseException, or null if there isn't one
+	 */
+	private SAXParseException getSAXParseException( Throwable t ) {
+
+		while( t != null ) {
+			if( t instanceof SAXParseException )
+				return (SAXParseException)t;
+
+			t = t.getCause();
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return true if the XML is validated as it is written
+	 */
+	public boolean isValidateWhileWriting() {
+		return validateWhileWriting;
+	}
+
+	/**
+	 * @param validateWhileWriting If true, validate the XML as it is written instead of after
+	 */
+	public void setValidateWhileWriting(boolean validateWhileWriting) {
+		this.validateWhileWriting = validateWhileWriting;
+	}
+
+	/**
+	 * @return true if the XML is written without line breaks or indentation
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * @param compact If true, write the XML without line breaks or indentation
+	 */
+	public void setCompact(boolean compact) {
+		this.compact = compact;
+	}
+
+
+	/**
+	 * @return true if a SHA-256 digest of the file is computed as it is written
+	 */
+	public boolean isComputeSHA256() {
+		return computeSHA256;
+	}
+
+	/**
+	 * @param computeSHA256 If true, compute a SHA-256 digest of the file as it is written
+	 */
+	public void setComputeSHA256(boolean computeSHA256) {
+		this.computeSHA256 = computeSHA256;
+	}
+
+	/**
+	 * @return true if a CRC32C checksum of the file is computed as it is written
+	 */
+	public boolean isComputeCRC32C() {
+		return computeCRC32C;
+	}
+
+	/**
+	 * @param computeCRC32C If true, compute a CRC32C checksum of the file as it is written
+	 */
+	public void setComputeCRC32C(boolean computeCRC32C) {
+		this.computeCRC32C = computeCRC32C;
+	}
+
+	/**
+	 * @return true if an index of the file is written next to it
+	 */
+	public boolean isWriteIndex() {
+		return writeIndex;
+	}
+
+	/**
+	 * @param writeIndex If true, write an index of the byte offsets of each reported peptide and the matched proteins next to the file
+	 */
+	public void setWriteIndex(boolean writeIndex) {
+		this.writeIndex = writeIndex;
+	}
+
+	/**
+	 * @return The SHA-256 (as hex) of the last file written, or null if it wasn't computed
+	 */
+	public String getSHA256() {
+		return sha256;
+	}
+
+	/**
+	 * @return The CRC32C (as hex) of the last file written, or null if it wasn't computed
+	 */
+	public String getCRC32C() {
+		return crc32c;
+	}
+
+	/**
+	 * @return The size, in bytes, of the last file written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return The number of reported peptides in the last file written
+	 */
+	public long getReportedPeptideCount() {
+		return reportedPeptideCount;
+	}
+
+	/**
+	 * @return The number of PSMs in the last file written
+	 */
+	public long getPsmCount() {
+		return psmCount;
+	}
+
+
+	private boolean validateWhileWriting = false;
+	private boolean compact = false;
+	private boolean computeSHA256 = false;
+	private boolean computeCRC32C = false;
+	private boolean writeIndex = false;
+
+	private String sha256;
+	private String crc32c;
+	private long bytesWritten;
+	private long reportedPeptideCount;
+	private long psmCount;
+}
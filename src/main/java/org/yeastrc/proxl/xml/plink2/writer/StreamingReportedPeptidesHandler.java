@@ -0,0 +1,156 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import java.util.Iterator;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
+
+/**
+ * Passes the SAX events of a proxl XML document through to another content handler, marshalling
+ * the reported peptides from an Iterator into the (empty) reported peptides element just before
+ * its end. Only one reported peptide at a time has to be held in memory.
+ *
+ * @author Michael Riffle
+ *
+ */
+class StreamingReportedPeptidesHandler implements ContentHandler {
+
+	private static final String REPORTED_PEPTIDES_ELEMENT = "reported_peptides";
+
+	StreamingReportedPeptidesHandler( ContentHandler handler, Iterator<ReportedPeptide> reportedPeptides ) {
+		this.handler = handler;
+		this.reportedPeptides = reportedPeptides;
+	}
+
+	@Override
+	public void endElement( String uri, String localName, String qName ) throws SAXException {
+
+		if( qName.equals( REPORTED_PEPTIDES_ELEMENT ) )
+			writeReportedPeptides();
+
+		handler.endElement( uri, localName, qName );
+	}
+
+	/**
+	 * Marshal every reported peptide from the iterator as a fragment into the handler
+	 */
+	private void writeReportedPeptides() throws SAXException {
+
+		try {
+			Marshaller marshaller = ProxlXMLContext.getJAXBContext().createMarshaller();
+			marshaller.setProperty( Marshaller.JAXB_FRAGMENT, true );
+
+			while( reportedPeptides.hasNext() ) {
+				ReportedPeptide reportedPeptide = reportedPeptides.next();
+
+				marshaller.marshal( new JAXBElement<>( new QName( ProxlXMLIndex.REPORTED_PEPTIDE_ELEMENT ), ReportedPeptide.class, reportedPeptide ), handler );
+
+				reportedPeptideCount++;
+				psmCount += reportedPeptide.getPsms().getPsm().size();
+			}
+
+		} catch( JAXBException e ) {
+			throw new SAXException( e );
+		} catch( Exception e ) {
+			throw new SAXException( "Error reading the reported peptides: " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * @return The number of reported peptides streamed into the document
+	 */
+	long getReportedPeptideCount() {
+		return reportedPeptideCount;
+	}
+
+	/**
+	 * @return The number of PSMs in the reported peptides streamed into the document
+	 */
+	long getPsmCount() {
+		return psmCount;
+	}
+
+	@Override
+	public void setDocumentLocator( Locator locator ) {
+		handler.setDocumentLocator( locator );
+	}
+
+	@Override
+	public void startDocument() throws SAXException {
+		handler.startDocument();
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		handler.endDocument();
+	}
+
+	@Override
+	public void startPrefixMapping( String prefix, String uri ) throws SAXException {
+		handler.startPrefixMapping( prefix, uri );
+	}
+
+	@Override
+	public void endPrefixMapping( String prefix ) throws SAXException {
+		handler.endPrefixMapping( prefix );
+	}
+
+	@Override
+	public void startElement( String uri, String localName, String qName, Attributes atts ) throws SAXException {
+		handler.startElement( uri, localName, qName, atts );
+	}
+
+	@Override
+	public void characters( char[] ch, int start, int length ) throws SAXException {
+		handler.characters( ch, start, length );
+	}
+
+	@Override
+	public void ignorableWhitespace( char[] ch, int start, int length ) throws SAXException {
+		handler.ignorableWhitespace( ch, start, length );
+	}
+
+	@Override
+	public void processingInstruction( String target, String data ) throws SAXException {
+		handler.processingInstruction( target, data );
+	}
+
+	@Override
+	public void skippedEntity( String name ) throws SAXException {
+		handler.skippedEntity( name );
+	}
+
+
+	private final ContentHandler handler;
+	private final Iterator<ReportedPeptide> reportedPeptides;
+
+	private long reportedPeptideCount;
+	private long psmCount;
+}
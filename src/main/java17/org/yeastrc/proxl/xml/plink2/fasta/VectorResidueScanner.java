@@ -0,0 +1,102 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vector kernel of the ResidueScanner: the sequence is loaded a whole vector register at a time
+ * (e.g., 32 residues with AVX2, 64 with AVX-512), and compared against the first residue of the
+ * peptide in every lane, and, loaded one residue later, against the second residue. The lanes where
+ * both match are taken as a bit mask, and only those positions are checked for the whole peptide.
+ *
+ * Built from src/main/java17 into META-INF/versions/17 of the multi-release jar, and needs the
+ * jdk.incubator.vector module added to the JVM. The ResidueScanner loads it by name, and falls back
+ * to its swar kernel if it can't.
+ *
+ * @author Michael Riffle
+ *
+ */
+final class VectorResidueScanner implements ResidueScanner.Kernel {
+
+	/**
+	 * The preferred species, up to 256 bits (32 residues). Wider vectors (AVX-512) were slower in the
+	 * ResidueScannerBenchmark, as more of them have a position to check.
+	 */
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.vectorBitSize() > 256 ?
+			ByteVector.SPECIES_256 : ByteVector.SPECIES_PREFERRED;
+
+	@Override
+	public int indexOf( byte[] sequence, int from, int to, byte[] peptide ) {
+
+		int length = peptide.length;
+
+		if( length == 0 )
+			return from <= to ? from : -1;
+
+		// the last position the peptide may start at
+		int last = to - length;
+		if( last < from )
+			return -1;
+
+		int lanes = SPECIES.length();
+
+		int secondOffset = ResidueScanner.getSecondOffset( peptide );
+		int prefix = ResidueScanner.getPrefix( peptide );
+
+		ByteVector first = ByteVector.broadcast( SPECIES, peptide[ 0 ] );
+		ByteVector second = ByteVector.broadcast( SPECIES, peptide[ secondOffset ] );
+
+		int position = from;
+
+		// whole vectors, while the vector (and so any flagged position in it) starts at or before the last start position
+		for( ; position <= last && position + lanes + secondOffset <= sequence.length; position += lanes ) {
+
+			VectorMask<Byte> matches = ByteVector.fromArray( SPECIES, sequence, position ).eq( first )
+					.and( ByteVector.fromArray( SPECIES, sequence, position + secondOffset ).eq( second ) );
+
+			if( !matches.anyTrue() )
+				continue;
+
+			long flags = matches.toLong();
+
+			while( flags != 0 ) {
+
+				int candidate = position + Long.numberOfTrailingZeros( flags );
+				if( candidate > last )
+					return -1;
+
+				if( ResidueScanner.matchesAt( sequence, candidate, peptide, prefix ) )
+					return candidate;
+
+				flags &= flags - 1;
+			}
+		}
+
+		return ResidueScanner.indexOfScalar( sequence, position, to, peptide, prefix );
+	}
+
+	@Override
+	public String getName() {
+		return "vector";
+	}
+
+}
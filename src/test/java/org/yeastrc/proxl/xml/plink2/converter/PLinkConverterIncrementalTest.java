@@ -0,0 +1,187 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yeastrc.proxl.xml.plink2.writer.ProxlXMLMatchedProteinsUpdater;
+
+/**
+ * Checks incremental conversions of a copy of the sample search: that unchanged inputs keep the proxl
+ * XML as it is, that a changed FASTA file only replaces its matched proteins (giving the same file as a
+ * full conversion), and that other changes convert the search again.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class PLinkConverterIncrementalTest {
+
+	private static final File SAMPLE_INPUT_DIRECTORY = new File( "resources/sample_input" );
+
+	private static final String FASTA_FILENAME = "gTuSC-parsimonious-plusRev.fasta";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Before
+	public void setUp() throws Exception {
+
+		inputDirectory = temporaryFolder.newFolder( "sample_input" );
+		copyDirectory( SAMPLE_INPUT_DIRECTORY, inputDirectory );
+
+		outputFile = new File( temporaryFolder.getRoot(), "output.proxl.xml" );
+	}
+
+	@Test
+	public void testUnchangedInputsKeepOutput() throws Exception {
+
+		assertEquals( PLinkConversionResult.Outcome.CONVERTED, convert( outputFile, true, false ).getOutcome() );
+
+		byte[] output = Files.readAllBytes( outputFile.toPath() );
+		long lastModified = outputFile.lastModified();
+
+		PLinkConversionResult result = convert( outputFile, true, false );
+
+		assertEquals( PLinkConversionResult.Outcome.UP_TO_DATE, result.getOutcome() );
+		assertEquals( 0, result.getBytesWritten() );
+		assertFalse( stages.contains( ConversionStage.LOADING_RESULTS ) );
+		assertFalse( stages.contains( ConversionStage.WRITING ) );
+
+		assertEquals( lastModified, outputFile.lastModified() );
+		assertArrayEquals( output, Files.readAllBytes( outputFile.toPath() ) );
+	}
+
+	@Test
+	public void testChangedFastaReplacesMatchedProteins() throws Exception {
+
+		assertEquals( PLinkConversionResult.Outcome.CONVERTED, convert( outputFile, true, false ).getOutcome() );
+
+		// a new protein containing one of the identified peptides
+		String peptide = ProxlXMLMatchedProteinsUpdater.readPeptideSequences( outputFile ).iterator().next();
+
+		Files.write( new File( inputDirectory, FASTA_FILENAME ).toPath(),
+				( ">added_protein a protein added to the FASTA file\nMK" + peptide + "RAGE\n" ).getBytes( StandardCharsets.US_ASCII ),
+				StandardOpenOption.APPEND );
+
+		PLinkConversionResult result = convert( outputFile, true, false );
+
+		assertEquals( PLinkConversionResult.Outcome.MATCHED_PROTEINS_UPDATED, result.getOutcome() );
+		assertTrue( stages.contains( ConversionStage.UPDATING_MATCHED_PROTEINS ) );
+		assertFalse( stages.contains( ConversionStage.LOADING_RESULTS ) );
+		assertFalse( stages.contains( ConversionStage.WRITING ) );
+
+		// the same file as a full conversion with the changed FASTA file
+		File fullOutputFile = new File( temporaryFolder.getRoot(), "full.proxl.xml" );
+		convert( fullOutputFile, false, false );
+
+		byte[] output = Files.readAllBytes( outputFile.toPath() );
+		assertArrayEquals( Files.readAllBytes( fullOutputFile.toPath() ), output );
+		assertTrue( new String( output, StandardCharsets.UTF_8 ).contains( "added_protein" ) );
+		assertEquals( output.length, result.getBytesWritten() );
+
+		// and kept as it is the next time
+		assertEquals( PLinkConversionResult.Outcome.UP_TO_DATE, convert( outputFile, true, false ).getOutcome() );
+	}
+
+	@Test
+	public void testChangedSettingsConvertAgain() throws Exception {
+
+		assertEquals( PLinkConversionResult.Outcome.CONVERTED, convert( outputFile, true, false ).getOutcome() );
+
+		PLinkConversionResult result = convert( outputFile, true, true );
+
+		assertEquals( PLinkConversionResult.Outcome.CONVERTED, result.getOutcome() );
+		assertTrue( stages.contains( ConversionStage.WRITING ) );
+	}
+
+	@Test
+	public void testChangedOutputConvertsAgain() throws Exception {
+
+		assertEquals( PLinkConversionResult.Outcome.CONVERTED, convert( outputFile, true, false ).getOutcome() );
+
+		byte[] output = Files.readAllBytes( outputFile.toPath() );
+
+		// the manifest no longer describes the output
+		Files.write( outputFile.toPath(), "\n".getBytes( StandardCharsets.US_ASCII ), StandardOpenOption.APPEND );
+
+		PLinkConversionResult result = convert( outputFile, true, false );
+
+		assertEquals( PLinkConversionResult.Outcome.CONVERTED, result.getOutcome() );
+		assertArrayEquals( output, Files.readAllBytes( outputFile.toPath() ) );
+	}
+
+	/**
+	 * Convert the copy of the sample search, recording the stages that were run in stages
+	 */
+	private PLinkConversionResult convert( File outputFile, boolean incremental, boolean skipDecoyResults ) throws Exception {
+
+		PLinkConverterOptions options = PLinkConverterOptions.builder()
+				.paramsFile( new File( inputDirectory, "plink_test2.plink" ) )
+				.dataDirectory( inputDirectory )
+				.fastaFile( new File( inputDirectory, FASTA_FILENAME ) )
+				.outputFile( outputFile )
+				.binDirectory( inputDirectory )
+				.incremental( incremental )
+				.skipDecoyResults( skipDecoyResults )
+				.build();
+
+		stages.clear();
+
+		return new PLinkConverter().convert( options, new ConversionListener() {
+			@Override
+			public void stageStarted( ConversionStage stage ) {
+				stages.add( stage );
+			}
+		} );
+	}
+
+	private static void copyDirectory( File source, File destination ) throws Exception {
+
+		for( File file : source.listFiles() ) {
+
+			File copy = new File( destination, file.getName() );
+
+			if( file.isDirectory() ) {
+				copy.mkdir();
+				copyDirectory( file, copy );
+			} else {
+				Files.copy( file.toPath(), copy.toPath() );
+			}
+		}
+	}
+
+
+	private final List<ConversionStage> stages = new ArrayList<>();
+	private File inputDirectory;
+	private File outputFile;
+}
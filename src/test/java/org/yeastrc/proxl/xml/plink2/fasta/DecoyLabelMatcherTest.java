@@ -0,0 +1,164 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.yeastrc.fasta.FASTAEntry;
+import org.yeastrc.fasta.FASTAReader;
+
+/**
+ * Checks DecoyLabelMatcher against checking each decoy label with String.contains().
+ *
+ * @author Michael Riffle
+ *
+ */
+public class DecoyLabelMatcherTest {
+
+	@Test
+	public void testNames() {
+
+		DecoyLabelMatcher matcher = new DecoyLabelMatcher( Arrays.asList( "random", "REV_", "decoy" ) );
+
+		assertTrue( matcher.isDecoy( "Spc97-yeast-random" ) );
+		assertTrue( matcher.isDecoy( "REV_sp|P53378|TBG_YEAST" ) );
+		assertTrue( matcher.isDecoy( "decoy" ) );
+		assertTrue( matcher.isDecoy( "xxdecoyxx" ) );
+
+		// labels are case-sensitive, and a partial label is not a match
+		assertFalse( matcher.isDecoy( "Spc97-yeast-RANDOM" ) );
+		assertFalse( matcher.isDecoy( "rev_sp|P53378|TBG_YEAST" ) );
+		assertFalse( matcher.isDecoy( "Spc97-rando-m" ) );
+		assertFalse( matcher.isDecoy( "" ) );
+	}
+
+	@Test
+	public void testOverlappingLabels() {
+
+		// a label that ends inside another must be found through the failure links
+		DecoyLabelMatcher matcher = new DecoyLabelMatcher( Arrays.asList( "abcd", "bce", "c" ) );
+
+		assertTrue( matcher.isDecoy( "abce" ) );
+		assertTrue( matcher.isDecoy( "xxc" ) );
+		assertFalse( matcher.isDecoy( "abdabd" ) );
+
+		matcher = new DecoyLabelMatcher( Arrays.asList( "abcd", "bce" ) );
+
+		assertTrue( matcher.isDecoy( "abce" ) );
+		assertFalse( matcher.isDecoy( "abcabd" ) );
+	}
+
+	@Test
+	public void testNoLabelsAndEmptyLabel() {
+
+		assertFalse( new DecoyLabelMatcher( Collections.<String>emptyList() ).isDecoy( "random" ) );
+
+		// an empty label is in every name, including an empty one
+		DecoyLabelMatcher matcher = new DecoyLabelMatcher( Arrays.asList( "random", "" ) );
+		assertTrue( matcher.isDecoy( "Spc97-yeast" ) );
+		assertTrue( matcher.isDecoy( "" ) );
+	}
+
+	@Test
+	public void testFASTAEntry() throws Exception {
+
+		DecoyLabelMatcher matcher = new DecoyLabelMatcher( Arrays.asList( "random" ) );
+
+		List<FASTAEntry> entries = readFASTA( ">Spc97-yeast description\nMSTNPKP\n" +
+				">Spc98-yeast first\u0001Spc98-yeast-random second\nMSTNPKQ\n" +
+				">Spc110-yeast random in the description\nMSTNPKR\n" );
+
+		assertFalse( matcher.isDecoy( entries.get( 0 ) ) );
+		assertTrue( matcher.isDecoy( entries.get( 1 ) ) );
+
+		// only names are checked
+		assertFalse( matcher.isDecoy( entries.get( 2 ) ) );
+	}
+
+	@Test
+	public void testRandomLabelsAndNames() {
+
+		// a small alphabet, with characters outside ASCII, so labels and names overlap often
+		String alphabet = "abc_\u00e9\u4e2d";
+		Random random = new Random( 36 );
+
+		for( int i = 0; i < 200; i++ ) {
+
+			Collection<String> labels = new ArrayList<>();
+			int labelCount = 1 + random.nextInt( 5 );
+
+			for( int j = 0; j < labelCount; j++ )
+				labels.add( getRandomString( random, alphabet, 1 + random.nextInt( 4 ) ) );
+
+			DecoyLabelMatcher matcher = new DecoyLabelMatcher( labels );
+
+			for( int j = 0; j < 100; j++ ) {
+				String name = getRandomString( random, alphabet, random.nextInt( 12 ) );
+				assertEquals( labels + " " + name, containsAny( name, labels ), matcher.isDecoy( name ) );
+			}
+		}
+	}
+
+	private boolean containsAny( String name, Collection<String> labels ) {
+
+		for( String label : labels ) {
+			if( name.contains( label ) )
+				return true;
+		}
+
+		return false;
+	}
+
+	private String getRandomString( Random random, String alphabet, int length ) {
+
+		StringBuilder sb = new StringBuilder( length );
+		for( int i = 0; i < length; i++ )
+			sb.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+
+		return sb.toString();
+	}
+
+	private List<FASTAEntry> readFASTA( String fasta ) throws Exception {
+
+		List<FASTAEntry> entries = new ArrayList<>();
+
+		FASTAReader fastaReader = FASTAReader.getInstance( new ByteArrayInputStream( fasta.getBytes( StandardCharsets.UTF_8 ) ) );
+
+		try {
+			for( FASTAEntry entry = fastaReader.readNext(); entry != null; entry = fastaReader.readNext() )
+				entries.add( entry );
+		} finally {
+			fastaReader.close();
+		}
+
+		return entries;
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the FastaPeptideIndex against a plain search of the sequences: the entries and their
+ * annotations, and the k-mer posting lists (delta encoded entry numbers) used to find the entries
+ * containing a peptide, for a FASTA file large enough for 3-mers and a small one indexed by 2-mers.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class FastaPeptideIndexTest {
+
+	private static final String RESIDUES = "ACDEFGHIKLMNPQRSTVWY";
+
+	/**
+	 * A peptide placed in entries far enough apart that their deltas take more than one byte
+	 */
+	private static final String SPACED_PEPTIDE = "WWCWWCMH";
+	private static final int[] SPACED_PEPTIDE_ENTRIES = { 0, 150, 20000, 20001 };
+
+	private static final int ENTRY_COUNT = 20002;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Before
+	public void setUp() throws Exception {
+
+		Random random = new Random( 42 );
+		StringBuilder fasta = new StringBuilder();
+
+		for( int i = 0; i < ENTRY_COUNT; i++ ) {
+
+			StringBuilder sequence = new StringBuilder();
+			for( int j = 0; j < 20 + random.nextInt( 40 ); j++ )
+				sequence.append( RESIDUES.charAt( random.nextInt( RESIDUES.length() ) ) );
+
+			for( int spacedEntry : SPACED_PEPTIDE_ENTRIES ) {
+				if( spacedEntry == i )
+					sequence.insert( sequence.length() / 2, SPACED_PEPTIDE );
+			}
+
+			// some entries have a second header, and some sequences a character that isn't indexed
+			if( i % 1000 == 7 )
+				fasta.append( ">protein" ).append( i ).append( " first description\u0001alias" ).append( i ).append( " second description\n" );
+			else
+				fasta.append( ">protein" ).append( i ).append( " description of protein " ).append( i ).append( "\n" );
+
+			if( i % 500 == 3 )
+				sequence.append( "*" );
+
+			sequences.add( sequence.toString() );
+			fasta.append( sequence ).append( "\n" );
+		}
+
+		fastaFile = temporaryFolder.newFile( "test.fasta" );
+		Files.write( fastaFile.toPath(), fasta.toString().getBytes( StandardCharsets.US_ASCII ) );
+
+		indexDirectory = temporaryFolder.newFolder( "index" );
+	}
+
+	@Test
+	public void testEntries() throws Exception {
+
+		try( FastaPeptideIndex index = FastaPeptideIndex.getIndex( fastaFile, indexDirectory ) ) {
+
+			assertEquals( ENTRY_COUNT, index.getEntryCount() );
+
+			for( int i = 0; i < ENTRY_COUNT; i++ )
+				assertEquals( sequences.get( i ), index.getSequence( i ) );
+
+			Collection<FastaProteinAnnotation> annotations = index.getAnnotations( 7 );
+			assertEquals( 2, annotations.size() );
+
+			Iterator<FastaProteinAnnotation> iterator = annotations.iterator();
+			FastaProteinAnnotation first = iterator.next();
+			FastaProteinAnnotation second = iterator.next();
+
+			assertEquals( "protein7", first.getName() );
+			assertEquals( "first description", first.getDescription() );
+			assertEquals( "alias7", second.getName() );
+			assertEquals( "second description", second.getDescription() );
+			assertNull( first.getTaxonomId() );
+		}
+	}
+
+	@Test
+	public void testEntriesContaining() throws Exception {
+
+		try( FastaPeptideIndex index = FastaPeptideIndex.getIndex( fastaFile, indexDirectory ) ) {
+
+			List<Integer> expected = new ArrayList<>();
+			for( int entry : SPACED_PEPTIDE_ENTRIES )
+				expected.add( entry );
+
+			assertEquals( expected, index.getEntriesContaining( SPACED_PEPTIDE ) );
+
+			// peptides of every length, including ones shorter than a k-mer, taken from the sequences
+			Random random = new Random( 7 );
+
+			for( int i = 0; i < 200; i++ ) {
+				String sequence = sequences.get( random.nextInt( ENTRY_COUNT ) );
+				int length = 1 + random.nextInt( 8 );
+				int start = random.nextInt( sequence.length() - length + 1 );
+
+				String peptide = sequence.substring( start, start + length );
+				assertEquals( peptide, getEntriesContaining( peptide ), index.getEntriesContaining( peptide ) );
+			}
+
+			assertEquals( new ArrayList<Integer>(), index.getEntriesContaining( "WWWWWWWWWW" ) );
+		}
+	}
+
+	@Test
+	public void testExistingIndexIsReused() throws Exception {
+
+		FastaPeptideIndex.getIndex( fastaFile, indexDirectory ).close();
+
+		File indexFile = FastaPeptideIndex.getIndexFile( fastaFile, indexDirectory );
+		long lastModified = indexFile.lastModified();
+
+		try( FastaPeptideIndex index = FastaPeptideIndex.getIndex( fastaFile, indexDirectory ) ) {
+			assertEquals( lastModified, indexFile.lastModified() );
+			assertEquals( getEntriesContaining( SPACED_PEPTIDE ), index.getEntriesContaining( SPACED_PEPTIDE ) );
+		}
+
+		// only the index is in the directory, no temporary files are left behind
+		assertEquals( 1, indexDirectory.list().length );
+	}
+
+	@Test
+	public void testDamagedIndexIsRebuilt() throws Exception {
+
+		FastaPeptideIndex.getIndex( fastaFile, indexDirectory ).close();
+
+		File indexFile = FastaPeptideIndex.getIndexFile( fastaFile, indexDirectory );
+		long size = indexFile.length();
+
+		try( RandomAccessFile raf = new RandomAccessFile( indexFile, "rw" ) ) {
+			raf.setLength( size / 2 );
+		}
+
+		try( FastaPeptideIndex index = FastaPeptideIndex.getIndex( fastaFile, indexDirectory ) ) {
+			assertEquals( size, indexFile.length() );
+			assertEquals( getEntriesContaining( SPACED_PEPTIDE ), index.getEntriesContaining( SPACED_PEPTIDE ) );
+		}
+	}
+
+	@Test
+	public void testLowerCasePeptides() throws Exception {
+
+		try( FastaPeptideIndex index = FastaPeptideIndex.getIndex( fastaFile, indexDirectory ) ) {
+			assertEquals( getEntriesContaining( SPACED_PEPTIDE ), index.getEntriesContaining( SPACED_PEPTIDE.toLowerCase() ) );
+			assertEquals( getEntriesContaining( "WWC" ), index.getEntriesContaining( "wWc" ) );
+		}
+	}
+
+	@Test
+	public void testSmallFasta() throws Exception {
+
+		File smallFastaFile = temporaryFolder.newFile( "small.fasta" );
+		Files.write( smallFastaFile.toPath(), ( ">protein1 first\nMSTNPKPQRKTKRNTNRRPQDVKFPGG\n" +
+				">protein2 second\nacdefghikLMNPQRSTVWY\n" +
+				">protein3 third\nMKWVTFISLLLLFSSAYSRGVFRRDTHKSEIAHRFKDLGE\n" ).getBytes( StandardCharsets.US_ASCII ) );
+
+		try( FastaPeptideIndex index = FastaPeptideIndex.getIndex( smallFastaFile, indexDirectory ) ) {
+
+			assertEquals( 3, index.getEntryCount() );
+			assertEquals( "ACDEFGHIKLMNPQRSTVWY", index.getSequence( 1 ) );
+
+			assertEquals( Arrays.asList( 0 ), index.getEntriesContaining( "PQRK" ) );
+			assertEquals( Arrays.asList( 1 ), index.getEntriesContaining( "FGHIKL" ) );
+			assertEquals( Arrays.asList( 0, 1, 2 ), index.getEntriesContaining( "S" ) );
+			assertEquals( Arrays.asList( 2 ), index.getEntriesContaining( "LLLL" ) );
+		}
+
+		// the per k-mer tables are sized for the FASTA file, not for every possible 4-mer
+		assertTrue( FastaPeptideIndex.getIndexFile( smallFastaFile, indexDirectory ).length() < 16 * 1024 );
+	}
+
+	/**
+	 * Find the entries containing a peptide by checking every sequence
+	 */
+	private List<Integer> getEntriesContaining( String peptide ) {
+
+		List<Integer> entries = new ArrayList<>();
+
+		for( int i = 0; i < sequences.size(); i++ ) {
+			if( sequences.get( i ).contains( peptide ) )
+				entries.add( i );
+		}
+
+		return entries;
+	}
+
+
+	private final List<String> sequences = new ArrayList<>();
+	private File fastaFile;
+	private File indexDirectory;
+}
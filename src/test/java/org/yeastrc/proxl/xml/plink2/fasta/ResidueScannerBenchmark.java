@@ -0,0 +1,150 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A repeatable benchmark of the ResidueScanner kernels: the same random protein sequences and
+ * peptides (from a fixed seed) are searched by each kernel, and by decoding the sequence to a String
+ * and calling contains(), which is what FastaPeptideIndex did before. Most peptides aren't in the
+ * sequence searched, as for the candidates of a FastaPeptideIndex.
+ *
+ * Run with gradle residueScannerBenchmark, which adds the jdk.incubator.vector module on Java 17+.
+ * The optional argument is the number of timed rounds (default 15); the median round is reported.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ResidueScannerBenchmark {
+
+	/**
+	 * Residues repeated roughly in proportion to how common they are in proteins
+	 */
+	private static final String RESIDUES = "AAAAAAAACCDDDDDEEEEEEEFFFFGGGGGGGHHIIIIIKKKKKKLLLLLLLLLMMNNNNPPPPPQQQQRRRRRSSSSSSSTTTTTVVVVVVWYYY";
+
+	private static final int SEQUENCE_COUNT = 20000;
+	private static final int PEPTIDE_COUNT = 50;
+	private static final int WARM_UP_ROUNDS = 5;
+
+	public static void main( String[] args ) {
+
+		int rounds = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 15;
+
+		Random random = new Random( 42 );
+
+		List<byte[]> sequences = new ArrayList<>();
+		long residueCount = 0;
+
+		for( int i = 0; i < SEQUENCE_COUNT; i++ ) {
+
+			byte[] sequence = new byte[ 50 + random.nextInt( 950 ) ];
+			for( int j = 0; j < sequence.length; j++ )
+				sequence[ j ] = (byte)RESIDUES.charAt( random.nextInt( RESIDUES.length() ) );
+
+			sequences.add( sequence );
+			residueCount += sequence.length;
+		}
+
+		List<byte[]> peptides = new ArrayList<>();
+		for( int i = 0; i < PEPTIDE_COUNT; i++ ) {
+
+			byte[] sequence = sequences.get( random.nextInt( SEQUENCE_COUNT ) );
+			int length = 7 + random.nextInt( 19 );
+			int start = random.nextInt( sequence.length - length + 1 );
+
+			peptides.add( Arrays.copyOfRange( sequence, start, start + length ) );
+		}
+
+		System.out.println( "java " + System.getProperty( "java.version" ) + ", " + SEQUENCE_COUNT + " sequences (" +
+				residueCount + " residues) x " + PEPTIDE_COUNT + " peptides, median of " + rounds + " rounds" );
+
+		for( String kernelName : new String[] { "vector", "swar", "scalar" } ) {
+
+			ResidueScanner.Kernel kernel = ResidueScanner.getKernel( kernelName );
+
+			if( !kernel.getName().equals( kernelName ) ) {
+				System.out.println( kernelName + ": not available" );
+				continue;
+			}
+
+			report( kernelName, residueCount, rounds, () -> {
+
+				long found = 0;
+				for( byte[] peptide : peptides ) {
+					for( byte[] sequence : sequences ) {
+						if( kernel.indexOf( sequence, 0, sequence.length, peptide ) != -1 )
+							found++;
+					}
+				}
+
+				return found;
+			} );
+		}
+
+		report( "String.contains", residueCount, rounds, () -> {
+
+			long found = 0;
+			for( byte[] peptide : peptides ) {
+
+				String peptideString = new String( peptide, StandardCharsets.UTF_8 );
+
+				for( byte[] sequence : sequences ) {
+					if( new String( sequence, StandardCharsets.UTF_8 ).contains( peptideString ) )
+						found++;
+				}
+			}
+
+			return found;
+		} );
+	}
+
+	private interface Round {
+		long run();
+	}
+
+	/**
+	 * Time the warm up and timed rounds, and print the median time and the residues scanned per nanosecond
+	 */
+	private static void report( String name, long residueCount, int rounds, Round round ) {
+
+		long found = 0;
+		for( int i = 0; i < WARM_UP_ROUNDS; i++ )
+			found += round.run();
+
+		long[] times = new long[ rounds ];
+		for( int i = 0; i < rounds; i++ ) {
+
+			long start = System.nanoTime();
+			found += round.run();
+			times[ i ] = System.nanoTime() - start;
+		}
+
+		Arrays.sort( times );
+		long median = times[ rounds / 2 ];
+
+		System.out.println( String.format( "%-16s %8.2f ms/round %8.2f residues/ns (found %d)", name + ":", median / 1e6,
+				(double)residueCount * PEPTIDE_COUNT / median, found / ( WARM_UP_ROUNDS + rounds ) ) );
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Checks each ResidueScanner kernel against String.indexOf() and String.contains(). The vector
+ * kernel is only checked where it is available (Java 17+ with jdk.incubator.vector), and is the swar
+ * kernel again otherwise.
+ *
+ * @author Michael Riffle
+ *
+ */
+@RunWith( Parameterized.class )
+public class ResidueScannerTest {
+
+	@Parameters( name = "{0}" )
+	public static Collection<Object[]> getKernelNames() {
+		return Arrays.asList( new Object[][] { { "vector" }, { "swar" }, { "scalar" } } );
+	}
+
+	public ResidueScannerTest( String kernelName ) {
+		kernel = ResidueScanner.getKernel( kernelName );
+	}
+
+	@Test
+	public void testKnownSequences() {
+
+		checkIndexOf( "PEPTIDE", "PEP" );
+		checkIndexOf( "PEPTIDE", "IDE" );
+		checkIndexOf( "PEPTIDE", "PEPTIDE" );
+		checkIndexOf( "PEPTIDE", "PEPTIDES" );
+		checkIndexOf( "PEPTIDE", "E" );
+		checkIndexOf( "PEPTIDE", "X" );
+		checkIndexOf( "PEPTIDE", "" );
+		checkIndexOf( "", "" );
+		checkIndexOf( "", "A" );
+
+		// matches at and around the ends of the words (and vectors) scanned at once
+		StringBuilder sequence = new StringBuilder();
+		for( int i = 0; i < 200; i++ )
+			sequence.append( 'A' );
+
+		for( int position : new int[] { 0, 6, 7, 8, 9, 15, 31, 32, 63, 64, 65, 127, 190, 196 } ) {
+
+			StringBuilder withPeptide = new StringBuilder( sequence );
+			withPeptide.replace( position, position + 4, "MKWV" );
+
+			for( String peptide : new String[] { "M", "MK", "MKW", "MKWV", "AMKWVA", "KWVA" } )
+				checkIndexOf( withPeptide.toString(), peptide );
+		}
+
+		// a flagged position above a real match that doesn't hold the first residues
+		checkIndexOf( "ABABABABXAABC", "AB" );
+		checkIndexOf( "CCCCCCCBACCCCCCCCCCCCCCC", "AC" );
+
+		assertEquals( 0, kernel.indexOf( bytes( "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA" ), 0, 36, bytes( "AAAA" ) ) );
+		assertFalse( ResidueScanner.contains( bytes( "PEPTIDE" ), bytes( "PEPTIDES" ) ) );
+		assertTrue( ResidueScanner.contains( bytes( "PEPTIDE" ), bytes( "TIDE" ) ) );
+	}
+
+	@Test
+	public void testRandomSequences() {
+
+		Random random = new Random( 42 );
+
+		// small alphabets give many partial matches
+		for( String alphabet : new String[] { "AB", "ACK", "ACDEFGHIKLMNPQRSTVWY" } ) {
+
+			for( int i = 0; i < 5000; i++ ) {
+
+				String sequence = getRandomSequence( random, alphabet, random.nextInt( 300 ) );
+				String peptide;
+
+				if( sequence.length() > 0 && random.nextBoolean() ) {
+					int length = 1 + random.nextInt( Math.min( sequence.length(), 12 ) );
+					int start = random.nextInt( sequence.length() - length + 1 );
+					peptide = sequence.substring( start, start + length );
+				} else {
+					peptide = getRandomSequence( random, alphabet, 1 + random.nextInt( 8 ) );
+				}
+
+				checkIndexOf( sequence, peptide );
+
+				// only part of the sequence
+				int from = random.nextInt( sequence.length() + 1 );
+				int to = from + random.nextInt( sequence.length() - from + 1 );
+
+				int expected = sequence.substring( from, to ).indexOf( peptide );
+				if( expected != -1 )
+					expected += from;
+
+				assertEquals( sequence + " " + from + "-" + to + " " + peptide, expected, kernel.indexOf( bytes( sequence ), from, to, bytes( peptide ) ) );
+			}
+		}
+	}
+
+	/**
+	 * Check the kernel against String.indexOf() and String.contains() for the whole sequence
+	 */
+	private void checkIndexOf( String sequence, String peptide ) {
+
+		int position = kernel.indexOf( bytes( sequence ), 0, sequence.length(), bytes( peptide ) );
+
+		assertEquals( sequence + " " + peptide, sequence.indexOf( peptide ), position );
+		assertEquals( sequence + " " + peptide, sequence.contains( peptide ), position != -1 );
+	}
+
+	private static String getRandomSequence( Random random, String alphabet, int length ) {
+
+		StringBuilder sequence = new StringBuilder();
+		for( int i = 0; i < length; i++ )
+			sequence.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+
+		return sequence.toString();
+	}
+
+	private static byte[] bytes( String sequence ) {
+		return sequence.getBytes( StandardCharsets.US_ASCII );
+	}
+
+
+	private final ResidueScanner.Kernel kernel;
+}
@@ -0,0 +1,117 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.fasta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.yeastrc.taxonomy.main.GetTaxonomyId;
+
+/**
+ * Checks that TaxonomyIdResolver gives the same taxonomy id (or error) as calling GetTaxonomyId
+ * for every header, including headers whose results come from the cache because an earlier header
+ * had the same key.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class TaxonomyIdResolverTest {
+
+	/**
+	 * Parts of descriptions, including taxonomy id tokens that differ only in case, position or
+	 * what follows the number, and text that looks like a taxonomy id token but isn't one
+	 */
+	private static final String[] TOKENS = {
+			"Tax_Id=9606", "tax_id=9606", "TAXONOMY_ID=9606", "Taxonomy_Id=10090", "Tax_Id=4932",
+			"Tax_Id=9606;", "Tax_Id=", "Tax_Id=abc", "xTax_Id=559292", "Tax_Id=9606Tax_Id=10090",
+			"OS=Homo sapiens", "GN=TUB4", "Tubulin gamma chain", "Tax", "_Id=9606", "=",
+	};
+
+	private static final String[] SEPARATORS = { " ", "  ", "\t", "\u000B", "\f", "" };
+
+	@Test
+	public void testKnownDescriptions() throws Exception {
+
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", null );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tubulin gamma chain" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tubulin gamma chain Tax_Id=559292" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tax_Id=559292 Tubulin gamma chain" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tax_Id=559292" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tubulin TAXONOMY_ID=559292 gamma chain" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tubulin gamma chain\nTax_Id=559292" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tubulin gamma chain\u2028Tax_Id=559292" );
+		assertSameAsGetTaxonomyId( "sp|P53378|TBG_YEAST", "Tubulin gamma chain Tax_Id=not_a_number" );
+	}
+
+	@Test
+	public void testRandomDescriptions() throws Exception {
+
+		TaxonomyIdResolver resolver = TaxonomyIdResolver.getInstance();
+		long cacheHits = resolver.getCacheHitCount();
+
+		Random random = new Random( 35 );
+
+		for( int i = 0; i < 20000; i++ ) {
+
+			StringBuilder description = new StringBuilder();
+			int tokenCount = random.nextInt( 5 );
+
+			for( int j = 0; j < tokenCount; j++ ) {
+				if( j > 0 || random.nextInt( 4 ) == 0 )
+					description.append( SEPARATORS[ random.nextInt( SEPARATORS.length ) ] );
+
+				description.append( TOKENS[ random.nextInt( TOKENS.length ) ] );
+			}
+
+			if( random.nextInt( 4 ) == 0 )
+				description.append( SEPARATORS[ random.nextInt( SEPARATORS.length ) ] );
+
+			assertSameAsGetTaxonomyId( "protein" + i, description.toString() );
+		}
+
+		// most of the descriptions were answered from the cache
+		assertTrue( resolver.getCacheHitCount() - cacheHits > 1000 );
+	}
+
+	/**
+	 * Check that TaxonomyIdResolver returns the same taxonomy id as GetTaxonomyId, or that both throw
+	 */
+	private void assertSameAsGetTaxonomyId( String name, String description ) {
+
+		String expected;
+		try {
+			expected = String.valueOf( GetTaxonomyId.getInstance().getTaxonomyId( name, description ) );
+		} catch( Exception e ) {
+			expected = e.getClass().getName();
+		}
+
+		String actual;
+		try {
+			actual = String.valueOf( TaxonomyIdResolver.getInstance().getTaxonomyId( name, description ) );
+		} catch( Exception e ) {
+			actual = e.getClass().getName();
+		}
+
+		assertEquals( "[" + description + "]", expected, actual );
+	}
+}
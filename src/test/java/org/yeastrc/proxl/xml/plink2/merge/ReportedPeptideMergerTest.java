@@ -0,0 +1,123 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yeastrc.proxl_import.api.xml_dto.Psm;
+import org.yeastrc.proxl_import.api.xml_dto.Psms;
+import org.yeastrc.proxl_import.api.xml_dto.ReportedPeptide;
+
+/**
+ * Checks the k-way merge of reported peptides from several runs' spill files: the reported peptides
+ * come out once each, in order, with the PSMs of every run that has them, in run order.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ReportedPeptideMergerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testMerge() throws Exception {
+
+		// each run's reported peptides, with the scan numbers of their PSMs; the spill files sort them
+		List<List<ReportedPeptide>> runs = Arrays.asList(
+				Arrays.asList( getReportedPeptide( "PEPTIDEK(1)-PEPTIDER(2)", 1, 2 ), getReportedPeptide( "AAAK", 3 ), getReportedPeptide( "MMMK", 4 ) ),
+				Arrays.asList( getReportedPeptide( "AAAK", 11 ), getReportedPeptide( "CCCK", 12, 13 ) ),
+				new ArrayList<ReportedPeptide>(),
+				Arrays.asList( getReportedPeptide( "ZZZK", 31 ), getReportedPeptide( "AAAK", 32 ), getReportedPeptide( "PEPTIDEK(1)-PEPTIDER(2)", 33 ) ) );
+
+		List<ReportedPeptideSpillFile.Reader> readers = new ArrayList<>();
+
+		try {
+
+			for( int i = 0; i < runs.size(); i++ ) {
+				File spillFile = temporaryFolder.newFile( "run" + i + ".xml" );
+				ReportedPeptideSpillFile.write( runs.get( i ), spillFile );
+
+				readers.add( new ReportedPeptideSpillFile.Reader( spillFile, i ) );
+			}
+
+			ReportedPeptideMerger merger = new ReportedPeptideMerger( readers );
+
+			assertMerged( merger.next(), "AAAK", 3, 11, 32 );
+			assertMerged( merger.next(), "CCCK", 12, 13 );
+			assertMerged( merger.next(), "MMMK", 4 );
+			assertMerged( merger.next(), "PEPTIDEK(1)-PEPTIDER(2)", 1, 2, 33 );
+			assertMerged( merger.next(), "ZZZK", 31 );
+			assertFalse( merger.hasNext() );
+
+			assertEquals( 3, merger.getCombinedCount() );
+
+		} finally {
+			for( ReportedPeptideSpillFile.Reader reader : readers )
+				reader.close();
+		}
+	}
+
+	@Test
+	public void testNoRuns() {
+		assertFalse( new ReportedPeptideMerger( new ArrayList<ReportedPeptideSpillFile.Reader>() ).hasNext() );
+	}
+
+	private void assertMerged( ReportedPeptide reportedPeptide, String reportedPeptideString, int... scanNumbers ) {
+
+		assertEquals( reportedPeptideString, reportedPeptide.getReportedPeptideString() );
+
+		List<Integer> actualScanNumbers = new ArrayList<>();
+		for( Psm psm : reportedPeptide.getPsms().getPsm() )
+			actualScanNumbers.add( psm.getScanNumber().intValue() );
+
+		List<Integer> expectedScanNumbers = new ArrayList<>();
+		for( int scanNumber : scanNumbers )
+			expectedScanNumbers.add( scanNumber );
+
+		assertEquals( reportedPeptideString, expectedScanNumbers, actualScanNumbers );
+	}
+
+	private ReportedPeptide getReportedPeptide( String reportedPeptideString, int... scanNumbers ) {
+
+		ReportedPeptide reportedPeptide = new ReportedPeptide();
+		reportedPeptide.setReportedPeptideString( reportedPeptideString );
+		reportedPeptide.setPsms( new Psms() );
+
+		for( int scanNumber : scanNumbers ) {
+			Psm psm = new Psm();
+			psm.setScanFileName( "test.mgf" );
+			psm.setScanNumber( BigInteger.valueOf( scanNumber ) );
+
+			reportedPeptide.getPsms().getPsm().add( psm );
+		}
+
+		return reportedPeptide;
+	}
+}
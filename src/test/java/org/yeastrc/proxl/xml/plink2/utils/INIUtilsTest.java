@@ -0,0 +1,137 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.configuration2.INIConfiguration;
+import org.apache.commons.configuration2.tree.DefaultExpressionEngine;
+import org.apache.commons.configuration2.tree.DefaultExpressionEngineSymbols;
+import org.junit.Test;
+import org.yeastrc.proxl.xml.plink2.ini.INISettings;
+
+/**
+ * Checks that INIUtils reads the sample pLink files the same way as commons-configuration's
+ * INIConfiguration, which was used before, and gives the values the loaders look up.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class INIUtilsTest {
+
+	private static final File SAMPLE_INPUT_DIRECTORY = new File( "resources/sample_input" );
+
+	@Test
+	public void testModificationINIMatchesINIConfiguration() throws Exception {
+		assertMatchesINIConfiguration( new File( SAMPLE_INPUT_DIRECTORY, "modification.ini" ) );
+	}
+
+	@Test
+	public void testXlinkINIMatchesINIConfiguration() throws Exception {
+		assertMatchesINIConfiguration( new File( SAMPLE_INPUT_DIRECTORY, "xlink.ini" ) );
+	}
+
+	@Test
+	public void testPLinkParametersMatchINIConfiguration() throws Exception {
+		assertMatchesINIConfiguration( new File( SAMPLE_INPUT_DIRECTORY, "plink_test2.plink" ) );
+	}
+
+	@Test
+	public void testValuesUsedByLoaders() throws Exception {
+
+		INISettings modifications = INIUtils.getINISettings( new File( SAMPLE_INPUT_DIRECTORY, "modification.ini" ) );
+		assertEquals( "C NORMAL 144.042259 144.042259 0 H(8)C(6)O(4)", modifications.getString( "2-dimethylsuccinyl[C]" ) );
+		assertEquals( 1610, modifications.getInt( "@NUMBER_MODIFICATION" ) );
+
+		INISettings xlinks = INIUtils.getINISettings( new File( SAMPLE_INPUT_DIRECTORY, "xlink.ini" ) );
+		assertEquals( "[K [K 138.068 138.068 156.079 156.079 C(8)H(6)1H(4)O(2) C(8)H(8)1H(4)O(3) 0 0", xlinks.getString( "xlink/BS3" ) );
+		assertEquals( 16, xlinks.getInt( "xlink/total" ) );
+
+		INISettings parameters = INIUtils.getINISettings( new File( SAMPLE_INPUT_DIRECTORY, "plink_test2.plink" ) );
+		assertEquals( 1, parameters.getInt( "linker/linker_total" ) );
+		assertEquals( "BS3", parameters.getString( "linker/linker1" ) );
+	}
+
+	/**
+	 * Check that every section and key read by INIUtils has the same value in INIConfiguration, and that
+	 * INIConfiguration has no keys that INIUtils doesn't
+	 */
+	private void assertMatchesINIConfiguration( File file ) throws Exception {
+
+		INISettings settings = INIUtils.getINISettings( file );
+		INIConfiguration reference = getINIConfiguration( file );
+
+		int keyCount = 0;
+
+		for( String section : settings.getSections() ) {
+			for( Map.Entry<String, String> entry : settings.getSection( section ).entrySet() ) {
+
+				// a / in a key name must be escaped for INIConfiguration
+				String key = entry.getKey().replace( "/", "\\/" );
+				if( !section.equals( INISettings.GLOBAL_SECTION ) )
+					key = section + "/" + key;
+
+				keyCount++;
+
+				// INIConfiguration takes a key starting with @ for an attribute and can't look it up
+				if( entry.getKey().startsWith( "@" ) )
+					continue;
+
+				assertEquals( file.getName() + ": " + key, reference.getString( key ), entry.getValue() );
+			}
+		}
+
+		int referenceKeyCount = 0;
+		for( Iterator<String> keys = reference.getKeys(); keys.hasNext(); keys.next() )
+			referenceKeyCount++;
+
+		assertEquals( file.getName(), referenceKeyCount, keyCount );
+	}
+
+	/**
+	 * Read an INI file as INIUtils did before, with a / separating sections from keys
+	 */
+	private INIConfiguration getINIConfiguration( File file ) throws Exception {
+
+		DefaultExpressionEngineSymbols symbols = new DefaultExpressionEngineSymbols.Builder( DefaultExpressionEngineSymbols.DEFAULT_SYMBOLS )
+				.setPropertyDelimiter( "/" )
+				.setIndexStart( "{" )
+				.setIndexEnd( "}" )
+				.setAttributeStart( "@" )
+				.setAttributeEnd( null )
+				.setEscapedDelimiter( "\\/" )
+				.create();
+
+		INIConfiguration config = new INIConfiguration();
+		config.setExpressionEngine( new DefaultExpressionEngine( symbols ) );
+
+		try( Reader reader = Files.newBufferedReader( file.toPath(), Charset.defaultCharset() ) ) {
+			config.read( reader );
+		}
+
+		return config;
+	}
+}
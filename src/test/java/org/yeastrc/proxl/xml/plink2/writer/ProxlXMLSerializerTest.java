@@ -0,0 +1,108 @@
+/*
+ * Original author: Michael Riffle <mriffle .at. uw.edu>
+ *
+ * Copyright 2019 University of Washington - Seattle, WA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.yeastrc.proxl.xml.plink2.writer;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yeastrc.proxl.xml.plink2.builder.XMLBuilder;
+import org.yeastrc.proxl.xml.plink2.objects.PLinkResult;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParameters;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkResultsLoader;
+import org.yeastrc.proxl.xml.plink2.reader.PLinkSearchParametersLoader;
+import org.yeastrc.proxl_import.api.xml_dto.ProxlInput;
+
+/**
+ * Checks that ProxlXMLSerializer writes the same bytes as JAXB, with formatted output turned on
+ * and off (compact), for the sample search and for text that has to be escaped.
+ *
+ * @author Michael Riffle
+ *
+ */
+public class ProxlXMLSerializerTest {
+
+	private static final File SAMPLE_INPUT_DIRECTORY = new File( "resources/sample_input" );
+
+	private static ProxlInput sampleProxlInput;
+
+	@BeforeClass
+	public static void buildSampleProxlInput() throws Exception {
+
+		PLinkSearchParameters params = PLinkSearchParametersLoader.getInstance().getPLinkSearch(
+				new File( SAMPLE_INPUT_DIRECTORY, "plink_test2.plink" ).getPath(), SAMPLE_INPUT_DIRECTORY.getPath() );
+
+		Collection<PLinkResult> results = PLinkResultsLoader.getInstance().getAllResults( params, SAMPLE_INPUT_DIRECTORY.getPath() );
+
+		sampleProxlInput = new XMLBuilder().buildProxlInput( params, results,
+				new File( SAMPLE_INPUT_DIRECTORY, "gTuSC-parsimonious-plusRev.fasta" ).getPath() );
+	}
+
+	@Test
+	public void testSampleSearch() throws Exception {
+		assertArrayEquals( marshalWithJAXB( sampleProxlInput, true ), serialize( sampleProxlInput, true ) );
+	}
+
+	@Test
+	public void testSampleSearchCompact() throws Exception {
+		assertArrayEquals( marshalWithJAXB( sampleProxlInput, false ), serialize( sampleProxlInput, false ) );
+	}
+
+	@Test
+	public void testEscapedText() throws Exception {
+
+		ProxlInput proxlInput = new ProxlInput();
+		proxlInput.setFastaFilename( "a&b <c> \"d\" 'e' \u00e9\u4e2d\ud83d\ude00.fasta" );
+		proxlInput.setName( "tab\tand & ampersand" );
+		proxlInput.setComment( "1 < 2 && 3 > 2, \"quoted\" \u00e9" );
+
+		assertArrayEquals( marshalWithJAXB( proxlInput, true ), serialize( proxlInput, true ) );
+		assertArrayEquals( marshalWithJAXB( proxlInput, false ), serialize( proxlInput, false ) );
+	}
+
+	private byte[] marshalWithJAXB( ProxlInput proxlInput, boolean formatted ) throws Exception {
+
+		Marshaller marshaller = JAXBContext.newInstance( ProxlInput.class ).createMarshaller();
+		marshaller.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, formatted );
+		marshaller.setProperty( Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name() );
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		marshaller.marshal( proxlInput, os );
+
+		return os.toByteArray();
+	}
+
+	private byte[] serialize( ProxlInput proxlInput, boolean formatted ) throws Exception {
+
+		Marshaller marshaller = JAXBContext.newInstance( ProxlInput.class ).createMarshaller();
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		marshaller.marshal( proxlInput, new ProxlXMLSerializer( os, formatted ) );
+
+		return os.toByteArray();
+	}
+}